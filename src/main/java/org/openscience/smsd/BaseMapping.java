@@ -90,30 +90,22 @@ public class BaseMapping extends ChemicalFilters implements IAtomMapping {
 
         if (getMappingCount() > 0) {
 
+            try {
+                sortResults(stereoFilter, fragmentFilter, energyFilter);
+            } catch (CDKException ex) {
+                LOGGER.error(Level.SEVERE, null, ex);
+            }
+
             if (fragmentFilter) {
-                sortResultsByFragments();
                 this.fragmentSizeList = getSortedFragment();
-//                System.out.println("fragmentSizeList " + fragmentSizeList);
             }
 
             if (stereoFilter) {
-                try {
-                    sortResultsByStereoAndBondMatch();
-                    this.stereoScoreList = getStereoMatches();
-//                    System.out.println("stereoScoreList " + stereoScoreList);
-                } catch (CDKException ex) {
-                    LOGGER.error(Level.SEVERE, null, ex);
-                }
+                this.stereoScoreList = getStereoMatches();
             }
 
             if (energyFilter) {
-                try {
-                    sortResultsByEnergies();
-                    this.bondEnergiesList = getSortedEnergy();
-//                    System.out.println("bondEnergiesList " + bondEnergiesList);
-                } catch (CDKException ex) {
-                    LOGGER.error(Level.SEVERE, null, ex);
-                }
+                this.bondEnergiesList = getSortedEnergy();
             }
         }
     }
@@ -0,0 +1,213 @@
+/* Copyright (C) 2009-2017  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.matchers;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.IQueryBond;
+
+/**
+ * Bond compatibility of two compiled molecules for a set of matching flags,
+ * the same result as {@link DefaultMatcher} (or the query matchers for query
+ * bonds) but computed from the int codes of {@link CompiledMolecule} and
+ * remembered for each bond pair.
+ *
+ * Not thread safe, each MCS search uses its own table.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class BondMatchTable {
+
+    /*
+     * larger tables are not memoised
+     */
+    private static final int MAX_MEMO_SIZE = 1 << 22;
+    private static final byte UNKNOWN = 0;
+    private static final byte MATCH = 1;
+    private static final byte MISMATCH = 2;
+
+    private final CompiledMolecule query;
+    private final CompiledMolecule target;
+    private final boolean shouldMatchBonds;
+    private final boolean shouldMatchRings;
+    private final boolean matchAtomTypes;
+    private final byte[] memo;
+
+    /**
+     *
+     * @param query
+     * @param target
+     * @param shouldMatchBonds
+     * @param shouldMatchRings
+     * @param matchAtomTypes
+     */
+    public BondMatchTable(IAtomContainer query, IAtomContainer target,
+            boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomTypes) {
+        this(compile(query, target), shouldMatchBonds, shouldMatchRings, matchAtomTypes);
+    }
+
+    private BondMatchTable(CompiledMolecule[] pair,
+            boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomTypes) {
+        this(pair[0], pair[1], shouldMatchBonds, shouldMatchRings, matchAtomTypes);
+    }
+
+    /*
+     * the label table is shared by the two molecules of this table only
+     */
+    private static CompiledMolecule[] compile(IAtomContainer query, IAtomContainer target) {
+        Map<String, Integer> labels = new HashMap<>();
+        return new CompiledMolecule[]{new CompiledMolecule(query, labels), new CompiledMolecule(target, labels)};
+    }
+
+    /**
+     *
+     * @param query compiled with the same label table as the target
+     * @param target compiled with the same label table as the query
+     * @param shouldMatchBonds
+     * @param shouldMatchRings
+     * @param matchAtomTypes
+     */
+    public BondMatchTable(CompiledMolecule query, CompiledMolecule target,
+            boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomTypes) {
+        this.query = query;
+        this.target = target;
+        this.shouldMatchBonds = shouldMatchBonds;
+        this.shouldMatchRings = shouldMatchRings;
+        this.matchAtomTypes = matchAtomTypes;
+        long size = (long) query.bondCount * target.bondCount;
+        this.memo = size <= MAX_MEMO_SIZE ? new byte[(int) size] : null;
+    }
+
+    /**
+     * @return compiled query
+     */
+    public CompiledMolecule getQuery() {
+        return query;
+    }
+
+    /**
+     * @return compiled target
+     */
+    public CompiledMolecule getTarget() {
+        return target;
+    }
+
+    /**
+     * Match the bond between two query atoms with the bond between two target
+     * atoms.
+     *
+     * @param q1 query atom index
+     * @param q2 query atom index
+     * @param t1 target atom index
+     * @param t2 target atom index
+     * @return true if both bonds exist and match
+     */
+    public boolean matches(int q1, int q2, int t1, int t2) {
+        int i = query.getBondIndex(q1, q2);
+        if (i < 0) {
+            return false;
+        }
+        int j = target.getBondIndex(t1, t2);
+        return j >= 0 && matches(i, j);
+    }
+
+    /**
+     *
+     * @param i query bond index
+     * @param j target bond index
+     * @return true if the bonds match
+     */
+    public boolean matches(int i, int j) {
+        if (memo == null) {
+            return compute(i, j);
+        }
+        int k = i * target.bondCount + j;
+        byte value = memo[k];
+        if (value == UNKNOWN) {
+            value = compute(i, j) ? MATCH : MISMATCH;
+            memo[k] = value;
+        }
+        return value == MATCH;
+    }
+
+    private boolean compute(int i, int j) {
+        if (query.generic[i] || target.generic[j]) {
+            return isMatchFeasible(query.bonds[i], target.bonds[j]);
+        }
+        if (shouldMatchRings || matchAtomTypes) {
+            int q1 = query.bondBegin[i];
+            int q2 = query.bondEnd[i];
+            int t1 = target.bondBegin[j];
+            int t2 = target.bondEnd[j];
+            if (!(isAtomMatch(q1, t1) && isAtomMatch(q2, t2))
+                    && !(isAtomMatch(q1, t2) && isAtomMatch(q2, t1))) {
+                return false;
+            }
+        }
+        if (!shouldMatchBonds && !shouldMatchRings) {
+            return true;
+        }
+        if (shouldMatchBonds) {
+            return isBondTypeMatch(i, j);
+        }
+        return query.aromatic[i] == target.aromatic[j];
+    }
+
+    private boolean isAtomMatch(int i, int j) {
+        return CompiledMolecule.matches(query, i, target, j, shouldMatchRings, matchAtomTypes);
+    }
+
+    private boolean isBondTypeMatch(int i, int j) {
+        if (query.aromatic[i] == target.aromatic[j]
+                && query.bondOrder[i] == target.bondOrder[j]) {
+            return true;
+        }
+        if (query.aromatic[i] && target.aromatic[j]) {
+            return true;
+        }
+        return !matchAtomTypes
+                && query.ringBond[i]
+                && target.ringBond[j]
+                && (query.bondOrder[i] == CompiledMolecule.UNSET_ORDER
+                || target.bondOrder[j] == CompiledMolecule.UNSET_ORDER);
+    }
+
+    /*
+     * Object matchers, used for the bonds which are not compiled
+     */
+    private boolean isMatchFeasible(IBond bondA1, IBond bondA2) {
+        if (bondA1 instanceof IQueryBond) {
+            if (((IQueryBond) bondA1).matches(bondA2)) {
+                IQueryAtom atom1 = (IQueryAtom) (bondA1.getAtom(0));
+                IQueryAtom atom2 = (IQueryAtom) (bondA1.getAtom(1));
+                return atom1.matches(bondA2.getAtom(0)) && atom2.matches(bondA2.getAtom(1))
+                        || atom1.matches(bondA2.getAtom(1)) && atom2.matches(bondA2.getAtom(0));
+            }
+            return false;
+        }
+        return DefaultMatcher.matches(bondA1, bondA2, shouldMatchBonds, shouldMatchRings, matchAtomTypes);
+    }
+}
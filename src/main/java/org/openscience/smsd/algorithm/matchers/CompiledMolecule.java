@@ -0,0 +1,260 @@
+/* Copyright (C) 2009-2017  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.matchers;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.IQueryBond;
+
+/**
+ * The atom and bond properties used by the default matchers, compiled to int
+ * codes and bitmasks: symbols and atom types are interned to int labels, the
+ * ring sizes of an atom become a bitmask and the bond orders their ordinal.
+ * The flags and the ring sizes are read once, so the molecule must be
+ * initialised (rings perceived) before it is compiled.
+ *
+ * Query atoms and bonds are not compiled, they are marked and matched with
+ * their own matchers.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public final class CompiledMolecule {
+
+    /*
+     * ring sizes above 62 are flagged by the top bit and compared as lists
+     */
+    static final int MAX_RING_SIZE = 62;
+    static final long LARGE_RINGS = 1L << 63;
+    static final int UNSET_ORDER = IBond.Order.UNSET.ordinal();
+
+    final IAtomContainer molecule;
+    final int atomCount;
+    final int bondCount;
+    final int[] symbol;
+    final int[] atomType;
+    final boolean[] ringAtom;
+    final boolean[] aliphatic;
+    final long[] ringSizes;
+    final boolean[] queryAtom;
+    final IBond[] bonds;
+    final int[] bondBegin;
+    final int[] bondEnd;
+    final int[] bondOrder;
+    final boolean[] aromatic;
+    final boolean[] ringBond;
+    /*
+     * bond which can't be compared by the codes (query bond or atoms, atoms
+     * not in the molecule, no order on the query side)
+     */
+    final boolean[] generic;
+    private final int[][] neighbours;
+    private final int[][] neighbourBonds;
+
+    /**
+     * Compile the molecule. Symbols and atom type names share the codes of
+     * the label table (an atom type name is compared with a symbol if the
+     * other atom has no atom type), so only molecules compiled with the same
+     * table can be matched; the table belongs to one match session and is
+     * not thread safe.
+     *
+     * @param molecule
+     * @param labels label table of the match session
+     */
+    public CompiledMolecule(IAtomContainer molecule, Map<String, Integer> labels) {
+        this.molecule = molecule;
+        this.atomCount = molecule.getAtomCount();
+        this.bondCount = molecule.getBondCount();
+        this.symbol = new int[atomCount];
+        this.atomType = new int[atomCount];
+        this.ringAtom = new boolean[atomCount];
+        this.aliphatic = new boolean[atomCount];
+        this.ringSizes = new long[atomCount];
+        this.queryAtom = new boolean[atomCount];
+        Map<IAtom, Integer> index = new IdentityHashMap<>(2 * atomCount);
+        for (int i = 0; i < atomCount; i++) {
+            IAtom atom = molecule.getAtom(i);
+            index.put(atom, i);
+            queryAtom[i] = atom instanceof IQueryAtom;
+            symbol[i] = getLabel(labels, atom.getSymbol());
+            atomType[i] = getLabel(labels, atom.getAtomTypeName() == null ? atom.getSymbol() : atom.getAtomTypeName());
+            ringAtom[i] = atom.getFlag(CDKConstants.ISINRING);
+            aliphatic[i] = atom.getFlag(CDKConstants.ISALIPHATIC);
+            List<Integer> sizes = atom.getProperty(CDKConstants.RING_SIZES);
+            ringSizes[i] = getRingSizes(sizes);
+        }
+
+        this.bonds = new IBond[bondCount];
+        this.bondBegin = new int[bondCount];
+        this.bondEnd = new int[bondCount];
+        this.bondOrder = new int[bondCount];
+        this.aromatic = new boolean[bondCount];
+        this.ringBond = new boolean[bondCount];
+        this.generic = new boolean[bondCount];
+        int[] degree = new int[atomCount];
+        for (int b = 0; b < bondCount; b++) {
+            IBond bond = molecule.getBond(b);
+            bonds[b] = bond;
+            Integer begin = index.get(bond.getAtom(0));
+            Integer end = index.get(bond.getAtom(1));
+            bondBegin[b] = begin == null ? -1 : begin;
+            bondEnd[b] = end == null ? -1 : end;
+            bondOrder[b] = bond.getOrder() == null ? -1 : bond.getOrder().ordinal();
+            aromatic[b] = bond.getFlag(CDKConstants.ISAROMATIC);
+            ringBond[b] = bond.getFlag(CDKConstants.ISINRING);
+            generic[b] = bond instanceof IQueryBond
+                    || bondBegin[b] < 0 || bondEnd[b] < 0
+                    || queryAtom[bondBegin[b]] || queryAtom[bondEnd[b]]
+                    || bondOrder[b] < 0;
+            if (bondBegin[b] >= 0 && bondEnd[b] >= 0) {
+                degree[bondBegin[b]]++;
+                degree[bondEnd[b]]++;
+            }
+        }
+        this.neighbours = new int[atomCount][];
+        this.neighbourBonds = new int[atomCount][];
+        for (int i = 0; i < atomCount; i++) {
+            neighbours[i] = new int[degree[i]];
+            neighbourBonds[i] = new int[degree[i]];
+            degree[i] = 0;
+        }
+        for (int b = 0; b < bondCount; b++) {
+            int u = bondBegin[b];
+            int v = bondEnd[b];
+            if (u >= 0 && v >= 0) {
+                neighbours[u][degree[u]] = v;
+                neighbourBonds[u][degree[u]++] = b;
+                neighbours[v][degree[v]] = u;
+                neighbourBonds[v][degree[v]++] = b;
+            }
+        }
+    }
+
+    private static int getLabel(Map<String, Integer> labels, String label) {
+        if (label == null) {
+            return -1;
+        }
+        Integer code = labels.get(label);
+        if (code == null) {
+            code = labels.size();
+            labels.put(label, code);
+        }
+        return code;
+    }
+
+    private static long getRingSizes(List<Integer> sizes) {
+        long mask = 0L;
+        if (sizes != null) {
+            for (Integer size : sizes) {
+                if (size != null && size >= 0 && size <= MAX_RING_SIZE) {
+                    mask |= 1L << size;
+                } else if (size != null) {
+                    mask |= LARGE_RINGS;
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return the compiled molecule
+     */
+    public IAtomContainer getMolecule() {
+        return molecule;
+    }
+
+    /**
+     * Same bond as {@link IAtomContainer#getBond(IAtom, IAtom)} (the first
+     * bond between the atoms).
+     *
+     * @param u atom index
+     * @param v atom index
+     * @return bond index or -1 if the atoms are not bonded
+     */
+    public int getBondIndex(int u, int v) {
+        int[] n = neighbours[u];
+        for (int k = 0; k < n.length; k++) {
+            if (n[k] == v) {
+                return neighbourBonds[u][k];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     *
+     * @param b bond index
+     * @return the bond
+     */
+    public IBond getBond(int b) {
+        return bonds[b];
+    }
+
+    /**
+     * Same as {@link DefaultAtomMatcher} (matchAtomTypes false) or
+     * {@link DefaultAtomTypeMatcher} for atoms which are not query atoms.
+     *
+     * @param query
+     * @param i query atom index
+     * @param target
+     * @param j target atom index
+     * @param shouldMatchRings
+     * @param matchAtomTypes
+     * @return true if the atoms match
+     */
+    static boolean matches(CompiledMolecule query, int i, CompiledMolecule target, int j,
+            boolean shouldMatchRings, boolean matchAtomTypes) {
+        if (query.symbol[i] < 0 || query.symbol[i] != target.symbol[j]) {
+            return false;
+        }
+        if (shouldMatchRings) {
+            if (query.ringAtom[i] != target.ringAtom[j]) {
+                return false;
+            }
+            if (query.ringAtom[i] && !isRingSizeMatch(query, i, target, j)) {
+                return false;
+            }
+        }
+        return !(matchAtomTypes
+                && query.atomType[i] != target.atomType[j]
+                && query.aliphatic[i] && target.aliphatic[j]);
+    }
+
+    private static boolean isRingSizeMatch(CompiledMolecule query, int i, CompiledMolecule target, int j) {
+        long common = query.ringSizes[i] & target.ringSizes[j];
+        if ((common & ~LARGE_RINGS) != 0) {
+            return true;
+        }
+        if (common == 0) {
+            return false;
+        }
+        List<Integer> ringsizesQ = query.molecule.getAtom(i).getProperty(CDKConstants.RING_SIZES);
+        List<Integer> ringsizesT = target.molecule.getAtom(j).getProperty(CDKConstants.RING_SIZES);
+        return ringsizesQ.stream().anyMatch((s) -> (ringsizesT.contains(s)));
+    }
+}
@@ -26,14 +26,14 @@ package org.openscience.smsd.algorithm.mcgregor;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
-import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
+import org.openscience.smsd.algorithm.matchers.BondMatchTable;
 import org.openscience.smsd.helper.BinaryTree;
 import org.openscience.smsd.tools.IterationManager;
 
@@ -97,8 +97,14 @@ public final class McGregor {
     private final IAtomContainer target;
     private BinaryTree last = null;
     private BinaryTree first = null;
-    private final Stack<List<Integer>> bestARCS;
-    private final List<Integer> modifiedARCS;
+    private final Stack<int[]> bestARCS;
+    private int[] modifiedARCS;
+    /*
+     * Undo log of the arc matrix changes (position, old value) made during
+     * partsearch, rolled back instead of copying the matrix at every step
+     */
+    private int[] undoLog;
+    private int undoTop;
     private int bestarcsleft;
     private int globalMCSSize;
     private final List<List<Integer>> mappings;
@@ -113,6 +119,10 @@ public final class McGregor {
         "$47", "$48", "$49", "$50", "$51", "$52", "$53", "$54", "$55"
     };
     private boolean newMatrix = false;
+    /*
+     * bond compatibility of the source (last iteration) and the target
+     */
+    private BondMatchTable matchTable;
 
     /**
      * Constructor for the McGregor algorithm.
@@ -144,7 +154,9 @@ public final class McGregor {
             this.globalMCSSize = 0;
         }
 //        System.out.println("globalMCSSize " + globalMCSSize);
-        this.modifiedARCS = Collections.synchronizedList(new ArrayList<>());
+        this.modifiedARCS = new int[0];
+        this.undoLog = new int[64];
+        this.undoTop = 0;
         this.bestARCS = new Stack<>();
         this.newMatrix = false;
     }
@@ -170,7 +182,9 @@ public final class McGregor {
         } else {
             this.globalMCSSize = 0;
         }
-        this.modifiedARCS = Collections.synchronizedList(new ArrayList<>());
+        this.modifiedARCS = new int[0];
+        this.undoLog = new int[64];
+        this.undoTop = 0;
         this.bestARCS = new Stack<>();
         this.newMatrix = false;
     }
@@ -187,6 +201,11 @@ public final class McGregor {
 
         this.globalMCSSize = (largestMappingSize / 2);
 //        System.out.println("globalMCSSize " + globalMCSSize);
+        if (matchTable == null
+                || matchTable.getQuery().getMolecule() != source
+                || matchTable.getQuery().getMolecule().getBondCount() != source.getBondCount()) {
+            matchTable = new BondMatchTable(source, target, isBondMatch(), isMatchRings(), isMatchAtomType());
+        }
         List<String> c_tab1_copy = McGregorChecks.generateCTabCopy(source);
         List<String> c_tab2_copy = McGregorChecks.generateCTabCopy(target);
 
@@ -318,22 +337,14 @@ public final class McGregor {
 
 //        //check possible mappings:
         boolean furtherMappingFlag;
-        if (source instanceof IQueryAtomContainer) {
-            furtherMappingFlag = McGregorChecks.isFurtherMappingPossible((IQueryAtomContainer) source, target, mcGregorHelper, isBondMatch(), isMatchRings(), isMatchAtomType());
-        } else {
-            furtherMappingFlag = McGregorChecks.isFurtherMappingPossible(source, target, mcGregorHelper, isBondMatch(), isMatchRings(), isMatchAtomType());
-        }
+        furtherMappingFlag = McGregorChecks.isFurtherMappingPossible(source, matchTable, mcGregorHelper);
 
         if (neighborBondNumA == 0 || neighborBondNumB == 0 || mappingCheckFlag || !furtherMappingFlag) {
             setFinalMappings(mappedAtoms, mappedAtomCount);
             return 0;
         }
 
-        modifiedARCS.clear();
-        int size = neighborBondNumA * neighborBondNumB;
-        for (int i = 0; i < size; i++) {
-            modifiedARCS.add(i, 0);
-        }
+        modifiedARCS = new int[neighborBondNumA * neighborBondNumB];
         setModifedArcs(source, mcGregorHelper);
         first = new BinaryTree(-1);
         last = first;
@@ -342,7 +353,7 @@ public final class McGregor {
         bestarcsleft = 0;
 
         startsearch(mcGregorHelper);
-        Stack<List<Integer>> bestARCSClone = new Stack<>();
+        Stack<int[]> bestARCSClone = new Stack<>();
 
         bestARCSClone.addAll(bestARCS);
         while (!bestARCS.empty()) {
@@ -358,7 +369,7 @@ public final class McGregor {
 
     private synchronized void searchAndExtendMappings(
             IAtomContainer source,
-            Stack<List<Integer>> bestARCSClone,
+            Stack<int[]> bestARCSClone,
             McgregorHelper mcGregorHelper) throws IOException {
         int mappedAtomCount = mcGregorHelper.getMappedAtomCount();
         int setNumA = mcGregorHelper.getSetNumA();
@@ -370,7 +381,7 @@ public final class McGregor {
 
         while (!bestARCSClone.empty()) {
 
-            List<Integer> MARCS_vector = new ArrayList<>(bestARCSClone.peek());
+            int[] MARCS_vector = bestARCSClone.peek();
             List<Integer> new_Mapping = findMcGregorMapping(source, MARCS_vector, mcGregorHelper);
 
             int newMapingSize = new_Mapping.size() / 2;
@@ -516,7 +527,7 @@ public final class McGregor {
         }
     }
 
-    private synchronized List<Integer> findMcGregorMapping(IAtomContainer source, List<Integer> MARCS, McgregorHelper mcGregorHelper) {
+    private synchronized List<Integer> findMcGregorMapping(IAtomContainer source, int[] MARCS, McgregorHelper mcGregorHelper) {
 
         int neighborBondNumA = mcGregorHelper.getNeighborBondNumA();
         int neighborBondNumB = mcGregorHelper.getNeighborBondNumB();
@@ -525,7 +536,7 @@ public final class McGregor {
 
         for (int x = 0; x < neighborBondNumA; x++) {
             for (int y = 0; y < neighborBondNumB; y++) {
-                if (MARCS.get(x * neighborBondNumB + y) == 1) {
+                if (MARCS[x * neighborBondNumB + y] == 1) {
                     extendMapping(source, x, y, mcGregorHelper, additional_mapping, currentMapping);
                 }
             }
@@ -562,42 +573,28 @@ public final class McGregor {
                     int Index_I = iBondNeighborAtomsA.get(row * 3 + 0);
                     int Index_IPlus1 = iBondNeighborAtomsA.get(row * 3 + 1);
 
-                    IAtom R1_A = source.getAtom(Index_I);
-                    IAtom R2_A = source.getAtom(Index_IPlus1);
-                    IBond reactantBond = source.getBond(R1_A, R2_A);
-
                     int Index_J = iBondNeighborAtomsB.get(column * 3 + 0);
                     int Index_JPlus1 = iBondNeighborAtomsB.get(column * 3 + 1);
 
-                    IAtom P1_B = target.getAtom(Index_J);
-                    IAtom P2_B = target.getAtom(Index_JPlus1);
-                    IBond productBond = target.getBond(P1_B, P2_B);
-                    if (McGregorChecks.isMatchFeasible(reactantBond, productBond, isBondMatch(), isMatchRings(), isMatchAtomType())) {
-                        modifiedARCS.set(row * neighborBondNumB + column, 1);
+                    if (matchTable.matches(Index_I, Index_IPlus1, Index_J, Index_JPlus1)) {
+                        modifiedARCS[row * neighborBondNumB + column] = 1;
                     }
                 } else if (source instanceof IQueryAtomContainer) {
                     int Index_I = iBondNeighborAtomsA.get(row * 3 + 0);
                     int Index_IPlus1 = iBondNeighborAtomsA.get(row * 3 + 1);
 
-                    IAtom R1_A = source.getAtom(Index_I);
-                    IAtom R2_A = source.getAtom(Index_IPlus1);
-                    IBond reactantBond = source.getBond(R1_A, R2_A);
-
                     int Index_J = iBondNeighborAtomsB.get(column * 3 + 0);
                     int Index_JPlus1 = iBondNeighborAtomsB.get(column * 3 + 1);
 
-                    IAtom P1_B = target.getAtom(Index_J);
-                    IAtom P2_B = target.getAtom(Index_JPlus1);
-                    IBond productBond = target.getBond(P1_B, P2_B);
-                    if (McGregorChecks.isMatchFeasible(reactantBond, productBond, isBondMatch(), isMatchRings(), isMatchAtomType())) {
-                        modifiedARCS.set(row * neighborBondNumB + column, 1);
+                    if (matchTable.matches(Index_I, Index_IPlus1, Index_J, Index_JPlus1)) {
+                        modifiedARCS[row * neighborBondNumB + column] = 1;
                     }
                 }
             }
         }
     }
 
-    private synchronized void partsearch(int xstart, int ystart, List<Integer> TEMPMARCS_ORG, McgregorHelper mcGregorHelper) {
+    private synchronized void partsearch(int xstart, int ystart, int[] TEMPMARCS, McgregorHelper mcGregorHelper) {
 
         if (checkTimeout()) {
             return;
@@ -609,42 +606,117 @@ public final class McGregor {
         int xIndex = xstart;
         int yIndex = ystart;
 
-        List<Integer> TEMPMARCS = new ArrayList<>(TEMPMARCS_ORG);
-
-        if (TEMPMARCS.get(xstart * neighborBondNumB + ystart) == 1) {
+        /*
+         * Changes are logged and rolled back on return, the caller sees its
+         * matrix unchanged (as if this call had worked on a copy)
+         */
+        int mark = undoTop;
+        try {
+            if (TEMPMARCS[xstart * neighborBondNumB + ystart] == 1) {
 
-            McGregorChecks.removeRedundantArcs(xstart, ystart, TEMPMARCS, mcGregorHelper);
-            int arcsleft = McGregorChecks.countArcsLeft(TEMPMARCS, neighborBondNumA, neighborBondNumB);
+                removeRedundantArcs(xstart, ystart, TEMPMARCS, mcGregorHelper);
+                int arcsleft = McGregorChecks.countArcsLeft(TEMPMARCS, neighborBondNumA, neighborBondNumB);
 
-            //test best arcs left and skip rest if needed
-            if (arcsleft >= bestarcsleft) {
-                setArcs(xIndex, yIndex, arcsleft, TEMPMARCS, mcGregorHelper);
-            }
-        } else {
-            do {
-                yIndex++;
-                if (yIndex == neighborBondNumB) {
-                    yIndex = 0;
-                    xIndex++;
+                //test best arcs left and skip rest if needed
+                if (arcsleft >= bestarcsleft) {
+                    setArcs(xIndex, yIndex, arcsleft, TEMPMARCS, mcGregorHelper);
                 }
+            } else {
+                do {
+                    yIndex++;
+                    if (yIndex == neighborBondNumB) {
+                        yIndex = 0;
+                        xIndex++;
+                    }
 
-            } while ((xIndex < neighborBondNumA) && (TEMPMARCS.get(xIndex * neighborBondNumB + yIndex) != 1)); //Correction by ASAD set value minus 1
+                } while ((xIndex < neighborBondNumA) && (TEMPMARCS[xIndex * neighborBondNumB + yIndex] != 1)); //Correction by ASAD set value minus 1
 
-            if (xIndex < neighborBondNumA) {
+                if (xIndex < neighborBondNumA) {
 
-                partsearch(xIndex, yIndex, TEMPMARCS, mcGregorHelper);
-                TEMPMARCS.set(xIndex * neighborBondNumB + yIndex, 0);
-                partsearch(xIndex, yIndex, TEMPMARCS, mcGregorHelper);
-            } else {
-                int arcsleft = McGregorChecks.countArcsLeft(TEMPMARCS, neighborBondNumA, neighborBondNumB);
-                if (arcsleft >= bestarcsleft) {
-                    popBestArcs(arcsleft);
-                    if (checkMARCS(TEMPMARCS, neighborBondNumA, neighborBondNumB)) {
-                        bestARCS.push(TEMPMARCS);
+                    partsearch(xIndex, yIndex, TEMPMARCS, mcGregorHelper);
+                    setArc(TEMPMARCS, xIndex * neighborBondNumB + yIndex, 0);
+                    partsearch(xIndex, yIndex, TEMPMARCS, mcGregorHelper);
+                } else {
+                    int arcsleft = McGregorChecks.countArcsLeft(TEMPMARCS, neighborBondNumA, neighborBondNumB);
+                    if (arcsleft >= bestarcsleft) {
+                        popBestArcs(arcsleft);
+                        if (checkMARCS(TEMPMARCS, neighborBondNumA, neighborBondNumB)) {
+                            bestARCS.push(TEMPMARCS.clone());
+                        }
                     }
                 }
             }
+        } finally {
+            rollback(TEMPMARCS, mark);
+        }
+    }
+
+    private void setArc(int[] MARCS, int position, int value) {
+        if (MARCS[position] != value) {
+            if (undoTop + 2 > undoLog.length) {
+                undoLog = Arrays.copyOf(undoLog, undoLog.length * 2);
+            }
+            undoLog[undoTop++] = position;
+            undoLog[undoTop++] = MARCS[position];
+            MARCS[position] = value;
+        }
+    }
+
+    private void rollback(int[] MARCS, int mark) {
+        while (undoTop > mark) {
+            undoTop -= 2;
+            MARCS[undoLog[undoTop]] = undoLog[undoTop + 1];
+        }
+    }
+
+    /**
+     * The function is called in function partsearch. The function is given a
+     * temporary matrix and a position (row/column) within this matrix. First
+     * the function sets all entries to zero, which can be excluded in respect
+     * to the current atom by atom matching. After this the function replaces
+     * all entries in the same row and column of the current position by zeros.
+     * Only the entry of the current position is set to one. All changes go
+     * through the undo log.
+     *
+     * @param row
+     * @param column
+     * @param MARCS
+     * @param mcGregorHelper
+     */
+    private void removeRedundantArcs(int row, int column, int[] MARCS, McgregorHelper mcGregorHelper) {
+        int neighborBondNumA = mcGregorHelper.getNeighborBondNumA();
+        int neighborBondNumB = mcGregorHelper.getNeighborBondNumB();
+        List<Integer> iBondNeighborAtomsA = mcGregorHelper.getiBondNeighborAtomsA();
+        List<Integer> iBondNeighborAtomsB = mcGregorHelper.getiBondNeighborAtomsB();
+        int G1_atom = iBondNeighborAtomsA.get(row * 3 + 0);
+        int G2_atom = iBondNeighborAtomsA.get(row * 3 + 1);
+        int G3_atom = iBondNeighborAtomsB.get(column * 3 + 0);
+        int G4_atom = iBondNeighborAtomsB.get(column * 3 + 1);
+
+        for (int x = 0; x < neighborBondNumA; x++) {
+            int row_atom1 = iBondNeighborAtomsA.get(x * 3 + 0);
+            int row_atom2 = iBondNeighborAtomsA.get(x * 3 + 1);
+
+            for (int y = 0; y < neighborBondNumB; y++) {
+                int column_atom3 = iBondNeighborAtomsB.get(y * 3 + 0);
+                int column_atom4 = iBondNeighborAtomsB.get(y * 3 + 1);
+
+                if (McGregorChecks.cases(G1_atom, G2_atom, G3_atom, G4_atom, row_atom1, row_atom2, column_atom3, column_atom4)) {
+                    setArc(MARCS, x * neighborBondNumB + y, 0);
+                }
+
+            }
+        }
+
+        for (int v = 0; v < neighborBondNumA; v++) {
+            setArc(MARCS, v * neighborBondNumB + column, 0);
+        }
+
+        for (int w = 0; w < neighborBondNumB; w++) {
+            setArc(MARCS, row * neighborBondNumB + w, 0);
         }
+
+        setArc(MARCS, row * neighborBondNumB + column, 1);
     }
 
 //The function is called in function partsearch. The function is given indexZ temporary matrix.
@@ -652,22 +724,14 @@ public final class McGregor {
 //"verifyNodes". If the matrix already exists the function returns false which means that
 //the matrix will not be stored. Otherwise the function returns true which means that the
 //matrix will be stored in function partsearch.
-    private synchronized boolean checkMARCS(List<Integer> MARCS_T, int neighborBondNumA, int neighborBondNumB) {
-
-        int size = neighborBondNumA * neighborBondNumA;
-        List<Integer> posnum_list = new ArrayList<>(size);
+    private synchronized boolean checkMARCS(int[] MARCS_T, int neighborBondNumA, int neighborBondNumB) {
 
-        for (int i = 0; i < posnum_list.size(); i++) {
-            posnum_list.add(i, 0);
-        }
+        int[] posnum_list = new int[neighborBondNumA * neighborBondNumB];
 
-        int yCounter = 0;
         int count_entries = 0;
         for (int x = 0; x < (neighborBondNumA * neighborBondNumB); x++) {
-            if (MARCS_T.get(x) == 1) {
-                posnum_list.add(yCounter, x);
-                yCounter += 1;
-                count_entries++;
+            if (MARCS_T[x] == 1) {
+                posnum_list[count_entries++] = x;
             }
         }
         boolean flag = false;
@@ -681,26 +745,26 @@ public final class McGregor {
 
     }
 
-    private synchronized boolean verifyNodes(List<Integer> matrix, BinaryTree currentStructure, int index, int fieldLength) {
+    private synchronized boolean verifyNodes(int[] matrix, BinaryTree currentStructure, int index, int fieldLength) {
         if (index < fieldLength) {
-            if (matrix.get(index) == currentStructure.getValue() && currentStructure.getEqual() != null) {
+            if (matrix[index] == currentStructure.getValue() && currentStructure.getEqual() != null) {
                 setNewMatrix(false);
                 verifyNodes(matrix, currentStructure.getEqual(), index + 1, fieldLength);
             }
-            if (matrix.get(index) != currentStructure.getValue()) {
+            if (matrix[index] != currentStructure.getValue()) {
                 if (currentStructure.getNotEqual() != null) {
                     verifyNodes(matrix, currentStructure.getNotEqual(), index, fieldLength);
                 }
 
                 if (currentStructure.getNotEqual() == null) {
-                    currentStructure.setNotEqual(new BinaryTree(matrix.get(index)));
+                    currentStructure.setNotEqual(new BinaryTree(matrix[index]));
                     currentStructure.getNotEqual().setNotEqual(null);
                     int yIndex = 0;
 
                     BinaryTree last_one = currentStructure.getNotEqual();
 
                     while ((yIndex + index + 1) < fieldLength) {
-                        last_one.setEqual(new BinaryTree(matrix.get(yIndex + index + 1)));
+                        last_one.setEqual(new BinaryTree(matrix[yIndex + index + 1]));
                         last_one = last_one.getEqual();
                         last_one.setNotEqual(null);
                         yIndex++;
@@ -720,16 +784,10 @@ public final class McGregor {
         int neighborBondNumA = mcGregorHelper.getNeighborBondNumA();
         int neighborBondNumB = mcGregorHelper.getNeighborBondNumB();
 
-        int size = neighborBondNumA * neighborBondNumB;
-        List<Integer> FIXARCS = new ArrayList<>(size);//  Initialize FIXARCS with 0
-        for (int i = 0; i < size; i++) {
-            FIXARCS.add(i, 0);
-        }
-
         int xIndex = 0;
         int yIndex = 0;
 
-        while ((xIndex < neighborBondNumA) && (modifiedARCS.get(xIndex * neighborBondNumB + yIndex) != 1)) {
+        while ((xIndex < neighborBondNumA) && (modifiedARCS[xIndex * neighborBondNumB + yIndex] != 1)) {
             yIndex++;
             if (yIndex == neighborBondNumB) {
                 yIndex = 0;
@@ -742,13 +800,13 @@ public final class McGregor {
             xIndex -= 1;
         }
 
-        if (modifiedARCS.get(xIndex * neighborBondNumB + yIndex) == 0) {
+        if (modifiedARCS[xIndex * neighborBondNumB + yIndex] == 0) {
             partsearch(xIndex, yIndex, modifiedARCS, mcGregorHelper);
         }
 
-        if (modifiedARCS.get(xIndex * neighborBondNumB + yIndex) != 0) {
+        if (modifiedARCS[xIndex * neighborBondNumB + yIndex] != 0) {
             partsearch(xIndex, yIndex, modifiedARCS, mcGregorHelper);
-            modifiedARCS.set(xIndex * neighborBondNumB + yIndex, 0);
+            modifiedARCS[xIndex * neighborBondNumB + yIndex] = 0;
             partsearch(xIndex, yIndex, modifiedARCS, mcGregorHelper);
         }
 
@@ -786,7 +844,7 @@ public final class McGregor {
         }
     }
 
-    private synchronized void setArcs(int xIndex, int yIndex, int arcsleft, List<Integer> TEMPMARCS, McgregorHelper mcGregorHelper) {
+    private synchronized void setArcs(int xIndex, int yIndex, int arcsleft, int[] TEMPMARCS, McgregorHelper mcGregorHelper) {
         int neighborBondNumA = mcGregorHelper.getNeighborBondNumA();
         int neighborBondNumB = mcGregorHelper.getNeighborBondNumB();
         do {
@@ -797,17 +855,17 @@ public final class McGregor {
 
             }
         } //Correction by ASAD set value minus 1
-        while ((xIndex < neighborBondNumA) && (TEMPMARCS.get(xIndex * neighborBondNumB + yIndex) != 1));
+        while ((xIndex < neighborBondNumA) && (TEMPMARCS[xIndex * neighborBondNumB + yIndex] != 1));
         if (xIndex < neighborBondNumA) {
 
             partsearch(xIndex, yIndex, TEMPMARCS, mcGregorHelper);
-            TEMPMARCS.set(xIndex * neighborBondNumB + yIndex, 0);
+            setArc(TEMPMARCS, xIndex * neighborBondNumB + yIndex, 0);
             partsearch(xIndex, yIndex, TEMPMARCS, mcGregorHelper);
 
         } else {
             popBestArcs(arcsleft);
             if (checkMARCS(TEMPMARCS, neighborBondNumA, neighborBondNumB)) {
-                bestARCS.push(TEMPMARCS);
+                bestARCS.push(TEMPMARCS.clone());
             }
         }
     }
@@ -833,16 +891,8 @@ public final class McGregor {
         int Atom1_moleculeB = mcGregorHelper.getiBondNeighborAtomsB().get(yIndex * 3 + 0);
         int Atom2_moleculeB = mcGregorHelper.getiBondNeighborAtomsB().get(yIndex * 3 + 1);
 
-        IAtom R1_A = source.getAtom(Atom1_moleculeA);
-        IAtom R2_A = source.getAtom(Atom2_moleculeA);
-        IBond reactantBond = source.getBond(R1_A, R2_A);
-
-        IAtom P1_B = target.getAtom(Atom1_moleculeB);
-        IAtom P2_B = target.getAtom(Atom2_moleculeB);
-        IBond productBond = target.getBond(P1_B, P2_B);
-
 //      Bond Order Check Introduced by Asad
-        if (McGregorChecks.isMatchFeasible(reactantBond, productBond, isBondMatch(), isMatchRings(), isMatchAtomType())) {
+        if (matchTable.matches(Atom1_moleculeA, Atom2_moleculeA, Atom1_moleculeB, Atom2_moleculeB)) {
 
             for (int indexZ = 0; indexZ < mcGregorHelper.getMappedAtomCount(); indexZ++) {
 
@@ -32,6 +32,7 @@ import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.IQueryBond;
+import org.openscience.smsd.algorithm.matchers.BondMatchTable;
 import org.openscience.smsd.algorithm.matchers.DefaultMatcher;
 import org.openscience.smsd.helper.BinaryTree;
 
@@ -255,57 +256,6 @@ public class McGregorChecks {
         return temp_map;
     }
 
-    /**
-     * The function is called in function partsearch. The function is given a
-     * temporary matrix and a position (row/column) within this matrix. First
-     * the function sets all entries to zero, which can be excluded in respect
-     * to the current atom by atom matching. After this the function replaces
-     * all entries in the same row and column of the current position by zeros.
-     * Only the entry of the current position is set to one. Return value
-     * "count_arcsleft" counts the number of arcs, which are still in the
-     * matrix.
-     *
-     * @param row
-     * @param column
-     * @param MARCS
-     * @param mcGregorHelper
-     */
-    protected static void removeRedundantArcs(int row, int column, List<Integer> MARCS, McgregorHelper mcGregorHelper) {
-        int neighborBondNumA = mcGregorHelper.getNeighborBondNumA();
-        int neighborBondNumB = mcGregorHelper.getNeighborBondNumB();
-        List<Integer> iBondNeighborAtomsA = mcGregorHelper.getiBondNeighborAtomsA();
-        List<Integer> iBondNeighborAtomsB = mcGregorHelper.getiBondNeighborAtomsB();
-        int G1_atom = iBondNeighborAtomsA.get(row * 3 + 0);
-        int G2_atom = iBondNeighborAtomsA.get(row * 3 + 1);
-        int G3_atom = iBondNeighborAtomsB.get(column * 3 + 0);
-        int G4_atom = iBondNeighborAtomsB.get(column * 3 + 1);
-
-        for (int x = 0; x < neighborBondNumA; x++) {
-            int row_atom1 = iBondNeighborAtomsA.get(x * 3 + 0);
-            int row_atom2 = iBondNeighborAtomsA.get(x * 3 + 1);
-
-            for (int y = 0; y < neighborBondNumB; y++) {
-                int column_atom3 = iBondNeighborAtomsB.get(y * 3 + 0);
-                int column_atom4 = iBondNeighborAtomsB.get(y * 3 + 1);
-
-                if (McGregorChecks.cases(G1_atom, G2_atom, G3_atom, G4_atom, row_atom1, row_atom2, column_atom3, column_atom4)) {
-                    MARCS.set(x * neighborBondNumB + y, 0);
-                }
-
-            }
-        }
-
-        for (int v = 0; v < neighborBondNumA; v++) {
-            MARCS.set(v * neighborBondNumB + column, 0);
-        }
-
-        for (int w = 0; w < neighborBondNumB; w++) {
-            MARCS.set(row * neighborBondNumB + w, 0);
-        }
-
-        MARCS.set(row * neighborBondNumB + column, 1);
-    }
-
     /**
      *
      * @param bond_number
@@ -491,13 +441,13 @@ public class McGregorChecks {
      * @param neighborBondNumB
      * @return count
      */
-    protected static int countArcsLeft(List<Integer> TEMPMARCS, int neighborBondNumA, int neighborBondNumB) {
+    protected static int countArcsLeft(int[] TEMPMARCS, int neighborBondNumA, int neighborBondNumB) {
         int arcsleft = 0;
 
         for (int a = 0; a < neighborBondNumA; a++) {
             for (int b = 0; b < neighborBondNumB; b++) {
 
-                if (TEMPMARCS.get(a * neighborBondNumB + b) == (1)) {
+                if (TEMPMARCS[a * neighborBondNumB + b] == 1) {
                     arcsleft++;
                 }
             }
@@ -565,8 +515,8 @@ public class McGregorChecks {
         return 0;
     }
 
-    static boolean isFurtherMappingPossible(IAtomContainer source, IAtomContainer target,
-            McgregorHelper mcGregorHelper, boolean shouldMatchBonds, boolean shouldMatchRings, boolean matchAtomType) {
+    static boolean isFurtherMappingPossible(IAtomContainer source, BondMatchTable matchTable,
+            McgregorHelper mcGregorHelper) {
 
         int neighborBondNumA = mcGregorHelper.getNeighborBondNumA();
         int neighborBondNumB = mcGregorHelper.getNeighborBondNumB();
@@ -579,57 +529,20 @@ public class McGregorChecks {
 //            System.out.println("i " + row);
             String G1A = cBondNeighborsA.get(row * 4 + 0);
             String G2A = cBondNeighborsA.get(row * 4 + 1);
+            int Index_I = iBondNeighborAtomsA.get(row * 3 + 0);
+            int Index_IPlus1 = iBondNeighborAtomsA.get(row * 3 + 1);
 
             for (int column = 0; column < neighborBondNumB; column++) {
 
                 String G1B = cBondNeighborsB.get(column * 4 + 0);
                 String G2B = cBondNeighborsB.get(column * 4 + 1);
 
-                if (source instanceof IQueryAtomContainer) {
-                    try {
+                if (source instanceof IQueryAtomContainer || isAtomMatch(G1A, G2A, G1B, G2B)) {
+                    int Index_J = iBondNeighborAtomsB.get(column * 3 + 0);
+                    int Index_JPlus1 = iBondNeighborAtomsB.get(column * 3 + 1);
 
-                        int Index_I = iBondNeighborAtomsA.get(row * 3 + 0);
-                        int Index_IPlus1 = iBondNeighborAtomsA.get(row * 3 + 1);
-
-                        int Index_J = iBondNeighborAtomsB.get(column * 3 + 0);
-                        int Index_JPlus1 = iBondNeighborAtomsB.get(column * 3 + 1);
-
-                        IAtom r1_A = source.getAtom(Index_I);
-                        IAtom r2_A = source.getAtom(Index_IPlus1);
-                        IBond reactantBond = source.getBond(r1_A, r2_A);
-
-                        IAtom p1_B = target.getAtom(Index_J);
-                        IAtom p2_B = target.getAtom(Index_JPlus1);
-                        IBond productBond = target.getBond(p1_B, p2_B);
-
-                        if (isMatchFeasible(reactantBond, productBond, shouldMatchBonds, shouldMatchRings, matchAtomType)) {
-                            return true;
-                        }
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                } else if (!(source instanceof IQueryAtomContainer) && isAtomMatch(G1A, G2A, G1B, G2B)) {
-                    try {
-
-                        int Index_I = iBondNeighborAtomsA.get(row * 3 + 0);
-                        int Index_IPlus1 = iBondNeighborAtomsA.get(row * 3 + 1);
-
-                        int Index_J = iBondNeighborAtomsB.get(column * 3 + 0);
-                        int Index_JPlus1 = iBondNeighborAtomsB.get(column * 3 + 1);
-
-                        IAtom r1_A = source.getAtom(Index_I);
-                        IAtom r2_A = source.getAtom(Index_IPlus1);
-                        IBond reactantBond = source.getBond(r1_A, r2_A);
-
-                        IAtom p1_B = target.getAtom(Index_J);
-                        IAtom p2_B = target.getAtom(Index_JPlus1);
-                        IBond productBond = target.getBond(p1_B, p2_B);
-
-                        if (isMatchFeasible(reactantBond, productBond, shouldMatchBonds, shouldMatchRings, matchAtomType)) {
-                            return true;
-                        }
-                    } catch (Exception e) {
-                        e.printStackTrace();
+                    if (matchTable.matches(Index_I, Index_IPlus1, Index_J, Index_JPlus1)) {
+                        return true;
                     }
                 }
             }
@@ -38,8 +38,7 @@ import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
-import org.openscience.cdk.isomorphism.matchers.IQueryBond;
-import org.openscience.smsd.algorithm.matchers.DefaultMatcher;
+import org.openscience.smsd.algorithm.matchers.BondMatchTable;
 import org.openscience.smsd.helper.LabelContainer;
 
 /**
@@ -65,6 +64,7 @@ public final class GenerateCompatibilityGraph implements Serializable {
     private final boolean shouldMatchBonds;
     private final boolean shouldMatchRings;
     private final boolean matchAtomType;
+    private final transient BondMatchTable matchTable;
 
     /**
      * Generates a compatibility graph between two molecules
@@ -87,6 +87,7 @@ public final class GenerateCompatibilityGraph implements Serializable {
         this.matchAtomType = matchAtomType;
         this.source = source;
         this.target = target;
+        this.matchTable = new BondMatchTable(source, target, shouldMatchBonds, shouldMatchRings, matchAtomType);
         compGraphNodes = new ArrayList<>();
         compGraphNodesCZero = new ArrayList<>();
         cEdges = Collections.synchronizedList(new ArrayList<>());
@@ -251,17 +252,14 @@ public final class GenerateCompatibilityGraph implements Serializable {
                         && (!Objects.equals(compGraphNodes.get(a), compGraphNodes.get(b)))
                         && (!Objects.equals(compGraphNodes.get(a + 1), compGraphNodes.get(b + 1)))) {
 
-                    IBond reactantBond;
-                    IBond productBond;
-
 //                    System.out.println("a " + compGraphNodes.get(a) + " b " + compGraphNodes.get(b));
                     //exists a bond in molecule 2, so that molecule 1 pair is connected?
-                    reactantBond = source.getBond(source.getAtom(compGraphNodes.get(a)), source.getAtom(compGraphNodes.get(b)));
-                    productBond = target.getBond(target.getAtom(compGraphNodes.get(a + 1)), target.getAtom(compGraphNodes.get(b + 1)));
+                    int reactantBond = matchTable.getQuery().getBondIndex(compGraphNodes.get(a), compGraphNodes.get(b));
+                    int productBond = matchTable.getTarget().getBondIndex(compGraphNodes.get(a + 1), compGraphNodes.get(b + 1));
 
-                    if (reactantBond != null && productBond != null) {
+                    if (reactantBond >= 0 && productBond >= 0) {
                         addEdges(reactantBond, productBond, a, b);
-                    } else if (reactantBond == null && productBond == null) {
+                    } else if (reactantBond < 0 && productBond < 0) {
                         dEdges.add((a / 3) + 1);
                         dEdges.add((b / 3) + 1);
                     }
@@ -273,14 +271,14 @@ public final class GenerateCompatibilityGraph implements Serializable {
         return 0;
     }
 
-    private void addEdges(IBond reactantBond, IBond productBond, int iIndex, int jIndex) {
+    private void addEdges(int reactantBond, int productBond, int iIndex, int jIndex) {
 
         if (!isMatchBond() && !isMatchRings() && !matchAtomType) {
-            if (isRawMatch(reactantBond, productBond)) {
+            if (isRawMatch(matchTable.getQuery().getBond(reactantBond), matchTable.getTarget().getBond(productBond))) {
                 cEdges.add((iIndex / 3) + 1);
                 cEdges.add((jIndex / 3) + 1);
             }
-        } else if (isMatchFeasible(reactantBond, productBond, isMatchBond(), isMatchRings(), matchAtomType)) {
+        } else if (matchTable.matches(reactantBond, productBond)) {
             cEdges.add((iIndex / 3) + 1);
             cEdges.add((jIndex / 3) + 1);
         } else {
@@ -379,15 +377,12 @@ public final class GenerateCompatibilityGraph implements Serializable {
                 if ((a != b) && (index_a != index_b)
                         && (index_aPlus1 != index_bPlus1)) {
 
-                    IBond reactantBond;
-                    IBond productBond;
-
-                    reactantBond = source.getBond(source.getAtom(index_a), source.getAtom(index_b));
-                    productBond = target.getBond(target.getAtom(index_aPlus1), target.getAtom(index_bPlus1));
+                    int reactantBond = matchTable.getQuery().getBondIndex(index_a, index_b);
+                    int productBond = matchTable.getTarget().getBondIndex(index_aPlus1, index_bPlus1);
 
-                    if (reactantBond != null && productBond != null) {
+                    if (reactantBond >= 0 && productBond >= 0) {
                         addZeroEdges(reactantBond, productBond, a, b);
-                    } else if (reactantBond == null && productBond == null
+                    } else if (reactantBond < 0 && productBond < 0
                             && source.getAtomCount() < 50 && target.getAtomCount() < 50) {
                         //50 unique condition to speed up the AAM
                         dEdges.add((a / 4) + 1);
@@ -403,8 +398,8 @@ public final class GenerateCompatibilityGraph implements Serializable {
         return 0;
     }
 
-    private void addZeroEdges(IBond reactantBond, IBond productBond, int indexI, int indexJ) {
-        if (isMatchFeasible(reactantBond, productBond, isMatchBond(), isMatchRings(), matchAtomType)) {
+    private void addZeroEdges(int reactantBond, int productBond, int indexI, int indexJ) {
+        if (matchTable.matches(reactantBond, productBond)) {
             cEdges.add((indexI / 4) + 1);
             cEdges.add((indexJ / 4) + 1);
         } else {
@@ -413,37 +408,6 @@ public final class GenerateCompatibilityGraph implements Serializable {
         }
     }
 
-    /**
-     *
-     * @param bondA1
-     * @param bondA2
-     * @param shouldMatchBonds
-     * @param shouldMatchRings
-     * @return
-     */
-    private boolean isMatchFeasible(
-            IBond bondA1,
-            IBond bondA2,
-            boolean shouldMatchBonds,
-            boolean shouldMatchRings,
-            boolean matchAtomType) {
-
-        if (bondA1 instanceof IQueryBond) {
-            if (((IQueryBond) bondA1).matches(bondA2)) {
-                IQueryAtom atom1 = (IQueryAtom) (bondA1.getAtom(0));
-                IQueryAtom atom2 = (IQueryAtom) (bondA1.getAtom(1));
-                return atom1.matches(bondA2.getAtom(0)) && atom2.matches(bondA2.getAtom(1))
-                        || atom1.matches(bondA2.getAtom(1)) && atom2.matches(bondA2.getAtom(0));
-            }
-            return false;
-        } else {
-            /*
-             This one also matches atom type, not just symbols
-             */
-            return DefaultMatcher.matches(bondA1, bondA2, shouldMatchBonds, shouldMatchRings, matchAtomType);
-        }
-    }
-
     public synchronized List<Integer> getCEgdes() {
         return Collections.synchronizedList(cEdges);
     }
@@ -79,9 +79,14 @@ public class McGregor extends Utility {
     private final List<String> c_globalA;
     private final List<String> c_globalB;
 
-    private List<Integer> MARCS;
-    private List<Integer> FIXARCS;
-    private final Stack<List<Integer>> BESTARCS;
+    private int[] MARCS;
+    private final Stack<int[]> BESTARCS;
+    /*
+     * undo log (position, old value) of the changes made to the arc matrices
+     * in partsearch
+     */
+    private int[] undo_log;
+    private int undo_top;
     private int bestarcsleft;
 
     protected int atom_number1;
@@ -161,9 +166,10 @@ public class McGregor extends Utility {
         this.c_globalA = new ArrayList<>();
         this.c_globalB = new ArrayList<>();
 
-        this.MARCS = new ArrayList<>();
-        this.FIXARCS = new ArrayList<>();
+        this.MARCS = new int[0];
         this.BESTARCS = new Stack<>();
+        this.undo_log = new int[64];
+        this.undo_top = 0;
         this.final_MAPPINGS = new ArrayList<>(); //Initialization of Vector final_MAPPINGS
 
         this.max_Cliques_Set = new Stack<>(); //Initialization max_Cliques_Set
@@ -193,14 +199,14 @@ public class McGregor extends Utility {
      */
     /*get atom mappings from the McGregor solution matrices
      */
-    protected List<Integer> find_mcgregor_MAPPING(List<Integer> MARCS_vector, int mapped_atoms_num, List<Integer> current_MAPPING, int bondnum_A, List<Integer> i_bonds_A, int bondnum_B, List<Integer> i_bonds_B) {
+    protected List<Integer> find_mcgregor_MAPPING(int[] MARCS_vector, int mapped_atoms_num, List<Integer> current_MAPPING, int bondnum_A, List<Integer> i_bonds_A, int bondnum_B, List<Integer> i_bonds_B) {
         List<Integer> additional_mapping = new ArrayList<>();
         additional_mapping.clear();
         int pos = 0;
         int number_of_ones = 0;
         for (int x = 0; x < bondnum_A; x++) {
             for (int z = 0; z < bondnum_B; z++) {
-                if (MARCS_vector.get(x * bondnum_B + z) == 1) {
+                if (MARCS_vector[x * bondnum_B + z] == 1) {
                     int cur_pos = x * nNum_globalB + z;
                     int Atom1_moleculeA = i_bonds_A.get(x * 3 + 0);
                     int Atom2_moleculeA = i_bonds_A.get(x * 3 + 1);
@@ -721,11 +727,7 @@ public class McGregor extends Utility {
         i_globalB.addAll(i_bond_neighborsB);
         c_globalA.addAll(c_bond_neighborsA);
         c_globalB.addAll(c_bond_neighborsB);
-        this.MARCS.clear();
-        this.MARCS = new ArrayList<>(neighbor_bondnum_A * neighbor_bondnum_B);
-        for (int i = 0; i < neighbor_bondnum_A * neighbor_bondnum_B; i++) {
-            MARCS.add(i, 0);
-        }
+        this.MARCS = new int[neighbor_bondnum_A * neighbor_bondnum_B];
         for (int row = 0; row < neighbor_bondnum_A; row++) {
             for (int column = 0; column < neighbor_bondnum_B; column++) {
 
@@ -735,7 +737,7 @@ public class McGregor extends Utility {
                 String G2B = c_bond_neighborsB.get(column * 4 + 1);
 
                 if (((G1A.equals(G1B)) && (G2A.equals(G2B))) || ((G1A.equals(G2B)) && (G2A.equals(G1B)))) {
-                    MARCS.set(row * neighbor_bondnum_B + column, 1);
+                    MARCS[row * neighbor_bondnum_B + column] = 1;
 //                    System.out.println("Atoms: " + G1A + " " + G2A + " " + G1B + " " + G2B);
                 }
             }
@@ -751,14 +753,14 @@ public class McGregor extends Utility {
         bestarcsleft = 0;
         startsearch();
 
-        Stack<List<Integer>> BESTARCS_copy = (Stack<List<Integer>>) BESTARCS.clone();
+        Stack<int[]> BESTARCS_copy = (Stack<int[]>) BESTARCS.clone();
 
         while (!BESTARCS.empty()) {
             BESTARCS.pop();
         }
 
         while (!BESTARCS_copy.empty()) {
-            List<Integer> MARCS_vector = BESTARCS_copy.peek();
+            int[] MARCS_vector = BESTARCS_copy.peek();
 //            print_matrix(MARCS_vector, neighbor_bondnum_A, i_bond_neighborsA, c_bond_neighborsA, neighbor_bondnum_B, i_bond_neighborsB, c_bond_neighborsB);
             List<Integer> new_MAPPING = find_mcgregor_MAPPING(MARCS_vector, mapped_atoms_num, mapped_atoms, neighbor_bondnum_A, i_bond_neighborsA, neighbor_bondnum_B, i_bond_neighborsB);
 
@@ -1017,16 +1019,10 @@ public class McGregor extends Utility {
 
     private void startsearch() {
 
-//        System.out.println("FIXARCS neighbor_bondnum_A " + nNum_globalA);
-//        System.out.println("FIXARCS neighbor_bondnum_B " + nNum_globalB);
-        this.FIXARCS = new ArrayList<>(nNum_globalA * nNum_globalB);
-        for (int i = 0; i < nNum_globalA * nNum_globalB; i++) {
-            FIXARCS.add(i, 0);
-        }
-
+        undo_top = 0;
         int x = 0;
         int y = 0;
-        while ((x < nNum_globalA) && (MARCS.get(x * nNum_globalB + y) != 1)) {
+        while ((x < nNum_globalA) && (MARCS[x * nNum_globalB + y] != 1)) {
             y++;
             if (y == nNum_globalB) {
                 y = 0;
@@ -1038,17 +1034,22 @@ public class McGregor extends Utility {
             x = x - 1;
         }
 
-        if (MARCS.get(x * nNum_globalB + y) == 0) {
+        if (MARCS[x * nNum_globalB + y] == 0) {
             partsearch(x, y, MARCS);
         }
-        if (MARCS.get(x * nNum_globalB + y) != 0) {
+        if (MARCS[x * nNum_globalB + y] != 0) {
             partsearch(x, y, MARCS);
-            MARCS.set(x * nNum_globalB + y, 0);
+            set_arc(MARCS, x * nNum_globalB + y, 0);
             partsearch(x, y, MARCS);
         }
     }
 
-    private void partsearch(int xstart, int ystart, List<Integer> TEMPMARCS) {
+    /*
+     * The matrix is changed in place through the undo log. Matching an arc
+     * works on a private version of the matrix (rolled back on return), while
+     * the arcs excluded without matching stay excluded for the caller.
+     */
+    private void partsearch(int xstart, int ystart, int[] TEMPMARCS) {
 
 //        System.out.println("partsearch TEMPMARCS " + TEMPMARCS);
         int x = xstart;
@@ -1056,13 +1057,14 @@ public class McGregor extends Utility {
 
 //        System.out.println("X " + x + ", Y " + y);
 //        System.out.println("nNum_globalA " + nNum_globalA + ", nNum_globalB " + nNum_globalB);
-        if (TEMPMARCS.get(xstart * nNum_globalB + ystart) == 1) {
-            TEMPMARCS = remove_redundant_arcs(xstart, ystart, TEMPMARCS);
+        if (TEMPMARCS[xstart * nNum_globalB + ystart] == 1) {
+            int mark = undo_top;
+            remove_redundant_arcs(xstart, ystart, TEMPMARCS);
 
             int arcsleft = 0;
             for (int a = 0; a < nNum_globalA; a++) {
                 for (int b = 0; b < nNum_globalB; b++) {
-                    if (TEMPMARCS.get(a * nNum_globalB + b) == 1) {
+                    if (TEMPMARCS[a * nNum_globalB + b] == 1) {
                         arcsleft++;
                     }
                 }
@@ -1079,10 +1081,10 @@ public class McGregor extends Utility {
                     }
 //                    System.out.println("x * nNum_globalB + y " + (x * nNum_globalB + y));
 
-                } while (x < nNum_globalA && TEMPMARCS.get(x * nNum_globalB + y) != 1);
+                } while (x < nNum_globalA && TEMPMARCS[x * nNum_globalB + y] != 1);
                 if (x < nNum_globalA) {
                     partsearch(x, y, TEMPMARCS);
-                    TEMPMARCS.set(x * nNum_globalB + y, 0);
+                    set_arc(TEMPMARCS, x * nNum_globalB + y, 0);
                     partsearch(x, y, TEMPMARCS);
                 } else {
                     if (arcsleft > bestarcsleft) {
@@ -1099,10 +1101,11 @@ public class McGregor extends Utility {
                     bestarcsleft = arcsleft;
 
                     if (check_MARCS(TEMPMARCS)) {
-                        BESTARCS.push(TEMPMARCS);
+                        BESTARCS.push(TEMPMARCS.clone());
                     }
                 }
             }
+            rollback(TEMPMARCS, mark);
         } else {
             do {
                 y++;
@@ -1110,16 +1113,16 @@ public class McGregor extends Utility {
                     y = 0;
                     x++;
                 }
-            } while (x < nNum_globalA && TEMPMARCS.get(x * nNum_globalB + y) != 1);
+            } while (x < nNum_globalA && TEMPMARCS[x * nNum_globalB + y] != 1);
             if (x < nNum_globalA) {
                 partsearch(x, y, TEMPMARCS);
-                TEMPMARCS.set(x * nNum_globalB + y, 0);
+                set_arc(TEMPMARCS, x * nNum_globalB + y, 0);
                 partsearch(x, y, TEMPMARCS);
             } else {
                 int arcsleft = 0;
                 for (int a = 0; a < nNum_globalA; a++) {
                     for (int b = 0; b < nNum_globalB; b++) {
-                        if (TEMPMARCS.get(a * nNum_globalB + b) == 1) {
+                        if (TEMPMARCS[a * nNum_globalB + b] == 1) {
                             arcsleft++;
                         }
                     }
@@ -1140,7 +1143,7 @@ public class McGregor extends Utility {
                     bestarcsleft = arcsleft;
 
                     if (check_MARCS(TEMPMARCS)) {
-                        BESTARCS.push(TEMPMARCS);
+                        BESTARCS.push(TEMPMARCS.clone());
                     }
                 }
             }
@@ -1164,9 +1167,8 @@ public class McGregor extends Utility {
 //atom by atom matching. After this the function replaces all entries in the same row and column of the current
 //position by zeros. Only the entry of the current position is set to one.
 //Return value "count_arcsleft" counts the number of arcs, which are still in the matrix.
-    private List<Integer> remove_redundant_arcs(int row, int column, List<Integer> MARCS) {
+    private void remove_redundant_arcs(int row, int column, int[] MARCS) {
 
-        List<Integer> MARCS_LOCAL = new ArrayList<>(MARCS);
         int G1_atom = i_globalA.get(row * 3 + 0);
         int G2_atom = i_globalA.get(row * 3 + 1);
         int G3_atom = i_globalB.get(column * 3 + 0);
@@ -1178,28 +1180,45 @@ public class McGregor extends Utility {
                 int column_atom3 = i_globalB.get(y * 3 + 0);
                 int column_atom4 = i_globalB.get(y * 3 + 1);
                 if (((G1_atom == row_atom1) || (G1_atom == row_atom2)) && (!(((column_atom3 == G3_atom) || (column_atom4 == G3_atom)) || ((column_atom3 == G4_atom) || (column_atom4 == G4_atom))))) {
-                    MARCS_LOCAL.set(x * nNum_globalB + y, 0);
+                    set_arc(MARCS, x * nNum_globalB + y, 0);
                 }
                 if (((G2_atom == row_atom1) || (G2_atom == row_atom2)) && (!(((column_atom3 == G3_atom) || (column_atom4 == G3_atom)) || ((column_atom3 == G4_atom) || (column_atom4 == G4_atom))))) {
-                    MARCS_LOCAL.set(x * nNum_globalB + y, 0);
+                    set_arc(MARCS, x * nNum_globalB + y, 0);
                 }
                 if (((G3_atom == column_atom3) || (G3_atom == column_atom4)) && (!(((row_atom1 == G1_atom) || (row_atom2 == G1_atom)) || ((row_atom1 == G2_atom) || (row_atom2 == G2_atom))))) {
-                    MARCS_LOCAL.set(x * nNum_globalB + y, 0);
+                    set_arc(MARCS, x * nNum_globalB + y, 0);
                 }
                 if (((G4_atom == column_atom3) || (G4_atom == column_atom4)) && (!(((row_atom1 == G1_atom) || (row_atom2 == G1_atom)) || ((row_atom1 == G2_atom) || (row_atom2 == G2_atom))))) {
-                    MARCS_LOCAL.set(x * nNum_globalB + y, 0);
+                    set_arc(MARCS, x * nNum_globalB + y, 0);
                 }
             }
         }
 
         for (int v = 0; v < nNum_globalA; v++) {
-            MARCS_LOCAL.set(v * nNum_globalB + column, 0);
+            set_arc(MARCS, v * nNum_globalB + column, 0);
         }
         for (int w = 0; w < nNum_globalB; w++) {
-            MARCS_LOCAL.set(row * nNum_globalB + w, 0);
+            set_arc(MARCS, row * nNum_globalB + w, 0);
+        }
+        set_arc(MARCS, row * nNum_globalB + column, 1);
+    }
+
+    private void set_arc(int[] MARCS, int position, int value) {
+        if (MARCS[position] != value) {
+            if (undo_top + 2 > undo_log.length) {
+                undo_log = Arrays.copyOf(undo_log, undo_log.length * 2);
+            }
+            undo_log[undo_top++] = position;
+            undo_log[undo_top++] = MARCS[position];
+            MARCS[position] = value;
+        }
+    }
+
+    private void rollback(int[] MARCS, int mark) {
+        while (undo_top > mark) {
+            undo_top -= 2;
+            MARCS[undo_log[undo_top]] = undo_log[undo_top + 1];
         }
-        MARCS_LOCAL.set(row * nNum_globalB + column, 1);
-        return MARCS_LOCAL;
     }
 
     /*
@@ -1209,39 +1228,34 @@ public class McGregor extends Utility {
      * the matrix will not be stored. Otherwise the function returns true which means that the
      * matrix will be stored in function partsearch.
      */
-    private boolean check_MARCS(List<Integer> MARCS) {
+    private boolean check_MARCS(int[] MARCS) {
 
-        List<Integer> posnum_list = new ArrayList<>(nNum_globalA * nNum_globalA);
-        for (int i = 0; i < nNum_globalA * nNum_globalA; i++) {
-            posnum_list.add(i, 0);
-        }
-        int y = 0;
+        int[] posnum_list = new int[nNum_globalA * nNum_globalB + 1];
         int count_entries = 0;
         for (int x = 0; x < (nNum_globalA * nNum_globalB); x++) {
-            if (MARCS.get(x) == 1) {
-                posnum_list.set(y++, x);
-                count_entries++;
+            if (MARCS[x] == 1) {
+                posnum_list[count_entries++] = x;
             }
         }
         verify_nodes(posnum_list, first, 0, count_entries);
         return new_matrix;
     }
 
-    private boolean verify_nodes(List<Integer> matrix, BinaryTree cur_struc, int x, int field_length) {
+    private boolean verify_nodes(int[] matrix, BinaryTree cur_struc, int x, int field_length) {
 
-        if ((matrix.get(x).equals(cur_struc.getValue()) && (x < field_length))) {
+        if ((matrix[x] == cur_struc.getValue() && (x < field_length))) {
             if (cur_struc.equal != null) {
                 new_matrix = false;
                 verify_nodes(matrix, cur_struc.equal, x + 1, field_length);
             }
         }
-        if (matrix.get(x) != cur_struc.getValue()) {
+        if (matrix[x] != cur_struc.getValue()) {
             if (cur_struc.not_equal != null) {
                 verify_nodes(matrix, cur_struc.not_equal, x, field_length);
             }
             if (cur_struc.not_equal == null) {
                 cur_struc.not_equal = new BinaryTree();
-                cur_struc.not_equal.setValue(matrix.get(x));
+                cur_struc.not_equal.setValue(matrix[x]);
                 cur_struc.not_equal.not_equal = null;
                 int y = 0;
                 BinaryTree last_one = cur_struc.not_equal;
@@ -1249,7 +1263,7 @@ public class McGregor extends Utility {
                 while ((y + x + 1) < field_length) {
                     last_one.equal = new BinaryTree();
                     last_one = last_one.equal;
-                    last_one.setValue(matrix.get(y + x + 1));
+                    last_one.setValue(matrix[y + x + 1]);
                     last_one.not_equal = null;
                     y++;
                 }
@@ -15,6 +15,7 @@ import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.IQueryBond;
 import org.openscience.cdk.tools.manipulator.BondManipulator;
 import org.openscience.smsd.algorithm.matchers.AtomMatcher;
+import org.openscience.smsd.algorithm.matchers.BondMatchTable;
 import org.openscience.smsd.algorithm.matchers.DefaultAtomMatcher;
 import org.openscience.smsd.algorithm.matchers.DefaultAtomTypeMatcher;
 import org.openscience.smsd.algorithm.matchers.DefaultMatcher;
@@ -779,13 +780,13 @@ final public class CDKMCS {
         gr.clear();
 
         // compares each bondA of G1 to each bondA of G2
+        BondMatchTable matchTable = new BondMatchTable(ac1, ac2, shouldMatchBonds, shouldMatchRings, matchAtomType);
         for (int i = 0; i < ac1.getBondCount(); i++) {
             for (int j = 0; j < ac2.getBondCount(); j++) {
 //                // if both bonds are compatible then create an association node
 //                // in the resolution graph
 
-                if (!isMatchFeasible(ac1.getBond(i), ac2.getBond(j), shouldMatchBonds, shouldMatchRings, matchAtomType)) {
-                } else {
+                if (matchTable.matches(i, j)) {
                     gr.addNode(new CDKRNode(i, j));
                 }
             }
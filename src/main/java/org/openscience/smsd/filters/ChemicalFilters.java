@@ -24,10 +24,9 @@ package org.openscience.smsd.filters;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Set;
 
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
@@ -48,6 +47,8 @@ public class ChemicalFilters extends BaseFilter {
     private final IChemicalFilter<Double> energyFilter;
     private final IChemicalFilter<Integer> fragmentFilter;
     private final IChemicalFilter<Double> stereoFilter;
+    private int maxSolutions;
+    private boolean collapseSymmetry;
 
     /**
      *
@@ -62,6 +63,8 @@ public class ChemicalFilters extends BaseFilter {
         this.stereoFilter = new StereoFilter(this);
         this.fragmentFilter = new FragmentFilter(this);
         this.energyFilter = new EnergyFilter(this);
+        this.maxSolutions = Integer.MAX_VALUE;
+        this.collapseSymmetry = false;
     }
 
     /**
@@ -77,93 +80,84 @@ public class ChemicalFilters extends BaseFilter {
         this.stereoFilter = new StereoFilter(this);
         this.fragmentFilter = new FragmentFilter(this);
         this.energyFilter = new EnergyFilter(this);
+        this.maxSolutions = Integer.MAX_VALUE;
+        this.collapseSymmetry = false;
     }
 
-    private synchronized void clear(
-            Map<Integer, AtomAtomMapping> sortedAllAtomMCS,
-            Map<Integer, Double> stereoScoreMap,
-            Map<Integer, Integer> fragmentScoreMap,
-            Map<Integer, Double> energySelectionMap) {
-        sortedAllAtomMCS.clear();
-        stereoScoreMap.clear();
-        fragmentScoreMap.clear();
-        energySelectionMap.clear();
+    /**
+     * Keep at most this many of the best solutions (ties are kept in the
+     * order the MCS returned them). By default all the best solutions are
+     * kept.
+     *
+     * @param maxSolutions
+     */
+    public synchronized void setMaxSolutions(int maxSolutions) {
+        if (maxSolutions < 1) {
+            throw new IllegalArgumentException("At least one solution should be kept");
+        }
+        this.maxSolutions = maxSolutions;
     }
 
     /**
-     * Sort MCS solution by bond breaking energy.
+     * By default all the solutions are reported, including those which only
+     * differ by the symmetry of the molecules (e.g. swapping the two oxygens
+     * of a carboxylate). Set to true to report such solutions once, as they
+     * get the same scores. Collapsing is skipped when a single solution is
+     * kept, as it cannot change the result.
      *
-     * @throws CDKException
+     * @param collapseSymmetry
      */
-    public synchronized void sortResultsByEnergies() throws CDKException {
-        Map<Integer, AtomAtomMapping> allEnergyAtomMCS = Collections.synchronizedSortedMap(new TreeMap<Integer, AtomAtomMapping>());
-        Map<Integer, Double> stereoScoreMap = Collections.synchronizedSortedMap(new TreeMap<Integer, Double>());
-        Map<Integer, Integer> fragmentScoreMap = Collections.synchronizedSortedMap(new TreeMap<Integer, Integer>());
-        Map<Integer, Double> energySelectionMap = Collections.synchronizedSortedMap(new TreeMap<Integer, Double>());
-
-        initializeMaps(allEnergyAtomMCS, stereoScoreMap, fragmentScoreMap, energySelectionMap);
-        double lowestEnergyScore = energyFilter.sortResults(allEnergyAtomMCS, energySelectionMap);
-        clear();
+    public synchronized void setCollapseSymmetry(boolean collapseSymmetry) {
+        this.collapseSymmetry = collapseSymmetry;
+    }
 
-        int counter = 0;
-        for (Map.Entry<Integer, Double> map : energySelectionMap.entrySet()) {
-            if (lowestEnergyScore == map.getValue()) {
-                addSolution(counter, map.getKey(),
-                        allEnergyAtomMCS,
-                        stereoScoreMap,
-                        energySelectionMap,
-                        fragmentScoreMap);
-                counter++;
-            }
+    /**
+     * Rank the MCS solutions lexicographically: fewest fragments first, then
+     * the best stereo and bond match, then the lowest bond breaking energy.
+     * Only the best solutions are kept. A lower priority score is only
+     * computed for the solutions still tied on the higher priority ones.
+     *
+     * @param stereoFilter
+     * @param fragmentFilter
+     * @param energyFilter
+     * @throws CDKException
+     */
+    public synchronized void sortResults(boolean stereoFilter, boolean fragmentFilter, boolean energyFilter)
+            throws CDKException {
+        Ranking ranking = new Ranking();
+        if (collapseSymmetry && maxSolutions > 1) {
+            ranking.collapseSymmetric();
         }
-
-        if (lowestEnergyScore != EnergyFilter.MAX_ENERGY) {
-            clear(allEnergyAtomMCS, stereoScoreMap, fragmentScoreMap, energySelectionMap);
+        if (fragmentFilter) {
+            ranking.fragments();
+        }
+        if (stereoFilter) {
+            ranking.stereo();
+        }
+        if (energyFilter) {
+            ranking.energies();
         }
+        ranking.store(maxSolutions);
+    }
+
+    /**
+     * Sort MCS solution by bond breaking energy.
+     *
+     * @throws CDKException
+     */
+    public synchronized void sortResultsByEnergies() throws CDKException {
+        sortResults(false, false, true);
     }
 
     /**
      * Sort solution by ascending order of the fragment count.
      */
     public synchronized void sortResultsByFragments() {
-        Map<Integer, AtomAtomMapping> allFragmentAtomMCS = Collections.synchronizedSortedMap(new TreeMap<Integer, AtomAtomMapping>());
-        Map<Integer, Double> stereoScoreMap = Collections.synchronizedSortedMap(new TreeMap<Integer, Double>());
-        Map<Integer, Double> energyScoreMap = Collections.synchronizedSortedMap(new TreeMap<Integer, Double>());
-        Map<Integer, Integer> fragmentScoreMap = Collections.synchronizedSortedMap(new TreeMap<Integer, Integer>());
-
-        initializeMaps(
-                allFragmentAtomMCS,
-                stereoScoreMap,
-                fragmentScoreMap,
-                energyScoreMap);
-
         try {
-            int minFragmentScore = fragmentFilter.sortResults(allFragmentAtomMCS, fragmentScoreMap);
-
-            boolean flag = false;
-            if (minFragmentScore < 9999) {
-                flag = true;
-                clear();
-            }
-            int counter = 0;
-            for (Map.Entry<Integer, Integer> map : fragmentScoreMap.entrySet()) {
-                if (minFragmentScore == map.getValue()) {
-                    addSolution(counter, map.getKey(),
-                            allFragmentAtomMCS,
-                            stereoScoreMap,
-                            energyScoreMap,
-                            fragmentScoreMap);
-                    counter++;
-                }
-            }
-
-            if (flag) {
-                clear(allFragmentAtomMCS, stereoScoreMap, fragmentScoreMap, energyScoreMap);
-            }
+            sortResults(false, true, false);
         } catch (CDKException c) {
             // actually, never thrown, but in the interface
         }
-
     }
 
     /**
@@ -172,55 +166,7 @@ public class ChemicalFilters extends BaseFilter {
      * @throws CDKException
      */
     public synchronized void sortResultsByStereoAndBondMatch() throws CDKException {
-        Map<Integer, AtomAtomMapping> allStereoAtomMCS = Collections.synchronizedMap(new HashMap<Integer, AtomAtomMapping>());
-        Map<Integer, Integer> fragmentScoreMap = Collections.synchronizedSortedMap(new TreeMap<Integer, Integer>());
-        Map<Integer, Double> energyScoreMap = Collections.synchronizedSortedMap(new TreeMap<Integer, Double>());
-        Map<Integer, Double> stereoScoreMap = Collections.synchronizedMap(new HashMap<Integer, Double>());
-
-        initializeMaps(
-                allStereoAtomMCS,
-                stereoScoreMap,
-                fragmentScoreMap,
-                energyScoreMap);
-        double highestStereoScore = stereoFilter.sortResults(allStereoAtomMCS, stereoScoreMap);
-
-        if (highestStereoScore != 0) {
-            boolean flag = false;
-
-            //Higher Score is mapped preferred over lower
-            double secondhigestStereoScore = highestStereoScore;
-            for (Integer key : stereoScoreMap.keySet()) {
-                if (secondhigestStereoScore < highestStereoScore
-                        && stereoScoreMap.get(key) > secondhigestStereoScore) {
-                    secondhigestStereoScore = stereoScoreMap.get(key);
-                } else if (secondhigestStereoScore == highestStereoScore
-                        && stereoScoreMap.get(key) < secondhigestStereoScore) {
-                    secondhigestStereoScore = stereoScoreMap.get(key);
-                }
-            }
-
-            if (!stereoScoreMap.isEmpty()) {
-                flag = true;
-                clear();
-            }
-
-            /*Put back the sorted solutions*/
-            int counter = 0;
-            for (Integer I : stereoScoreMap.keySet()) {
-                if (highestStereoScore == stereoScoreMap.get(I)) {
-                    addSolution(counter, I,
-                            allStereoAtomMCS,
-                            stereoScoreMap,
-                            energyScoreMap,
-                            fragmentScoreMap);
-                    counter++;
-
-                }
-            }
-            if (flag) {
-                clear(allStereoAtomMCS, stereoScoreMap, fragmentScoreMap, energyScoreMap);
-            }
-        }
+        sortResults(true, false, false);
     }
 
     /**
@@ -250,45 +196,154 @@ public class ChemicalFilters extends BaseFilter {
         return Collections.unmodifiableList(stereoFilter.getScores());
     }
 
-    private synchronized void initializeMaps(
-            Map<Integer, AtomAtomMapping> sortedAllAtomMCS,
-            Map<Integer, Double> stereoScoreMap,
-            Map<Integer, Integer> fragmentScoreMap,
-            Map<Integer, Double> energySelectionMap) {
+    private synchronized void clear() {
+        allAtomMCS.clear();
+        energyFilter.clearScores();
+        fragmentFilter.clearScores();
+        stereoFilter.clearScores();
+    }
 
-        Integer Index = 0;
-        for (AtomAtomMapping atomsMCS : allAtomMCS) {
-            sortedAllAtomMCS.put(Index, atomsMCS);
-            fragmentScoreMap.put(Index, 0);
-            energySelectionMap.put(Index, 0.0);
-            stereoScoreMap.put(Index, 0.0);
-            Index++;
+    /**
+     * The solutions still in the running, with the scores of each filter
+     * (carried over from earlier rankings, 0 if never scored).
+     */
+    private class Ranking {
+
+        private final ScoreTable query;
+        private final ScoreTable target;
+        private AtomAtomMapping[] solutions;
+        private int[] fragmentScores;
+        private double[] stereoScores;
+        private double[] energyScores;
+        private int count;
+        private boolean changed;
+
+        Ranking() {
+            this.query = new ScoreTable(getQuery());
+            this.target = new ScoreTable(getTarget());
+            this.count = allAtomMCS.size();
+            this.solutions = allAtomMCS.toArray(new AtomAtomMapping[count]);
+            this.fragmentScores = new int[count];
+            this.stereoScores = new double[count];
+            this.energyScores = new double[count];
+            List<Integer> fragments = fragmentFilter.getScores();
+            List<Double> stereo = stereoFilter.getScores();
+            List<Double> energies = energyFilter.getScores();
+            for (int i = 0; i < count; i++) {
+                fragmentScores[i] = i < fragments.size() ? fragments.get(i) : 0;
+                stereoScores[i] = i < stereo.size() ? stereo.get(i) : 0.0;
+                energyScores[i] = i < energies.size() ? energies.get(i) : 0.0;
+            }
+            this.changed = false;
         }
 
-        energyFilter.fillMap(energySelectionMap);
-        fragmentFilter.fillMap(fragmentScoreMap);
-        stereoFilter.fillMap(stereoScoreMap);
+        /**
+         * Keep the first solution of each set of symmetric solutions.
+         */
+        void collapseSymmetric() {
+            if (count < 2) {
+                return;
+            }
+            SymmetryFilter filter = new SymmetryFilter(query, target);
+            Set<String> seen = new HashSet<>();
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                String key = filter.getKey(query.toIndex(solutions[i], target));
+                if (key == null || seen.add(key)) {
+                    solutions[kept] = solutions[i];
+                    fragmentScores[kept] = fragmentScores[i];
+                    stereoScores[kept] = stereoScores[i];
+                    energyScores[kept] = energyScores[i];
+                    kept++;
+                }
+            }
+            if (kept < count) {
+                count = kept;
+                changed = true;
+            }
+        }
 
-    }
+        void fragments() {
+            FragmentFilter filter = (FragmentFilter) fragmentFilter;
+            int min = 9999;
+            for (int i = 0; i < count; i++) {
+                fragmentScores[i] = filter.getFragmentScore(query, target, solutions[i], min);
+                min = Math.min(min, fragmentScores[i]);
+            }
+            if (min < 9999) {
+                retain(fragmentScores, min);
+            }
+        }
 
-    private synchronized void addSolution(int counter, int key,
-            Map<Integer, AtomAtomMapping> allFragmentAtomMCS,
-            Map<Integer, Double> stereoScoreMap,
-            Map<Integer, Double> energyScoreMap,
-            Map<Integer, Integer> fragmentScoreMap) {
+        void stereo() throws CDKException {
+            StereoFilter filter = (StereoFilter) stereoFilter;
+            double[] scores = new double[count];
+            double highest = 0;
+            for (int i = 0; i < count; i++) {
+                scores[i] = filter.getStereoScore(query, target, solutions[i]);
+                if (i == 0 || scores[i] > highest) {
+                    highest = scores[i];
+                }
+            }
+            /*
+             * Higher Score is mapped preferred over lower, unless nothing
+             * scored
+             */
+            if (highest != 0) {
+                stereoScores = scores;
+                retain(scores, highest);
+            }
+        }
 
-        allAtomMCS.add(counter, allFragmentAtomMCS.get(key));
-        stereoFilter.addScore(counter, stereoScoreMap.get(key));
-        fragmentFilter.addScore(counter, fragmentScoreMap.get(key));
-        energyFilter.addScore(counter, energyScoreMap.get(key));
+        void energies() throws CDKException {
+            EnergyFilter filter = (EnergyFilter) energyFilter;
+            double lowest = EnergyFilter.MAX_ENERGY;
+            for (int i = 0; i < count; i++) {
+                energyScores[i] = filter.getEnergyScore(query, target, solutions[i], lowest);
+                lowest = Math.min(lowest, energyScores[i]);
+            }
+            retain(energyScores, lowest);
+        }
 
-    }
+        private void retain(int[] scores, int best) {
+            double[] values = new double[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = scores[i];
+            }
+            retain(values, best);
+        }
 
-    private synchronized void clear() {
-        allAtomMCS.clear();
-        energyFilter.clearScores();
-        fragmentFilter.clearScores();
-        stereoFilter.clearScores();
+        private void retain(double[] scores, double best) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (scores[i] == best) {
+                    solutions[kept] = solutions[i];
+                    fragmentScores[kept] = fragmentScores[i];
+                    stereoScores[kept] = stereoScores[i];
+                    energyScores[kept] = energyScores[i];
+                    kept++;
+                }
+            }
+            count = kept;
+            changed = true;
+        }
+
+        void store(int max) {
+            if (count > max) {
+                count = max;
+                changed = true;
+            }
+            if (!changed) {
+                return;
+            }
+            clear();
+            for (int i = 0; i < count; i++) {
+                allAtomMCS.add(solutions[i]);
+                fragmentFilter.addScore(i, fragmentScores[i]);
+                stereoFilter.addScore(i, stereoScores[i]);
+                energyFilter.addScore(i, energyScores[i]);
+            }
+        }
     }
 
     /**
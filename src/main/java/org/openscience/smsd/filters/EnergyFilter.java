@@ -27,13 +27,9 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
-import org.openscience.cdk.interfaces.IBond;
-import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.smsd.AtomAtomMapping;
-import org.openscience.smsd.tools.BondEnergies;
 
 /**
  * Filter based on energies.
@@ -57,18 +53,14 @@ public final class EnergyFilter extends Sotter implements IChemicalFilter<Double
     public synchronized Double sortResults(
             Map<Integer, AtomAtomMapping> allAtomEnergyMCS,
             Map<Integer, Double> energySelectionMap) throws CDKException {
+        ScoreTable query = new ScoreTable(chemfilter.getQuery());
+        ScoreTable target = new ScoreTable(chemfilter.getTarget());
+        double lowestEnergyScore = MAX_ENERGY;
         for (Integer Key : allAtomEnergyMCS.keySet()) {
             AtomAtomMapping mcsAtom = allAtomEnergyMCS.get(Key);
-            Double energies = getMappedMoleculeEnergies(mcsAtom);
+            Double energies = getEnergyScore(query, target, mcsAtom, MAX_ENERGY);
             energySelectionMap.put(Key, energies);
-        }
-
-        energySelectionMap = sortMapByValueInAscendingOrder(energySelectionMap);
-
-        double lowestEnergyScore = MAX_ENERGY;
-        for (Integer key : energySelectionMap.keySet()) {
-            lowestEnergyScore = energySelectionMap.get(key);
-            break;
+            lowestEnergyScore = Math.min(lowestEnergyScore, energies);
         }
         return lowestEnergyScore;
     }
@@ -97,68 +89,63 @@ public final class EnergyFilter extends Sotter implements IChemicalFilter<Double
         }
     }
 
-    private synchronized Double getMappedMoleculeEnergies(AtomAtomMapping mcsAtomSolution) throws CDKException {
-
-//        System.out.println("\nSort By Energies");
-        double totalBondEnergy = Double.MIN_VALUE;
-
-        IAtomContainer educt = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class, chemfilter.getQuery());
-        IAtomContainer product = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class, chemfilter.getTarget());
-
-        for (int i = 0; i < educt.getAtomCount(); i++) {
-            educt.getAtom(i).setFlag(100, false);
-        }
-
-        for (int i = 0; i < product.getAtomCount(); i++) {
-            product.getAtom(i).setFlag(100, false);
-        }
-
-        if (mcsAtomSolution != null) {
-            Map<IAtom, IAtom> mappingsByAtoms = mcsAtomSolution.getMappingsByAtoms();
-            mappingsByAtoms.entrySet().stream().map((mapping) -> {
-                mapping.getKey().setFlag(100, true);
-                return mapping;
-            }).forEach((mapping) -> {
-                mapping.getValue().setFlag(100, true);
-            });
-            totalBondEnergy = getEnergy(educt, product);
+    /**
+     * Energy of the bonds broken (one atom mapped, the other one not) in the
+     * query and the target.
+     *
+     * @param query
+     * @param target
+     * @param mcsAtomSolution
+     * @param bound summing stops once the energy exceeds this bound (the
+     * solution can't be the best one)
+     * @return bond breaking energy, or any value greater than bound
+     * @throws CDKException
+     */
+    double getEnergyScore(ScoreTable query, ScoreTable target,
+            AtomAtomMapping mcsAtomSolution, double bound) throws CDKException {
+        if (mcsAtomSolution == null) {
+            return Double.MIN_VALUE;
         }
-
         /*
-         * Reset the flag
+         * An atom is flagged on both sides if it is part of both molecules
          */
-        for (int i = 0; i < educt.getAtomCount(); i++) {
-            educt.getAtom(i).setFlag(100, false);
+        boolean[] flagE = new boolean[query.atomCount];
+        boolean[] flagP = new boolean[target.atomCount];
+        for (Map.Entry<IAtom, IAtom> mapping : mcsAtomSolution.getMappingsByAtoms().entrySet()) {
+            flag(query, flagE, mapping.getKey());
+            flag(query, flagE, mapping.getValue());
+            flag(target, flagP, mapping.getKey());
+            flag(target, flagP, mapping.getValue());
         }
-
-        for (int i = 0; i < product.getAtomCount(); i++) {
-            product.getAtom(i).setFlag(100, false);
+        boolean prune = query.hasPositiveEnergies() && target.hasPositiveEnergies();
+        double eEnergy = getEnergy(query, flagE, prune ? bound : MAX_ENERGY);
+        if (eEnergy > bound && prune) {
+            return eEnergy;
         }
-
-        return totalBondEnergy;
+        double pEnergy = getEnergy(target, flagP, prune ? bound - eEnergy : MAX_ENERGY);
+        return (eEnergy + pEnergy);
     }
 
-    private synchronized static double getEnergy(IAtomContainer educt, IAtomContainer product) throws CDKException {
-        Double eEnergy = 0.0;
-        BondEnergies bondEnergy = BondEnergies.getInstance();
-        for (int i = 0; i < educt.getBondCount(); i++) {
-            IBond bond = educt.getBond(i);
-            eEnergy += getBondEnergy(bond, bondEnergy);
+    private static void flag(ScoreTable table, boolean[] flags, IAtom atom) {
+        int i = table.indexOf(atom);
+        if (i >= 0) {
+            flags[i] = true;
         }
-        Double pEnergy = 0.0;
-        for (int j = 0; j < product.getBondCount(); j++) {
-            IBond bond = product.getBond(j);
-            pEnergy += getBondEnergy(bond, bondEnergy);
-        }
-        return (eEnergy + pEnergy);
     }
 
-    private synchronized static double getBondEnergy(IBond bond, BondEnergies bondEnergy) {
+    private static double getEnergy(ScoreTable table, boolean[] flags, double bound) throws CDKException {
         double energy = 0.0;
-        if ((bond.getAtom(0).getFlag(100) == true && bond.getAtom(1).getFlag(100) == false)
-                || (bond.getAtom(0).getFlag(100) == false && bond.getAtom(1).getFlag(100) == true)) {
-            int val = bondEnergy.getEnergies(bond.getAtom(0), bond.getAtom(1), bond.getOrder());
-            energy = val;
+        for (int b = 0; b < table.bondCount; b++) {
+            int u = table.bondBegin[b];
+            int v = table.bondEnd[b];
+            boolean flagU = u >= 0 && flags[u];
+            boolean flagV = v >= 0 && flags[v];
+            if (flagU != flagV) {
+                energy += table.getBondEnergy(b);
+                if (energy > bound) {
+                    return energy;
+                }
+            }
         }
         return energy;
     }
@@ -27,12 +27,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.graph.ConnectivityChecker;
 import org.openscience.cdk.interfaces.IAtom;
-import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.interfaces.IAtomContainerSet;
 import org.openscience.smsd.AtomAtomMapping;
 
 /**
@@ -56,10 +52,12 @@ public final class FragmentFilter extends Sotter implements IChemicalFilter<Inte
             Map<Integer, AtomAtomMapping> allFragmentAtomMCS,
             Map<Integer, Integer> fragmentScoreMap) throws CDKException {
 
+        ScoreTable query = new ScoreTable(chemfilter.getQuery());
+        ScoreTable target = new ScoreTable(chemfilter.getTarget());
         int _minFragmentScore = 9999;
         for (Integer key : allFragmentAtomMCS.keySet()) {
             AtomAtomMapping mcsAtom = allFragmentAtomMCS.get(key);
-            int fragmentCount = getMappedMoleculeFragmentSize(mcsAtom);
+            int fragmentCount = getFragmentScore(query, target, mcsAtom, Integer.MAX_VALUE);
             fragmentScoreMap.put(key, fragmentCount);
             if (_minFragmentScore > fragmentCount) {
                 _minFragmentScore = fragmentCount;
@@ -93,36 +91,37 @@ public final class FragmentFilter extends Sotter implements IChemicalFilter<Inte
         }
     }
 
-    private synchronized int getMappedMoleculeFragmentSize(AtomAtomMapping mcsAtomSolution) {
-
-        IAtomContainer Educt = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class, chemfilter.getQuery());
-        IAtomContainer product = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class, chemfilter.getTarget());
-
+    /**
+     * Number of fragments left in the query and the target once the mapped
+     * atoms are removed.
+     *
+     * @param query
+     * @param target
+     * @param mcsAtomSolution
+     * @param bound counting stops once the count exceeds this bound (the
+     * solution can't be the best one)
+     * @return fragment count, or any value greater than bound
+     */
+    int getFragmentScore(ScoreTable query, ScoreTable target, AtomAtomMapping mcsAtomSolution, int bound) {
+        boolean[] removedE = new boolean[query.atomCount];
+        boolean[] removedP = new boolean[target.atomCount];
         if (mcsAtomSolution != null) {
-            mcsAtomSolution.getMappingsByAtoms().entrySet().stream().forEach((map) -> {
-                IAtom atomE = map.getKey();
-                IAtom atomP = map.getValue();
-                Educt.removeAtomAndConnectedElectronContainers(atomE);
-                product.removeAtomAndConnectedElectronContainers(atomP);
-            });
-        }
-        return getFragmentCount(Educt) + getFragmentCount(product);
-    }
-
-    private synchronized int getFragmentCount(IAtomContainer molecule) {
-        boolean fragmentFlag = true;
-        IAtomContainerSet fragmentMolSet = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainerSet.class);
-        int countFrag = 0;
-        if (molecule.getAtomCount()
-                > 0) {
-            fragmentFlag = ConnectivityChecker.isConnected(molecule);
-            if (!fragmentFlag) {
-                fragmentMolSet.add(ConnectivityChecker.partitionIntoMolecules(molecule));
-            } else {
-                fragmentMolSet.addAtomContainer(molecule);
+            for (Map.Entry<IAtom, IAtom> map : mcsAtomSolution.getMappingsByAtoms().entrySet()) {
+                int e = query.indexOf(map.getKey());
+                int p = target.indexOf(map.getValue());
+                if (e >= 0) {
+                    removedE[e] = true;
+                }
+                if (p >= 0) {
+                    removedP[p] = true;
+                }
             }
-            countFrag = fragmentMolSet.getAtomContainerCount();
         }
-        return countFrag;
+        int[] stack = new int[Math.max(query.atomCount, target.atomCount)];
+        int count = query.countComponents(removedE, bound, stack);
+        if (count > bound) {
+            return count;
+        }
+        return count + target.countComponents(removedP, bound - count, stack);
     }
 }
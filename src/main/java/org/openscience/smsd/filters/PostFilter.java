@@ -25,8 +25,10 @@ package org.openscience.smsd.filters;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 /**
@@ -54,6 +56,7 @@ public class PostFilter {
      */
     public synchronized static List<Map<Integer, Integer>> filter(List<List<Integer>> mappings) {
         List<Map<Integer, Integer>> final_MAPPINGS = new ArrayList<>();
+        Set<Map<Integer, Integer>> seen = new HashSet<>();
         if (mappings != null && !mappings.isEmpty()) {
             mappings.stream().map((List<Integer> mapping) -> {
                 Map<Integer, Integer> newMap = Collections.synchronizedSortedMap(new TreeMap<Integer, Integer>());
@@ -61,14 +64,10 @@ public class PostFilter {
                     newMap.put(mapping.get(index), mapping.get(index + 1));
                 }
                 return newMap;
-            }).filter((newMap) -> (!hasMap(newMap, final_MAPPINGS))).forEach((newMap) -> {
+            }).filter((newMap) -> (seen.add(newMap))).forEach((newMap) -> {
                 final_MAPPINGS.add(newMap);
             });
         }
         return final_MAPPINGS;
     }
-
-    private synchronized static boolean hasMap(Map<Integer, Integer> newMap, List<Map<Integer, Integer>> nonRedundantMapping) {
-        return nonRedundantMapping.stream().anyMatch((storedMap) -> (storedMap.equals(newMap)));
-    }
 }
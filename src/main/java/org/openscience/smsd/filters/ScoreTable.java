@@ -0,0 +1,319 @@
+/* Copyright (C) 2009-2017  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.filters;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.exception.CDKException;
+import static org.openscience.cdk.graph.invariant.Canon.symmetry;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.matchers.IQueryBond;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.tools.BondEnergies;
+
+/**
+ * Per-atom and per-bond properties of a molecule, computed once and used by
+ * the chemical filters to score every MCS solution without copying the
+ * molecule or building bond maps.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+final class ScoreTable {
+
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    final IAtomContainer molecule;
+    final int atomCount;
+    final int bondCount;
+    final int[] hydrogens;
+    final double[] bondOrderSum;
+    final Integer[] charges;
+    final int[][] neighbours;
+    final int[][] neighbourBonds;
+    final IBond[] bonds;
+    final int[] bondBegin;
+    final int[] bondEnd;
+    final int[] bondOrder;
+    final int[] bondStereo;
+    final boolean[] aromatic;
+    final boolean[] queryBond;
+    private final Map<IAtom, Integer> index;
+    private int[] bondEnergies;
+    private boolean positiveEnergies;
+    private long[] symmetryClasses;
+
+    ScoreTable(IAtomContainer molecule) {
+        this.molecule = molecule;
+        this.atomCount = molecule.getAtomCount();
+        this.bondCount = molecule.getBondCount();
+        this.index = new IdentityHashMap<>(2 * atomCount);
+        this.hydrogens = new int[atomCount];
+        this.bondOrderSum = new double[atomCount];
+        this.charges = new Integer[atomCount];
+        for (int i = 0; i < atomCount; i++) {
+            IAtom atom = molecule.getAtom(i);
+            index.put(atom, i);
+            hydrogens[i] = atom.getImplicitHydrogenCount() == null ? 0 : atom.getImplicitHydrogenCount();
+            bondOrderSum[i] = molecule.getBondOrderSum(atom);
+            charges[i] = atom.getFormalCharge();
+        }
+
+        this.bonds = new IBond[bondCount];
+        this.bondBegin = new int[bondCount];
+        this.bondEnd = new int[bondCount];
+        this.bondOrder = new int[bondCount];
+        this.bondStereo = new int[bondCount];
+        this.aromatic = new boolean[bondCount];
+        this.queryBond = new boolean[bondCount];
+        int[] degree = new int[atomCount];
+        for (int b = 0; b < bondCount; b++) {
+            IBond bond = molecule.getBond(b);
+            bonds[b] = bond;
+            bondBegin[b] = indexOf(bond.getAtom(0));
+            bondEnd[b] = indexOf(bond.getAtom(1));
+            queryBond[b] = bond instanceof IQueryBond;
+            if (!queryBond[b]) {
+                bondOrder[b] = StereoFilter.convertBondOrder(bond);
+                bondStereo[b] = StereoFilter.convertBondStereo(bond);
+                aromatic[b] = bond.getFlag(CDKConstants.ISAROMATIC);
+            }
+            if (bondBegin[b] >= 0 && bondEnd[b] >= 0) {
+                degree[bondBegin[b]]++;
+                degree[bondEnd[b]]++;
+            }
+        }
+        this.neighbours = new int[atomCount][];
+        this.neighbourBonds = new int[atomCount][];
+        for (int i = 0; i < atomCount; i++) {
+            neighbours[i] = new int[degree[i]];
+            neighbourBonds[i] = new int[degree[i]];
+            degree[i] = 0;
+        }
+        for (int b = 0; b < bondCount; b++) {
+            int u = bondBegin[b];
+            int v = bondEnd[b];
+            if (u >= 0 && v >= 0) {
+                neighbours[u][degree[u]] = v;
+                neighbourBonds[u][degree[u]++] = b;
+                neighbours[v][degree[v]] = u;
+                neighbourBonds[v][degree[v]++] = b;
+            }
+        }
+    }
+
+    /**
+     *
+     * @param atom
+     * @return index of the atom in the molecule or -1
+     */
+    int indexOf(IAtom atom) {
+        Integer i = index.get(atom);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     *
+     * @param u
+     * @param v
+     * @return first bond between the two atoms or -1
+     */
+    int bondIndex(int u, int v) {
+        int[] n = neighbours[u];
+        for (int k = 0; k < n.length; k++) {
+            if (n[k] == v) {
+                return neighbourBonds[u][k];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Query atom index to target atom index (-1 if not mapped) of a solution.
+     *
+     * @param mapping
+     * @param target
+     * @return the mapping or null if an atom is not part of the molecules
+     */
+    int[] toIndex(AtomAtomMapping mapping, ScoreTable target) {
+        int[] map = new int[atomCount];
+        Arrays.fill(map, -1);
+        for (Map.Entry<IAtom, IAtom> e : mapping.getMappingsByAtoms().entrySet()) {
+            int q = indexOf(e.getKey());
+            int t = target.indexOf(e.getValue());
+            if (q < 0 || t < 0) {
+                return null;
+            }
+            map[q] = t;
+        }
+        return map;
+    }
+
+    /**
+     *
+     * @param b
+     * @return bond breaking energy of the bond
+     * @throws CDKException
+     */
+    int getBondEnergy(int b) throws CDKException {
+        if (bondEnergies == null) {
+            initBondEnergies();
+        }
+        if (bondEnergies[b] == UNKNOWN) {
+            IBond bond = bonds[b];
+            return BondEnergies.getInstance().getEnergies(bond.getAtom(0), bond.getAtom(1), bond.getOrder());
+        }
+        return bondEnergies[b];
+    }
+
+    /**
+     * @return true if no bond has a negative (unknown) energy, the partial
+     * energy sums can then be used as a lower bound
+     * @throws CDKException
+     */
+    boolean hasPositiveEnergies() throws CDKException {
+        if (bondEnergies == null) {
+            initBondEnergies();
+        }
+        return positiveEnergies;
+    }
+
+    private void initBondEnergies() throws CDKException {
+        BondEnergies energies = BondEnergies.getInstance();
+        int[] values = new int[bondCount];
+        boolean positive = true;
+        for (int k = 0; k < bondCount; k++) {
+            IBond bond = bonds[k];
+            try {
+                values[k] = energies.getEnergies(bond.getAtom(0), bond.getAtom(1), bond.getOrder());
+            } catch (RuntimeException e) {
+                /*
+                 * looked up again (and fails again) if this bond is ever
+                 * scored
+                 */
+                values[k] = UNKNOWN;
+            }
+            positive &= values[k] >= 0;
+        }
+        positiveEnergies = positive;
+        bondEnergies = values;
+    }
+
+    /**
+     * Atom equivalence classes (atoms in the same class are related by an
+     * automorphism of the molecule) from the canonical labelling. If the
+     * molecule can't be labelled (e.g. unset hydrogen counts) the atom
+     * invariants are used instead, i.e. coarser classes.
+     *
+     * @return class of each atom
+     */
+    long[] getSymmetryClasses() {
+        if (symmetryClasses == null) {
+            try {
+                symmetryClasses = symmetry(molecule, neighbours);
+            } catch (RuntimeException e) {
+                long[] classes = new long[atomCount];
+                for (int i = 0; i < atomCount; i++) {
+                    IAtom atom = molecule.getAtom(i);
+                    long v = atom.getSymbol() == null ? 0 : atom.getSymbol().hashCode() & 0xFFFF;
+                    v = v * 31 + (charges[i] == null ? 0 : charges[i]);
+                    v = v * 31 + (atom.getMassNumber() == null ? 0 : atom.getMassNumber());
+                    v = v * 31 + hydrogens[i];
+                    v = v * 31 + neighbours[i].length;
+                    classes[i] = v & 0xFFFFFFFFFFFFL;
+                }
+                symmetryClasses = classes;
+            }
+        }
+        return symmetryClasses;
+    }
+
+    /**
+     * Number of connected components formed by the atoms which are not
+     * marked.
+     *
+     * @param marked
+     * @param bound stop counting once this value is exceeded
+     * @param stack work space of size atomCount
+     * @return component count (or a value greater than bound)
+     */
+    int countComponents(boolean[] marked, int bound, int[] stack) {
+        boolean[] visited = marked.clone();
+        int count = 0;
+        for (int i = 0; i < atomCount; i++) {
+            if (visited[i]) {
+                continue;
+            }
+            if (++count > bound) {
+                return count;
+            }
+            int top = 0;
+            stack[top++] = i;
+            visited[i] = true;
+            while (top > 0) {
+                int u = stack[--top];
+                for (int v : neighbours[u]) {
+                    if (!visited[v]) {
+                        visited[v] = true;
+                        stack[top++] = v;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adjacency list of the subgraph induced by the marked atoms (the other
+     * atoms are left without neighbours).
+     *
+     * @param marked
+     * @return adjacency list
+     */
+    int[][] inducedGraph(boolean[] marked) {
+        int[][] g = new int[atomCount][];
+        for (int i = 0; i < atomCount; i++) {
+            if (!marked[i]) {
+                g[i] = new int[0];
+                continue;
+            }
+            int d = 0;
+            for (int v : neighbours[i]) {
+                if (marked[v]) {
+                    d++;
+                }
+            }
+            g[i] = new int[d];
+            d = 0;
+            for (int v : neighbours[i]) {
+                if (marked[v]) {
+                    g[i][d++] = v;
+                }
+            }
+        }
+        return g;
+    }
+}
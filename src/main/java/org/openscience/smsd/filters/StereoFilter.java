@@ -68,12 +68,18 @@ public final class StereoFilter extends Sotter implements IChemicalFilter<Double
             Map<Integer, AtomAtomMapping> allStereoAtomMCS,
             Map<Integer, Double> stereoScoreMap) throws CDKException {
 
-        getStereoBondChargeMatch(stereoScoreMap, allStereoAtomMCS);
-
-        Map<Integer, Double> sortedStereoScoreMap = sortMapByValueInDescendingOrder(stereoScoreMap);
-        double highestStereoScore
-                = sortedStereoScoreMap.isEmpty() ? 0
-                        : sortedStereoScoreMap.values().iterator().next();
+        ScoreTable query = new ScoreTable(chemfilter.getQuery());
+        ScoreTable target = new ScoreTable(chemfilter.getTarget());
+        double highestStereoScore = 0;
+        boolean first = true;
+        for (Integer Key : allStereoAtomMCS.keySet()) {
+            double score = getStereoScore(query, target, allStereoAtomMCS.get(Key));
+            stereoScoreMap.put(Key, score);
+            if (first || score > highestStereoScore) {
+                highestStereoScore = score;
+                first = false;
+            }
+        }
         return highestStereoScore;
     }
 
@@ -101,40 +107,127 @@ public final class StereoFilter extends Sotter implements IChemicalFilter<Double
         }
     }
 
-    private synchronized boolean getStereoBondChargeMatch(Map<Integer, Double> stereoScoreMap,
-            Map<Integer, AtomAtomMapping> allStereoAtomMCS) throws CDKException {
+    /**
+     * Stereo, charge and bond type match score of a solution.
+     *
+     * @param query
+     * @param target
+     * @param atomMapMCS
+     * @return score (higher is better)
+     * @throws CDKException
+     */
+    double getStereoScore(ScoreTable query, ScoreTable target, AtomAtomMapping atomMapMCS) throws CDKException {
+        int[] map = query.toIndex(atomMapMCS, target);
+        boolean ringMatch = query.bondCount > 1
+                && target.bondCount > 1
+                && !(chemfilter.getQuery() instanceof IQueryAtomContainer
+                || chemfilter.getTarget() instanceof IQueryAtomContainer);
+        if (map == null) {
+            /*
+             * atoms which are not part of the molecules, score on the atoms
+             */
+            return getStereoBondChargeMatch(atomMapMCS, ringMatch);
+        }
 
-        boolean stereoMatchFlag = false;
-        for (Integer Key : allStereoAtomMCS.keySet()) {
-            try {
-                double score = 0.0;
-                //            System.out.println("\nStart score " + score);
-                AtomAtomMapping atomMapMCS = allStereoAtomMCS.get(Key);
-                double atomScore = getAtomScore(score, atomMapMCS, chemfilter.getQuery(), chemfilter.getTarget());
-                Map<IBond, IBond> bondMaps = makeBondMapsOfAtomMaps(chemfilter.getQuery(), chemfilter.getTarget(), atomMapMCS);
-                double ringScore = 0.0;
-                if (chemfilter.getQuery().getBondCount() > 1
-                        && chemfilter.getTarget().getBondCount() > 1
-                        && !(chemfilter.getQuery() instanceof IQueryAtomContainer
-                        || chemfilter.getTarget() instanceof IQueryAtomContainer)) {
-                    List<IAtomContainer> subgraphRList = getMappedFragment(chemfilter.getQuery(), atomMapMCS.getMappingsByAtoms().keySet());
-                    double rscore = getRingMatchScore(subgraphRList);
-                    List<IAtomContainer> subgraphPList = getMappedFragment(chemfilter.getTarget(), atomMapMCS.getMappingsByAtoms().values());
-                    double pscore = getRingMatchScore(subgraphPList);
-                    ringScore = rscore + pscore;
-                }
-                double bondScore = getBondScore(score, bondMaps);
+        double atomScore = 0.0;
+        double bondScore = 0.0;
+        boolean[] mappedR = new boolean[query.atomCount];
+        boolean[] mappedP = new boolean[target.atomCount];
+        for (int r = 0; r < query.atomCount; r++) {
+            int p = map[r];
+            if (p < 0) {
+                continue;
+            }
+            mappedR[r] = true;
+            mappedP[p] = true;
+            atomScore += getAtomScore(query.hydrogens[r], target.hydrogens[p],
+                    query.bondOrderSum[r], target.bondOrderSum[p],
+                    query.charges[r], target.charges[p]);
+        }
+        for (int b = 0; b < query.bondCount; b++) {
+            int u = query.bondBegin[b];
+            int v = query.bondEnd[b];
+            if (u < 0 || v < 0 || map[u] < 0 || map[v] < 0) {
+                continue;
+            }
+            int t = target.bondIndex(map[u], map[v]);
+            if (t < 0) {
+                continue;
+            }
+            if (query.queryBond[b] || target.queryBond[t]) {
+                bondScore += getBondTypeMatches(query.bonds[b], target.bonds[t]);
+            } else {
+                bondScore += getBondTypeMatches(query.bondOrder[b], target.bondOrder[t],
+                        query.aromatic[b], target.aromatic[t],
+                        query.bondStereo[b], target.bondStereo[t]);
+            }
+        }
+        double ringScore = 0.0;
+        if (ringMatch) {
+            ringScore = getRingMatchScore(query, mappedR) + getRingMatchScore(target, mappedP);
+        }
+        return atomScore + ringScore + bondScore;
+    }
 
-                score = atomScore + ringScore + bondScore;
-                if (!stereoMatchFlag) {
-                    stereoMatchFlag = true;
+    /*
+     * Every unmapped atom scores -10 for each cycle of the mapped subgraph
+     */
+    private double getRingMatchScore(ScoreTable table, boolean[] mapped) {
+        int mappedCount = 0;
+        int edges = 0;
+        for (int i = 0; i < table.atomCount; i++) {
+            if (mapped[i]) {
+                mappedCount++;
+                for (int v : table.neighbours[i]) {
+                    if (mapped[v]) {
+                        edges++;
+                    }
                 }
-                stereoScoreMap.put(Key, score);
-            } catch (CloneNotSupportedException ex) {
-                Logger.getLogger(StereoFilter.class.getName()).log(Level.SEVERE, null, ex);
             }
         }
-        return stereoMatchFlag;
+        edges /= 2;
+        int unmappedCount = table.atomCount - mappedCount;
+        if (unmappedCount == 0 || edges < 3) {
+            return 0.0;
+        }
+        boolean[] unmapped = new boolean[table.atomCount];
+        for (int i = 0; i < table.atomCount; i++) {
+            unmapped[i] = !mapped[i];
+        }
+        int components = table.countComponents(unmapped, Integer.MAX_VALUE, new int[table.atomCount]);
+        if (edges - mappedCount + components <= 0) {
+            return 0.0;
+        }
+        double lScore = 0;
+        try {
+            int cycles = Cycles.all().find(table.molecule, table.inducedGraph(mapped), mappedCount).numberOfCycles();
+            lScore = -10.0 * unmappedCount * cycles;
+        } catch (Intractable ex) {
+            Logger.getLogger(StereoFilter.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return lScore;
+    }
+
+    private synchronized double getStereoBondChargeMatch(AtomAtomMapping atomMapMCS, boolean ringMatch)
+            throws CDKException {
+        double score = 0.0;
+        try {
+            double atomScore = getAtomScore(score, atomMapMCS, chemfilter.getQuery(), chemfilter.getTarget());
+            Map<IBond, IBond> bondMaps = makeBondMapsOfAtomMaps(chemfilter.getQuery(), chemfilter.getTarget(), atomMapMCS);
+            double ringScore = 0.0;
+            if (ringMatch) {
+                List<IAtomContainer> subgraphRList = getMappedFragment(chemfilter.getQuery(), atomMapMCS.getMappingsByAtoms().keySet());
+                double rscore = getRingMatchScore(subgraphRList);
+                List<IAtomContainer> subgraphPList = getMappedFragment(chemfilter.getTarget(), atomMapMCS.getMappingsByAtoms().values());
+                double pscore = getRingMatchScore(subgraphPList);
+                ringScore = rscore + pscore;
+            }
+            double bondScore = getBondScore(score, bondMaps);
+            score = atomScore + ringScore + bondScore;
+        } catch (CloneNotSupportedException ex) {
+            Logger.getLogger(StereoFilter.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return score;
     }
 
     private synchronized Map<IBond, IBond> makeBondMapsOfAtomMaps(IAtomContainer ac1, IAtomContainer ac2,
@@ -173,25 +266,31 @@ public final class StereoFilter extends Sotter implements IChemicalFilter<Double
             if (pAtom.getImplicitHydrogenCount() != null) {
                 pHCount = pAtom.getImplicitHydrogenCount();
             }
+            score += getAtomScore(rHCount, pHCount, rBO, pBO, rAtom.getFormalCharge(), pAtom.getFormalCharge());
+        }
+        return score;
+    }
 
-            int HScore = Math.abs(rHCount - pHCount);
-            double BOScore = Math.abs(rBO - pBO);
+    private static double getAtomScore(int rHCount, int pHCount, double rBO, double pBO,
+            Integer rCharge, Integer pCharge) {
+        double score = 0.0;
+        int HScore = Math.abs(rHCount - pHCount);
+        double BOScore = Math.abs(rBO - pBO);
 
-            if (rHCount != pHCount) {
-                score -= HScore;
-            } else {
-                score += HScore;
-            }
+        if (rHCount != pHCount) {
+            score -= HScore;
+        } else {
+            score += HScore;
+        }
 
-            if (rBO != pBO) {
-                score -= BOScore;
-            } else {
-                score += BOScore;
-            }
+        if (rBO != pBO) {
+            score -= BOScore;
+        } else {
+            score += BOScore;
+        }
 
-            if (Objects.equals(rAtom.getFormalCharge(), pAtom.getFormalCharge())) {
-                score += 5.0;
-            }
+        if (Objects.equals(rCharge, pCharge)) {
+            score += 5.0;
         }
         return score;
     }
@@ -240,32 +339,35 @@ public final class StereoFilter extends Sotter implements IChemicalFilter<Double
                 score -= 4;
             }
         } else {
+            score += getBondTypeMatches(convertBondOrder(queryBond), convertBondOrder(targetBond),
+                    queryBond.getFlag(CDKConstants.ISAROMATIC), targetBond.getFlag(CDKConstants.ISAROMATIC),
+                    convertBondStereo(queryBond), convertBondStereo(targetBond));
+        }
+        return score;
+    }
 
-            int reactantBondType = convertBondOrder(queryBond);
-            int productBondType = convertBondOrder(targetBond);
-            int rStereo = convertBondStereo(queryBond);
-            int pStereo = convertBondStereo(targetBond);
-            if ((queryBond.getFlag(CDKConstants.ISAROMATIC) == targetBond.getFlag(CDKConstants.ISAROMATIC))
-                    && (reactantBondType == productBondType)) {
-                score += 8;
-            } else if (queryBond.getFlag(CDKConstants.ISAROMATIC) && targetBond.getFlag(CDKConstants.ISAROMATIC)) {
-                score += 4;
-            }
+    private static double getBondTypeMatches(int reactantBondType, int productBondType,
+            boolean rAromatic, boolean pAromatic, int rStereo, int pStereo) {
+        double score = 0;
+        if ((rAromatic == pAromatic)
+                && (reactantBondType == productBondType)) {
+            score += 8;
+        } else if (rAromatic && pAromatic) {
+            score += 4;
+        }
 
-            if (reactantBondType == productBondType) {
-                score += productBondType;
-            } else {
-                score -= 4 * Math.abs(reactantBondType - productBondType);
-            }
+        if (reactantBondType == productBondType) {
+            score += productBondType;
+        } else {
+            score -= 4 * Math.abs(reactantBondType - productBondType);
+        }
 
-            if (rStereo != 4 || pStereo != 4 || rStereo != 3 || pStereo != 3) {
-                if (rStereo == pStereo) {
-                    score += 1;
-                } else {
-                    score -= 1;
-                }
+        if (rStereo != 4 || pStereo != 4 || rStereo != 3 || pStereo != 3) {
+            if (rStereo == pStereo) {
+                score += 1;
+            } else {
+                score -= 1;
             }
-
         }
         return score;
     }
@@ -276,7 +378,7 @@ public final class StereoFilter extends Sotter implements IChemicalFilter<Double
      * @param bond
      * @return
      */
-    public synchronized static int convertBondStereo(IBond bond) {
+    public static int convertBondStereo(IBond bond) {
         int value;
         switch (bond.getStereo()) {
             case UP:
@@ -312,7 +414,7 @@ public final class StereoFilter extends Sotter implements IChemicalFilter<Double
      * @param bond
      * @return
      */
-    public synchronized static int convertBondOrder(IBond bond) {
+    public static int convertBondOrder(IBond bond) {
         int value;
         switch (bond.getOrder()) {
             case QUADRUPLE:
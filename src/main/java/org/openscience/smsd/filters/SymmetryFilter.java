@@ -0,0 +1,197 @@
+/* Copyright (C) 2009-2017  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.filters;
+
+import static java.util.Arrays.sort;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
+import org.openscience.cdk.silent.AtomContainer;
+import static org.openscience.cdk.graph.invariant.Canon.label;
+
+/**
+ * Finds MCS solutions which are the same correspondence up to the symmetry of
+ * the molecules (e.g. the two oxygens of a carboxylate, the ring atoms of
+ * benzene). Such solutions get the same fragment, stereo and energy scores.
+ *
+ * The query, the target and the mapping (as extra edges between the two) are
+ * labelled canonically, starting from the atom equivalence classes of each
+ * molecule. Two solutions are symmetric only if their canonical forms are
+ * identical, i.e. an automorphism of the query and of the target (preserving
+ * the atoms and bond types) turns one into the other.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+final class SymmetryFilter {
+
+    private final ScoreTable query;
+    private final ScoreTable target;
+    private final IAtomContainer combined;
+    private final boolean applicable;
+
+    SymmetryFilter(ScoreTable query, ScoreTable target) {
+        this.query = query;
+        this.target = target;
+        this.applicable = !(query.molecule instanceof IQueryAtomContainer
+                || target.molecule instanceof IQueryAtomContainer)
+                && !hasQueryBonds(query) && !hasQueryBonds(target);
+        this.combined = new AtomContainer();
+        if (applicable) {
+            for (IAtom a : query.molecule.atoms()) {
+                combined.addAtom(a);
+            }
+            for (IAtom a : target.molecule.atoms()) {
+                combined.addAtom(a);
+            }
+        }
+    }
+
+    private static boolean hasQueryBonds(ScoreTable table) {
+        for (boolean q : table.queryBond) {
+            if (q) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Canonical form of a solution.
+     *
+     * @param map query atom index to target atom index (-1 if not mapped)
+     * @return canonical form, or null if it can't be computed (the solution is
+     * then never considered symmetric to another one)
+     */
+    String getKey(int[] map) {
+        if (!applicable || map == null) {
+            return null;
+        }
+        int nq = query.atomCount;
+        int n = nq + target.atomCount;
+        long[] classesQ = query.getSymmetryClasses();
+        long[] classesT = target.getSymmetryClasses();
+
+        int[][] g = new int[n][];
+        long[] invariants = new long[n];
+        int[] mapped = new int[target.atomCount];
+        for (int i = 0; i < nq; i++) {
+            if (map[i] >= 0) {
+                mapped[map[i]]++;
+            }
+        }
+        for (int i = 0; i < nq; i++) {
+            int[] nbrs = query.neighbours[i];
+            g[i] = new int[nbrs.length + (map[i] >= 0 ? 1 : 0)];
+            System.arraycopy(nbrs, 0, g[i], 0, nbrs.length);
+            if (map[i] >= 0) {
+                g[i][nbrs.length] = nq + map[i];
+            }
+            invariants[i] = 2 * classesQ[i];
+        }
+        int[] fill = new int[target.atomCount];
+        for (int j = 0; j < target.atomCount; j++) {
+            int[] nbrs = target.neighbours[j];
+            g[nq + j] = new int[nbrs.length + mapped[j]];
+            for (int k = 0; k < nbrs.length; k++) {
+                g[nq + j][k] = nq + nbrs[k];
+            }
+            fill[j] = nbrs.length;
+            invariants[nq + j] = 2 * classesT[j] + 1;
+        }
+        for (int i = 0; i < nq; i++) {
+            if (map[i] >= 0) {
+                g[nq + map[i]][fill[map[i]]++] = i;
+            }
+        }
+
+        long[] labels;
+        try {
+            labels = label(combined, g, invariants);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        int[] rank = new int[n];
+        int[] order = new int[n];
+        boolean[] seen = new boolean[n];
+        for (int v = 0; v < n; v++) {
+            int r = (int) labels[v] - 1;
+            if (r < 0 || r >= n || seen[r]) {
+                return null;
+            }
+            seen[r] = true;
+            rank[v] = r;
+            order[r] = v;
+        }
+
+        StringBuilder sb = new StringBuilder(n * 16);
+        for (int k = 0; k < n; k++) {
+            int v = order[k];
+            if (v < nq) {
+                appendAtom(sb.append('q'), query, v, classesQ[v]);
+            } else {
+                appendAtom(sb.append('t'), target, v - nq, classesT[v - nq]);
+            }
+        }
+        String[] edges = new String[query.bondCount + target.bondCount + nq];
+        int e = 0;
+        e = appendBonds(edges, e, query, rank, 0);
+        e = appendBonds(edges, e, target, rank, nq);
+        for (int i = 0; i < nq; i++) {
+            if (map[i] >= 0) {
+                edges[e++] = rank[i] + "=" + rank[nq + map[i]];
+            }
+        }
+        sort(edges, 0, e);
+        sb.append('|');
+        for (int k = 0; k < e; k++) {
+            sb.append(edges[k]).append(';');
+        }
+        return sb.toString();
+    }
+
+    private static void appendAtom(StringBuilder sb, ScoreTable table, int i, long symmetryClass) {
+        IAtom a = table.molecule.getAtom(i);
+        sb.append(a.getSymbol()).append(',')
+                .append(a.getMassNumber()).append(',')
+                .append(table.charges[i]).append(',')
+                .append(table.hydrogens[i]).append(',')
+                .append(table.bondOrderSum[i]).append(',')
+                .append(symmetryClass).append(';');
+    }
+
+    private static int appendBonds(String[] edges, int e, ScoreTable table, int[] rank, int offset) {
+        for (int b = 0; b < table.bondCount; b++) {
+            int u = table.bondBegin[b];
+            int v = table.bondEnd[b];
+            if (u < 0 || v < 0) {
+                continue;
+            }
+            int ru = rank[offset + u];
+            int rv = rank[offset + v];
+            edges[e++] = Math.min(ru, rv) + "-" + Math.max(ru, rv) + ","
+                    + table.bonds[b].getOrder() + "," + table.bondStereo[b] + ","
+                    + (table.aromatic[b] ? 'a' : '-');
+        }
+        return e;
+    }
+}
@@ -18,32 +18,44 @@
  */
 package org.openscience.smsd.mcss;
 
-import static java.lang.Math.ceil;
 import static java.lang.Runtime.getRuntime;
-import static java.lang.System.gc;
 import java.util.ArrayList;
 import java.util.Collection;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static java.util.Collections.sort;
 import static java.util.Collections.unmodifiableCollection;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import static java.util.concurrent.Executors.newFixedThreadPool;
-import java.util.concurrent.Future;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.tools.ILoggingTool;
 import static org.openscience.cdk.tools.LoggingToolFactory.createLoggingTool;
+import static org.openscience.smsd.mcss.Fragment.toSmiles;
 import org.openscience.smsd.tools.AtomContainerComparator;
 import static org.openscience.smsd.tools.ExtAtomContainerManipulator.removeHydrogens;
 
 /**
+ * Maximum common substructure of many molecules, computed as a tree
+ * reduction on a work stealing pool. The molecules are sorted by size so that
+ * neighbouring leaves are alike and the intermediate MCS shrinks quickly, the
+ * MCS of identical inputs is reused from a cache and the reduction stops as
+ * soon as the common core gets smaller than the minimum core size.
  *
+ * The MULTIPLE fragments left at the root are reduced against each other
+ * until one common substructure is left, as the chunked passes this replaces
+ * did with several threads; they now are with one thread as well, so the
+ * result does not depend on the number of threads.
  *
  * @author Syed Asad Rahman <asad @ ebi.ac.uk>
  *
@@ -57,6 +69,13 @@ public class MCSS {
     private final boolean matchBonds;
     private final boolean matchRings;
     private final boolean matchAtomType;
+    private final int minimumCoreSize;
+    /*
+     * MCS of the reduced inputs, keyed by their sorted SMILES
+     */
+    private final Map<String, List<IAtomContainer>> cache;
+    private final AtomicBoolean terminated;
+    private final AtomicInteger taskCounter;
 
     /**
      *
@@ -84,6 +103,28 @@ public class MCSS {
             boolean matchBonds,
             boolean matchRings,
             boolean matchAtomType) {
+        this(jobList, jobType, numberOfThreads, matchBonds, matchRings, matchAtomType, 1);
+    }
+
+    /**
+     *
+     * @param jobList
+     * @param jobType
+     * @param numberOfThreads
+     * @param matchBonds
+     * @param matchRings
+     * @param matchAtomType
+     * @param minimumCoreSize stop (empty result) as soon as the common core
+     * has fewer atoms
+     */
+    public MCSS(
+            List<IAtomContainer> jobList,
+            JobType jobType,
+            int numberOfThreads,
+            boolean matchBonds,
+            boolean matchRings,
+            boolean matchAtomType,
+            int minimumCoreSize) {
         int threadsAvailable = getRuntime().availableProcessors() - 1;
 
         logger.debug("Demand threads: " + numberOfThreads);
@@ -109,109 +150,158 @@ public class MCSS {
         this.matchBonds = matchBonds;
         this.matchRings = matchRings;
         this.matchAtomType = matchAtomType;
+        this.minimumCoreSize = minimumCoreSize;
+        this.cache = new ConcurrentHashMap<>();
+        this.terminated = new AtomicBoolean(false);
+        this.taskCounter = new AtomicInteger(0);
         /*
          * Call the MCS
          */
         calculateMCSS = calculateMCSS(selectedJobs, jobType, threadsAvailable);
         selectedJobs.clear();
+        cache.clear();
     }
 
     private synchronized Collection<IAtomContainer> calculateMCSS(List<IAtomContainer> mcssList, JobType jobType, int nThreads) {
-        List<IAtomContainer> newMCSSList;
-        if (nThreads == 1) {
-            newMCSSList = new LinkedList<>(submitSingleThreadedJob(mcssList, jobType, nThreads));
-        } else {
-            /*
-             * Calling recursive MCS
-             */
-            newMCSSList = new LinkedList<>(submitMultiThreadedJob(mcssList, jobType, nThreads));
-            while (newMCSSList.size() > 1) {
-                if (newMCSSList.size() > 2) {
-                    newMCSSList = new LinkedList<>(submitMultiThreadedJob(newMCSSList, jobType, nThreads));
-                } else {
-                    newMCSSList = new LinkedList<>(submitMultiThreadedJob(newMCSSList, jobType, 1));
-                }
-            }
+        /*
+         * A single molecule has no common substructure
+         */
+        if (mcssList.size() < 2) {
+            return new LinkedBlockingQueue<>();
         }
-        if (!mcssList.isEmpty() && !newMCSSList.isEmpty()) {
-            IAtomContainer inTheList = mcssList.get(mcssList.size() - 1);
-            if (inTheList == newMCSSList.iterator().next()) {
-                return new LinkedBlockingQueue<>();
-            }
+        /*
+         * The pool is sized by the requested threads, the common pool would
+         * ignore it
+         */
+        ForkJoinPool pool = new ForkJoinPool(nThreads);
+        List<IAtomContainer> newMCSSList = new LinkedList<>();
+        try {
+            newMCSSList.addAll(pool.invoke(new Reduction(mcssList, 0, mcssList.size(), jobType)));
+        } catch (RuntimeException e) {
+            logger.debug("ERROR: in MCSS: " + e.getMessage());
+            logger.error(e);
+        } finally {
+            pool.shutdown();
+        }
+        /*
+         * Reduce the remaining fragments to one
+         */
+        while (newMCSSList.size() > 1 && !terminated.get()) {
+            newMCSSList = new LinkedList<>(reduce(newMCSSList, jobType));
+        }
+        if (terminated.get()) {
+            logger.debug("MCSS below the minimum core size " + minimumCoreSize);
+            return new LinkedBlockingQueue<>();
         }
         return newMCSSList;
     }
 
-    /**
-     * @return the calculateMCSS
+    /*
+     * MCS of the molecules from..to, the halves are reduced in parallel and
+     * then merged
      */
-    public synchronized Collection<IAtomContainer> getCalculateMCSS() {
-        return unmodifiableCollection(calculateMCSS);
-    }
+    private final class Reduction extends RecursiveTask<List<IAtomContainer>> {
 
-    private synchronized LinkedBlockingQueue<IAtomContainer> submitSingleThreadedJob(List<IAtomContainer> mcssList, JobType jobType, int nThreads) {
-        LinkedBlockingQueue<IAtomContainer> solutions = new LinkedBlockingQueue<>();
-        MCSSThread task = new MCSSThread(mcssList, jobType, 1);
-        LinkedBlockingQueue<IAtomContainer> results = task.call();
-        if (results != null) {
-            solutions.addAll(results);
-        }
-        return solutions;
-    }
+        private static final long serialVersionUID = 0x5d3a7c1e9b24fL;
+        private final List<IAtomContainer> molecules;
+        private final int from;
+        private final int to;
+        private final JobType jobType;
 
-    private synchronized LinkedBlockingQueue<IAtomContainer> submitMultiThreadedJob(List<IAtomContainer> mcssList, JobType jobType, int nThreads) {
-        int taskNumber = 1;
-        LinkedBlockingQueue<IAtomContainer> solutions = new LinkedBlockingQueue<>();
-        LinkedBlockingQueue<Callable<LinkedBlockingQueue<IAtomContainer>>> callablesQueue = new LinkedBlockingQueue<>();
-        ExecutorService threadPool = newFixedThreadPool(nThreads);
-        int step = (int) ceil(mcssList.size() / nThreads);
-        if (step < 2) {
-            step = 2; // Can't have a step size of less than 2
+        Reduction(List<IAtomContainer> molecules, int from, int to, JobType jobType) {
+            this.molecules = molecules;
+            this.from = from;
+            this.to = to;
+            this.jobType = jobType;
         }
-        for (int i = 0; i < mcssList.size(); i += step) {
-            int endPoint = i + step;
-            if (endPoint > mcssList.size()) {
-                endPoint = mcssList.size();
+
+        @Override
+        protected List<IAtomContainer> compute() {
+            if (terminated.get()) {
+                return emptyList();
+            }
+            int size = to - from;
+            if (size == 1) {
+                return singletonList(molecules.get(from));
+            }
+            if (size == 2) {
+                return reduce(molecules.subList(from, to), jobType);
             }
-            List<IAtomContainer> subList = new ArrayList<>(mcssList.subList(i, endPoint));
-            if (subList.size() > 1) {
-                MCSSThread mcssJobThread = new MCSSThread(subList, jobType, taskNumber, matchBonds, matchRings,
-                        matchAtomType);
-                callablesQueue.add(mcssJobThread);
-                taskNumber++;
-            } else {
-                solutions.add(subList.get(0));
+            int middle = (from + to) >>> 1;
+            Reduction left = new Reduction(molecules, from, middle, jobType);
+            left.fork();
+            List<IAtomContainer> right = new Reduction(molecules, middle, to, jobType).compute();
+            List<IAtomContainer> merged = new ArrayList<>(left.join());
+            if (terminated.get()) {
+                return emptyList();
             }
+            merged.addAll(right);
+            return reduce(merged, jobType);
         }
+    }
+
+    private List<IAtomContainer> reduce(List<IAtomContainer> mcssList, JobType jobType) {
+        String key = getKey(mcssList);
+        List<IAtomContainer> solutions = key == null ? null : cache.get(key);
+        if (solutions == null) {
+            MCSSThread task = new MCSSThread(new ArrayList<>(mcssList), jobType,
+                    taskCounter.incrementAndGet(), matchBonds, matchRings, matchAtomType);
+            LinkedBlockingQueue<IAtomContainer> results = task.call();
+            solutions = results == null ? new ArrayList<>() : new ArrayList<>(results);
+            if (key != null) {
+                cache.putIfAbsent(key, solutions);
+            }
+        } else {
+            solutions = copy(solutions);
+        }
+        int coreSize = 0;
+        for (IAtomContainer ac : solutions) {
+            coreSize = Math.max(coreSize, ac.getAtomCount());
+        }
+        if (coreSize < minimumCoreSize) {
+            terminated.set(true);
+            return emptyList();
+        }
+        return solutions;
+    }
+
+    /*
+     * Order independent key of the molecules, null if a SMILES can't be made
+     */
+    private static String getKey(List<IAtomContainer> mcssList) {
+        List<String> smiles = new ArrayList<>(mcssList.size());
         try {
-            /*
-             * Wait all the threads to finish
-             */
-            List<Future<LinkedBlockingQueue<IAtomContainer>>> futureList = threadPool.invokeAll(callablesQueue);
-            /*
-             * Collect the results
-             */
-            for (Future<LinkedBlockingQueue<IAtomContainer>> callable : futureList) {
-                LinkedBlockingQueue<IAtomContainer> mapping = callable.get();
-                if (callable.isDone() && mapping != null) {
-                    solutions.addAll(mapping);
-                } else {
-                    logger.warn("WARNING: InComplete job in AtomMappingTool: ");
-                }
+            for (IAtomContainer ac : mcssList) {
+                smiles.add(toSmiles(ac));
             }
-            threadPool.shutdown();
-            // Wait until all threads are finish
-            while (!threadPool.isTerminated()) {
+        } catch (CDKException | RuntimeException e) {
+            return null;
+        }
+        sort(smiles);
+        return String.join(".", smiles);
+    }
+
+    /*
+     * Cached molecules are copied, the task that computed them still uses
+     * them
+     */
+    private static List<IAtomContainer> copy(List<IAtomContainer> molecules) {
+        List<IAtomContainer> copies = new ArrayList<>(molecules.size());
+        for (IAtomContainer ac : molecules) {
+            try {
+                copies.add(ac.clone());
+            } catch (CloneNotSupportedException e) {
+                copies.add(ac);
             }
-            gc();
-        } catch (InterruptedException | ExecutionException e) {
-            logger.debug("ERROR: in AtomMappingTool: " + e.getMessage());
-            logger.error(e);
-        } finally {
-            threadPool.shutdown();
         }
+        return copies;
+    }
 
-        return solutions;
+    /**
+     * @return the calculateMCSS
+     */
+    public synchronized Collection<IAtomContainer> getCalculateMCSS() {
+        return unmodifiableCollection(calculateMCSS);
     }
 
     /**
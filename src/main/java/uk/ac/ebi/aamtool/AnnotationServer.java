@@ -0,0 +1,510 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.aamtool;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.out;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.concurrent.atomic.AtomicLong;
+import static java.util.logging.Level.SEVERE;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import javax.xml.parsers.DocumentBuilderFactory;
+import static javax.xml.transform.OutputKeys.ENCODING;
+import static javax.xml.transform.OutputKeys.INDENT;
+import static javax.xml.transform.OutputKeys.METHOD;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.io.MDLRXNV2000Reader;
+import org.openscience.cdk.silent.Reaction;
+import static org.openscience.smsd.tools.BondEnergies.getInstance;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import uk.ac.ebi.reactionblast.containers.MappingContext;
+import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.getAggregate;
+
+/**
+ * A long running, warm JVM which accepts mapping (AAM), annotation (ANNOTATE)
+ * and comparison (COMPARE) jobs over HTTP on localhost. The jobs share one
+ * bounded mapping context (molecules, fingerprints, chirality, SMILES), kept
+ * warm for the lifetime of the server and dropped by {@link #stop(int)}, and
+ * the mapping algorithms of all the jobs run on one server wide pool. The
+ * jobs run on a bounded executor;
+ * requests beyond the max concurrency are queued up to the queue depth and
+ * rejected (503) afterwards. A job running longer than the job timeout is
+ * cancelled (504), which interrupts its mapping threads, and request bodies
+ * larger than the limit are refused (413).
+ * The connections are handled by a bounded pool; when it is saturated the
+ * accepting thread handles the request itself, which slows down new
+ * connections instead of dropping them.
+ *
+ * <pre>
+ * POST /aam?format=XML|TEXT[&amp;mappings=true][&amp;premap=true]   body: reaction SMILES or RXN
+ * POST /annotate?format=XML|TEXT[&amp;patterns=true][&amp;premap=true]
+ * POST /compare?format=XML|TEXT[&amp;patterns=true][&amp;premap=true] body: query and target reaction
+ * GET  /health
+ * GET  /metrics
+ * </pre>
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class AnnotationServer {
+
+    private static final Logger LOG = getLogger(AnnotationServer.class.getName());
+
+    /**
+     * Default port of the server
+     */
+    public static final int DEFAULT_PORT = 8899;
+
+    /**
+     * Default time a job may run, in milliseconds
+     */
+    public static final long DEFAULT_JOB_TIMEOUT = 300000L;
+
+    /**
+     * Default maximum size of a request body, in bytes
+     */
+    public static final int DEFAULT_MAX_BODY_SIZE = 10 * 1024 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService connections;
+    private final ThreadPoolExecutor jobs;
+    private final ThreadPoolExecutor mappers;
+    private final MappingContext context;
+    private final int maxConcurrency;
+    private final int queueDepth;
+    private final long jobTimeout;
+    private final int maxBodySize;
+    private final AtomicLong accepted;
+    private final AtomicLong rejected;
+    private final AtomicLong failed;
+    private final AtomicLong timedOut;
+    private final long startTime;
+
+    /**
+     *
+     * @param host bind address (localhost by default)
+     * @param port port
+     * @param maxConcurrency max number of jobs running in parallel
+     * @param queueDepth max number of jobs waiting for a free slot
+     * @throws IOException
+     */
+    public AnnotationServer(String host, int port, int maxConcurrency, int queueDepth) throws IOException {
+        this(host, port, maxConcurrency, queueDepth, DEFAULT_JOB_TIMEOUT, DEFAULT_MAX_BODY_SIZE);
+    }
+
+    /**
+     *
+     * @param host bind address (localhost by default)
+     * @param port port
+     * @param maxConcurrency max number of jobs running in parallel
+     * @param queueDepth max number of jobs waiting for a free slot
+     * @param jobTimeout time a job may take (queued and running), in
+     * milliseconds
+     * @param maxBodySize max size of a request body, in bytes
+     * @throws IOException
+     */
+    public AnnotationServer(String host, int port, int maxConcurrency, int queueDepth,
+            long jobTimeout, int maxBodySize) throws IOException {
+        if (maxConcurrency < 1 || queueDepth < 0) {
+            throw new IllegalArgumentException("Concurrency should be > 0 and queue depth >= 0");
+        }
+        if (jobTimeout <= 0 || maxBodySize <= 0) {
+            throw new IllegalArgumentException("Job timeout and max body size should be > 0");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.queueDepth = queueDepth;
+        this.jobTimeout = jobTimeout;
+        this.maxBodySize = maxBodySize;
+        this.accepted = new AtomicLong();
+        this.rejected = new AtomicLong();
+        this.failed = new AtomicLong();
+        this.timedOut = new AtomicLong();
+        this.jobs = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 0L, MILLISECONDS,
+                queueDepth == 0 ? new SynchronousQueue<>()
+                        : new ArrayBlockingQueue<>(queueDepth),
+                new ThreadPoolExecutor.AbortPolicy());
+        /*
+         * each running job maps with up to four algorithms in parallel
+         */
+        this.mappers = new ThreadPoolExecutor(4 * maxConcurrency, 4 * maxConcurrency, 0L, MILLISECONDS,
+                new LinkedBlockingQueue<>());
+        this.context = new MappingContext();
+        this.context.setExecutor(mappers);
+        /*
+         * a handler waits for its job, so there are enough handlers for the
+         * running and queued jobs plus a few for health checks and rejections
+         */
+        int handlers = maxConcurrency + queueDepth + 4;
+        this.connections = new ThreadPoolExecutor(handlers, handlers, 60L, SECONDS,
+                new ArrayBlockingQueue<>(handlers),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.server = HttpServer.create(new InetSocketAddress(host == null ? "127.0.0.1" : host, port), 0);
+        this.server.setExecutor(connections);
+        this.server.createContext("/aam", new JobHandler(JobType.AAM));
+        this.server.createContext("/annotate", new JobHandler(JobType.ANNOTATE));
+        this.server.createContext("/compare", new JobHandler(JobType.COMPARE));
+        this.server.createContext("/health", new HealthHandler());
+        this.server.createContext("/metrics", new MetricsHandler());
+        this.startTime = currentTimeMillis();
+    }
+
+    /**
+     * Warm up the shared resources and start accepting requests.
+     *
+     * @throws CDKException
+     */
+    public void start() throws CDKException {
+        getInstance();
+        server.start();
+        out.println("Server listening on http://" + server.getAddress().getHostString()
+                + ":" + getPort() + " (concurrency " + maxConcurrency + ", queue " + queueDepth + ")");
+    }
+
+    /**
+     * Stop accepting requests and wait (up to the delay) for the running jobs
+     *
+     * @param delay in seconds
+     */
+    public void stop(int delay) {
+        server.stop(delay);
+        jobs.shutdown();
+        try {
+            jobs.awaitTermination(delay, SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        jobs.shutdownNow();
+        mappers.shutdownNow();
+        connections.shutdownNow();
+        context.close();
+    }
+
+    /**
+     *
+     * @return mapping context shared by the jobs
+     */
+    MappingContext getContext() {
+        return context;
+    }
+
+    /**
+     *
+     * @return the bound port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     *
+     * @return health report as JSON
+     */
+    public String getHealth() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"status\":\"").append(jobs.isShutdown() ? "DOWN" : "UP").append("\"");
+        sb.append(",\"uptime_ms\":").append(currentTimeMillis() - startTime);
+        sb.append(",\"max_concurrency\":").append(maxConcurrency);
+        sb.append(",\"queue_depth\":").append(queueDepth);
+        sb.append(",\"active\":").append(jobs.getActiveCount());
+        sb.append(",\"queued\":").append(jobs.getQueue().size());
+        sb.append(",\"accepted\":").append(accepted.get());
+        sb.append(",\"completed\":").append(jobs.getCompletedTaskCount());
+        sb.append(",\"rejected\":").append(rejected.get());
+        sb.append(",\"failed\":").append(failed.get());
+        sb.append(",\"timed_out\":").append(timedOut.get());
+        sb.append("}");
+        return sb.toString();
+    }
+
+    enum JobType {
+        AAM, ANNOTATE, COMPARE
+    }
+
+    private class JobHandler implements HttpHandler {
+
+        private final JobType type;
+
+        JobHandler(JobType type) {
+            this.type = type;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                    send(exchange, 405, "text/plain", "Use POST");
+                    return;
+                }
+                Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+                String length = exchange.getRequestHeaders().getFirst("Content-Length");
+                long declared;
+                try {
+                    declared = length == null ? -1 : Long.parseLong(length.trim());
+                } catch (NumberFormatException ex) {
+                    send(exchange, 400, "text/plain", "Malformed Content-Length: " + length);
+                    return;
+                }
+                String body = declared > maxBodySize ? null : read(exchange.getRequestBody(), maxBodySize);
+                if (body == null) {
+                    send(exchange, 413, "text/plain", "Request body larger than " + maxBodySize + " bytes");
+                    return;
+                }
+                Future<String> future;
+                try {
+                    future = jobs.submit(new Job(type, params, body, context));
+                    accepted.incrementAndGet();
+                } catch (RejectedExecutionException ex) {
+                    rejected.incrementAndGet();
+                    exchange.getResponseHeaders().add("Retry-After", "1");
+                    send(exchange, 503, "text/plain", "Server busy, try again later");
+                    return;
+                }
+                try {
+                    String result = future.get(jobTimeout, MILLISECONDS);
+                    boolean xml = !"TEXT".equalsIgnoreCase(params.get("format"));
+                    send(exchange, 200, xml ? "application/xml" : "text/plain", result);
+                } catch (ExecutionException ex) {
+                    failed.incrementAndGet();
+                    Throwable cause = ex.getCause();
+                    int code = cause instanceof IllegalArgumentException ? 400 : 500;
+                    if (code == 500) {
+                        LOG.log(SEVERE, "Job failed", cause);
+                    }
+                    send(exchange, code, "text/plain", String.valueOf(cause.getMessage()));
+                } catch (TimeoutException ex) {
+                    /*
+                     * the job is interrupted, the handler is free right away
+                     */
+                    future.cancel(true);
+                    timedOut.incrementAndGet();
+                    send(exchange, 504, "text/plain", "Job timed out after " + jobTimeout + " ms");
+                } catch (InterruptedException ex) {
+                    future.cancel(true);
+                    Thread.currentThread().interrupt();
+                    send(exchange, 503, "text/plain", "Interrupted");
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    private class HealthHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                send(exchange, 200, "application/json", getHealth());
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    private class MetricsHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                send(exchange, 200, "application/json", getAggregate().toJSON());
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * One request, processed on its own Annotator as the settings are per
+     * instance, with the mapping context of the server.
+     */
+    static class Job implements Callable<String> {
+
+        private final JobType type;
+        private final Map<String, String> params;
+        private final String body;
+        private final MappingContext context;
+
+        Job(JobType type, Map<String, String> params, String body, MappingContext context) {
+            this.type = type;
+            this.params = params;
+            this.body = body;
+            this.context = context;
+        }
+
+        @Override
+        public String call() throws Exception {
+            Annotator annotator = new Annotator();
+            annotator.CONTEXT = context;
+            annotator.REMAP = !Boolean.parseBoolean(params.get("premap"));
+            annotator.REPORT_ALL_MAPPINGS = Boolean.parseBoolean(params.get("mappings"));
+            annotator.REPORT_MMP = Boolean.parseBoolean(params.get("patterns"));
+            annotator.REPORT_PATTERNS = type != JobType.AAM;
+            boolean xml = !"TEXT".equalsIgnoreCase(params.get("format"));
+
+            List<IReaction> reactions = parseReactions(annotator, body);
+            int expected = type == JobType.COMPARE ? 2 : 1;
+            if (reactions.size() != expected) {
+                throw new IllegalArgumentException("Expected " + expected
+                        + " reaction(s) (SMILES or RXN), found " + reactions.size());
+            }
+            String id = params.get("id");
+            if (id != null && expected == 1) {
+                reactions.get(0).setID(id);
+            }
+
+            Document doc = null;
+            Element rootElement = null;
+            StringBuilder sb = new StringBuilder();
+            if (xml) {
+                doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+                rootElement = doc.createElement("EC_BLAST");
+                doc.appendChild(rootElement);
+            }
+
+            ReactionMechanismTool query = annotator.getReactionMechanismTool(reactions.get(0), annotator.REMAP);
+            String queryID = reactions.get(0).getID() + (type == JobType.AAM ? "_AAM" : "");
+            if (type == JobType.COMPARE) {
+                ReactionMechanismTool target = annotator.getReactionMechanismTool(reactions.get(1), annotator.REMAP);
+                String targetID = reactions.get(1).getID();
+                if (xml) {
+                    annotator.compareRXNXML(query, queryID, target, targetID, doc, rootElement);
+                } else {
+                    annotator.compareRXNText(query, queryID, target, targetID, sb);
+                }
+            } else if (xml) {
+                annotator.annotateReactionAsXML(query, queryID, doc, rootElement);
+            } else {
+                annotator.annotateReactionAsText(query, queryID, sb);
+            }
+            return xml ? toString(doc) : sb.toString();
+        }
+
+        private static String toString(Document doc) throws Exception {
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(METHOD, "xml");
+            transformer.setOutputProperty(ENCODING, "UTF-8");
+            transformer.setOutputProperty(INDENT, "yes");
+            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+            doc.setXmlStandalone(true);
+            StringWriter writer = new StringWriter();
+            transformer.transform(new DOMSource(doc), new StreamResult(writer));
+            return writer.toString();
+        }
+    }
+
+    /**
+     * Reactions are either whitespace separated reaction SMILES or one or more
+     * MDL RXN blocks (each starting with $RXN).
+     */
+    static List<IReaction> parseReactions(ChemicalFormatParser parser, String body) throws Exception {
+        String input = body == null ? "" : body.trim();
+        if (!input.startsWith("$RXN")) {
+            return parser.parseReactionSMILES(input);
+        }
+        List<IReaction> reactions = new ArrayList<>();
+        String[] blocks = input.split("(?m)^(?=\\$RXN)");
+        int index = 1;
+        for (String block : blocks) {
+            if (block.trim().isEmpty()) {
+                continue;
+            }
+            try (MDLRXNV2000Reader reader = new MDLRXNV2000Reader(new StringReader(block))) {
+                IReaction reaction = reader.read(new Reaction());
+                reaction.setID(blocks.length > 1 ? "rxn_" + index : "rxn");
+                reactions.add(reaction);
+            }
+            index++;
+        }
+        return reactions;
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int idx = pair.indexOf('=');
+            String key = idx < 0 ? pair : pair.substring(0, idx);
+            String value = idx < 0 ? "true" : pair.substring(idx + 1);
+            params.put(URLDecoder.decode(key, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return params;
+    }
+
+    /*
+     * null if the body is larger than maxSize
+     */
+    private static String read(InputStream in, int maxSize) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = in.read(chunk)) != -1) {
+            if (buffer.size() + n > maxSize) {
+                return null;
+            }
+            buffer.write(chunk, 0, n);
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void send(HttpExchange exchange, int code, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=UTF-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.aamtool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.smiles.SmiFlavor;
+import org.openscience.cdk.smiles.SmilesGenerator;
+import uk.ac.ebi.reactionblast.fingerprints.interfaces.IFeature;
+import uk.ac.ebi.reactionblast.fingerprints.interfaces.IPatternFingerprinter;
+import uk.ac.ebi.reactionblast.mechanism.BondChangeCalculator;
+import uk.ac.ebi.reactionblast.mechanism.MappingSolution;
+import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+
+/**
+ * Writes one annotation record per reaction as soon as the reaction is
+ * annotated, nothing is kept once a record is written so the cost per
+ * reaction doesn't depend on the size of the batch. A record is buffered
+ * until it is complete, a reaction which fails leaves nothing in the
+ * output. The record layout is
+ * the same for all the formats, schema version {@value #SCHEMA_VERSION}:
+ *
+ * <pre>
+ * record
+ *   schema            schema version
+ *   id                reaction ID
+ *   status            MAPPED or UNMAPPED (no other field follows)
+ *   selected          selected mapping
+ *     algorithm       mapping algorithm
+ *     aam             reaction SMILES with the atom-atom mapping
+ *     score, chaos, smallest_fragment, sigma, stereo, energy, delta
+ *   rank              input atom index to AAM ID (unless user mappings are kept)
+ *     reactant, product   lists of atom
+ *   bond_changes      bond change fingerprints (patterns only)
+ *     formed_cleaved, order_changed, stereo_changed   lists of feature
+ *   reaction_centre   list of feature (patterns only)
+ *   stereo_changes    list of centre
+ *   mappings          list of mapping, every algorithm (all mappings only)
+ *     algorithm, aam, score, chaos, smallest_fragment, sigma, stereo, energy, delta
+ *
+ * feature             pattern, weight
+ * atom                input (input atom index), aam (AAM ID)
+ * centre              side (reactant/product), atom (ID), symbol, molecule (ID)
+ * </pre>
+ *
+ * Version 2 is the stable layout: later versions only add fields, they
+ * don't rename or remove any. It replaced the rank of version 1 (the text
+ * of the map) by lists of atom, a version 1 reader should check the schema
+ * field and read rank/reactant and rank/product as lists of atom, or skip
+ * the rank.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public abstract class AnnotationStreamWriter implements Closeable {
+
+    /**
+     * Version of the record layout
+     */
+    public static final int SCHEMA_VERSION = 2;
+    private static final Logger LOG = getLogger(AnnotationStreamWriter.class.getName());
+
+    private final boolean reportPatterns;
+    private final boolean reportAllMappings;
+    private final boolean remap;
+    private final SmilesGenerator smiles;
+    private long count;
+
+    /**
+     *
+     * @param reportPatterns write the bond change and reaction centre
+     * fingerprints
+     * @param reportAllMappings write the mapping of every algorithm
+     * @param remap the reactions were remapped (write the input rank)
+     */
+    protected AnnotationStreamWriter(boolean reportPatterns, boolean reportAllMappings, boolean remap) {
+        this.reportPatterns = reportPatterns;
+        this.reportAllMappings = reportAllMappings;
+        this.remap = remap;
+        this.smiles = new SmilesGenerator(
+                SmiFlavor.Unique
+                | SmiFlavor.UseAromaticSymbols
+                | SmiFlavor.AtomAtomMap);
+        this.count = 0;
+    }
+
+    /**
+     * Write the annotation record of a reaction. If the record can't be
+     * written it is discarded, the output is left as it was.
+     *
+     * @param reactionID
+     * @param rmt annotated reaction
+     * @throws IOException
+     */
+    public synchronized void write(String reactionID, ReactionMechanismTool rmt) throws IOException {
+        startRecord();
+        try {
+            writeRecord(reactionID, rmt);
+        } catch (IOException | RuntimeException ex) {
+            abortRecord();
+            throw ex;
+        }
+        endRecord();
+        count++;
+    }
+
+    private void writeRecord(String reactionID, ReactionMechanismTool rmt) throws IOException {
+        MappingSolution s = rmt.getSelectedSolution();
+        value("schema", SCHEMA_VERSION);
+        value("id", reactionID);
+        if (s == null) {
+            value("status", "UNMAPPED");
+            return;
+        }
+        value("status", "MAPPED");
+        try {
+            BondChangeCalculator bcc = s.getBondChangeCalculator();
+            startObject("selected");
+            writeMapping(s);
+            endObject();
+
+            if (remap) {
+                startObject("rank");
+                writeRank("reactant", s.getReactor().getInputRankLabelledAtomsReactant());
+                writeRank("product", s.getReactor().getInputRankLabelledAtomsProduct());
+                endObject();
+            }
+
+            if (reportPatterns) {
+                startObject("bond_changes");
+                writeFeatures("formed_cleaved", bcc.getFormedCleavedWFingerprint());
+                writeFeatures("order_changed", bcc.getOrderChangesWFingerprint());
+                writeFeatures("stereo_changed", bcc.getStereoChangesWFingerprint());
+                endObject();
+                writeFeatures("reaction_centre", bcc.getReactionCenterWFingerprint());
+            }
+
+            startArray("stereo_changes", "centre");
+            writeStereoCentres("reactant", bcc.getStereoCenterAtomsReactant());
+            writeStereoCentres("product", bcc.getStereoCenterAtomsProduct());
+            endArray();
+
+            if (reportAllMappings) {
+                startArray("mappings", "mapping");
+                for (MappingSolution m : rmt.getAllSolutions()) {
+                    startObject(null);
+                    writeMapping(m);
+                    endObject();
+                }
+                endArray();
+            }
+        } catch (CDKException ex) {
+            throw new IOException("Unable to annotate " + reactionID, ex);
+        }
+    }
+
+    private void writeMapping(MappingSolution m) throws IOException, CDKException {
+        value("algorithm", m.getAlgorithmID().description());
+        value("aam", smiles.create(m.getBondChangeCalculator().getReactionWithCompressUnChangedHydrogens()));
+        value("score", m.getTotalBondChanges() + m.getTotalFragmentChanges());
+        value("chaos", m.getTotalFragmentChanges());
+        value("smallest_fragment", m.getSmallestFragmentCount());
+        value("sigma", m.getTotalCarbonBondChanges());
+        value("stereo", m.getTotalStereoChanges());
+        value("energy", m.getBondEnergySum());
+        value("delta", m.getEnergyDelta());
+    }
+
+    private void writeFeatures(String name, IPatternFingerprinter fingerprint) throws IOException {
+        startArray(name, "feature");
+        for (IFeature feature : fingerprint.getFeatures()) {
+            startObject(null);
+            value("pattern", feature.getPattern());
+            value("weight", feature.getWeight());
+            endObject();
+        }
+        endArray();
+    }
+
+    private void writeRank(String name, Map<Integer, Integer> rank) throws IOException {
+        Map<Integer, Integer> sorted;
+        synchronized (rank) {
+            sorted = new TreeMap<>(rank);
+        }
+        startArray(name, "atom");
+        for (Map.Entry<Integer, Integer> e : sorted.entrySet()) {
+            startObject(null);
+            value("input", e.getKey());
+            value("aam", e.getValue());
+            endObject();
+        }
+        endArray();
+    }
+
+    private void writeStereoCentres(String side, Map<IAtom, String> centres) throws IOException {
+        synchronized (centres) {
+            for (Map.Entry<IAtom, String> e : centres.entrySet()) {
+                startObject(null);
+                value("side", side);
+                value("atom", e.getKey().getID());
+                value("symbol", e.getKey().getSymbol());
+                value("molecule", e.getValue());
+                endObject();
+            }
+        }
+    }
+
+    /**
+     * @return number of records written
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Start a record.
+     *
+     * @throws IOException
+     */
+    protected abstract void startRecord() throws IOException;
+
+    /**
+     * End a record and write it to the output.
+     *
+     * @throws IOException
+     */
+    protected abstract void endRecord() throws IOException;
+
+    /**
+     * Discard the record started, nothing of it is written.
+     */
+    protected abstract void abortRecord();
+
+    /**
+     *
+     * @param name field name, null inside an array
+     * @throws IOException
+     */
+    protected abstract void startObject(String name) throws IOException;
+
+    /**
+     *
+     * @throws IOException
+     */
+    protected abstract void endObject() throws IOException;
+
+    /**
+     *
+     * @param name field name
+     * @param itemName name of the items (formats which name them)
+     * @throws IOException
+     */
+    protected abstract void startArray(String name, String itemName) throws IOException;
+
+    /**
+     *
+     * @throws IOException
+     */
+    protected abstract void endArray() throws IOException;
+
+    /**
+     *
+     * @param name
+     * @param value text, null is written as null/empty
+     * @throws IOException
+     */
+    protected abstract void value(String name, String value) throws IOException;
+
+    /**
+     *
+     * @param name
+     * @param value
+     * @throws IOException
+     */
+    protected abstract void value(String name, long value) throws IOException;
+
+    /**
+     *
+     * @param name
+     * @param value
+     * @throws IOException
+     */
+    protected abstract void value(String name, double value) throws IOException;
+}
@@ -20,8 +20,11 @@ package uk.ac.ebi.aamtool;
 
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import static java.lang.System.err;
 import static java.lang.System.getProperty;
 import static java.lang.System.out;
@@ -45,6 +48,7 @@ import static org.openscience.cdk.tools.manipulator.AtomContainerSetManipulator.
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import uk.ac.ebi.reactionblast.containers.MappingContext;
 import uk.ac.ebi.reactionblast.fingerprints.PatternFingerprinter;
 import uk.ac.ebi.reactionblast.fingerprints.ReactionFingerprinter;
 import uk.ac.ebi.reactionblast.fingerprints.interfaces.IPatternFingerprinter;
@@ -53,7 +57,11 @@ import uk.ac.ebi.reactionblast.mechanism.MappingSolution;
 import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
 import uk.ac.ebi.reactionblast.mechanism.helper.MoleculeMoleculePair;
 import static uk.ac.ebi.reactionblast.tools.ReactionSimilarityTool.getSimilarity;
+import uk.ac.ebi.reactionblast.tools.ReactionImageService.Format;
 import uk.ac.ebi.reactionblast.tools.StandardizeReaction;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.IMAGE;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.getAggregate;
+import uk.ac.ebi.reactionblast.tools.metrics.Timer;
 
 /**
  * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
@@ -100,6 +108,21 @@ public class Annotator extends Helper {
      */
     protected String PREFIX;
 
+    /**
+     *
+     */
+    protected boolean REPORT_METRICS;
+
+    /**
+     * Format of the images (-g)
+     */
+    protected Format IMAGE_FORMAT;
+
+    /**
+     * Caches used while mapping (the JVM wide ones by default)
+     */
+    protected MappingContext CONTEXT = MappingContext.getDefault();
+
     Annotator() {
         this.REPORT_ALL_MAPPINGS = false;
         this.GENERATE_IMAGE = false;
@@ -107,7 +130,9 @@ public class Annotator extends Helper {
         this.REPORT_MMP = false;
         this.REPORT_PATTERNS = false;
         this.REMAP = true;
+        this.IMAGE_FORMAT = Format.PNG;
         this.PREFIX = "";
+        this.REPORT_METRICS = false;
     }
 
     /**
@@ -127,7 +152,7 @@ public class Annotator extends Helper {
         } else {
             cdkReaction.setFlag(MAPPED, false);
         }
-        rmt = new ReactionMechanismTool(cdkReaction, reMap, true, false, new StandardizeReaction());
+        rmt = new ReactionMechanismTool(cdkReaction, reMap, true, false, new StandardizeReaction(), CONTEXT);
         return rmt;
     }
 
@@ -148,24 +173,98 @@ public class Annotator extends Helper {
         }
         File writeRXNMappedFile = writeRXNMappedFile(new File(".").getCanonicalPath(), s.getBondChangeCalculator().getReaction(), reactionID);
         out.println("Mapped RXN File " + writeRXNMappedFile.getAbsolutePath());
-        if (GENERATE_IMAGE) {
-            try {
-                File generateImage = generateImage(new File(".").getCanonicalPath(), s.getBondChangeCalculator().getReactionWithCompressUnChangedHydrogens(), reactionID);
+        if (!GENERATE_IMAGE && !GENERATE_AAMIMAGE) {
+            return true;
+        }
+        Timer.Context image = mech.getMetrics().time(IMAGE);
+        try {
+            if (GENERATE_IMAGE) {
+                File generateImage = generateImage(new File(".").getCanonicalPath(), s.getBondChangeCalculator().getReactionWithCompressUnChangedHydrogens(), reactionID, IMAGE_FORMAT);
                 out.println("Annotated RXN Image " + generateImage.getAbsolutePath());
-            } catch (Exception e) {
-                getLogger(Annotator.class.getName()).log(SEVERE, "Unable to generate AAM image", e);
-            }
-        } else if (!GENERATE_IMAGE && GENERATE_AAMIMAGE) {
-            try {
-                File generateImage = generateAAMImage(new File(".").getCanonicalPath(), s.getBondChangeCalculator().getReactionWithCompressUnChangedHydrogens(), reactionID);
+            } else {
+                File generateImage = generateAAMImage(new File(".").getCanonicalPath(), s.getBondChangeCalculator().getReactionWithCompressUnChangedHydrogens(), reactionID, IMAGE_FORMAT);
                 out.println("Annotated RXN Image " + generateImage.getAbsolutePath());
-            } catch (Exception e) {
-                getLogger(Annotator.class.getName()).log(SEVERE, "Unable to generate AAM image", e);
             }
+        } catch (Exception e) {
+            getLogger(Annotator.class.getName()).log(SEVERE, "Unable to generate AAM image", e);
+        } finally {
+            /*
+             * the reaction metrics were merged into the aggregate at the end
+             * of the mapping, add the image time to both
+             */
+            getAggregate().record(IMAGE, image.stop());
         }
         return true;
     }
 
+    /**
+     * Write the per stage timings and counters of the reactions (and the
+     * aggregate of all the reactions processed by this JVM) as JSON.
+     *
+     * @param jobID
+     * @param mechs
+     * @return metrics file
+     * @throws IOException
+     */
+    protected File writeMetrics(String jobID, ReactionMechanismTool... mechs) throws IOException {
+        File file = new File(new File(".").getCanonicalPath(), jobID + "_metrics.json");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+            writer.write("{\"reactions\":[");
+            for (int i = 0; i < mechs.length; i++) {
+                if (i > 0) {
+                    writer.write(",");
+                }
+                writer.write(mechs[i].getMetrics().toJSON());
+            }
+            writer.write("],\"aggregate\":");
+            writer.write(getAggregate().toJSON());
+            writer.write("}");
+            writer.write(NEW_LINE);
+        }
+        out.println("Metrics are presented in json format: " + file.getAbsolutePath());
+        return file;
+    }
+
+    /**
+     *
+     * @param format output format
+     * @return true if the annotations of a run are written to one stream
+     * ({@link #openAnnotationWriter})
+     */
+    protected static boolean isStreamFormat(String format) {
+        return format != null
+                && (format.equalsIgnoreCase("JSON") || format.equalsIgnoreCase("XML_STREAM"));
+    }
+
+    /**
+     * Open the annotation stream of a run, every reaction of the run is
+     * written to it as one record (see {@link AnnotationStreamWriter} for the
+     * schema): line delimited JSON (JSON, jobID.jsonl) or StAX XML
+     * (XML_STREAM, jobID_stream.xml).
+     *
+     * @param jobID
+     * @param format JSON or XML_STREAM
+     * @return annotation writer, to be closed at the end of the run
+     * @throws IOException
+     */
+    protected AnnotationStreamWriter openAnnotationWriter(String jobID, String format) throws IOException {
+        String rootPath = new File(".").getCanonicalPath();
+        if (format.equalsIgnoreCase("JSON")) {
+            File file = new File(rootPath, jobID + ".jsonl");
+            out.println("Output is presented in json format: " + file.getAbsolutePath());
+            return new JSONAnnotationWriter(
+                    new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8")),
+                    REPORT_PATTERNS, REPORT_ALL_MAPPINGS, REMAP);
+        } else if (format.equalsIgnoreCase("XML_STREAM")) {
+            File file = new File(rootPath, jobID + "_stream.xml");
+            out.println("Output is presented in xml format: " + file.getAbsolutePath());
+            return new XMLAnnotationWriter(
+                    new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8")),
+                    REPORT_PATTERNS, REPORT_ALL_MAPPINGS, REMAP);
+        }
+        throw new IllegalArgumentException("Not a stream format: " + format);
+    }
+
     /**
      *
      * @param results
@@ -25,7 +25,6 @@ import java.io.FileReader;
 import java.io.IOException;
 import static java.lang.String.format;
 import static java.lang.System.err;
-import static java.lang.System.exit;
 import java.util.ArrayList;
 import java.util.List;
 import static java.util.logging.Level.INFO;
@@ -42,9 +41,9 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IReaction;
 import org.openscience.cdk.io.CMLReader;
 import static org.openscience.cdk.io.IChemObjectReader.Mode.RELAXED;
-import org.openscience.cdk.io.Mol2Reader;
 import org.openscience.cdk.smiles.SmilesParser;
 import static uk.ac.ebi.aamtool.Annotator.NEW_LINE;
+import uk.ac.ebi.reactionblast.io.stream.ReactionRecordReader;
 import uk.ac.ebi.reactionblast.tools.rxnfile.MDLRXNV2000Reader;
 import uk.ac.ebi.reactionblast.tools.rxnfile.MDLV2000Reader;
 
@@ -59,8 +58,7 @@ class ChemicalFormatParser {
     protected IReaction parseCML(String input) throws FileNotFoundException, CDKException {
         File f = new File(input);
         if (!f.isFile()) {
-            getLogger(ChemicalFormatParser.class.getName()).log(WARNING, format("CML file not found! " + f.getName()));
-            exit(1);
+            throw new FileNotFoundException("CML file not found! " + f.getName());
         }
         String[] split = f.getName().split(".cml");
         CMLReader cmlReader = new CMLReader(new FileInputStream(input));
@@ -87,7 +85,7 @@ class ChemicalFormatParser {
             File filepath = new File(fileName);
             if (!filepath.isFile()) {
                 getLogger(ChemicalFormatParser.class.getName()).log(WARNING, format("RXN file not found! %s", filepath.getName()));
-                exit(1);
+                continue;
             }
             try {
                 getLogger(ChemicalFormatParser.class.getName()).log(INFO, "Annotating Reaction {0}", filepath.getName());
@@ -159,8 +157,7 @@ class ChemicalFormatParser {
     protected IReaction parseMOL2(String input) throws FileNotFoundException, CDKException {
         File f = new File(input);
         if (!f.isFile()) {
-            getLogger(ChemicalFormatParser.class.getName()).log(WARNING, format("Mol2 file not found! " + f.getName()));
-            exit(1);
+            throw new FileNotFoundException("Mol2 file not found! " + f.getName());
         }
 
         String[] split = f.getName().split(".mol");
@@ -177,16 +174,73 @@ class ChemicalFormatParser {
     protected IReaction parseSDF(String input) throws FileNotFoundException, CDKException {
         File f = new File(input);
         if (!f.isFile()) {
-            getLogger(ChemicalFormatParser.class.getName()).log(WARNING, format("SDF file not found! " + f.getName()));
-            exit(1);
+            throw new FileNotFoundException("SDF file not found! " + f.getName());
         }
         String[] split = f.getName().split(".sdf");
-        Mol2Reader mol2Reader = new Mol2Reader(new FileReader(input));
-        AtomContainer ac = mol2Reader.read(new AtomContainer());
+        MDLV2000Reader mdlV2000Reader = new MDLV2000Reader(
+                new FileReader(input), RELAXED);
+        AtomContainer ac = mdlV2000Reader.read(new AtomContainer());
         IReaction r = new Reaction();
         r.addReactant(ac, 1.0);
         r.addProduct(ac, 1.0);
         r.setID(split[0]);
         return r;
     }
+
+    /**
+     * Lazily read the records of a multi-record file (reaction SMILES with an
+     * ID column, RXN, RDF or SDF). Unreadable records are returned as error
+     * records.
+     *
+     * @param input file name
+     * @param type format (SMI/RXN/RDF/SDF), guessed from the file extension
+     * if null
+     * @return record reader, to be closed by the caller
+     * @throws FileNotFoundException
+     * @throws IllegalArgumentException if the type isn't one of the formats
+     */
+    protected ReactionRecordReader parseReactionRecords(String input, String type) throws FileNotFoundException {
+        File f = new File(input);
+        if (!f.isFile()) {
+            throw new FileNotFoundException("Reaction file not found! " + f.getName());
+        }
+        if (type == null) {
+            return new ReactionRecordReader(f);
+        }
+        ReactionRecordReader.Format recordFormat = getRecordFormat(type);
+        if (recordFormat == null) {
+            throw new IllegalArgumentException("Unknown input file type " + type
+                    + ", use one of " + getRecordFormats());
+        }
+        return new ReactionRecordReader(f, recordFormat);
+    }
+
+    /**
+     *
+     * @param type input file type, any case
+     * @return format of the type, null if it isn't one of the record formats
+     */
+    protected static ReactionRecordReader.Format getRecordFormat(String type) {
+        for (ReactionRecordReader.Format recordFormat : ReactionRecordReader.Format.values()) {
+            if (recordFormat.name().equalsIgnoreCase(type)) {
+                return recordFormat;
+            }
+        }
+        return null;
+    }
+
+    /**
+     *
+     * @return the record formats, as listed in the usage (SMI/RXN/RDF/SDF)
+     */
+    protected static String getRecordFormats() {
+        StringBuilder sb = new StringBuilder();
+        for (ReactionRecordReader.Format recordFormat : ReactionRecordReader.Format.values()) {
+            if (sb.length() > 0) {
+                sb.append('/');
+            }
+            sb.append(recordFormat.name());
+        }
+        return sb.toString();
+    }
 }
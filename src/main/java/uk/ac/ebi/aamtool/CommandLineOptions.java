@@ -47,10 +47,12 @@ public class CommandLineOptions {
         optionsAAM.addOption("q", "query", true, "Query");
         optionsAAM.addOption("j", "job", true, "Task (AAM)");
         optionsAAM.addOption("g", "image", false, "create png of the mapping");
+        optionsAAM.addOption("G", "imageFormat", true, "Image format (PNG/SVG), SVG is written without a raster");
         optionsAAM.addOption("m", "mappings", false, "Report all mappings");
         optionsAAM.addOption("u", "premap", false, "use user defined mappings");
         optionsAAM.addOption("p", "prefix", true, "Job prefix");
-        optionsAAM.addOption("f", "formatO", true, "Output format (TEXT/XML)");
+        optionsAAM.addOption("f", "formatO", true, "Output format (TEXT/XML/JSON/XML_STREAM), JSON and XML_STREAM write every reaction to one file");
+        optionsAAM.addOption("M", "metrics", false, "Report per stage timings and counters (JSON)");
 
         return optionsAAM;
     }
@@ -67,9 +69,11 @@ public class CommandLineOptions {
         optionsCompare.addOption("j", "job", true, "Task (ANNOTATE)");
         optionsCompare.addOption("u", "premap", false, "use user defined mappings");
         optionsCompare.addOption("g", "image", false, "create png of the mapping");
+        optionsCompare.addOption("G", "imageFormat", true, "Image format (PNG/SVG), SVG is written without a raster");
         optionsCompare.addOption("p", "prefix", true, "Job prefix");
-        optionsCompare.addOption("f", "formatO", true, "Output format (TEXT/XML/BOTH)");
+        optionsCompare.addOption("f", "formatO", true, "Output format (TEXT/XML/BOTH/JSON/XML_STREAM), JSON and XML_STREAM write every reaction to one file");
         optionsCompare.addOption("x", "patterns", false, "Report all matched molecular pairs (RPAIR type)");
+        optionsCompare.addOption("M", "metrics", false, "Report per stage timings and counters (JSON)");
         return optionsCompare;
     }
 
@@ -87,10 +91,50 @@ public class CommandLineOptions {
         optionsCompare.addOption("t", "target", true, "Target");
         optionsCompare.addOption("j", "job", true, "Task (COMPARE)");
         optionsCompare.addOption("g", "image", false, "create png of the mapping");
+        optionsCompare.addOption("G", "imageFormat", true, "Image format (PNG/SVG), SVG is written without a raster");
         optionsCompare.addOption("p", "prefix", true, "Job prefix");
         optionsCompare.addOption("f", "formatO", true, "Output format (TEXT/XML/BOTH)");
         optionsCompare.addOption("x", "patterns", false, "Report all matched molecular pairs (RPAIR type)");
+        optionsCompare.addOption("M", "metrics", false, "Report per stage timings and counters (JSON)");
         return optionsCompare;
     }
 
+    /**
+     *
+     * @return
+     */
+    protected Options createServerOptions() {
+        Options optionsServer = new Options();
+        optionsServer.addOption("h", "help", false, "Help page for command usage");
+        optionsServer.addOption("j", "job", true, "Task (SERVER)");
+        optionsServer.addOption("b", "bind", true, "Bind address (default 127.0.0.1)");
+        optionsServer.addOption("P", "port", true, "Port (default " + AnnotationServer.DEFAULT_PORT + ")");
+        optionsServer.addOption("c", "concurrency", true, "Max number of jobs running in parallel (default no. of cores)");
+        optionsServer.addOption("d", "queue", true, "Max number of jobs waiting in the queue (default 64)");
+        optionsServer.addOption("w", "timeout", true, "Max time per job in seconds (default "
+                + AnnotationServer.DEFAULT_JOB_TIMEOUT / 1000 + ")");
+        optionsServer.addOption("m", "max-body", true, "Max request size in bytes (default "
+                + AnnotationServer.DEFAULT_MAX_BODY_SIZE + ")");
+        return optionsServer;
+    }
+
+    /**
+     *
+     * @return
+     */
+    protected Options createBatchOptions() {
+        Options optionsBatch = new Options();
+        optionsBatch.addOption("h", "help", false, "Help page for command usage");
+        optionsBatch.addOption("j", "job", true, "Task (BATCH)");
+        optionsBatch.addOption("q", "query", true, "Input directory of RXN files, or a multi-record SMI/RXN/RDF/SDF file");
+        optionsBatch.addOption("Q", "formatQ", true, "Input file type (SMI/RXN/RDF/SDF, default from the file extension)");
+        optionsBatch.addOption("o", "output", true, "Output directory (segments, journal and retry list)");
+        optionsBatch.addOption("r", "resume", false, "Resume, skipping the reactions already in the journal");
+        optionsBatch.addOption("R", "retry", false, "Re-run only the failed/timed out reactions of the journal");
+        optionsBatch.addOption("w", "timeout", true, "Time budget per reaction in seconds (default unlimited)");
+        optionsBatch.addOption("s", "segment", true, "Reactions per output segment (default 100)");
+        optionsBatch.addOption("b", "binary", true, "Also write the reactions mapped by this run to a binary file (RDTB)");
+        return optionsBatch;
+    }
+
 }
@@ -33,7 +33,10 @@ import org.apache.commons.cli.Options;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IReaction;
 import static uk.ac.ebi.aamtool.Annotator.NEW_LINE;
-import uk.ac.ebi.reactionblast.tools.ImageGenerator;
+import uk.ac.ebi.reactionblast.tools.ReactionImageService.Format;
+import static uk.ac.ebi.reactionblast.tools.ReactionImageService.Style.LEFT_TO_RIGHT;
+import static uk.ac.ebi.reactionblast.tools.ReactionImageService.Style.TOP_TO_BOTTOM;
+import static uk.ac.ebi.reactionblast.tools.ReactionImageService.getInstance;
 import uk.ac.ebi.reactionblast.tools.rxnfile.MDLV2000RXNWriter;
 
 /**
@@ -161,16 +164,14 @@ class Helper extends ChemicalFormatParser {
     }
 
     protected File generateImage(
-            String canonicalRootPath, IReaction mappedReaction, String reactionID) throws Exception {
+            String canonicalRootPath, IReaction mappedReaction, String reactionID, Format format) throws Exception {
         File file = new File(canonicalRootPath);
-        new ImageGenerator().drawLeftToRightReactionLayout(file, mappedReaction, reactionID);
-        return new File(file.getCanonicalFile(), reactionID + ".png");
+        return getInstance().render(mappedReaction, LEFT_TO_RIGHT, format, file.getCanonicalFile(), reactionID);
     }
 
-    protected File generateAAMImage(String canonicalRootPath, IReaction mappedReaction, String reactionID) throws Exception {
+    protected File generateAAMImage(String canonicalRootPath, IReaction mappedReaction, String reactionID, Format format) throws Exception {
         File file = new File(canonicalRootPath);
-        new ImageGenerator().drawTopToBottomReactionLayout(file, mappedReaction, reactionID);
-        return new File(file.getCanonicalFile(), reactionID + ".png");
+        return getInstance().render(mappedReaction, TOP_TO_BOTTOM, format, file.getCanonicalFile(), reactionID);
     }
 
     protected File writeRXNMappedFile(String canonicalRootPath, IReaction mappedReaction, String name) throws IOException, CDKException {
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.aamtool;
+
+import java.io.IOException;
+import java.io.Writer;
+import static java.lang.String.format;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+
+/**
+ * Line delimited JSON annotation writer, one JSON object per reaction and
+ * line (see {@link AnnotationStreamWriter} for the record layout).
+ *
+ * <pre>
+ * {"schema":2,"id":"R1","status":"MAPPED","selected":{"algorithm":"MIN","aam":"[CH3:1]..",..},..}
+ * </pre>
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class JSONAnnotationWriter extends AnnotationStreamWriter {
+
+    private static final Logger LOG = getLogger(JSONAnnotationWriter.class.getName());
+    private final Writer writer;
+    /*
+     * the record being written
+     */
+    private final StringBuilder record;
+    /*
+     * true while the current object/array has no member yet
+     */
+    private final Deque<Boolean> first;
+
+    /**
+     *
+     * @param writer output, closed with this writer
+     * @param reportPatterns
+     * @param reportAllMappings
+     * @param remap
+     */
+    public JSONAnnotationWriter(Writer writer, boolean reportPatterns, boolean reportAllMappings, boolean remap) {
+        super(reportPatterns, reportAllMappings, remap);
+        this.writer = writer;
+        this.record = new StringBuilder();
+        this.first = new ArrayDeque<>();
+    }
+
+    @Override
+    protected void startRecord() throws IOException {
+        first.clear();
+        record.setLength(0);
+        record.append('{');
+        first.push(true);
+    }
+
+    @Override
+    protected void endRecord() throws IOException {
+        record.append('}').append('\n');
+        first.clear();
+        writer.write(record.toString());
+        record.setLength(0);
+        writer.flush();
+    }
+
+    @Override
+    protected void abortRecord() {
+        first.clear();
+        record.setLength(0);
+    }
+
+    @Override
+    protected void startObject(String name) throws IOException {
+        member(name);
+        record.append('{');
+        first.push(true);
+    }
+
+    @Override
+    protected void endObject() throws IOException {
+        first.pop();
+        record.append('}');
+    }
+
+    @Override
+    protected void startArray(String name, String itemName) throws IOException {
+        member(name);
+        record.append('[');
+        first.push(true);
+    }
+
+    @Override
+    protected void endArray() throws IOException {
+        first.pop();
+        record.append(']');
+    }
+
+    @Override
+    protected void value(String name, String value) throws IOException {
+        member(name);
+        record.append(quote(value));
+    }
+
+    @Override
+    protected void value(String name, long value) throws IOException {
+        member(name);
+        record.append(Long.toString(value));
+    }
+
+    @Override
+    protected void value(String name, double value) throws IOException {
+        member(name);
+        /*
+         * JSON has no NaN or Infinity
+         */
+        record.append(Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value));
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void member(String name) throws IOException {
+        if (!first.peek()) {
+            record.append(',');
+        } else {
+            first.pop();
+            first.push(false);
+        }
+        if (name != null) {
+            record.append(quote(name));
+            record.append(':');
+        }
+    }
+
+    private static String quote(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+        return sb.toString();
+    }
+}
@@ -27,6 +27,7 @@ import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import static java.lang.System.err;
 import static java.lang.System.out;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -49,9 +50,19 @@ import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IReaction;
 import org.w3c.dom.Document;
+import uk.ac.ebi.reactionblast.interfaces.IDataStore;
+import uk.ac.ebi.reactionblast.io.binary.BinaryReactionDataStore;
+import uk.ac.ebi.reactionblast.io.filesystem.FilesystemReactionDataSource;
+import uk.ac.ebi.reactionblast.io.filesystem.SegmentedReactionDataStore;
+import uk.ac.ebi.reactionblast.io.stream.ReactionRecordReader;
 import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+import uk.ac.ebi.reactionblast.tools.ReactionImageService.Format;
+import uk.ac.ebi.reactionblast.tools.bulk.BatchJournal;
+import uk.ac.ebi.reactionblast.tools.bulk.CheckpointedBulkTransformer;
+import uk.ac.ebi.reactionblast.tools.bulk.MappingTransformation;
 
 /**
  * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
@@ -78,6 +89,12 @@ public class ReactionDecoder extends Annotator {
             CommandLine compareLine = parser2.parse(createCompareOptions, args, true);
             DefaultParser parser3 = new DefaultParser();
             CommandLine annotateLine = parser3.parse(createAnnotateOptions, args, true);
+            Options createServerOptions = cmd.createServerOptions();
+            DefaultParser parser4 = new DefaultParser();
+            CommandLine serverLine = parser4.parse(createServerOptions, args, true);
+            Options createBatchOptions = cmd.createBatchOptions();
+            DefaultParser parser5 = new DefaultParser();
+            CommandLine batchLine = parser5.parse(createBatchOptions, args, true);
 
             /*
              * Print the Header
@@ -108,6 +125,23 @@ public class ReactionDecoder extends Annotator {
                 ReactionDecoder rxn = new ReactionDecoder();
                 rxn.AnnotateTask(annotateLine, createAnnotateOptions);
 
+            } else if (serverLine.hasOption('j') && serverLine.getOptionValue("j").equalsIgnoreCase("SERVER")
+                    && !serverLine.hasOption('h')) {
+
+                out.println("-- SERVER --");
+                ReactionDecoder rxn = new ReactionDecoder();
+                rxn.ServerTask(serverLine);
+
+            } else if (batchLine.hasOption('j') && batchLine.getOptionValue("j").equalsIgnoreCase("BATCH")
+                    && batchLine.hasOption('q') && batchLine.hasOption('o')) {
+
+                out.println("-- BATCH --");
+                ReactionDecoder rxn = new ReactionDecoder();
+                rxn.BatchTask(batchLine);
+
+            } else if (batchLine.hasOption('j') && batchLine.getOptionValue("j").equalsIgnoreCase("BATCH")) {
+                out.println("-- BATCH USAGE --");
+                printHelp(out, createBatchOptions);
             } else if (aamLine.hasOption('j') && aamLine.getOptionValue("j").equalsIgnoreCase("AAM")) {
                 out.println("-- AAM USAGE --");
                 printHelp(out, createAAMOptions);
@@ -123,6 +157,8 @@ public class ReactionDecoder extends Annotator {
                 options.put("Atom-Atom Mapping (AAM-Tool)", createAAMOptions);
                 options.put("Reaction Annotation (RA-Tool)", createAnnotateOptions);
                 options.put("Reaction Comparison (RC-Tool)", createCompareOptions);
+                options.put("Warm Server (AAM/RA/RC over HTTP)", createServerOptions);
+                options.put("Batch Atom-Atom Mapping (resumable)", createBatchOptions);
                 printHelp(options, 80, "EC-BLAST", "End of Help",
                         5, 3, true, out);
             }
@@ -199,6 +235,9 @@ public class ReactionDecoder extends Annotator {
             GENERATE_IMAGE = false;
             GENERATE_AAMIMAGE = true;
         }
+        if (aamLine.hasOption('G')) {
+            IMAGE_FORMAT = Format.valueOf(aamLine.getOptionValue("G").toUpperCase());
+        }
 
         if (aamLine.hasOption('p')) {
             PREFIX = aamLine.getOptionValue("p");
@@ -208,12 +247,18 @@ public class ReactionDecoder extends Annotator {
             REMAP = false;
         }
 
+        if (aamLine.hasOption('M')) {
+            REPORT_METRICS = true;
+        }
+
         IReaction reaction = null;
+        List<IReaction> reactions = new ArrayList<>();
 
         switch (aamLine.getOptionValue("Q")) {
             case "SMI":
                 if (optionValue.contains(">>")) {
                     List<IReaction> parseReactions = parseReactionSMILES(optionValue);
+                    reactions.addAll(parseReactions);
                     if (parseReactions.iterator().hasNext()) {
                         reaction = parseReactions.iterator().next();
                     }
@@ -223,6 +268,7 @@ public class ReactionDecoder extends Annotator {
                 break;
             case "RXN":
                 List<IReaction> parseReactions = parseRXN(optionValue);
+                reactions.addAll(parseReactions);
                 if (parseReactions.iterator().hasNext()) {
                     reaction = parseReactions.iterator().next();
                 }
@@ -237,6 +283,11 @@ public class ReactionDecoder extends Annotator {
             return;
         }
 
+        if (isStreamFormat(aamLine.getOptionValue("f"))) {
+            annotateAsStream(reactions, "AAM", aamLine.getOptionValue("f"));
+            return;
+        }
+
         String jobFileName;
 
         if (!PREFIX.isEmpty()) {
@@ -247,6 +298,9 @@ public class ReactionDecoder extends Annotator {
 
         ReactionMechanismTool annotateReaction = getReactionMechanismTool(reaction, REMAP);
         boolean writeFiles = writeFiles(jobFileName, annotateReaction);
+        if (REPORT_METRICS) {
+            writeMetrics(jobFileName, annotateReaction);
+        }
 
         if (writeFiles && aamLine.getOptionValue("f").equalsIgnoreCase("XML")) {
             DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
@@ -292,6 +346,35 @@ public class ReactionDecoder extends Annotator {
         }
     }
 
+    /*
+     * All the reactions of the run are written to one annotation stream, a
+     * reaction which can't be annotated is skipped
+     */
+    private void annotateAsStream(List<IReaction> reactions, String task, String format) throws IOException {
+        String runFileName = PREFIX.isEmpty() ? "ECBLAST_" + task : PREFIX + "_ECBLAST_" + task;
+        try (AnnotationStreamWriter writer = openAnnotationWriter(runFileName, format)) {
+            for (IReaction reaction : reactions) {
+                String jobFileName;
+                if (!PREFIX.isEmpty()) {
+                    jobFileName = PREFIX + "_ECBLAST_" + reaction.getID() + "_" + task;
+                } else {
+                    jobFileName = "ECBLAST_" + reaction.getID() + "_" + task;
+                }
+                try {
+                    ReactionMechanismTool annotateReaction = getReactionMechanismTool(reaction, REMAP);
+                    writeFiles(jobFileName, annotateReaction);
+                    if (REPORT_METRICS) {
+                        writeMetrics(jobFileName, annotateReaction);
+                    }
+                    writer.write(reaction.getID(), annotateReaction);
+                } catch (Exception ex) {
+                    LOG.log(SEVERE, "Unable to annotate " + reaction.getID(), ex);
+                }
+            }
+            out.println("Annotated reactions: " + writer.getCount());
+        }
+    }
+
     private void CompareTask(CommandLine compareLine, Options createCompareOptions)
             throws ParserConfigurationException, Exception {
 
@@ -307,6 +390,9 @@ public class ReactionDecoder extends Annotator {
             GENERATE_IMAGE = true;
             GENERATE_AAMIMAGE = false;
         }
+        if (compareLine.hasOption('G')) {
+            IMAGE_FORMAT = Format.valueOf(compareLine.getOptionValue("G").toUpperCase());
+        }
         if (compareLine.hasOption('p')) {
             PREFIX = compareLine.getOptionValue("p");
         }
@@ -315,6 +401,10 @@ public class ReactionDecoder extends Annotator {
             REMAP = false;
         }
 
+        if (compareLine.hasOption('M')) {
+            REPORT_METRICS = true;
+        }
+
         if (compareLine.hasOption('x')) {
             REPORT_MMP = true;
         }
@@ -407,6 +497,9 @@ public class ReactionDecoder extends Annotator {
         boolean writeFiles2 = writeFiles(jobFileNameTarget, annotateReactionT);
 
         boolean writeFiles = writeFiles1 && writeFiles2;
+        if (REPORT_METRICS) {
+            writeMetrics(jobFileName, annotateReactionQ, annotateReactionT);
+        }
 
         if (writeFiles && annotateReactionQ != null && annotateReactionT != null) {
             if (compareLine.getOptionValue("f").equalsIgnoreCase("XML")) {
@@ -468,6 +561,9 @@ public class ReactionDecoder extends Annotator {
             GENERATE_IMAGE = true;
             GENERATE_AAMIMAGE = false;
         }
+        if (annotateLine.hasOption('G')) {
+            IMAGE_FORMAT = Format.valueOf(annotateLine.getOptionValue("G").toUpperCase());
+        }
         if (annotateLine.hasOption('p')) {
             PREFIX = annotateLine.getOptionValue("p");
         }
@@ -479,12 +575,18 @@ public class ReactionDecoder extends Annotator {
         if (annotateLine.hasOption('u')) {
             REMAP = false;
         }
+
+        if (annotateLine.hasOption('M')) {
+            REPORT_METRICS = true;
+        }
         IReaction reaction = null;
+        List<IReaction> reactions = new ArrayList<>();
 
         switch (annotateLine.getOptionValue("Q")) {
             case "SMI":
                 if (optionValue.contains(">>")) {
                     List<IReaction> parseReactions = parseReactionSMILES(optionValue);
+                    reactions.addAll(parseReactions);
                     if (parseReactions.iterator().hasNext()) {
                         reaction = parseReactions.iterator().next();
                     }
@@ -494,6 +596,7 @@ public class ReactionDecoder extends Annotator {
                 break;
             case "RXN":
                 List<IReaction> parseReactions = parseRXN(optionValue);
+                reactions.addAll(parseReactions);
                 if (parseReactions.iterator().hasNext()) {
                     reaction = parseReactions.iterator().next();
                 }
@@ -508,6 +611,11 @@ public class ReactionDecoder extends Annotator {
             return;
         }
 
+        if (isStreamFormat(annotateLine.getOptionValue("f"))) {
+            annotateAsStream(reactions, "ANNONATE", annotateLine.getOptionValue("f"));
+            return;
+        }
+
         String jobFileName;
 
         if (!PREFIX.isEmpty()) {
@@ -518,6 +626,9 @@ public class ReactionDecoder extends Annotator {
 
         ReactionMechanismTool annotateReaction = getReactionMechanismTool(reaction, REMAP);
         boolean writeFiles = writeFiles(jobFileName, annotateReaction);
+        if (REPORT_METRICS) {
+            writeMetrics(jobFileName, annotateReaction);
+        }
 
         if (writeFiles && annotateLine.getOptionValue("f").equalsIgnoreCase("XML")) {
             DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
@@ -563,4 +674,97 @@ public class ReactionDecoder extends Annotator {
         }
     }
 
+    private void ServerTask(CommandLine serverLine) throws IOException, CDKException {
+        String host = serverLine.getOptionValue("b", "127.0.0.1");
+        int port = Integer.parseInt(serverLine.getOptionValue("P", String.valueOf(AnnotationServer.DEFAULT_PORT)));
+        int concurrency = Integer.parseInt(serverLine.getOptionValue("c",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int queue = Integer.parseInt(serverLine.getOptionValue("d", "64"));
+        long timeout = Long.parseLong(serverLine.getOptionValue("w",
+                String.valueOf(AnnotationServer.DEFAULT_JOB_TIMEOUT / 1000))) * 1000L;
+        int maxBody = Integer.parseInt(serverLine.getOptionValue("m",
+                String.valueOf(AnnotationServer.DEFAULT_MAX_BODY_SIZE)));
+        final AnnotationServer server = new AnnotationServer(host, port, concurrency, queue, timeout, maxBody);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(5)));
+        server.start();
+    }
+
+    private void BatchTask(CommandLine batchLine) throws IOException {
+        File outputDir = new File(batchLine.getOptionValue("o"));
+        long timeout = Long.parseLong(batchLine.getOptionValue("w", "0"));
+        int segmentSize = Integer.parseInt(batchLine.getOptionValue("s", "100"));
+        CheckpointedBulkTransformer.Mode mode = CheckpointedBulkTransformer.Mode.ALL;
+        if (batchLine.hasOption('R')) {
+            mode = CheckpointedBulkTransformer.Mode.RETRY;
+        } else if (batchLine.hasOption('r')) {
+            mode = CheckpointedBulkTransformer.Mode.RESUME;
+        } else if (new File(outputDir, BatchJournal.FILE_NAME).exists()) {
+            err.println("Journal found in " + outputDir.getAbsolutePath()
+                    + ", use --resume or --retry (or a new output directory)");
+            return;
+        }
+
+        /*
+         A directory of RXN files, or a multi-record file read as it is mapped
+         */
+        File input = new File(batchLine.getOptionValue("q"));
+        String type = batchLine.getOptionValue("Q");
+        if (type != null && getRecordFormat(type) == null) {
+            err.println("Unknown input file type " + type + ", use one of " + getRecordFormats());
+            return;
+        }
+        FilesystemReactionDataSource dataSource = null;
+        ReactionRecordReader records = null;
+        if (input.isDirectory()) {
+            dataSource = new FilesystemReactionDataSource(input.getPath());
+        } else {
+            records = parseReactionRecords(input.getPath(), batchLine.getOptionValue("Q"));
+        }
+        CheckpointedBulkTransformer transformer
+                = new CheckpointedBulkTransformer(new MappingTransformation(), timeout);
+        try (BatchJournal journal = new BatchJournal(outputDir);
+                SegmentedReactionDataStore dataStore = new SegmentedReactionDataStore(outputDir, segmentSize, journal);
+                BinaryReactionDataStore binary = batchLine.hasOption('b')
+                        ? new BinaryReactionDataStore(new File(batchLine.getOptionValue("b")), true) : null) {
+            /*
+             The reactions mapped by this run are also written to the binary file,
+             with their bond change fingerprints. A reaction is serialized for the
+             binary file before it is stored in a segment, so a reaction which
+             can't be written is in neither.
+             */
+            IDataStore<IReaction> store = dataStore;
+            if (binary != null) {
+                store = reaction -> {
+                    byte[] record = binary.serialize(reaction);
+                    dataStore.store(reaction);
+                    binary.append(reaction.getID(), record);
+                };
+            }
+            try {
+                if (records != null) {
+                    transformer.transform(records, store, journal, mode);
+                } else {
+                    transformer.transform(dataSource, store, journal, mode);
+                }
+            } finally {
+                dataStore.commit();
+                File retry = journal.writeRetryList();
+                out.println("Processed " + transformer.getProcessed() + ", skipped " + transformer.getSkipped()
+                        + ", failed " + transformer.getFailures());
+                out.println("Output is presented in: " + outputDir.getAbsolutePath());
+                out.println("Retry list: " + retry.getAbsolutePath());
+                if (binary != null) {
+                    out.println("Binary reactions (" + binary.getCount() + "): "
+                            + new File(batchLine.getOptionValue("b")).getAbsolutePath());
+                }
+            }
+        } finally {
+            if (records != null) {
+                records.close();
+            } else {
+                dataSource.close();
+            }
+        }
+    }
+
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.aamtool;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Streaming (StAX) XML annotation writer, one reaction element per record
+ * (see {@link AnnotationStreamWriter} for the record layout). Fields are
+ * elements, list items are named after their type. The events of a record
+ * are queued and written by the document stream writer once it's complete,
+ * all the output goes through the one stream writer.
+ *
+ * <pre>
+ * &lt;annotations schema="2"&gt;
+ * &lt;reaction&gt;&lt;schema&gt;2&lt;/schema&gt;&lt;id&gt;R1&lt;/id&gt;..&lt;reaction_centre&gt;&lt;feature&gt;&lt;pattern&gt;C-O&lt;/pattern&gt;..
+ * &lt;/annotations&gt;
+ * </pre>
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class XMLAnnotationWriter extends AnnotationStreamWriter {
+
+    private static final Logger LOG = getLogger(XMLAnnotationWriter.class.getName());
+    private final Writer writer;
+    /*
+     * the document (annotations element)
+     */
+    private final XMLStreamWriter document;
+    /*
+     * events of the record being written
+     */
+    private final List<Event> record;
+    /*
+     * item names of the open arrays
+     */
+    private final Deque<String> items;
+
+    /**
+     *
+     * @param writer output, closed with this writer
+     * @param reportPatterns
+     * @param reportAllMappings
+     * @param remap
+     * @throws IOException
+     */
+    public XMLAnnotationWriter(Writer writer, boolean reportPatterns, boolean reportAllMappings, boolean remap) throws IOException {
+        super(reportPatterns, reportAllMappings, remap);
+        this.writer = writer;
+        this.items = new ArrayDeque<>();
+        this.record = new ArrayList<>();
+        try {
+            this.document = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+            document.writeStartDocument("UTF-8", "1.0");
+            document.writeCharacters("\n");
+            document.writeStartElement("annotations");
+            document.writeAttribute("schema", Integer.toString(SCHEMA_VERSION));
+            document.writeCharacters("\n");
+            document.flush();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    protected void startRecord() throws IOException {
+        items.clear();
+        record.clear();
+        start("reaction");
+    }
+
+    @Override
+    protected void endRecord() throws IOException {
+        end();
+        record.add((xml) -> xml.writeCharacters("\n"));
+        try {
+            for (Event event : record) {
+                event.write(document);
+            }
+            document.flush();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        } finally {
+            record.clear();
+        }
+    }
+
+    @Override
+    protected void abortRecord() {
+        items.clear();
+        record.clear();
+    }
+
+    @Override
+    protected void startObject(String name) throws IOException {
+        start(name == null ? items.peek() : name);
+    }
+
+    @Override
+    protected void endObject() throws IOException {
+        end();
+    }
+
+    @Override
+    protected void startArray(String name, String itemName) throws IOException {
+        start(name);
+        items.push(itemName);
+    }
+
+    @Override
+    protected void endArray() throws IOException {
+        items.pop();
+        end();
+    }
+
+    @Override
+    protected void value(String name, String value) throws IOException {
+        start(name == null ? items.peek() : name);
+        if (value != null) {
+            record.add((xml) -> xml.writeCharacters(value));
+        }
+        end();
+    }
+
+    @Override
+    protected void value(String name, long value) throws IOException {
+        value(name, Long.toString(value));
+    }
+
+    @Override
+    protected void value(String name, double value) throws IOException {
+        value(name, Double.toString(value));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            document.writeEndElement();
+            document.writeEndDocument();
+            document.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void start(String name) {
+        record.add((xml) -> xml.writeStartElement(name));
+    }
+
+    private void end() {
+        record.add(XMLStreamWriter::writeEndElement);
+    }
+
+    /*
+     * A queued write of the record
+     */
+    private interface Event {
+
+        void write(XMLStreamWriter xml) throws XMLStreamException;
+    }
+}
@@ -22,14 +22,23 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import static java.lang.Runtime.getRuntime;
 import static java.lang.System.out;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import static java.util.Arrays.asList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.logging.Level.SEVERE;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
@@ -54,19 +63,53 @@ public class ECRgroupFrequency {
      * @param args the command line arguments
      */
     public static void main(String[] args) {
-        // TODO code application logic here
-        
         ECRgroupFrequency ecRgroupFrequency = new ECRgroupFrequency(args);
     }
 
+    private final Map<String, MultiReactionContainer> reactionMap;
+    private final Set<String> ingested;
+    private final RGroupFrequency frequency;
+    private final int threads;
+
     /**
+     * Reads the EC directories and prints the R-group report.
      *
-     * @param args
+     * @param args directories with one sub directory (RXN files) per EC
+     * number
      */
     public ECRgroupFrequency(String[] args) {
+        this(getRuntime().availableProcessors());
         out.println("------------------------------------------------------");
-        Map<String, MultiReactionContainer> reactionMap = new TreeMap<>();
-        for (String dir : args) {
+        update(args);
+        report();
+    }
+
+    /**
+     *
+     * @param threads number of threads reading and fingerprinting the
+     * reactions
+     */
+    public ECRgroupFrequency(int threads) {
+        this.reactionMap = new TreeMap<>();
+        this.ingested = new HashSet<>();
+        this.frequency = new RGroupFrequency();
+        this.threads = threads < 1 ? 1 : threads;
+    }
+
+    /**
+     * Reads and fingerprints the reaction files not seen so far (e.g. new EC
+     * directories) in parallel and merges them into the EC containers; the
+     * frequencies of the EC numbers touched are updated, the rest is kept. A
+     * file is only marked as read once merged, files which could not be read
+     * are tried again by the next update.
+     *
+     * @param dirs directories with one sub directory (RXN files) per EC
+     * number
+     * @return number of reactions added
+     */
+    public synchronized int update(String... dirs) {
+        Map<File, String> reactionFiles = new LinkedHashMap<>();
+        for (String dir : dirs) {
             File f = new File(dir);
             if (f.isDirectory()) {
                 File[] files = f.listFiles();
@@ -78,51 +121,111 @@ public class ECRgroupFrequency {
                     files = subList.toArray(new File[subList.size()]);
                 }
                 for (File ec : files) {
-                    String ecNumber = ec.getName();
                     if (ec.isDirectory()) {
-                        File[] listReactionFiles = ec.listFiles();
-                        for (File reactionFile : listReactionFiles) {
-                            String reactionName = reactionFile.getName().split("\\.")[0];
-                            MDLRXNV2000Reader mdlrxnV2000Reader;
-                            try {
-                                mdlrxnV2000Reader = new MDLRXNV2000Reader(new FileReader(reactionFile));
-                                Reaction reaction = mdlrxnV2000Reader.read(new Reaction());
-                                mdlrxnV2000Reader.close();
-                                if (reactionMap.containsKey(ecNumber)) {
-                                    reactionMap.get(ecNumber).addReaction(reaction, reactionName);
-                                } else {
-                                    MultiReactionContainer r = new MultiReactionContainer(ecNumber);
-                                    r.addReaction(reaction, reactionName);
-                                    reactionMap.put(ecNumber, r);
-                                }
-                            } catch (FileNotFoundException ex) {
-                                getLogger(ECRgroupFrequency.class.getName()).log(SEVERE, null, ex);
-                            } catch (CDKException | IOException ex) {
-                                getLogger(ECRgroupFrequency.class.getName()).log(SEVERE, null, ex);
+                        for (File reactionFile : ec.listFiles()) {
+                            if (!ingested.contains(reactionFile.getAbsolutePath())) {
+                                reactionFiles.put(reactionFile, ec.getName());
                             }
                         }
                     }
                 }
             }
         }
+        if (reactionFiles.isEmpty()) {
+            return 0;
+        }
+
+        int added = 0;
+        Set<String> touched = new TreeSet<>();
+        ExecutorService executor = newFixedThreadPool(threads);
+        try {
+            CompletionService<Map.Entry<File, MultiReactionContainer>> cs = new ExecutorCompletionService<>(executor);
+            for (Map.Entry<File, String> e : reactionFiles.entrySet()) {
+                cs.submit(() -> new SimpleImmutableEntry<>(e.getKey(), read(e.getKey(), e.getValue())));
+            }
+            for (int i = 0; i < reactionFiles.size(); i++) {
+                Map.Entry<File, MultiReactionContainer> result;
+                try {
+                    result = cs.take().get();
+                } catch (ExecutionException ex) {
+                    LOG.log(SEVERE, "Unable to read a reaction file", ex.getCause());
+                    continue;
+                }
+                MultiReactionContainer partial = result.getValue();
+                if (partial == null) {
+                    continue;
+                }
+                String ecNumber = partial.getEnzyme();
+                if (touched.add(ecNumber) && reactionMap.containsKey(ecNumber)) {
+                    frequency.subtract(reactionMap.get(ecNumber));
+                }
+                if (reactionMap.containsKey(ecNumber)) {
+                    reactionMap.get(ecNumber).merge(partial);
+                } else {
+                    reactionMap.put(ecNumber, partial);
+                }
+                ingested.add(result.getKey().getAbsolutePath());
+                added++;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOG.log(SEVERE, "Interrupted while reading the EC directories", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+        for (String ecNumber : touched) {
+            frequency.add(reactionMap.get(ecNumber));
+        }
 
         if (DEBUG) {
             out.println("Number of EC parsed " + reactionMap.size());
         }
+        return added;
+    }
+
+    /*
+     * Reads and fingerprints one reaction into a partial container of its EC
+     */
+    private static MultiReactionContainer read(File reactionFile, String ecNumber) {
+        String reactionName = reactionFile.getName().split("\\.")[0];
+        try (MDLRXNV2000Reader mdlrxnV2000Reader = new MDLRXNV2000Reader(new FileReader(reactionFile))) {
+            Reaction reaction = mdlrxnV2000Reader.read(new Reaction());
+            MultiReactionContainer r = new MultiReactionContainer(ecNumber);
+            r.addReaction(reaction, reactionName);
+            return r;
+        } catch (FileNotFoundException ex) {
+            LOG.log(SEVERE, null, ex);
+        } catch (CDKException | IOException | RuntimeException ex) {
+            LOG.log(SEVERE, "Unable to read " + reactionFile, ex);
+        }
+        return null;
+    }
 
-        int ec1Counter = 0;
-        int ec2Counter = 0;
-        int ec3Counter = 0;
-        int ec4Counter = 0;
-        int ec5Counter = 0;
-        int ec6Counter = 0;
+    /**
+     * @return R-group frequencies per EC level of the reactions read so far
+     */
+    public RGroupFrequency getFrequency() {
+        return frequency;
+    }
 
-        int ec1_RGroupReactionCounter = 0;
-        int ec2_RGroupReactionCounter = 0;
-        int ec3_RGroupReactionCounter = 0;
-        int ec4_RGroupReactionCounter = 0;
-        int ec5_RGroupReactionCounter = 0;
-        int ec6_RGroupReactionCounter = 0;
+    /**
+     * Prints the R-group and common fragment statistics of the reactions
+     * read so far.
+     */
+    public synchronized void report() {
+        long ec1Counter = frequency.getECCount("1");
+        long ec2Counter = frequency.getECCount("2");
+        long ec3Counter = frequency.getECCount("3");
+        long ec4Counter = frequency.getECCount("4");
+        long ec5Counter = frequency.getECCount("5");
+        long ec6Counter = frequency.getECCount("6");
+
+        long ec1_RGroupReactionCounter = frequency.getRGroupECCount("1");
+        long ec2_RGroupReactionCounter = frequency.getRGroupECCount("2");
+        long ec3_RGroupReactionCounter = frequency.getRGroupECCount("3");
+        long ec4_RGroupReactionCounter = frequency.getRGroupECCount("4");
+        long ec5_RGroupReactionCounter = frequency.getRGroupECCount("5");
+        long ec6_RGroupReactionCounter = frequency.getRGroupECCount("6");
 
         int no_common_fragment_in_non_r_group = 0;
         int no_common_fragment_in_r_group = 0;
@@ -188,68 +291,29 @@ public class ECRgroupFrequency {
 
             String ec3 = reactionMap.get(ec).getEnzyme1Level() + "." + reactionMap.get(ec).getEnzyme2Level() + "." + reactionMap.get(ec).getEnzyme3Level();
             if (!commonCommonMap.containsKey(ec3)) {
-                commonCommonMap.put(ec3, reactionMap.get(ec).getCommonCommonFP());
+                commonCommonMap.put(ec3, new TreeSet<>(reactionMap.get(ec).getCommonCommonFP()));
             } else if (commonCommonMap.containsKey(ec3)) {
                 commonCommonMap.get(ec3).retainAll(reactionMap.get(ec).getCommonCommonFP());
             }
             if (!commonDifferenceMap.containsKey(ec3)) {
-                commonDifferenceMap.put(ec3, reactionMap.get(ec).getCommonDifferenceFP());
+                commonDifferenceMap.put(ec3, new TreeSet<>(reactionMap.get(ec).getCommonDifferenceFP()));
             } else if (commonDifferenceMap.containsKey(ec3)) {
                 commonDifferenceMap.get(ec3).retainAll(reactionMap.get(ec).getCommonDifferenceFP());
             }
 
             if (!commonUnionMap.containsKey(ec3)) {
-                commonUnionMap.put(ec3, reactionMap.get(ec).getAllFP());
+                commonUnionMap.put(ec3, new TreeSet<>(reactionMap.get(ec).getAllFP()));
             } else if (commonUnionMap.containsKey(ec3)) {
                 commonUnionMap.get(ec3).retainAll(reactionMap.get(ec).getAllFP());
             }
 
-            switch (reactionMap.get(ec).getEnzyme1Level()) {
-                case "1":
-                    ec1Counter++;
-                    if (reactionMap.get(ec).isRGroup()) {
-                        ec1_RGroupReactionCounter++;
-                    }
-                    break;
-                case "2":
-                    ec2Counter++;
-                    if (reactionMap.get(ec).isRGroup()) {
-                        ec2_RGroupReactionCounter++;
-                    }
-                    break;
-                case "3":
-                    ec3Counter++;
-                    if (reactionMap.get(ec).isRGroup()) {
-                        ec3_RGroupReactionCounter++;
-                    }
-                    break;
-                case "4":
-                    ec4Counter++;
-                    if (reactionMap.get(ec).isRGroup()) {
-                        ec4_RGroupReactionCounter++;
-                    }
-                    break;
-                case "5":
-                    ec5Counter++;
-                    if (reactionMap.get(ec).isRGroup()) {
-                        ec5_RGroupReactionCounter++;
-                    }
-                    break;
-                case "6":
-                    ec6Counter++;
-                    if (reactionMap.get(ec).isRGroup()) {
-                        ec6_RGroupReactionCounter++;
-                    }
-                    break;
-                default:
-                    out.println("UNKNOW EC CLASS");
-                    break;
-
+            if (!asList("1", "2", "3", "4", "5", "6").contains(reactionMap.get(ec).getEnzyme1Level())) {
+                out.println("UNKNOW EC CLASS");
             }
         }
 
-        int total_EC = ec1Counter + ec2Counter + ec3Counter + ec4Counter + ec5Counter + ec6Counter;
-        int total_r_group_counter
+        long total_EC = ec1Counter + ec2Counter + ec3Counter + ec4Counter + ec5Counter + ec6Counter;
+        long total_r_group_counter
                 = ec1_RGroupReactionCounter + ec2_RGroupReactionCounter
                 + ec3_RGroupReactionCounter + ec4_RGroupReactionCounter
                 + ec5_RGroupReactionCounter + ec6_RGroupReactionCounter;
@@ -283,6 +347,10 @@ public class ECRgroupFrequency {
         out.println("# EC with No Common Fragment in R-Groups " + no_common_fragment_in_r_group);
         out.println("# EC with No Common Fragment in Either R-Groups " + no_common_fragment_in_either);
 
+        out.println("------------------------------------------------------");
+        out.println("EC level\t# EC Numbers\t# R-Group EC Numbers\t# Reactions\t# R-Group Reactions");
+        out.print(frequency);
+
         out.println("------------------------------------------------------");
         /*
         EC Third Level Signature
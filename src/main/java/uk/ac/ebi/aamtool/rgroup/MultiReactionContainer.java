@@ -32,9 +32,9 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IPseudoAtom;
 import org.openscience.cdk.interfaces.IReaction;
 import org.openscience.cdk.smiles.SmiFlavor;
-import org.openscience.cdk.smiles.SmilesGenerator;
 import static org.openscience.cdk.tools.manipulator.ReactionManipulator.getAllAtomContainers;
 import static uk.ac.ebi.reactionblast.mechanism.helper.Utility.getCircularFragment;
+import uk.ac.ebi.reactionblast.tools.SmilesService;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.removeHydrogensExceptSingleAndPreserveAtomID;
 
 /**
@@ -90,6 +90,40 @@ class MultiReactionContainer {
         return false;
     }
 
+    /**
+     * Merge a partial container of the same EC number built from other
+     * reactions (e.g. on another thread). The result is the same as adding
+     * its reactions here: common patterns are intersected and all the
+     * patterns are united. A partial whose reactions are all present already
+     * is skipped.
+     *
+     * @param partial container of the same EC number
+     */
+    public void merge(MultiReactionContainer partial) {
+        if (!enzyme.equals(partial.getEnzyme())) {
+            throw new IllegalArgumentException("Can't merge EC " + partial.getEnzyme() + " into " + enzyme);
+        }
+        Set<ReactionGroup> added = new TreeSet<>(partial.getReaction());
+        added.removeAll(getReaction());
+        if (added.isEmpty()) {
+            return;
+        }
+        if (getReaction().isEmpty()) {
+            getCommonCommonFP().addAll(partial.getCommonCommonFP());
+            getCommonDifferenceFP().addAll(partial.getCommonDifferenceFP());
+        } else {
+            getCommonCommonFP().retainAll(partial.getCommonCommonFP());
+            getCommonDifferenceFP().retainAll(partial.getCommonDifferenceFP());
+        }
+        getAllFP().addAll(partial.getAllFP());
+        for (ReactionGroup rg : added) {
+            if (rg.isRGroupPresent()) {
+                RGroup = true;
+            }
+        }
+        getReaction().addAll(added);
+    }
+
     /**
      * @return the enzyme
      */
@@ -135,26 +169,25 @@ class MultiReactionContainer {
     private void calculateCommonFingerprint(IReaction reaction) {
         Set<String> l = new HashSet<>();
         Set<String> r = new HashSet<>();
-        SmilesGenerator sm = new SmilesGenerator(
-                SmiFlavor.Unique
-                | SmiFlavor.UseAromaticSymbols);
+        SmilesService sm = SmilesService.getInstance();
+        int flavour = SmiFlavor.Unique | SmiFlavor.UseAromaticSymbols;
         for (IAtomContainer a : reaction.getReactants().atomContainers()) {
             IAtomContainer ac = null;
             ac = removeHydrogensExceptSingleAndPreserveAtomID(a);
             for (int i = 0; i < ac.getAtomCount(); i++) {
                 try {
                     IAtomContainer circularFragment = getCircularFragment(ac, i, 1);
-                    String smiles = sm.create(circularFragment);
+                    String smiles = sm.create(circularFragment, flavour);
                     l.add(smiles);
                     getAllFP().add(smiles);
 
                     circularFragment = getCircularFragment(ac, i, 2);
-                    smiles = sm.create(circularFragment);
+                    smiles = sm.create(circularFragment, flavour);
                     l.add(smiles);
                     getAllFP().add(smiles);
 
                     circularFragment = getCircularFragment(ac, i, 3);
-                    smiles = sm.create(circularFragment);
+                    smiles = sm.create(circularFragment, flavour);
                     l.add(smiles);
                     getAllFP().add(smiles);
 
@@ -170,17 +203,17 @@ class MultiReactionContainer {
             for (int i = 0; i < ac.getAtomCount(); i++) {
                 try {
                     IAtomContainer circularFragment = getCircularFragment(ac, i, 1);
-                    String smiles = sm.create(circularFragment);
+                    String smiles = sm.create(circularFragment, flavour);
                     r.add(smiles);
                     getAllFP().add(smiles);
 
                     circularFragment = getCircularFragment(ac, i, 2);
-                    smiles = sm.create(circularFragment);
+                    smiles = sm.create(circularFragment, flavour);
                     r.add(smiles);
                     getAllFP().add(smiles);
 
                     circularFragment = getCircularFragment(ac, i, 3);
-                    smiles = sm.create(circularFragment);
+                    smiles = sm.create(circularFragment, flavour);
                     r.add(smiles);
                     getAllFP().add(smiles);
 
@@ -242,6 +275,19 @@ class MultiReactionContainer {
         return reaction.size();
     }
 
+    /**
+     * @return number of reactions with an R-group
+     */
+    public int getRGroupReactionCount() {
+        int count = 0;
+        for (ReactionGroup rg : reaction) {
+            if (rg.isRGroupPresent()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * @return the commonommonDifferencommoneFP
      */
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.aamtool.rgroup;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+
+/**
+ * R-group frequencies per EC level. Each EC number is counted under its
+ * first to fourth level prefix (e.g. 1, 1.1, 1.1.1 and 1.1.1.1). Counters
+ * built on separate threads or runs can be merged, and the contribution of
+ * an EC number can be subtracted before it is counted again with new
+ * reactions.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class RGroupFrequency {
+
+    private static final Logger LOG = getLogger(RGroupFrequency.class.getName());
+
+    private static final int EC = 0;
+    private static final int R_GROUP_EC = 1;
+    private static final int REACTIONS = 2;
+    private static final int R_GROUP_REACTIONS = 3;
+
+    private final Map<String, long[]> counts;
+
+    /**
+     *
+     */
+    public RGroupFrequency() {
+        this.counts = new TreeMap<>();
+    }
+
+    /**
+     * Count the EC number of the container.
+     *
+     * @param container
+     */
+    void add(MultiReactionContainer container) {
+        update(container, 1);
+    }
+
+    /**
+     * Remove the counts of the container (as added before).
+     *
+     * @param container
+     */
+    void subtract(MultiReactionContainer container) {
+        update(container, -1);
+    }
+
+    private void update(MultiReactionContainer container, int sign) {
+        String[] levels = container.getEnzyme().split("\\.");
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < levels.length && i < 4; i++) {
+            if (i > 0) {
+                prefix.append('.');
+            }
+            prefix.append(levels[i]);
+            long[] c = counts.computeIfAbsent(prefix.toString(), k -> new long[4]);
+            c[EC] += sign;
+            c[R_GROUP_EC] += container.isRGroup() ? sign : 0;
+            c[REACTIONS] += sign * container.getReactionCount();
+            c[R_GROUP_REACTIONS] += sign * container.getRGroupReactionCount();
+        }
+    }
+
+    /**
+     * Add the counts of another frequency to this one.
+     *
+     * @param other
+     * @return this frequency
+     */
+    public RGroupFrequency merge(RGroupFrequency other) {
+        for (Map.Entry<String, long[]> e : other.counts.entrySet()) {
+            long[] c = counts.computeIfAbsent(e.getKey(), k -> new long[4]);
+            for (int i = 0; i < c.length; i++) {
+                c[i] += e.getValue()[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     *
+     * @param level 1 to 4
+     * @return EC prefixes counted at this level
+     */
+    public Set<String> getLevel(int level) {
+        Set<String> prefixes = new TreeSet<>();
+        for (String prefix : counts.keySet()) {
+            if (prefix.split("\\.").length == level && counts.get(prefix)[EC] > 0) {
+                prefixes.add(prefix);
+            }
+        }
+        return prefixes;
+    }
+
+    /**
+     *
+     * @param prefix EC prefix (e.g. 1.1)
+     * @return number of EC numbers under the prefix
+     */
+    public long getECCount(String prefix) {
+        return get(prefix, EC);
+    }
+
+    /**
+     *
+     * @param prefix EC prefix (e.g. 1.1)
+     * @return number of EC numbers with an R-group reaction under the prefix
+     */
+    public long getRGroupECCount(String prefix) {
+        return get(prefix, R_GROUP_EC);
+    }
+
+    /**
+     *
+     * @param prefix EC prefix (e.g. 1.1)
+     * @return number of reactions under the prefix
+     */
+    public long getReactionCount(String prefix) {
+        return get(prefix, REACTIONS);
+    }
+
+    /**
+     *
+     * @param prefix EC prefix (e.g. 1.1)
+     * @return number of R-group reactions under the prefix
+     */
+    public long getRGroupReactionCount(String prefix) {
+        return get(prefix, R_GROUP_REACTIONS);
+    }
+
+    private long get(String prefix, int index) {
+        long[] c = counts.get(prefix);
+        return c == null ? 0 : c[index];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, long[]> e : counts.entrySet()) {
+            if (e.getValue()[EC] == 0) {
+                continue;
+            }
+            sb.append(e.getKey())
+                    .append("\t").append(e.getValue()[EC])
+                    .append("\t").append(e.getValue()[R_GROUP_EC])
+                    .append("\t").append(e.getValue()[REACTIONS])
+                    .append("\t").append(e.getValue()[R_GROUP_REACTIONS])
+                    .append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -24,7 +24,6 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import static java.lang.System.err;
-import static java.lang.System.exit;
 import static java.lang.System.getProperty;
 import static java.lang.System.out;
 import static java.util.logging.Level.SEVERE;
@@ -40,7 +39,6 @@ import org.openscience.cdk.interfaces.IReaction;
 import org.openscience.cdk.io.CMLReader;
 import static org.openscience.cdk.io.IChemObjectReader.Mode.RELAXED;
 import org.openscience.cdk.io.MDLV2000Reader;
-import org.openscience.cdk.io.Mol2Reader;
 import org.openscience.cdk.smiles.SmilesParser;
 import uk.ac.ebi.reactionblast.tools.rxnfile.MDLRXNV2000Reader;
 
@@ -56,8 +54,7 @@ class ChemicalFormatParser {
     protected IReaction parseCML(String input) throws FileNotFoundException, CDKException {
         File f = new File(input);
         if (!f.isFile()) {
-            err.println("CML file not found! " + f.getName());
-            exit(1);
+            throw new FileNotFoundException("CML file not found! " + f.getName());
         }
         String[] split = f.getName().split(".cml");
         CMLReader cmlReader = new CMLReader(new FileInputStream(input));
@@ -73,7 +70,7 @@ class ChemicalFormatParser {
         File filepath = new File(fileName);
         if (!filepath.isFile()) {
             err.println("RXN file not found! " + filepath.getName());
-            exit(1);
+            return null;
         }
         String[] split = filepath.getName().split(".rxn");
         try {
@@ -136,8 +133,7 @@ class ChemicalFormatParser {
     protected IReaction parseMOL2(String input) throws FileNotFoundException, CDKException {
         File f = new File(input);
         if (!f.isFile()) {
-            err.println("Mol2 file not found! " + f.getName());
-            exit(1);
+            throw new FileNotFoundException("Mol2 file not found! " + f.getName());
         }
 
         String[] split = f.getName().split(".mol");
@@ -154,12 +150,12 @@ class ChemicalFormatParser {
     protected IReaction parseSDF(String input) throws FileNotFoundException, CDKException {
         File f = new File(input);
         if (!f.isFile()) {
-            err.println("SDF file not found! " + f.getName());
-            exit(1);
+            throw new FileNotFoundException("SDF file not found! " + f.getName());
         }
         String[] split = f.getName().split(".sdf");
-        Mol2Reader mol2Reader = new Mol2Reader(new FileReader(input));
-        AtomContainer ac = mol2Reader.read(new AtomContainer());
+        MDLV2000Reader mdlV2000Reader = new MDLV2000Reader(
+                new FileReader(input), RELAXED);
+        AtomContainer ac = mdlV2000Reader.read(new AtomContainer());
         IReaction r = new Reaction();
         r.addReactant(ac, 1.0);
         r.addProduct(ac, 1.0);
@@ -22,24 +22,47 @@ import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import java.util.concurrent.Future;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
+import uk.ac.ebi.centres.exception.WarpCoreEjection;
 import static uk.ac.ebi.centres.descriptor.General.NONE;
 import static uk.ac.ebi.centres.descriptor.General.UNKNOWN;
 
 /**
+ * The perceptor holds no per-call state and can be reused (and shared between
+ * threads). Optionally each call can be bounded by a timeout, the perception
+ * then runs on a shared executor and is interrupted when the time is up.
+ *
  * @author John May
  * @param <A>
  */
 public class DefaultPerceptor<A> implements Perceptor<A> {
     private static final Logger LOG = getLogger(DefaultPerceptor.class.getName());
 
+    private static ExecutorService executor = null;
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = newCachedThreadPool((Runnable r) -> {
+                Thread thread = new Thread(r, "cip-perceptor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
     private final CentrePerceptor<A> mainPerceptor;
     private final CentrePerceptor<A> auxPerceptor;
-    private ExecutorService executor = newSingleThreadExecutor();
-    private long timeout = 250;
+    private volatile long timeout = 0;
 
     /**
      *
@@ -106,6 +129,24 @@ public class DefaultPerceptor<A> implements Perceptor<A> {
 
     }
 
+    /**
+     * Time budget of a single perception
+     *
+     * @param timeout in milliseconds, 0 (default) for no limit
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     *
+     * @return time budget of a single perception in milliseconds, 0 for no
+     * limit
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
     /**
      *
      * @param provider
@@ -113,6 +154,52 @@ public class DefaultPerceptor<A> implements Perceptor<A> {
      */
     @Override
     public void perceive(final CentreProvider<A> provider, final DescriptorManager<A> manager) {
+        long limit = timeout;
+        if (limit <= 0) {
+            perceiveCentres(provider, manager);
+            return;
+        }
+        /*
+         * 0: waiting, 1: running, 2: abandoned before it started
+         */
+        final AtomicInteger state = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(1);
+        Future<?> future = getExecutor().submit(() -> {
+            if (!state.compareAndSet(0, 1)) {
+                return;
+            }
+            try {
+                perceiveCentres(provider, manager);
+            } finally {
+                finished.countDown();
+            }
+        });
+        try {
+            future.get(limit, MILLISECONDS);
+        } catch (TimeoutException ex) {
+            if (!state.compareAndSet(0, 2)) {
+                // interrupt and wait until it lets go of the descriptors
+                future.cancel(true);
+                try {
+                    finished.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            throw new WarpCoreEjection();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new WarpCoreEjection();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private void perceiveCentres(final CentreProvider<A> provider, final DescriptorManager<A> manager) {
 
         // timeout fo the centre provider incase we have a huge molecule and the spanning tree can't
         // be constructed
@@ -143,10 +230,10 @@ public class DefaultPerceptor<A> implements Perceptor<A> {
     }
 
     /**
-     * Shutdown the internal executor
+     * The executor is shared by all the perceptors and uses daemon threads,
+     * nothing to release for a single instance.
      */
     public void shutdown() {
-        executor.shutdownNow();
     }
 
     abstract class CentrePerceptor<A> {
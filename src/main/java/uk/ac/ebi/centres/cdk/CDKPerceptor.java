@@ -112,8 +112,9 @@ public class CDKPerceptor extends DefaultPerceptor<IAtom> {
     /**
      *
      * @param container
+     * @return false if the perception failed or ran out of time
      */
-    public void perceive(IAtomContainer container) {
+    public boolean perceive(IAtomContainer container) {
         try {
             /*
             Check for 2D co-ordinates for EC-BLAST, must else it will fail!
@@ -131,8 +132,10 @@ public class CDKPerceptor extends DefaultPerceptor<IAtom> {
                 }
             }
             perceive(new CDKCentreProvider(container), new CDKManager(container));
+            return true;
         } catch (Exception e) {
             logger.warn("WARNING: 2D CDK based stereo perception failed! ");
+            return false;
         }
     }
 }
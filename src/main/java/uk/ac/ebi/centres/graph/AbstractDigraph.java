@@ -20,10 +20,10 @@ package uk.ac.ebi.centres.graph;
 import static com.google.common.collect.ArrayListMultimap.create;
 import com.google.common.collect.ListMultimap;
 import static java.lang.System.err;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -99,7 +99,7 @@ public abstract class AbstractDigraph<A> implements Digraph<A>,
         root = ligand;
         ligand.reset();
 
-        Queue<Arc<A>> queue = new LinkedList<>();
+        List<Arc<A>> queue = new ArrayList<>();
 
         // get parent arcs
         Arc<A> arc = arcs.getForHead(ligand);
@@ -129,7 +129,7 @@ public abstract class AbstractDigraph<A> implements Digraph<A>,
             throw new IllegalArgumentException("Attempting build without a root");
         }
 
-        Queue<Ligand<A>> queue = new LinkedList<>();
+        Queue<Ligand<A>> queue = new ArrayDeque<>();
 
         queue.addAll(root.getLigands());
 
@@ -169,8 +169,8 @@ public abstract class AbstractDigraph<A> implements Digraph<A>,
 
         List<Ligand<A>> ligands = arcs.getHeads(ligand);
 
-        // lots of ligands being created
-        if (ligandMap.size() > 10000) {
+        // lots of ligands being created (or the perception has been interrupted)
+        if (ligandMap.size() > 10000 || Thread.currentThread().isInterrupted()) {
             throw new WarpCoreEjection();
         }
 
@@ -20,8 +20,8 @@ package uk.ac.ebi.centres.priority;
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
 import uk.ac.ebi.centres.Comparison;
@@ -42,6 +42,18 @@ import uk.ac.ebi.centres.PriorityRule;
 public class InsertionSorter<A> implements LigandSorter<A> {
     private static final Logger LOG = getLogger(InsertionSorter.class.getName());
 
+    private static final Comparison EQUAL = new Comparison() {
+        @Override
+        public Integer getOrder() {
+            return 0;
+        }
+
+        @Override
+        public Descriptor.Type getType() {
+            return NON_STEREOGENIC;
+        }
+    };
+
     private final List<PriorityRule<A>> rules = new ArrayList<>(5);
 
     /**
@@ -79,25 +91,34 @@ public class InsertionSorter<A> implements LigandSorter<A> {
      * @inheritDoc
      */
     @Override
+    @SuppressWarnings("unchecked")
     public Priority prioritise(List<Ligand<A>> ligands) {
 
         Boolean unique = TRUE;
         Descriptor.Type type = NON_STEREOGENIC;
-//        Set<Set<Integer>> duplicates = null;
 
-        for (int i = 0; i < ligands.size(); i++) {
+        /*
+         * sort a plain array and write it back once, instead of get/set on
+         * the (possibly linked) list for every swap
+         */
+        int n = ligands.size();
+        Ligand<A>[] array = ligands.toArray(new Ligand[n]);
+
+        for (int i = 1; i < n; i++) {
             for (int j = i; j > 0; j--) {
 
-                Comparison comparison = compareLigands(ligands.get(j - 1),
-                        ligands.get(j));
+                Comparison comparison = compareLigands(array[j - 1], array[j]);
 
                 type = comparison.getType().ordinal() > type.ordinal()
                         ? comparison.getType() : type;
 
-                if (comparison.getOrder() < 0) {
-                    swap(ligands, j, j - 1);
+                int order = comparison.getOrder();
+                if (order < 0) {
+                    Ligand<A> tmp = array[j];
+                    array[j] = array[j - 1];
+                    array[j - 1] = tmp;
                 } else {
-                    if (comparison.getOrder() == 0) {
+                    if (order == 0) {
                         unique = FALSE;
                     }
                     break;
@@ -106,6 +127,12 @@ public class InsertionSorter<A> implements LigandSorter<A> {
             }
         }
 
+        ListIterator<Ligand<A>> it = ligands.listIterator();
+        for (Ligand<A> ligand : array) {
+            it.next();
+            it.set(ligand);
+        }
+
         return new Priority(unique, type);
 
     }
@@ -123,17 +150,7 @@ public class InsertionSorter<A> implements LigandSorter<A> {
                 return comparison;
             }
         }
-        return new Comparison() {
-            @Override
-            public Integer getOrder() {
-                return 0;
-            }
-
-            @Override
-            public Descriptor.Type getType() {
-                return NON_STEREOGENIC;
-            }
-        };
+        return EQUAL;
     }
 
     /**
@@ -157,17 +174,18 @@ public class InsertionSorter<A> implements LigandSorter<A> {
 
         // would be nice to have this integrated whilst sorting - may provide a small speed increase
         // but as most of our lists are small we take use ugly sort then group approach
-        LinkedList<List<Ligand<A>>> groups = new LinkedList<>();
+        List<List<Ligand<A>>> groups = new ArrayList<>();
+        List<Ligand<A>> last = null;
 
         for (Ligand<A> ligand : sorted) {
 
-            if (groups.isEmpty()
-                    || compareLigands(groups.getLast().iterator().next(),
-                    ligand).getOrder() != 0) {
-                groups.add(new ArrayList<Ligand<A>>());
+            if (last == null
+                    || compareLigands(last.get(0), ligand).getOrder() != 0) {
+                last = new ArrayList<>();
+                groups.add(last);
             }
 
-            groups.getLast().add(ligand);
+            last.add(ligand);
 
         }
 
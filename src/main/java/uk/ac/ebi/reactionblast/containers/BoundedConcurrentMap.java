@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.containers;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+
+/**
+ * Concurrent map holding at most a fixed number of entries; the oldest keys
+ * are evicted first when it grows past the bound. Reads and writes don't
+ * lock, the bound may be exceeded briefly while writers race.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ * @param <K>
+ * @param <V>
+ */
+public class BoundedConcurrentMap<K, V> extends AbstractMap<K, V> implements Serializable {
+
+    private static final long serialVersionUID = 7126537862093L;
+    private static final Logger LOG = getLogger(BoundedConcurrentMap.class.getName());
+
+    private final ConcurrentMap<K, V> map;
+    private final ConcurrentLinkedQueue<K> order;
+    private final int maxSize;
+    private final AtomicLong evictions;
+
+    /**
+     *
+     * @param maxSize maximum number of entries
+     */
+    public BoundedConcurrentMap(int maxSize) {
+        this(new ConcurrentHashMap<K, V>(), maxSize);
+    }
+
+    /**
+     *
+     * @param map empty backing map (e.g. a ConcurrentSkipListMap for sorted
+     * keys)
+     * @param maxSize maximum number of entries
+     */
+    public BoundedConcurrentMap(ConcurrentMap<K, V> map, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Map bound must be positive: " + maxSize);
+        }
+        this.map = map;
+        this.order = new ConcurrentLinkedQueue<>();
+        this.maxSize = maxSize;
+        this.evictions = new AtomicLong();
+    }
+
+    @Override
+    public V get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        V previous = map.put(key, value);
+        if (previous == null) {
+            order.add(key);
+            evict();
+        }
+        return previous;
+    }
+
+    @Override
+    public V remove(Object key) {
+        /*
+         * the key stays in the eviction queue, evict() skips it
+         */
+        return map.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+        order.clear();
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return map.entrySet();
+    }
+
+    /**
+     * @return maximum number of entries
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return number of entries evicted so far
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private void evict() {
+        while (map.size() > maxSize) {
+            K eldest = order.poll();
+            if (eldest == null) {
+                return;
+            }
+            if (map.remove(eldest) != null) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+}
@@ -21,16 +21,13 @@ package uk.ac.ebi.reactionblast.containers;
 //~--- non-JDK imports --------------------------------------------------------
 import java.io.IOException;
 import java.util.BitSet;
-import static java.util.Collections.synchronizedSortedMap;
-import static java.util.Collections.unmodifiableMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
-import static java.util.logging.Level.SEVERE;
+import java.util.TreeSet;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
-import static uk.ac.ebi.reactionblast.fingerprints.tools.Similarity.getTanimotoSimilarity;
 import uk.ac.ebi.reactionblast.interfaces.IFingerPrintContainer;
+import uk.ac.ebi.reactionblast.interfaces.IFingerPrintStore;
 
 //~--- classes ----------------------------------------------------------------
 /**
@@ -65,29 +62,35 @@ import uk.ac.ebi.reactionblast.interfaces.IFingerPrintContainer;
  */
 public class FingerPrintContainer implements IFingerPrintContainer {
 
-    /*
-     * Singleton Pattern Implementation
-     */
-
-    private static FingerPrintContainer _instance = null;
-    private static Map<String, BitSet> FingerPrintMap = null;
     private static final Logger LOG = getLogger(FingerPrintContainer.class.getName());
+    private final IFingerPrintStore store;
 
     /**
      *
-     * @return
+     * @return the container of the current mapping context
      */
-    public static synchronized FingerPrintContainer getInstance() {
-        if (_instance == null) {
-            _instance = new FingerPrintContainer();
-        }
-
-        return _instance;
+    public static FingerPrintContainer getInstance() {
+        return MappingContext.getCurrent().getFingerPrintContainer();
     }
 
     //~--- constructors -------------------------------------------------------
-    private FingerPrintContainer() {
-        FingerPrintMap = synchronizedSortedMap(new TreeMap<String, BitSet>());
+    /**
+     * Use {@link MappingContext} to get a container scoped to a job.
+     *
+     * @param maxSize maximum number of fingerprints (oldest are evicted)
+     */
+    public FingerPrintContainer(int maxSize) {
+        this(new HeapFingerPrintStore(maxSize));
+    }
+
+    /**
+     * Container backed by the given store, e.g. a
+     * {@link MappedFingerPrintStore} for sets larger than the heap.
+     *
+     * @param store backing store of the fingerprints
+     */
+    public FingerPrintContainer(IFingerPrintStore store) {
+        this.store = store;
     }
 
     //~--- methods ------------------------------------------------------------
@@ -96,9 +99,8 @@ public class FingerPrintContainer implements IFingerPrintContainer {
      * @throws java.io.IOException
      */
     @Override
-    public synchronized void Clear() throws IOException {
-        FingerPrintMap.clear();
-        FingerPrintMap = synchronizedSortedMap(new TreeMap<String, BitSet>());
+    public void Clear() throws IOException {
+        store.Clear();
     }
 
     /**
@@ -107,16 +109,16 @@ public class FingerPrintContainer implements IFingerPrintContainer {
      * @throws java.io.IOException
      */
     @Override
-    public synchronized void Erase(String Key) throws IOException {
-        FingerPrintMap.remove(Key);
+    public void Erase(String Key) throws IOException {
+        store.Erase(Key);
     }
 
     /**
      *
      * @return
      */
-    public synchronized Integer getCount() {
-        return FingerPrintMap.size();
+    public Integer getCount() {
+        return (int) Math.min(store.getCount(), Integer.MAX_VALUE);
     }
 
     /**
@@ -126,15 +128,19 @@ public class FingerPrintContainer implements IFingerPrintContainer {
      * @throws java.io.IOException
      */
     @Override
-    public synchronized void put(String Key, BitSet Value) throws IOException {
-        try {
-            FingerPrintMap.put(Key, Value);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    public void put(String Key, BitSet Value) throws IOException {
+        store.put(Key, Value);
     }
 
     //~--- get methods --------------------------------------------------------
+    /**
+     *
+     * @return backing store of the fingerprints
+     */
+    public IFingerPrintStore getStore() {
+        return store;
+    }
+
     /**
      *
      * @param Key
@@ -142,9 +148,8 @@ public class FingerPrintContainer implements IFingerPrintContainer {
      * @return
      */
     @Override
-    public synchronized BitSet getFingerPrint(String Key) throws IOException {
-        BitSet value = FingerPrintMap.get(Key);
-        return value;
+    public BitSet getFingerPrint(String Key) throws IOException {
+        return store.getFingerPrint(Key);
     }
 
     /**
@@ -154,22 +159,9 @@ public class FingerPrintContainer implements IFingerPrintContainer {
      * @throws java.io.IOException
      */
     @Override
-    public synchronized String getMoleculeID(BitSet bitset)
+    public String getMoleculeID(BitSet bitset)
             throws IOException {
-        String Key = null;
-        for (Map.Entry<String, BitSet> map : FingerPrintMap.entrySet()) {
-            String key = map.getKey();
-            try {
-                if (getTanimotoSimilarity(map.getValue(), bitset) == 1.0) {
-                    Key = key;
-                    break;
-                }
-            } catch (Exception ex) {
-                getLogger(FingerPrintContainer.class.getName()).log(SEVERE, null, ex);
-            }
-        }
-        //System.err.println("Error: Unable to Find AtomContainer ID!!!");
-        return Key;
+        return store.getMoleculeID(bitset);
     }
 
     /**
@@ -178,8 +170,8 @@ public class FingerPrintContainer implements IFingerPrintContainer {
      * @return
      */
     @Override
-    public synchronized Map<String, BitSet> getFingerPrintMap() throws IOException {
-        return unmodifiableMap(FingerPrintMap);
+    public Map<String, BitSet> getFingerPrintMap() throws IOException {
+        return store.getFingerPrintMap();
     }
 
     /**
@@ -189,8 +181,8 @@ public class FingerPrintContainer implements IFingerPrintContainer {
      * @return
      */
     @Override
-    public synchronized boolean isKeyPresent(String Key) throws IOException {
-        return FingerPrintMap.containsKey(Key);
+    public boolean isKeyPresent(String Key) throws IOException {
+        return store.isKeyPresent(Key);
     }
 
     //~--- set methods --------------------------------------------------------
@@ -201,19 +193,18 @@ public class FingerPrintContainer implements IFingerPrintContainer {
      * @throws java.io.IOException
      */
     @Override
-    public synchronized void setValue(String Key, BitSet Value)
+    public void setValue(String Key, BitSet Value)
             throws IOException {
-//        System.out.println("KEY " + Key + " val: " + Value.cardinality());
-        FingerPrintMap.put(Key, Value);
-//        System.out.println("FingerPrintMap " + FingerPrintMap.size() + " val: " + Value.cardinality());
+        store.setValue(Key, Value);
     }
 
     /**
      *
      * @return
+     * @throws java.io.IOException
      */
-    public synchronized Set<String> getCompoundIDSet() {
-        return FingerPrintMap.keySet();
+    public Set<String> getCompoundIDSet() throws IOException {
+        return new TreeSet<>(store.getIDList());
     }
 
     /**
@@ -223,17 +214,8 @@ public class FingerPrintContainer implements IFingerPrintContainer {
      * @return
      */
     @Override
-    public synchronized boolean isValuePresent(BitSet value) throws IOException {
-        for (BitSet bitset : FingerPrintMap.values()) {
-            try {
-                if (getTanimotoSimilarity(value, bitset) == 1.0) {
-                    return true;
-                }
-            } catch (Exception ex) {
-                getLogger(FingerPrintContainer.class.getName()).log(SEVERE, null, ex);
-            }
-        }
-        return false;
+    public boolean isValuePresent(BitSet value) throws IOException {
+        return store.isValuePresent(value);
     }
 
     /**
@@ -241,12 +223,17 @@ public class FingerPrintContainer implements IFingerPrintContainer {
      * @return
      */
     @Override
-    public synchronized boolean isEmpty() throws IOException {
-        return FingerPrintMap.isEmpty();
+    public boolean isEmpty() throws IOException {
+        return store.isEmpty();
     }
 
+    /**
+     * Persist the fingerprints, nothing to do for a heap store.
+     *
+     * @throws java.io.IOException
+     */
     @Override
     public void write() throws IOException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        store.write();
     }
 }
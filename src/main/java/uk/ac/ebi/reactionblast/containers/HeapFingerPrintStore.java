@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.containers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import static java.util.Collections.unmodifiableMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import static java.util.logging.Level.SEVERE;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static uk.ac.ebi.reactionblast.fingerprints.tools.Similarity.getTanimotoSimilarity;
+import uk.ac.ebi.reactionblast.interfaces.IFingerPrintStore;
+
+/**
+ * Bounded, concurrent store of fingerprints on the heap, the oldest are
+ * evicted first. Nothing is persisted: write() does nothing and close()
+ * drops the fingerprints.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class HeapFingerPrintStore implements IFingerPrintStore {
+
+    private static final Logger LOG = getLogger(HeapFingerPrintStore.class.getName());
+    private final Map<String, BitSet> fingerPrintMap;
+
+    /**
+     *
+     * @param maxSize maximum number of fingerprints (oldest are evicted)
+     */
+    public HeapFingerPrintStore(int maxSize) {
+        this.fingerPrintMap = new BoundedConcurrentMap<>(new ConcurrentSkipListMap<String, BitSet>(), maxSize);
+    }
+
+    @Override
+    public void Clear() throws IOException {
+        fingerPrintMap.clear();
+    }
+
+    @Override
+    public void Erase(String Key) throws IOException {
+        fingerPrintMap.remove(Key);
+    }
+
+    @Override
+    public void put(String Key, BitSet Value) throws IOException {
+        fingerPrintMap.put(Key, Value);
+    }
+
+    @Override
+    public void setValue(String Key, BitSet Value) throws IOException {
+        fingerPrintMap.put(Key, Value);
+    }
+
+    @Override
+    public BitSet getFingerPrint(String Key) throws IOException {
+        return fingerPrintMap.get(Key);
+    }
+
+    @Override
+    public String getMoleculeID(BitSet Value) throws IOException {
+        for (Map.Entry<String, BitSet> map : fingerPrintMap.entrySet()) {
+            try {
+                if (getTanimotoSimilarity(map.getValue(), Value) == 1.0) {
+                    return map.getKey();
+                }
+            } catch (Exception ex) {
+                LOG.log(SEVERE, null, ex);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isValuePresent(BitSet Value) throws IOException {
+        return getMoleculeID(Value) != null;
+    }
+
+    @Override
+    public Map<String, BitSet> getFingerPrintMap() throws IOException {
+        return unmodifiableMap(fingerPrintMap);
+    }
+
+    @Override
+    public boolean isKeyPresent(String Key) throws IOException {
+        return fingerPrintMap.containsKey(Key);
+    }
+
+    @Override
+    public boolean isEmpty() throws IOException {
+        return fingerPrintMap.isEmpty();
+    }
+
+    @Override
+    public long getCount() {
+        return fingerPrintMap.size();
+    }
+
+    @Override
+    public List<String> getIDList() throws IOException {
+        List<String> list = new ArrayList<>(fingerPrintMap.keySet());
+        list.sort(null);
+        return list;
+    }
+
+    @Override
+    public void write() throws IOException {
+    }
+
+    @Override
+    public void close() throws IOException {
+        fingerPrintMap.clear();
+    }
+}
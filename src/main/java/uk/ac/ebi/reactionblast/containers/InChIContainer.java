@@ -20,10 +20,9 @@ package uk.ac.ebi.reactionblast.containers;
 
 //~--- non-JDK imports --------------------------------------------------------
 import java.io.IOException;
-import static java.util.Collections.synchronizedSortedMap;
 import static java.util.Collections.unmodifiableMap;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
 import uk.ac.ebi.reactionblast.interfaces.IInChIContainer;
@@ -60,35 +59,42 @@ import uk.ac.ebi.reactionblast.interfaces.IInChIContainer;
  */
 public class InChIContainer implements IInChIContainer, Cloneable {
 
-    /* Singleton Pattern Implementation */
-
-    private static InChIContainer _instance = null;
-    private static Map<String, String> InChIMap = null;
     private static final Logger LOG = getLogger(InChIContainer.class.getName());
 
     /**
      *
      * @throws java.io.IOException
-     * @return
+     * @return number of InChIs in the default mapping context
      */
     public static int getCount() throws IOException {
-        return InChIMap.size();
+        return getInstance().size();
     }
 
     /**
      *
-     * @return
+     * @return the container of the current mapping context
      */
-    public static synchronized InChIContainer getInstance() {
-        if (_instance == null) {
-            _instance = new InChIContainer();
-        }
-        return _instance;
+    public static InChIContainer getInstance() {
+        return MappingContext.getCurrent().getInChIContainer();
     }
+    private final Map<String, String> InChIMap;
 
     //~--- constructors -------------------------------------------------------
-    private InChIContainer() {
-        InChIMap = synchronizedSortedMap(new TreeMap<String, String>());
+    /**
+     * Use {@link MappingContext} to get a container scoped to a job.
+     *
+     * @param maxSize maximum number of InChIs (oldest are evicted)
+     */
+    public InChIContainer(int maxSize) {
+        InChIMap = new BoundedConcurrentMap<>(new ConcurrentSkipListMap<String, String>(), maxSize);
+    }
+
+    /**
+     *
+     * @return number of InChIs
+     */
+    public int size() {
+        return InChIMap.size();
     }
 
     //~--- methods ------------------------------------------------------------
@@ -97,9 +103,8 @@ public class InChIContainer implements IInChIContainer, Cloneable {
      * @throws java.io.IOException
      */
     @Override
-    public synchronized void Clear() throws IOException {
+    public void Clear() throws IOException {
         InChIMap.clear();
-        _instance = null;
     }
 
     /**
@@ -126,7 +131,7 @@ public class InChIContainer implements IInChIContainer, Cloneable {
      * @throws java.io.IOException
      */
     @Override
-    synchronized public void put(String Key, String Value) throws IOException {
+    public void put(String Key, String Value) throws IOException {
         try {
             if (Value != null) {
                 InChIMap.put(Key, Value);
@@ -144,7 +149,7 @@ public class InChIContainer implements IInChIContainer, Cloneable {
      * @return
      */
     @Override
-    synchronized public String getInChI(String Key)
+    public String getInChI(String Key)
             throws IOException {
         String value = InChIMap.get(Key);
         return value == null ? "" : value;
@@ -157,7 +162,7 @@ public class InChIContainer implements IInChIContainer, Cloneable {
      * @throws java.io.IOException
      */
     @Override
-    public synchronized String getMoleculeID(String Value) throws IOException {
+    public String getMoleculeID(String Value) throws IOException {
         String Key = "Key Not Found";
         for (Map.Entry<String, String> map : InChIMap.entrySet()) {
             if (map.getValue().equals(Value)) {
@@ -173,7 +178,7 @@ public class InChIContainer implements IInChIContainer, Cloneable {
      * @return
      */
     @Override
-    public synchronized Map<String, String> getInChIMap() throws IOException {
+    public Map<String, String> getInChIMap() throws IOException {
         return unmodifiableMap(InChIMap);
     }
 
@@ -184,7 +189,7 @@ public class InChIContainer implements IInChIContainer, Cloneable {
      * @return
      */
     @Override
-    synchronized public boolean isKeyPresent(String Key) throws IOException {
+    public boolean isKeyPresent(String Key) throws IOException {
         boolean flag = InChIMap.containsKey(Key);
 
         return flag;
@@ -198,7 +203,7 @@ public class InChIContainer implements IInChIContainer, Cloneable {
      * @throws java.io.IOException
      */
     @Override
-    synchronized public void setValue(String Key, String Value)
+    public void setValue(String Key, String Value)
             throws IOException {
         InChIMap.put(Key, Value);
     }
@@ -210,7 +215,7 @@ public class InChIContainer implements IInChIContainer, Cloneable {
      * @return
      */
     @Override
-    synchronized public boolean isValuePresent(String Value) throws IOException {
+    public boolean isValuePresent(String Value) throws IOException {
         boolean flag = InChIMap.containsValue(Value);
         return flag;
     }
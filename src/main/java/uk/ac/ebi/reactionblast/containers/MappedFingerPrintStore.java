@@ -0,0 +1,729 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.containers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import java.nio.channels.FileLock;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.ArrayList;
+import java.util.BitSet;
+import static java.util.Collections.unmodifiableMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import uk.ac.ebi.reactionblast.interfaces.IFingerPrintStore;
+
+/**
+ * Off-heap store of fingerprints keyed by molecule or reaction ID, backed by
+ * memory mapped files so that reference sets larger than the heap can be
+ * held, and shared between processes through the page cache.
+ *
+ * <pre>
+ * name.fps  header, then fixed width records: ID offset, fingerprint words
+ * name.ids  record number, length and UTF-8 bytes of each ID
+ * name.idx  ID offsets sorted by ID (binary searched)
+ * </pre>
+ *
+ * New records are appended and looked up in memory until the sorted index is
+ * rewritten by {@link #write()} or {@link #close()}, which also update the
+ * record count in the header; records appended after the last write are not
+ * seen by other processes, and are lost if the store isn't closed.
+ * Replacing a fingerprint overwrites its record, erasing marks it deleted.
+ * Only one process may open the store for writing, any number may open it
+ * read only. Pass it to a {@link FingerPrintContainer} or
+ * {@link MappingContext} to use it as their backing store.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MappedFingerPrintStore implements IFingerPrintStore {
+
+    private static final Logger LOG = getLogger(MappedFingerPrintStore.class.getName());
+
+    private static final int MAGIC = 0x52424650;
+    private static final int VERSION = 1;
+    /*
+     * magic, version, words, reserved, records, indexed records, live records
+     */
+    private static final int HEADER_SIZE = 40;
+    private static final long MAX_SEGMENT = 1L << 30;
+
+    private final File dataFile;
+    private final File idFile;
+    private final File indexFile;
+    private final boolean readOnly;
+    private final int words;
+    private final int recordSize;
+    private RandomAccessFile data;
+    private RandomAccessFile ids;
+    private RandomAccessFile index;
+    private FileLock lock;
+    private Mapping dataMap;
+    private Mapping idMap;
+    private Mapping indexMap;
+    private long records;
+    private long indexed;
+    private long live;
+    private long indexSize;
+    private long idsLength;
+    /*
+     * records not in the sorted index yet (ID to record number)
+     */
+    private final TreeMap<String, Long> tail;
+    private boolean dirty;
+
+    /**
+     * Open (or create) a writable store.
+     *
+     * @param directory directory of the store files
+     * @param name store name (file prefix)
+     * @param bits fingerprint length in bits, used if the store is created
+     * @throws IOException
+     */
+    public MappedFingerPrintStore(File directory, String name, int bits) throws IOException {
+        this(directory, name, bits, false);
+    }
+
+    /**
+     * Open an existing store read only.
+     *
+     * @param directory directory of the store files
+     * @param name store name (file prefix)
+     * @throws IOException
+     */
+    public MappedFingerPrintStore(File directory, String name) throws IOException {
+        this(directory, name, 0, true);
+    }
+
+    private MappedFingerPrintStore(File directory, String name, int bits, boolean readOnly) throws IOException {
+        this.dataFile = new File(directory, name + ".fps");
+        this.idFile = new File(directory, name + ".ids");
+        this.indexFile = new File(directory, name + ".idx");
+        this.readOnly = readOnly;
+        this.tail = new TreeMap<>();
+        if (readOnly && !dataFile.isFile()) {
+            throw new IOException("Fingerprint store not found: " + dataFile);
+        }
+        if (!readOnly) {
+            directory.mkdirs();
+        }
+        String mode = readOnly ? "r" : "rw";
+        this.data = new RandomAccessFile(dataFile, mode);
+        try {
+            if (!readOnly) {
+                this.lock = data.getChannel().tryLock();
+                if (lock == null) {
+                    throw new IOException("Fingerprint store is open for writing by another process: " + dataFile);
+                }
+            }
+            if (data.length() == 0) {
+                if (bits <= 0) {
+                    throw new IOException("Fingerprint length required to create " + dataFile);
+                }
+                this.words = (bits + 63) >>> 6;
+                writeHeader();
+            } else {
+                ByteBuffer header = read(data.getChannel(), 0, HEADER_SIZE);
+                if (header.getInt() != MAGIC) {
+                    throw new IOException("Not a fingerprint store: " + dataFile);
+                }
+                int version = header.getInt();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported fingerprint store version " + version);
+                }
+                this.words = header.getInt();
+                header.getInt();
+                this.records = header.getLong();
+                this.indexed = header.getLong();
+                this.live = header.getLong();
+            }
+            this.recordSize = 8 + words * 8;
+            this.ids = new RandomAccessFile(idFile, mode);
+            this.index = new RandomAccessFile(indexFile, mode);
+            this.dataMap = new Mapping(data.getChannel(), HEADER_SIZE, (MAX_SEGMENT / recordSize) * recordSize);
+            this.idMap = new Mapping(ids.getChannel(), 0, MAX_SEGMENT);
+            this.indexMap = new Mapping(index.getChannel(), 0, MAX_SEGMENT);
+            this.indexSize = index.length() / 8;
+            this.idsLength = ids.length();
+            if (indexed > records || indexSize > indexed) {
+                /*
+                 * index out of step with the records, rebuild it
+                 */
+                indexed = 0;
+                indexSize = 0;
+                dirty = true;
+            }
+            for (long r = indexed; r < records; r++) {
+                long offset = getIdOffset(r);
+                if (offset >= 0) {
+                    tail.put(readId(offset), r);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            closeFiles();
+            throw e;
+        }
+    }
+
+    /**
+     * @return fingerprint length in bits
+     */
+    public int getFingerPrintSize() {
+        return words * 64;
+    }
+
+    @Override
+    public synchronized long getCount() {
+        return live;
+    }
+
+    @Override
+    public synchronized boolean isEmpty() throws IOException {
+        return live == 0;
+    }
+
+    @Override
+    public synchronized void Clear() throws IOException {
+        checkWritable();
+        data.setLength(HEADER_SIZE);
+        ids.setLength(0);
+        index.setLength(0);
+        dataMap.reset();
+        idMap.reset();
+        indexMap.reset();
+        records = 0;
+        indexed = 0;
+        live = 0;
+        indexSize = 0;
+        idsLength = 0;
+        tail.clear();
+        writeHeader();
+    }
+
+    @Override
+    public synchronized void Erase(String Key) throws IOException {
+        checkWritable();
+        long record = find(Key);
+        if (record < 0) {
+            return;
+        }
+        long offset = getIdOffset(record);
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putLong(0, -offset - 1);
+        data.getChannel().write(buffer, recordPosition(record));
+        tail.remove(Key);
+        live--;
+        dirty = true;
+    }
+
+    @Override
+    public synchronized void put(String Key, BitSet Value) throws IOException {
+        checkWritable();
+        long[] fingerprint = Value.toLongArray();
+        if (fingerprint.length > words) {
+            throw new IllegalArgumentException("Fingerprint of " + Value.length()
+                    + " bits exceeds the store length " + getFingerPrintSize());
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(recordSize);
+        long record = find(Key);
+        if (record >= 0) {
+            buffer.putLong(getIdOffset(record));
+        } else {
+            byte[] bytes = Key.getBytes(UTF_8);
+            long offset = idsLength;
+            ByteBuffer id = ByteBuffer.allocate(8 + bytes.length);
+            id.putInt((int) records).putInt(bytes.length).put(bytes).flip();
+            ids.getChannel().write(id, offset);
+            idsLength += id.capacity();
+            record = records++;
+            buffer.putLong(offset);
+            tail.put(Key, record);
+            live++;
+            dirty = true;
+        }
+        for (long word : fingerprint) {
+            buffer.putLong(word);
+        }
+        buffer.rewind();
+        data.getChannel().write(buffer, recordPosition(record));
+    }
+
+    @Override
+    public void setValue(String Key, BitSet Value) throws IOException {
+        put(Key, Value);
+    }
+
+    @Override
+    public synchronized BitSet getFingerPrint(String Key) throws IOException {
+        long record = find(Key);
+        if (record < 0) {
+            return null;
+        }
+        long position = recordPosition(record) + 8;
+        long[] fingerprint = new long[words];
+        for (int i = 0; i < words; i++) {
+            fingerprint[i] = dataMap.getLong(position + i * 8L);
+        }
+        return BitSet.valueOf(fingerprint);
+    }
+
+    @Override
+    public synchronized boolean isKeyPresent(String Key) throws IOException {
+        return find(Key) >= 0;
+    }
+
+    @Override
+    public synchronized String getMoleculeID(BitSet Value) throws IOException {
+        long[] query = toWords(Value);
+        if (query == null || Value.isEmpty()) {
+            return null;
+        }
+        for (long r = 0; r < records; r++) {
+            long offset = getIdOffset(r);
+            if (offset >= 0 && isIdentical(query, r)) {
+                return readId(offset);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized boolean isValuePresent(BitSet Value) throws IOException {
+        return getMoleculeID(Value) != null;
+    }
+
+    /**
+     * Copies every fingerprint onto the heap, use {@link #search} or
+     * {@link #getFingerPrint} on large stores.
+     *
+     * @return fingerprints by ID
+     * @throws IOException
+     */
+    @Override
+    public synchronized Map<String, BitSet> getFingerPrintMap() throws IOException {
+        Map<String, BitSet> map = new TreeMap<>();
+        for (long r = 0; r < records; r++) {
+            long offset = getIdOffset(r);
+            if (offset >= 0) {
+                long position = recordPosition(r) + 8;
+                long[] fingerprint = new long[words];
+                for (int i = 0; i < words; i++) {
+                    fingerprint[i] = dataMap.getLong(position + i * 8L);
+                }
+                map.put(readId(offset), BitSet.valueOf(fingerprint));
+            }
+        }
+        return unmodifiableMap(map);
+    }
+
+    @Override
+    public synchronized List<String> getIDList() throws IOException {
+        List<String> list = new ArrayList<>((int) Math.min(live, Integer.MAX_VALUE));
+        for (long r = 0; r < records; r++) {
+            long offset = getIdOffset(r);
+            if (offset >= 0) {
+                list.add(readId(offset));
+            }
+        }
+        list.sort(null);
+        return list;
+    }
+
+    /**
+     * Tanimoto similarity search over the whole store, computed on the mapped
+     * records without copying them.
+     *
+     * @param query query fingerprint
+     * @param threshold minimum similarity
+     * @param max maximum number of hits
+     * @return hits by decreasing similarity
+     * @throws IOException
+     */
+    public synchronized List<Hit> search(BitSet query, double threshold, int max) throws IOException {
+        List<Hit> hits = new ArrayList<>();
+        long[] q = toWords(query);
+        if (q == null || max <= 0) {
+            return hits;
+        }
+        int queryCount = query.cardinality();
+        for (long r = 0; r < records; r++) {
+            long offset = getIdOffset(r);
+            if (offset < 0) {
+                continue;
+            }
+            long position = recordPosition(r) + 8;
+            int common = 0;
+            int count = 0;
+            for (int i = 0; i < words; i++) {
+                long word = dataMap.getLong(position + i * 8L);
+                common += Long.bitCount(word & q[i]);
+                count += Long.bitCount(word);
+            }
+            int union = queryCount + count - common;
+            double similarity = union == 0 ? 0.0 : (double) common / union;
+            if (similarity >= threshold) {
+                hits.add(new Hit(readId(offset), similarity));
+                if (hits.size() > max * 2) {
+                    hits.sort(null);
+                    hits.subList(max, hits.size()).clear();
+                }
+            }
+        }
+        hits.sort(null);
+        if (hits.size() > max) {
+            hits.subList(max, hits.size()).clear();
+        }
+        return hits;
+    }
+
+    /**
+     * Merge the appended records into the sorted index and force the files to
+     * disk.
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void write() throws IOException {
+        if (readOnly) {
+            return;
+        }
+        if (dirty) {
+            writeIndex();
+        } else {
+            writeHeader();
+        }
+        data.getChannel().force(false);
+        ids.getChannel().force(false);
+        index.getChannel().force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (data == null) {
+            return;
+        }
+        try {
+            write();
+        } finally {
+            closeFiles();
+        }
+    }
+
+    /*
+     * Merge the live entries of the sorted index with the tail into a new
+     * index file
+     */
+    private void writeIndex() throws IOException {
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try (RandomAccessFile out = new RandomAccessFile(temp, "rw")) {
+            out.setLength(0);
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(8 * 4096);
+            long size = 0;
+            long i = 0;
+            String current = null;
+            long currentOffset = -1;
+            Iterator<Map.Entry<String, Long>> appended = tail.entrySet().iterator();
+            Map.Entry<String, Long> next = appended.hasNext() ? appended.next() : null;
+            while (true) {
+                while (current == null && i < indexSize) {
+                    long offset = indexMap.getLong(i++ * 8);
+                    long record = idMap.getInt(offset);
+                    if (getIdOffset(record) == offset) {
+                        current = readId(offset);
+                        currentOffset = offset;
+                    }
+                }
+                long offset;
+                if (current != null && (next == null || current.compareTo(next.getKey()) <= 0)) {
+                    offset = currentOffset;
+                    current = null;
+                } else if (next != null) {
+                    offset = getIdOffset(next.getValue());
+                    next = appended.hasNext() ? appended.next() : null;
+                } else {
+                    break;
+                }
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    channel.write(buffer);
+                    buffer.clear();
+                }
+                buffer.putLong(offset);
+                size++;
+            }
+            buffer.flip();
+            channel.write(buffer);
+            channel.force(false);
+            indexSize = size;
+        }
+        index.close();
+        indexMap.reset();
+        if (!temp.renameTo(indexFile)) {
+            indexFile.delete();
+            if (!temp.renameTo(indexFile)) {
+                throw new IOException("Unable to replace " + indexFile);
+            }
+        }
+        index = new RandomAccessFile(indexFile, "rw");
+        indexMap = new Mapping(index.getChannel(), 0, MAX_SEGMENT);
+        tail.clear();
+        indexed = records;
+        dirty = false;
+        writeHeader();
+    }
+
+    /*
+     * Record number of a live ID, or -1
+     */
+    private long find(String key) throws IOException {
+        Long appended = tail.get(key);
+        if (appended != null) {
+            return appended;
+        }
+        long low = 0;
+        long high = indexSize - 1;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            long offset = indexMap.getLong(mid * 8);
+            int cmp = readId(offset).compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                long record = idMap.getInt(offset);
+                return getIdOffset(record) == offset ? record : -1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isIdentical(long[] query, long record) throws IOException {
+        long position = recordPosition(record) + 8;
+        for (int i = 0; i < words; i++) {
+            if (dataMap.getLong(position + i * 8L) != query[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Fingerprint padded to the store length, null if it is longer
+     */
+    private long[] toWords(BitSet fingerprint) {
+        long[] raw = fingerprint.toLongArray();
+        if (raw.length > words) {
+            return null;
+        }
+        long[] padded = new long[words];
+        System.arraycopy(raw, 0, padded, 0, raw.length);
+        return padded;
+    }
+
+    /*
+     * Offset of the ID of a record, negative if the record is deleted
+     */
+    private long getIdOffset(long record) throws IOException {
+        return dataMap.getLong(recordPosition(record));
+    }
+
+    private String readId(long offset) throws IOException {
+        byte[] bytes = new byte[idMap.getInt(offset + 4)];
+        idMap.get(offset + 8, bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private long recordPosition(long record) {
+        return HEADER_SIZE + record * recordSize;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(words).putInt(0)
+                .putLong(records).putLong(indexed).putLong(live).flip();
+        data.getChannel().write(header, 0);
+    }
+
+    private void checkWritable() throws IOException {
+        if (readOnly) {
+            throw new IOException("Fingerprint store is read only: " + dataFile);
+        }
+    }
+
+    private void closeFiles() {
+        for (Closeable closeable : new Closeable[]{lock == null ? null : (Closeable) lock::release, data, ids, index}) {
+            if (closeable != null) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Unable to close fingerprint store", e);
+                }
+            }
+        }
+        lock = null;
+        data = null;
+        ids = null;
+        index = null;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Similarity search hit
+     */
+    public static class Hit implements Comparable<Hit> {
+
+        private final String id;
+        private final double similarity;
+
+        Hit(String id, double similarity) {
+            this.id = id;
+            this.similarity = similarity;
+        }
+
+        /**
+         * @return ID of the hit
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return Tanimoto similarity to the query
+         */
+        public double getSimilarity() {
+            return similarity;
+        }
+
+        @Override
+        public int compareTo(Hit o) {
+            int cmp = Double.compare(o.similarity, similarity);
+            return cmp != 0 ? cmp : id.compareTo(o.id);
+        }
+
+        @Override
+        public String toString() {
+            return id + "\t" + similarity;
+        }
+    }
+
+    /*
+     * Read only mapping of a file in segments of at most 1GB, remapped as the
+     * file grows. Positions are relative to the start of the file, the
+     * segments start at base.
+     */
+    private static final class Mapping {
+
+        private final FileChannel channel;
+        private final long base;
+        private final long segmentSize;
+        private final List<MappedByteBuffer> segments;
+
+        Mapping(FileChannel channel, long base, long segmentSize) {
+            this.channel = channel;
+            this.base = base;
+            this.segmentSize = segmentSize;
+            this.segments = new ArrayList<>();
+        }
+
+        void reset() {
+            segments.clear();
+        }
+
+        long getLong(long position) throws IOException {
+            long relative = position - base;
+            int segment = (int) (relative / segmentSize);
+            int offset = (int) (relative % segmentSize);
+            if (offset + 8 > segmentSize) {
+                byte[] bytes = new byte[8];
+                get(position, bytes);
+                return ByteBuffer.wrap(bytes).getLong();
+            }
+            return segment(segment, offset + 8).getLong(offset);
+        }
+
+        int getInt(long position) throws IOException {
+            long relative = position - base;
+            int segment = (int) (relative / segmentSize);
+            int offset = (int) (relative % segmentSize);
+            if (offset + 4 > segmentSize) {
+                byte[] bytes = new byte[4];
+                get(position, bytes);
+                return ByteBuffer.wrap(bytes).getInt();
+            }
+            return segment(segment, offset + 4).getInt(offset);
+        }
+
+        void get(long position, byte[] bytes) throws IOException {
+            int done = 0;
+            while (done < bytes.length) {
+                long relative = position + done - base;
+                int segment = (int) (relative / segmentSize);
+                int offset = (int) (relative % segmentSize);
+                int length = (int) Math.min(bytes.length - done, segmentSize - offset);
+                ByteBuffer buffer = segment(segment, offset + length).duplicate();
+                buffer.position(offset);
+                buffer.get(bytes, done, length);
+                done += length;
+            }
+        }
+
+        /*
+         * Segment mapped at least up to limit, remapped if the file grew
+         */
+        private MappedByteBuffer segment(int segment, int limit) throws IOException {
+            MappedByteBuffer buffer = segment < segments.size() ? segments.get(segment) : null;
+            if (buffer == null || buffer.capacity() < limit) {
+                long start = base + segment * segmentSize;
+                long size = Math.min(segmentSize, channel.size() - start);
+                if (size < limit) {
+                    throw new IOException("Read past the end of the fingerprint store");
+                }
+                buffer = channel.map(READ_ONLY, start, size);
+                while (segments.size() <= segment) {
+                    segments.add(null);
+                }
+                segments.set(segment, buffer);
+            }
+            return buffer;
+        }
+    }
+}
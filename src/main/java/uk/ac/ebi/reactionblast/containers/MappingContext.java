@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.containers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import static java.util.logging.Level.WARNING;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import uk.ac.ebi.reactionblast.interfaces.IFingerPrintStore;
+import uk.ac.ebi.reactionblast.signature.RBlastSignatureCache;
+import uk.ac.ebi.reactionblast.stereo.ebi.ChiralityCache;
+import uk.ac.ebi.reactionblast.tools.SmilesService;
+
+/**
+ * Owns the caches kept between reactions (molecules, fingerprints, InChIs,
+ * reaction data, 2D chirality perception, SMILES and atom signatures). A
+ * context can be created per job or per worker and passed to the
+ * ReactionMechanismTool, so concurrent jobs don't share or grow each other's
+ * caches; closing it drops them. All the caches are thread-safe and bounded,
+ * the oldest entries are evicted first (the least recently used for the
+ * chirality cache).
+ *
+ * The fingerprints are kept on the heap unless another store is given, e.g.
+ * a {@link MappedFingerPrintStore} for reference sets larger than the heap;
+ * closing the context closes that store, which keeps its fingerprints.
+ *
+ * The static getInstance() of the containers returns the containers of the
+ * context bound to the calling thread (see {@link #bind()}), else of the
+ * default context, which lives as long as the JVM. The mapping and annotation
+ * tools bind their context while they run, including on their worker threads.
+ *
+ * The mapping algorithms of a reaction run on a pool started for the
+ * reaction, unless the context is given a long lived executor (e.g. the one
+ * of a server), which its owner shuts down.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MappingContext implements Closeable {
+
+    private static final Logger LOG = getLogger(MappingContext.class.getName());
+
+    /**
+     * Default number of entries per cache
+     */
+    public static final int DEFAULT_SIZE = 10000;
+
+    private static MappingContext _default = null;
+    private static final ThreadLocal<MappingContext> CURRENT = new ThreadLocal<>();
+
+    /**
+     *
+     * @return the JVM wide context used when none is given
+     */
+    public static synchronized MappingContext getDefault() {
+        if (_default == null) {
+            _default = new MappingContext();
+        }
+        return _default;
+    }
+
+    /**
+     *
+     * @return the context bound to the calling thread, else the default one
+     */
+    public static MappingContext getCurrent() {
+        MappingContext context = CURRENT.get();
+        return context == null ? getDefault() : context;
+    }
+
+    private final MolContainer molContainer;
+    private final IFingerPrintStore fingerPrintStore;
+    private final FingerPrintContainer fingerPrintContainer;
+    private final InChIContainer inChIContainer;
+    private final ReactionDBContainer reactionDBContainer;
+    private final ChiralityCache chiralityCache;
+    private final SmilesService smilesService;
+    private final RBlastSignatureCache signatureCache;
+    private volatile ExecutorService executor;
+
+    /**
+     *
+     */
+    public MappingContext() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     *
+     * @param maxSize maximum number of entries per cache
+     */
+    public MappingContext(int maxSize) {
+        this(maxSize, new HeapFingerPrintStore(maxSize));
+    }
+
+    /**
+     *
+     * @param maxSize maximum number of entries per cache
+     * @param fingerPrintStore backing store of the fingerprints
+     */
+    public MappingContext(int maxSize, IFingerPrintStore fingerPrintStore) {
+        this.molContainer = new MolContainer(maxSize);
+        this.fingerPrintStore = fingerPrintStore;
+        this.fingerPrintContainer = new FingerPrintContainer(fingerPrintStore);
+        this.inChIContainer = new InChIContainer(maxSize);
+        this.reactionDBContainer = new ReactionDBContainer(maxSize);
+        this.chiralityCache = new ChiralityCache(maxSize);
+        this.smilesService = new SmilesService(maxSize);
+        this.signatureCache = new RBlastSignatureCache(maxSize);
+    }
+
+    /**
+     * @return molecules of this context
+     */
+    public MolContainer getMolContainer() {
+        return molContainer;
+    }
+
+    /**
+     * @return fingerprints of this context
+     */
+    public FingerPrintContainer getFingerPrintContainer() {
+        return fingerPrintContainer;
+    }
+
+    /**
+     * @return backing store of the fingerprints of this context
+     */
+    public IFingerPrintStore getFingerPrintStore() {
+        return fingerPrintStore;
+    }
+
+    /**
+     * @return InChIs of this context
+     */
+    public InChIContainer getInChIContainer() {
+        return inChIContainer;
+    }
+
+    /**
+     * @return reaction data of this context
+     */
+    public ReactionDBContainer getReactionDBContainer() {
+        return reactionDBContainer;
+    }
+
+    /**
+     * @return 2D chirality perception cache of this context
+     */
+    public ChiralityCache getChiralityCache() {
+        return chiralityCache;
+    }
+
+    /**
+     * @return SMILES generation and cache of this context
+     */
+    public SmilesService getSmilesService() {
+        return smilesService;
+    }
+
+    /**
+     * @return atom signatures of this context
+     */
+    public RBlastSignatureCache getSignatureCache() {
+        return signatureCache;
+    }
+
+    /**
+     * @return executor of the mapping algorithms, null if each reaction
+     * starts its own pool
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @param executor executor of the mapping algorithms (not shut down by
+     * this context), null to start a pool per reaction
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Bind this context to the calling thread until the binding is closed;
+     * the context bound before is restored then.
+     *
+     * @return binding to close when the work is done
+     */
+    public Binding bind() {
+        Binding binding = new Binding(CURRENT.get());
+        CURRENT.set(this);
+        return binding;
+    }
+
+    /**
+     * Empty all the caches and the fingerprint store, the context can still
+     * be used.
+     */
+    public void clear() {
+        try {
+            fingerPrintContainer.Clear();
+        } catch (IOException e) {
+            LOG.log(WARNING, "Unable to clear the fingerprints", e);
+        }
+        clearCaches();
+    }
+
+    /**
+     * Drop the caches at the end of the job and close the fingerprint store.
+     */
+    @Override
+    public void close() {
+        clearCaches();
+        try {
+            fingerPrintStore.close();
+        } catch (IOException e) {
+            LOG.log(WARNING, "Unable to close the fingerprint store", e);
+        }
+    }
+
+    private void clearCaches() {
+        try {
+            molContainer.Clear();
+            inChIContainer.Clear();
+        } catch (IOException e) {
+            LOG.log(WARNING, "Unable to clear the mapping context", e);
+        }
+        reactionDBContainer.clear();
+        chiralityCache.clear();
+        smilesService.clear();
+        signatureCache.clear();
+    }
+
+    /**
+     * Context of a thread, restored when closed.
+     */
+    public static final class Binding implements AutoCloseable {
+
+        private final MappingContext previous;
+
+        private Binding(MappingContext previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
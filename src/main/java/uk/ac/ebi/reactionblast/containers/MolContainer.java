@@ -21,10 +21,9 @@ package uk.ac.ebi.reactionblast.containers;
 //~--- non-JDK imports --------------------------------------------------------
 import java.io.IOException;
 import static java.lang.System.err;
-import static java.util.Collections.synchronizedSortedMap;
 import static java.util.Collections.unmodifiableMap;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import static java.util.logging.Level.SEVERE;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
@@ -72,28 +71,25 @@ import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.removeHy
  */
 public class MolContainer implements IMolContainer {
 
-    /*
-     * Singleton Pattern Implementation
-     */
-    private static MolContainer _instance = null;
-    private static Map<String, IAtomContainer> molContainer = null;
     private static final Logger LOG = getLogger(MolContainer.class.getName());
+    private final Map<String, IAtomContainer> molContainer;
 
     /**
      *
-     * @return
+     * @return the container of the current mapping context
      */
-    public static synchronized MolContainer getInstance() {
-        if (_instance == null) {
-            _instance = new MolContainer();
-        }
-
-        return _instance;
+    public static MolContainer getInstance() {
+        return MappingContext.getCurrent().getMolContainer();
     }
 
     //~--- constructors -------------------------------------------------------
-    private MolContainer() {
-        molContainer = synchronizedSortedMap(new TreeMap<String, IAtomContainer>());
+    /**
+     * Use {@link MappingContext} to get a container scoped to a job.
+     *
+     * @param maxSize maximum number of molecules (oldest are evicted)
+     */
+    public MolContainer(int maxSize) {
+        molContainer = new BoundedConcurrentMap<>(new ConcurrentSkipListMap<String, IAtomContainer>(), maxSize);
     }
 
     //~--- methods ------------------------------------------------------------
@@ -104,7 +100,6 @@ public class MolContainer implements IMolContainer {
     @Override
     public synchronized void Clear() throws IOException {
         molContainer.clear();
-        molContainer = synchronizedSortedMap(new TreeMap<String, IAtomContainer>());
     }
 
     /**
@@ -139,7 +134,7 @@ public class MolContainer implements IMolContainer {
      * @return
      */
     @Override
-    public synchronized IAtomContainer getAtomContainer(String key)
+    public IAtomContainer getAtomContainer(String key)
             throws IOException {
         return molContainer.get(key);
     }
@@ -150,7 +145,7 @@ public class MolContainer implements IMolContainer {
      * @return
      */
     @Override
-    public synchronized Map<String, IAtomContainer> getAtomContainerMap() throws IOException {
+    public Map<String, IAtomContainer> getAtomContainerMap() throws IOException {
         return unmodifiableMap(molContainer);
     }
 
@@ -161,7 +156,7 @@ public class MolContainer implements IMolContainer {
      * @return
      */
     @Override
-    public synchronized boolean isKeyPresent(String key) throws IOException {
+    public boolean isKeyPresent(String key) throws IOException {
         return molContainer.containsKey(key);
     }
 
@@ -178,6 +173,25 @@ public class MolContainer implements IMolContainer {
         molContainer.put(key, value);
     }
 
+    /**
+     * Look up and add in one step: concurrent callers adding the same
+     * molecule get the same ID.
+     *
+     * @param key ID of the molecule if it is not present yet
+     * @param value molecule
+     * @return ID of the identical molecule in the container, else the key
+     * @throws Exception
+     */
+    public synchronized String addIfAbsent(String key, IAtomContainer value)
+            throws Exception {
+        String id = getMoleculeID(value);
+        if (id == null) {
+            molContainer.putIfAbsent(key, value);
+            id = key;
+        }
+        return id;
+    }
+
     /**
      *
      * @param _queryMol mol to be compared
@@ -186,7 +200,7 @@ public class MolContainer implements IMolContainer {
      * @return
      * @throws Exception
      */
-    public synchronized boolean isIdentical(IAtomContainer _queryMol, IAtomContainer _targetMol, boolean removeHydrogen) throws Exception {
+    public boolean isIdentical(IAtomContainer _queryMol, IAtomContainer _targetMol, boolean removeHydrogen) throws Exception {
 
         _targetMol = cloneWithIDs(_targetMol);
         if (_queryMol.getAtomCount() == 1 && _targetMol.getAtomCount() == 1) {
@@ -197,13 +211,14 @@ public class MolContainer implements IMolContainer {
         return isSubgraphIdentical(_queryMol, _targetMol, removeHydrogen);
     }
 
-    private synchronized boolean isSubgraphIdentical(IAtomContainer _mol, IAtomContainer _rMol, boolean removeHydrogen) throws CDKException, IOException {
+    private boolean isSubgraphIdentical(IAtomContainer _mol, IAtomContainer _rMol, boolean removeHydrogen) throws CDKException, IOException {
 //        System.out.println("Graph matching");
 
         IAtomContainer mol1 = _mol;
         IAtomContainer mol2 = _rMol;
 
         Substructure mcs = new Substructure(mol1, mol2, true, true, true, false);
+        mcs.setMaxSolutions(1);
         mcs.setChemFilters(false, false, false);
         return mcs.isSubgraph() && !mcs.isStereoMisMatch()
                 && mol1.getAtomCount() == mol2.getAtomCount();
@@ -217,7 +232,7 @@ public class MolContainer implements IMolContainer {
      * @throws Exception
      */
     @Override
-    public synchronized boolean compareAtomContainer(String key, IAtomContainer mol) throws Exception {
+    public boolean compareAtomContainer(String key, IAtomContainer mol) throws Exception {
         mol = removeHydrogensExceptSingleAndPreserveAtomID(mol);
         try {
             boolean flag = molContainer.containsKey(key);
@@ -258,7 +273,7 @@ public class MolContainer implements IMolContainer {
     }
 
     @Override
-    public synchronized boolean isValuePresent(IAtomContainer Value) throws IOException {
+    public boolean isValuePresent(IAtomContainer Value) throws IOException {
         return molContainer.containsValue(Value);
     }
 
@@ -266,7 +281,7 @@ public class MolContainer implements IMolContainer {
      *
      * @return
      */
-    public synchronized boolean isEmpty() {
+    public boolean isEmpty() {
         return molContainer.isEmpty();
     }
 
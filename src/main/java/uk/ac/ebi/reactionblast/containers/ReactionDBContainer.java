@@ -20,8 +20,6 @@ package uk.ac.ebi.reactionblast.containers;
 
 import java.io.Serializable;
 import java.util.Collection;
-import static java.util.Collections.synchronizedMap;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -34,36 +32,28 @@ import static java.util.logging.Logger.getLogger;
  */
 public class ReactionDBContainer implements Serializable {
 
-    private static Map<String, ReactionInfoCollector> reactionsFingerprints = null;
-    private static ReactionDBContainer ref = null;
     private static final long serialVersionUID = 19998987876L;
     private static final Logger LOG = getLogger(ReactionDBContainer.class.getName());
 
     /**
-     * Creates a new instance of CompoundContainer
      *
-     * @return
+     * @return the container of the current mapping context
      * @throws java.lang.Exception
      */
-    public static synchronized ReactionDBContainer getInstance()
+    public static ReactionDBContainer getInstance()
             throws Exception {
-        if (ref == null) {
-
-            // it's ok, we can call this constructor
-            ref = new ReactionDBContainer();
-        }
-
-        return ref;
+        return MappingContext.getCurrent().getReactionDBContainer();
     }
+    private final Map<String, ReactionInfoCollector> reactionsFingerprints;
 
     //~--- constructors -------------------------------------------------------
     /**
+     * Use {@link MappingContext} to get a container scoped to a job.
      *
-     * @throws Exception
+     * @param maxSize maximum number of reactions (oldest are evicted)
      */
-    protected ReactionDBContainer() throws Exception {
-        reactionsFingerprints = synchronizedMap(new HashMap<String, ReactionInfoCollector>());
-
+    public ReactionDBContainer(int maxSize) {
+        reactionsFingerprints = new BoundedConcurrentMap<>(maxSize);
     }
 
     /**
@@ -71,7 +61,7 @@ public class ReactionDBContainer implements Serializable {
      * @param Key Reaction ID
      * @return true or false
      */
-    synchronized public boolean containsKey(String Key) {
+    public boolean containsKey(String Key) {
 
         return reactionsFingerprints.containsKey(Key);
     }
@@ -80,7 +70,7 @@ public class ReactionDBContainer implements Serializable {
      *
      * @return
      */
-    synchronized public int size() {
+    public int size() {
         return reactionsFingerprints.size();
     }
 
@@ -88,7 +78,7 @@ public class ReactionDBContainer implements Serializable {
      *
      * @return
      */
-    synchronized public boolean isEmpty() {
+    public boolean isEmpty() {
         return reactionsFingerprints.isEmpty();
     }
 
@@ -97,7 +87,7 @@ public class ReactionDBContainer implements Serializable {
      * @param value
      * @return
      */
-    synchronized public boolean containsValue(ReactionInfoCollector value) {
+    public boolean containsValue(ReactionInfoCollector value) {
         return reactionsFingerprints.containsValue(value);
     }
 
@@ -106,7 +96,7 @@ public class ReactionDBContainer implements Serializable {
      * @param key
      * @return
      */
-    synchronized public ReactionInfoCollector get(String key) {
+    public ReactionInfoCollector get(String key) {
         return reactionsFingerprints.get(key);
     }
 
@@ -116,7 +106,7 @@ public class ReactionDBContainer implements Serializable {
      * @param value
      * @return
      */
-    synchronized public ReactionInfoCollector put(String key, ReactionInfoCollector value) {
+    public ReactionInfoCollector put(String key, ReactionInfoCollector value) {
         return reactionsFingerprints.put(key, value);
     }
 
@@ -125,7 +115,7 @@ public class ReactionDBContainer implements Serializable {
      * @param key
      * @return
      */
-    synchronized public ReactionInfoCollector remove(String key) {
+    public ReactionInfoCollector remove(String key) {
         return reactionsFingerprints.remove(key);
     }
 
@@ -133,23 +123,22 @@ public class ReactionDBContainer implements Serializable {
      *
      * @param m
      */
-    synchronized public void putAll(Map<String, ReactionInfoCollector> m) {
+    public void putAll(Map<String, ReactionInfoCollector> m) {
         reactionsFingerprints.putAll(m);
     }
 
     /**
      *
      */
-    synchronized public void clear() {
+    public void clear() {
         reactionsFingerprints.clear();
-        ref = null;
     }
 
     /**
      *
      * @return
      */
-    synchronized public Set<String> keySet() {
+    public Set<String> keySet() {
         return reactionsFingerprints.keySet();
     }
 
@@ -157,7 +146,7 @@ public class ReactionDBContainer implements Serializable {
      *
      * @return
      */
-    synchronized public Collection<ReactionInfoCollector> values() {
+    public Collection<ReactionInfoCollector> values() {
         return reactionsFingerprints.values();
     }
 
@@ -165,7 +154,7 @@ public class ReactionDBContainer implements Serializable {
      *
      * @return
      */
-    synchronized public Set<Entry<String, ReactionInfoCollector>> entrySet() {
+    public Set<Entry<String, ReactionInfoCollector>> entrySet() {
         return reactionsFingerprints.entrySet();
     }
 }
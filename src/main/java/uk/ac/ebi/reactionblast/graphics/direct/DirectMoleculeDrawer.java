@@ -91,6 +91,14 @@ public class DirectMoleculeDrawer extends AbstractDirectDrawer {
         chiralMap.putAll(chirals);
     }
 
+    /**
+     * Removes the chirality labels, so the drawer can be reused for another
+     * molecule or reaction.
+     */
+    public void clearChiralMap() {
+        chiralMap.clear();
+    }
+
     /**
      *
      * @param atoms
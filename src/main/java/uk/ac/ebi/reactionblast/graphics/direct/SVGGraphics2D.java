@@ -0,0 +1,766 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.graphics.direct;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import static java.awt.BasicStroke.CAP_BUTT;
+import static java.awt.BasicStroke.CAP_ROUND;
+import static java.awt.BasicStroke.JOIN_MITER;
+import static java.awt.BasicStroke.JOIN_ROUND;
+import java.awt.Color;
+import static java.awt.Color.BLACK;
+import static java.awt.Color.WHITE;
+import java.awt.Composite;
+import java.awt.Font;
+import static java.awt.Font.PLAIN;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineMetrics;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.text.AttributedCharacterIterator;
+import java.util.Map;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+
+/**
+ * A Graphics2D that writes SVG elements as text instead of painting on a
+ * raster, so the direct drawers (molecules, bonds, atoms, arrows and
+ * highlighters) can produce scalable images without rasterising or PNG
+ * encoding. Shapes are written in user space with the current transform as
+ * a transform attribute; text is written as text elements, measured with
+ * the font outlines (no display or image is needed).
+ *
+ * Images, clipping and XOR painting are not supported.
+ *
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class SVGGraphics2D extends Graphics2D {
+
+    private static final Logger LOG = getLogger(SVGGraphics2D.class.getName());
+
+    private static final FontRenderContext FRC = new FontRenderContext(null, true, true);
+
+    private final StringBuilder body;
+    private final double width;
+    private final double height;
+    private final RenderingHints hints;
+    private AffineTransform transform;
+    private Color color;
+    private Color background;
+    private Stroke stroke;
+    private Font font;
+    private Composite composite;
+
+    /**
+     *
+     * @param width canvas width
+     * @param height canvas height
+     */
+    public SVGGraphics2D(double width, double height) {
+        this(new StringBuilder(1 << 14), width, height);
+    }
+
+    private SVGGraphics2D(StringBuilder body, double width, double height) {
+        this.body = body;
+        this.width = width;
+        this.height = height;
+        this.hints = new RenderingHints(null);
+        this.transform = new AffineTransform();
+        this.color = BLACK;
+        this.background = WHITE;
+        this.stroke = new BasicStroke();
+        this.font = new Font("SansSerif", PLAIN, 12);
+    }
+
+    /**
+     * Write the SVG document for the whole canvas.
+     *
+     * @param writer
+     * @throws IOException
+     */
+    public void write(Writer writer) throws IOException {
+        write(writer, new Rectangle2D.Double(0, 0, width, height));
+    }
+
+    /**
+     * Write the SVG document showing only this part of the canvas (e.g. the
+     * crop bounds returned by the reaction drawers).
+     *
+     * @param writer
+     * @param viewBox visible part of the canvas
+     * @throws IOException
+     */
+    public void write(Writer writer, Rectangle2D viewBox) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" width=\""
+                + number(viewBox.getWidth()) + "\" height=\"" + number(viewBox.getHeight())
+                + "\" viewBox=\"" + number(viewBox.getX()) + " " + number(viewBox.getY()) + " "
+                + number(viewBox.getWidth()) + " " + number(viewBox.getHeight()) + "\">\n");
+        writer.append(body);
+        writer.write("</svg>\n");
+        writer.flush();
+    }
+
+    /**
+     * @return the SVG document for the whole canvas
+     */
+    @Override
+    public String toString() {
+        StringWriter writer = new StringWriter(body.length() + 256);
+        try {
+            write(writer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    @Override
+    public void draw(Shape s) {
+        element(s, false);
+    }
+
+    @Override
+    public void fill(Shape s) {
+        element(s, true);
+    }
+
+    private void element(Shape s, boolean fill) {
+        String d = path(s);
+        if (d.isEmpty()) {
+            return;
+        }
+        body.append("<path d=\"").append(d).append('"');
+        if (fill) {
+            body.append(" fill=\"").append(rgb(color)).append('"');
+            opacity("fill-opacity");
+        } else {
+            body.append(" fill=\"none\" stroke=\"").append(rgb(color)).append('"');
+            opacity("stroke-opacity");
+            strokeAttributes();
+        }
+        transformAttribute();
+        body.append("/>\n");
+    }
+
+    private void strokeAttributes() {
+        if (stroke instanceof BasicStroke) {
+            BasicStroke bs = (BasicStroke) stroke;
+            body.append(" stroke-width=\"").append(number(bs.getLineWidth())).append('"');
+            if (bs.getEndCap() != CAP_BUTT) {
+                body.append(" stroke-linecap=\"").append(bs.getEndCap() == CAP_ROUND ? "round" : "square").append('"');
+            }
+            if (bs.getLineJoin() != JOIN_MITER) {
+                body.append(" stroke-linejoin=\"").append(bs.getLineJoin() == JOIN_ROUND ? "round" : "bevel").append('"');
+            }
+            float[] dash = bs.getDashArray();
+            if (dash != null && dash.length > 0) {
+                body.append(" stroke-dasharray=\"");
+                for (int i = 0; i < dash.length; i++) {
+                    body.append(i == 0 ? "" : " ").append(number(dash[i]));
+                }
+                body.append('"');
+            }
+        }
+    }
+
+    private void opacity(String attribute) {
+        float alpha = color.getAlpha() / 255f;
+        if (composite instanceof AlphaComposite) {
+            alpha *= ((AlphaComposite) composite).getAlpha();
+        }
+        if (alpha < 1f) {
+            body.append(' ').append(attribute).append("=\"").append(number(alpha)).append('"');
+        }
+    }
+
+    private void transformAttribute() {
+        if (!transform.isIdentity()) {
+            body.append(" transform=\"matrix(")
+                    .append(number(transform.getScaleX())).append(' ')
+                    .append(number(transform.getShearY())).append(' ')
+                    .append(number(transform.getShearX())).append(' ')
+                    .append(number(transform.getScaleY())).append(' ')
+                    .append(number(transform.getTranslateX())).append(' ')
+                    .append(number(transform.getTranslateY())).append(")\"");
+        }
+    }
+
+    private static String path(Shape s) {
+        StringBuilder d = new StringBuilder();
+        double[] c = new double[6];
+        for (PathIterator it = s.getPathIterator(null); !it.isDone(); it.next()) {
+            switch (it.currentSegment(c)) {
+                case PathIterator.SEG_MOVETO:
+                    d.append('M').append(number(c[0])).append(' ').append(number(c[1]));
+                    break;
+                case PathIterator.SEG_LINETO:
+                    d.append('L').append(number(c[0])).append(' ').append(number(c[1]));
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    d.append('Q').append(number(c[0])).append(' ').append(number(c[1])).append(' ')
+                            .append(number(c[2])).append(' ').append(number(c[3]));
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    d.append('C').append(number(c[0])).append(' ').append(number(c[1])).append(' ')
+                            .append(number(c[2])).append(' ').append(number(c[3])).append(' ')
+                            .append(number(c[4])).append(' ').append(number(c[5]));
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    d.append('Z');
+                    break;
+                default:
+                    break;
+            }
+        }
+        return d.toString();
+    }
+
+    private static String number(double v) {
+        long rounded = Math.round(v * 100);
+        if (rounded % 100 == 0) {
+            return Long.toString(rounded / 100);
+        }
+        return Double.toString(rounded / 100.0);
+    }
+
+    private static String rgb(Color c) {
+        return String.format("#%02x%02x%02x", c.getRed(), c.getGreen(), c.getBlue());
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                default:
+                    sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void drawString(String str, float x, float y) {
+        body.append("<text x=\"").append(number(x)).append("\" y=\"").append(number(y))
+                .append("\" font-family=\"").append(escape(font.getFamily()))
+                .append("\" font-size=\"").append(number(font.getSize2D())).append('"');
+        if (font.isBold()) {
+            body.append(" font-weight=\"bold\"");
+        }
+        if (font.isItalic()) {
+            body.append(" font-style=\"italic\"");
+        }
+        body.append(" fill=\"").append(rgb(color)).append('"');
+        opacity("fill-opacity");
+        transformAttribute();
+        body.append(" xml:space=\"preserve\">").append(escape(str)).append("</text>\n");
+    }
+
+    @Override
+    public void drawString(String str, int x, int y) {
+        drawString(str, (float) x, (float) y);
+    }
+
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+        drawString(iterator, (float) x, (float) y);
+    }
+
+    @Override
+    public void drawString(AttributedCharacterIterator iterator, float x, float y) {
+        StringBuilder sb = new StringBuilder();
+        for (char ch = iterator.first(); ch != AttributedCharacterIterator.DONE; ch = iterator.next()) {
+            sb.append(ch);
+        }
+        drawString(sb.toString(), x, y);
+    }
+
+    @Override
+    public void drawGlyphVector(GlyphVector g, float x, float y) {
+        fill(g.getOutline(x, y));
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        draw(new Line2D.Double(x1, y1, x2, y2));
+    }
+
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        fill(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void drawRect(int x, int y, int width, int height) {
+        draw(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void clearRect(int x, int y, int width, int height) {
+        Color previous = color;
+        color = background;
+        fillRect(x, y, width, height);
+        color = previous;
+    }
+
+    @Override
+    public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        draw(new RoundRectangle2D.Double(x, y, width, height, arcWidth, arcHeight));
+    }
+
+    @Override
+    public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+        fill(new RoundRectangle2D.Double(x, y, width, height, arcWidth, arcHeight));
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        draw(new Ellipse2D.Double(x, y, width, height));
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        fill(new Ellipse2D.Double(x, y, width, height));
+    }
+
+    @Override
+    public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        draw(new Arc2D.Double(x, y, width, height, startAngle, arcAngle, Arc2D.OPEN));
+    }
+
+    @Override
+    public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+        fill(new Arc2D.Double(x, y, width, height, startAngle, arcAngle, Arc2D.PIE));
+    }
+
+    @Override
+    public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
+        draw(polygon(xPoints, yPoints, nPoints, false));
+    }
+
+    @Override
+    public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        draw(polygon(xPoints, yPoints, nPoints, true));
+    }
+
+    @Override
+    public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+        fill(polygon(xPoints, yPoints, nPoints, true));
+    }
+
+    private static Shape polygon(int[] xPoints, int[] yPoints, int nPoints, boolean close) {
+        Path2D path = new Path2D.Double();
+        for (int i = 0; i < nPoints; i++) {
+            if (i == 0) {
+                path.moveTo(xPoints[i], yPoints[i]);
+            } else {
+                path.lineTo(xPoints[i], yPoints[i]);
+            }
+        }
+        if (close && nPoints > 0) {
+            path.closePath();
+        }
+        return path;
+    }
+
+    /*
+     * No raster images in the SVG output
+     */
+    @Override
+    public boolean drawImage(Image img, AffineTransform xform, ImageObserver obs) {
+        LOG.fine("Images are not drawn in SVG");
+        return false;
+    }
+
+    @Override
+    public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
+        LOG.fine("Images are not drawn in SVG");
+    }
+
+    @Override
+    public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
+        LOG.fine("Images are not drawn in SVG");
+    }
+
+    @Override
+    public void drawRenderableImage(RenderableImage img, AffineTransform xform) {
+        LOG.fine("Images are not drawn in SVG");
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+        return drawImage(img, null, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, int width, int height, ImageObserver observer) {
+        return drawImage(img, null, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, Color bgcolor, ImageObserver observer) {
+        return drawImage(img, null, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int x, int y, int width, int height, Color bgcolor, ImageObserver observer) {
+        return drawImage(img, null, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, ImageObserver observer) {
+        return drawImage(img, null, observer);
+    }
+
+    @Override
+    public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, int sx1, int sy1, int sx2, int sy2, Color bgcolor, ImageObserver observer) {
+        return drawImage(img, null, observer);
+    }
+
+    @Override
+    public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+        LOG.fine("copyArea is not supported in SVG");
+    }
+
+    @Override
+    public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
+        Shape shape = onStroke ? stroke.createStrokedShape(s) : s;
+        return transform.createTransformedShape(shape).intersects(rect);
+    }
+
+    @Override
+    public GraphicsConfiguration getDeviceConfiguration() {
+        return null;
+    }
+
+    @Override
+    public void setComposite(Composite comp) {
+        this.composite = comp;
+    }
+
+    @Override
+    public Composite getComposite() {
+        return composite;
+    }
+
+    @Override
+    public void setPaint(Paint paint) {
+        if (paint instanceof Color) {
+            this.color = (Color) paint;
+        }
+    }
+
+    @Override
+    public Paint getPaint() {
+        return color;
+    }
+
+    @Override
+    public void setStroke(Stroke s) {
+        this.stroke = s;
+    }
+
+    @Override
+    public Stroke getStroke() {
+        return stroke;
+    }
+
+    @Override
+    public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue) {
+        hints.put(hintKey, hintValue);
+    }
+
+    @Override
+    public Object getRenderingHint(RenderingHints.Key hintKey) {
+        return hints.get(hintKey);
+    }
+
+    @Override
+    public void setRenderingHints(Map<?, ?> hints) {
+        this.hints.clear();
+        this.hints.putAll(hints);
+    }
+
+    @Override
+    public void addRenderingHints(Map<?, ?> hints) {
+        this.hints.putAll(hints);
+    }
+
+    @Override
+    public RenderingHints getRenderingHints() {
+        return (RenderingHints) hints.clone();
+    }
+
+    @Override
+    public void translate(int x, int y) {
+        transform.translate(x, y);
+    }
+
+    @Override
+    public void translate(double tx, double ty) {
+        transform.translate(tx, ty);
+    }
+
+    @Override
+    public void rotate(double theta) {
+        transform.rotate(theta);
+    }
+
+    @Override
+    public void rotate(double theta, double x, double y) {
+        transform.rotate(theta, x, y);
+    }
+
+    @Override
+    public void scale(double sx, double sy) {
+        transform.scale(sx, sy);
+    }
+
+    @Override
+    public void shear(double shx, double shy) {
+        transform.shear(shx, shy);
+    }
+
+    @Override
+    public void transform(AffineTransform tx) {
+        transform.concatenate(tx);
+    }
+
+    @Override
+    public void setTransform(AffineTransform tx) {
+        this.transform = new AffineTransform(tx);
+    }
+
+    @Override
+    public AffineTransform getTransform() {
+        return new AffineTransform(transform);
+    }
+
+    @Override
+    public void setBackground(Color color) {
+        this.background = color;
+    }
+
+    @Override
+    public Color getBackground() {
+        return background;
+    }
+
+    @Override
+    public void clip(Shape s) {
+        LOG.fine("Clipping is not supported in SVG");
+    }
+
+    @Override
+    public FontRenderContext getFontRenderContext() {
+        return FRC;
+    }
+
+    /*
+     * A copy sharing the output, as Graphics.create() does for a device
+     */
+    @Override
+    public Graphics create() {
+        SVGGraphics2D copy = new SVGGraphics2D(body, width, height);
+        copy.transform = new AffineTransform(transform);
+        copy.color = color;
+        copy.background = background;
+        copy.stroke = stroke;
+        copy.font = font;
+        copy.composite = composite;
+        copy.hints.putAll(hints);
+        return copy;
+    }
+
+    @Override
+    public Color getColor() {
+        return color;
+    }
+
+    @Override
+    public void setColor(Color c) {
+        if (c != null) {
+            this.color = c;
+        }
+    }
+
+    @Override
+    public void setPaintMode() {
+    }
+
+    @Override
+    public void setXORMode(Color c1) {
+        LOG.fine("XOR mode is not supported in SVG");
+    }
+
+    @Override
+    public Font getFont() {
+        return font;
+    }
+
+    @Override
+    public void setFont(Font font) {
+        if (font != null) {
+            this.font = font;
+        }
+    }
+
+    @Override
+    public FontMetrics getFontMetrics(Font f) {
+        return new OutlineFontMetrics(f);
+    }
+
+    @Override
+    public Rectangle getClipBounds() {
+        return null;
+    }
+
+    @Override
+    public void clipRect(int x, int y, int width, int height) {
+        clip(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void setClip(int x, int y, int width, int height) {
+        setClip(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public Shape getClip() {
+        return null;
+    }
+
+    @Override
+    public void setClip(Shape clip) {
+        if (clip != null) {
+            LOG.fine("Clipping is not supported in SVG");
+        }
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    /*
+     * Font metrics from the font itself, rather than a rendering device
+     */
+    private static class OutlineFontMetrics extends FontMetrics {
+
+        private static final long serialVersionUID = 1L;
+        private final transient LineMetrics lineMetrics;
+
+        OutlineFontMetrics(Font font) {
+            super(font);
+            this.lineMetrics = font.getLineMetrics("Hg", FRC);
+        }
+
+        @Override
+        public FontRenderContext getFontRenderContext() {
+            return FRC;
+        }
+
+        @Override
+        public int getAscent() {
+            return (int) Math.ceil(lineMetrics.getAscent());
+        }
+
+        @Override
+        public int getDescent() {
+            return (int) Math.ceil(lineMetrics.getDescent());
+        }
+
+        @Override
+        public int getLeading() {
+            return (int) Math.ceil(lineMetrics.getLeading());
+        }
+
+        @Override
+        public int getMaxAdvance() {
+            return (int) Math.ceil(font.getMaxCharBounds(FRC).getWidth());
+        }
+
+        @Override
+        public int charWidth(char ch) {
+            return stringWidth(String.valueOf(ch));
+        }
+
+        @Override
+        public int charWidth(int codePoint) {
+            return stringWidth(new String(Character.toChars(codePoint)));
+        }
+
+        @Override
+        public int charsWidth(char[] data, int off, int len) {
+            return stringWidth(new String(data, off, len));
+        }
+
+        @Override
+        public int stringWidth(String str) {
+            return (int) Math.ceil(font.getStringBounds(str, FRC).getWidth());
+        }
+
+        @Override
+        public int[] getWidths() {
+            int[] widths = new int[256];
+            for (char ch = 0; ch < 256; ch++) {
+                widths[ch] = charWidth(ch);
+            }
+            return widths;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.graphics.direct.layout;
+
+import static java.util.Collections.synchronizedMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import javax.vecmath.Point2d;
+import static org.openscience.cdk.geometry.GeometryTools.has2DCoordinates;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.layout.StructureDiagramGenerator;
+import org.openscience.cdk.smiles.SmiFlavor;
+import static org.openscience.cdk.smiles.SmilesGenerator.create;
+
+/**
+ * Bounded, thread-safe cache of 2D layouts keyed by the canonical (unique)
+ * SMILES of the molecule. The coordinates are stored in canonical atom
+ * order, so a layout computed once is reused for every copy of the molecule
+ * whatever its atom order. Molecules with stereo elements are laid out but
+ * not cached, as the unique SMILES does not capture their configuration.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MoleculeLayoutCache {
+
+    private static final Logger LOG = getLogger(MoleculeLayoutCache.class.getName());
+
+    /**
+     * Default number of cached layouts
+     */
+    public static final int DEFAULT_SIZE = 4096;
+
+    private final Map<String, Point2d[]> layouts;
+    private long hits;
+    private long misses;
+
+    /**
+     *
+     */
+    public MoleculeLayoutCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     *
+     * @param maxSize maximum number of layouts kept (least recently used are
+     * evicted)
+     */
+    public MoleculeLayoutCache(final int maxSize) {
+        this.layouts = synchronizedMap(new LinkedHashMap<String, Point2d[]>(256, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Point2d[]> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Set 2D coordinates on the atoms of the molecule, from the cache if a
+     * layout of the same molecule is known, else with the structure diagram
+     * generator. Molecules that already have 2D coordinates are left as they
+     * are.
+     *
+     * @param molecule molecule (laid out in place)
+     * @return true if the layout came from the cache
+     */
+    public boolean layout(IAtomContainer molecule) {
+        if (molecule.getAtomCount() == 0 || has2DCoordinates(molecule)) {
+            return false;
+        }
+        boolean cacheable = !molecule.stereoElements().iterator().hasNext();
+        int[] order = new int[molecule.getAtomCount()];
+        String key = null;
+        if (cacheable) {
+            try {
+                key = create(molecule, SmiFlavor.Unique, order);
+            } catch (CDKException | RuntimeException e) {
+                LOG.log(Level.FINE, "Layout not cached: {0}", e.getMessage());
+            }
+        }
+        if (key != null) {
+            Point2d[] points = layouts.get(key);
+            if (points != null) {
+                for (int i = 0; i < order.length; i++) {
+                    molecule.getAtom(i).setPoint2d(new Point2d(points[order[i]]));
+                }
+                synchronized (this) {
+                    hits++;
+                }
+                return true;
+            }
+        }
+        try {
+            new StructureDiagramGenerator().generateCoordinates(molecule);
+        } catch (CDKException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Unable to layout molecule " + molecule.getID(), e);
+            return false;
+        }
+        synchronized (this) {
+            misses++;
+        }
+        if (key != null && has2DCoordinates(molecule)) {
+            Point2d[] points = new Point2d[order.length];
+            for (int i = 0; i < order.length; i++) {
+                points[order[i]] = new Point2d(molecule.getAtom(i).getPoint2d());
+            }
+            layouts.put(key, points);
+        }
+        return false;
+    }
+
+    /**
+     * @return number of cached layouts
+     */
+    public int size() {
+        return layouts.size();
+    }
+
+    /**
+     * @return layouts served from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return layouts computed
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Remove all cached layouts
+     */
+    public void clear() {
+        layouts.clear();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.io.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import org.openscience.cdk.interfaces.IReaction;
+import uk.ac.ebi.reactionblast.interfaces.IDataSource;
+import uk.ac.ebi.reactionblast.interfaces.ITransformation;
+import static uk.ac.ebi.reactionblast.io.binary.BinaryReactionFormat.DEFLATED;
+import static uk.ac.ebi.reactionblast.io.binary.BinaryReactionFormat.MAGIC;
+import static uk.ac.ebi.reactionblast.io.binary.BinaryReactionFormat.TRAILER_SIZE;
+import static uk.ac.ebi.reactionblast.io.binary.BinaryReactionFormat.VERSION;
+import static uk.ac.ebi.reactionblast.io.binary.BinaryReactionFormat.readReaction;
+
+/**
+ * Reads reactions written by the {@link BinaryReactionDataStore}. The index
+ * is loaded when the file is opened, a reaction is read by seeking to its
+ * block and decoding only the records up to it. The last decoded block is
+ * kept, so reading in file order touches every block once.
+ *
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class BinaryReactionDataSource implements IDataSource<IReaction> {
+
+    private static final Logger LOG = getLogger(BinaryReactionDataSource.class.getName());
+
+    private final RandomAccessFile file;
+    private final boolean compressed;
+    private final List<String> ids;
+    private final long[] blockOffsets;
+    private final int[] recordOffsets;
+    /*
+     * first record for an id
+     */
+    private final Map<String, Integer> index;
+    private ITransformation<IReaction> transformation;
+    private long cachedBlockOffset;
+    private byte[] cachedBlock;
+
+    /**
+     *
+     * @param file binary reaction file
+     * @throws IOException if the file is not a binary reaction file
+     */
+    public BinaryReactionDataSource(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        try {
+            if (this.file.length() < BinaryReactionFormat.HEADER_SIZE + TRAILER_SIZE
+                    || this.file.readInt() != MAGIC) {
+                throw new IOException("Not a binary reaction file: " + file);
+            }
+            int version = this.file.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary reaction file version " + version);
+            }
+            this.compressed = (this.file.readInt() & DEFLATED) != 0;
+            this.file.seek(this.file.length() - TRAILER_SIZE);
+            long indexOffset = this.file.readLong();
+            if (this.file.readInt() != MAGIC) {
+                throw new IOException("Truncated binary reaction file (no index): " + file);
+            }
+            this.file.seek(indexOffset);
+            byte[] raw = new byte[(int) (this.file.length() - TRAILER_SIZE - indexOffset)];
+            this.file.readFully(raw);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+            int count = in.readInt();
+            this.ids = new ArrayList<>(count);
+            this.blockOffsets = new long[count];
+            this.recordOffsets = new int[count];
+            this.index = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF();
+                ids.add(id);
+                blockOffsets[i] = in.readLong();
+                recordOffsets[i] = in.readInt();
+                if (!index.containsKey(id)) {
+                    index.put(id, i);
+                }
+            }
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+        this.cachedBlockOffset = -1;
+    }
+
+    @Override
+    public void setTransformation(ITransformation<IReaction> transformation) {
+        this.transformation = transformation;
+    }
+
+    @Override
+    public synchronized IReaction get(String id) {
+        Integer i = index.get(id);
+        if (i == null) {
+            return null;
+        }
+        try {
+            return read(i);
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Unable to read reaction " + id, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return number of reactions
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    @Override
+    public Iterable<IReaction> getAll() {
+        return () -> new Iterator<IReaction>() {
+
+            private int current;
+
+            @Override
+            public boolean hasNext() {
+                return current < ids.size();
+            }
+
+            @Override
+            public IReaction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                synchronized (BinaryReactionDataSource.this) {
+                    try {
+                        return read(current++);
+                    } catch (IOException e) {
+                        LOG.log(Level.SEVERE, "Unable to read reaction " + ids.get(current - 1), e);
+                        return null;
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public List<String> getIDList() {
+        return new ArrayList<>(ids);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            file.close();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to close binary reaction file", e);
+        }
+        cachedBlock = null;
+    }
+
+    private IReaction read(int i) throws IOException {
+        byte[] block = getBlock(blockOffsets[i]);
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(block, recordOffsets[i], block.length - recordOffsets[i]));
+        IReaction reaction = readReaction(in);
+        return transformation == null ? reaction : transformation.transform(reaction);
+    }
+
+    private byte[] getBlock(long offset) throws IOException {
+        if (offset == cachedBlockOffset) {
+            return cachedBlock;
+        }
+        file.seek(offset);
+        int stored = file.readInt();
+        int length = file.readInt();
+        byte[] bytes = new byte[stored];
+        file.readFully(bytes);
+        if (compressed) {
+            byte[] raw = new byte[length];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(bytes);
+                int n = inflater.inflate(raw);
+                if (n != length) {
+                    throw new IOException("Corrupt block at " + offset);
+                }
+            } catch (DataFormatException ex) {
+                throw new IOException("Corrupt block at " + offset, ex);
+            } finally {
+                inflater.end();
+            }
+            bytes = raw;
+        }
+        cachedBlockOffset = offset;
+        cachedBlock = bytes;
+        return bytes;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.io.binary;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import static java.util.Arrays.copyOf;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import java.util.zip.Deflater;
+import org.openscience.cdk.interfaces.IReaction;
+import uk.ac.ebi.reactionblast.fingerprints.interfaces.IPatternFingerprinter;
+import uk.ac.ebi.reactionblast.interfaces.IDataStore;
+import static uk.ac.ebi.reactionblast.io.binary.BinaryReactionFormat.DEFLATED;
+import static uk.ac.ebi.reactionblast.io.binary.BinaryReactionFormat.FINGERPRINTS;
+import static uk.ac.ebi.reactionblast.io.binary.BinaryReactionFormat.MAGIC;
+import static uk.ac.ebi.reactionblast.io.binary.BinaryReactionFormat.VERSION;
+import static uk.ac.ebi.reactionblast.io.binary.BinaryReactionFormat.writeReaction;
+
+/**
+ * Stores mapped reactions in the compact binary format of
+ * {@link BinaryReactionFormat}. Records are collected in blocks (optionally
+ * deflated), the index of record offsets is written on close so that the
+ * {@link BinaryReactionDataSource} can read any record without parsing the
+ * others. A reaction is serialized in full before it is added to the block
+ * and the index, so a reaction which can't be written leaves no trace.
+ *
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class BinaryReactionDataStore implements IDataStore<IReaction>, Closeable {
+
+    private static final Logger LOG = getLogger(BinaryReactionDataStore.class.getName());
+
+    /**
+     * Default number of reactions per block
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 64;
+
+    private final DataOutputStream out;
+    private final boolean compress;
+    private final int blockSize;
+    private final ByteArrayOutputStream block;
+    private final DataOutputStream blockOut;
+    private final List<String> ids;
+    private final List<Long> blockOffsets;
+    private final List<Integer> recordOffsets;
+    private final Deflater deflater;
+    private int recordsInBlock;
+    private long position;
+    private boolean closed;
+
+    /**
+     *
+     * @param file output file (overwritten)
+     * @param compress deflate the blocks
+     * @throws IOException
+     */
+    public BinaryReactionDataStore(File file, boolean compress) throws IOException {
+        this(file, compress, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     *
+     * @param file output file (overwritten)
+     * @param compress deflate the blocks
+     * @param blockSize reactions per block, smaller blocks are faster to
+     * read at random, larger ones compress better
+     * @throws IOException
+     */
+    public BinaryReactionDataStore(File file, boolean compress, int blockSize) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size should be > 0");
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        this.compress = compress;
+        this.blockSize = blockSize;
+        this.block = new ByteArrayOutputStream(1 << 16);
+        this.blockOut = new DataOutputStream(block);
+        this.ids = new ArrayList<>();
+        this.blockOffsets = new ArrayList<>();
+        this.recordOffsets = new ArrayList<>();
+        this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        this.recordsInBlock = 0;
+        this.closed = false;
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(compress ? DEFLATED : 0);
+        this.position = BinaryReactionFormat.HEADER_SIZE;
+    }
+
+    @Override
+    public void store(IReaction reaction) {
+        append(reaction.getID(), serialize(reaction));
+    }
+
+    /**
+     * Serialize a reaction without storing it, e.g. to check that it can be
+     * written before it is stored elsewhere.
+     *
+     * @param reaction
+     * @return the record to {@link #append(String, byte[])}
+     */
+    public byte[] serialize(IReaction reaction) {
+        try {
+            ByteArrayOutputStream record = new ByteArrayOutputStream(1 << 10);
+            writeReaction(reaction, new DataOutputStream(record));
+            return record.toByteArray();
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Unable to store reaction " + reaction.getID(), e);
+        }
+    }
+
+    /**
+     * Append a serialized reaction.
+     *
+     * @param id reaction ID
+     * @param record record from {@link #serialize(IReaction)}
+     */
+    public synchronized void append(String id, byte[] record) {
+        try {
+            ids.add(id);
+            blockOffsets.add(position);
+            recordOffsets.add(block.size());
+            blockOut.write(record);
+            recordsInBlock++;
+            if (recordsInBlock >= blockSize) {
+                flushBlock();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to store reaction " + id, e);
+        }
+    }
+
+    /**
+     * Store a reaction with its fingerprints (e.g. the bond change and
+     * reaction centre fingerprints of the selected mapping).
+     *
+     * @param reaction
+     * @param fingerprints fingerprints by name
+     */
+    public synchronized void store(IReaction reaction, Map<String, IPatternFingerprinter> fingerprints) {
+        Object previous = reaction.getProperty(FINGERPRINTS);
+        reaction.setProperty(FINGERPRINTS, fingerprints);
+        try {
+            store(reaction);
+        } finally {
+            reaction.setProperty(FINGERPRINTS, previous);
+        }
+    }
+
+    /**
+     * @return number of reactions stored
+     */
+    public synchronized int getCount() {
+        return ids.size();
+    }
+
+    private void flushBlock() throws IOException {
+        if (recordsInBlock == 0) {
+            return;
+        }
+        byte[] raw = block.toByteArray();
+        byte[] stored = raw;
+        int storedLength = raw.length;
+        if (compress) {
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            stored = new byte[Math.max(64, raw.length + raw.length / 100 + 64)];
+            storedLength = 0;
+            while (!deflater.finished()) {
+                if (storedLength == stored.length) {
+                    stored = copyOf(stored, stored.length * 2);
+                }
+                storedLength += deflater.deflate(stored, storedLength, stored.length - storedLength);
+            }
+        }
+        out.writeInt(storedLength);
+        out.writeInt(raw.length);
+        out.write(stored, 0, storedLength);
+        position += 8 + storedLength;
+        block.reset();
+        recordsInBlock = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushBlock();
+            long indexOffset = position;
+            out.writeInt(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i);
+                out.writeUTF(id == null ? "" : id);
+                out.writeLong(blockOffsets.get(i));
+                out.writeInt(recordOffsets.get(i));
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+        } finally {
+            out.close();
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+}
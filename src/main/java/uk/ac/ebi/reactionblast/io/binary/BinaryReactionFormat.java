@@ -0,0 +1,490 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.io.binary;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import static java.util.logging.Level.WARNING;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import javax.vecmath.Point2d;
+import static org.openscience.cdk.CDKConstants.ATOM_ATOM_MAPPING;
+import static org.openscience.cdk.CDKConstants.ISAROMATIC;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.Bond;
+import org.openscience.cdk.PseudoAtom;
+import org.openscience.cdk.Reaction;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainerSet;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObject;
+import org.openscience.cdk.interfaces.IDoubleBondStereochemistry;
+import org.openscience.cdk.interfaces.IDoubleBondStereochemistry.Conformation;
+import org.openscience.cdk.interfaces.IPseudoAtom;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.interfaces.IStereoElement;
+import org.openscience.cdk.interfaces.ITetrahedralChirality;
+import org.openscience.cdk.stereo.DoubleBondStereochemistry;
+import org.openscience.cdk.stereo.ExtendedTetrahedral;
+import org.openscience.cdk.stereo.TetrahedralChirality;
+import uk.ac.ebi.reactionblast.fingerprints.Feature;
+import uk.ac.ebi.reactionblast.fingerprints.PatternFingerprinter;
+import uk.ac.ebi.reactionblast.fingerprints.interfaces.IFeature;
+import uk.ac.ebi.reactionblast.fingerprints.interfaces.IPatternFingerprinter;
+import uk.ac.ebi.reactionblast.mechanism.interfaces.ECBLAST_BOND_CHANGE_FLAGS;
+import static uk.ac.ebi.reactionblast.mechanism.interfaces.ECBLAST_FLAGS.BOND_CHANGE_INFORMATION;
+
+/**
+ * Binary layout of a mapped reaction, shared by the
+ * {@link BinaryReactionDataStore} and the {@link BinaryReactionDataSource}.
+ *
+ * <pre>
+ * file     header block* index trailer
+ * header   "RDTB" version:int flags:int (1 = deflated blocks)
+ * block    stored:int length:int bytes[stored]   (records, back to back)
+ * index    count:int (id:utf block:long offset:int)*
+ * trailer  index:long "RDTB"
+ *
+ * record   id direction:byte molecules(reactants) molecules(products) fingerprints
+ * molecules count:int (multiplier:double molecule)*
+ * molecule id atoms:int atom* bonds:int bond* elements:int element*
+ * atom     flags:byte symbol:utf [label:utf] id charge:int hydrogens:int mass:int
+ *          map:int change:byte [x:double y:double]
+ * bond     atom:int atom:int order:byte stereo:byte flags:byte change:byte
+ * element  1 (tetrahedral) focus:int ligands:int[4] winding:byte
+ *          2 (double bond) bond:int bonds:int[2] conformation:byte
+ *          3 (extended tetrahedral) focus:int peripherals:int[4] winding:byte
+ * fingerprints count:int (name:utf features:int (pattern:utf weight:double)*)*
+ * </pre>
+ *
+ * Nullable strings are a presence byte followed by the text, missing
+ * numbers are -1. Direction, order, stereo, winding and conformation are
+ * written as the fixed codes of the tables below (0 when unset) and change
+ * as the type of the bond change flag (0 without a change), never as enum
+ * ordinals, so a file doesn't depend on the CDK version which wrote it.
+ * Codes are only added to the tables. Stereo elements of other types, or
+ * which refer to atoms outside their molecule, are not written. The bond
+ * change fingerprints of the reaction travel in the {@link #FINGERPRINTS}
+ * property.
+ *
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public final class BinaryReactionFormat {
+
+    /**
+     * Reaction property holding the fingerprints (Map of name to
+     * IPatternFingerprinter) stored with the reaction
+     */
+    public static final String FINGERPRINTS = "BINARY_FINGERPRINTS";
+
+    static final int MAGIC = 0x52445442;
+    static final int VERSION = 2;
+    static final int DEFLATED = 1;
+    static final int HEADER_SIZE = 12;
+    static final int TRAILER_SIZE = 12;
+
+    private static final int AROMATIC = 1;
+    private static final int PSEUDO = 2;
+    private static final int POINT2D = 4;
+
+    private static final int TETRAHEDRAL = 1;
+    private static final int DOUBLE_BOND = 2;
+    private static final int EXTENDED_TETRAHEDRAL = 3;
+
+    /*
+     * code tables, the index is the code written (0 is unset)
+     */
+    private static final IReaction.Direction[] DIRECTIONS = {null,
+        IReaction.Direction.FORWARD,
+        IReaction.Direction.BACKWARD,
+        IReaction.Direction.BIDIRECTIONAL};
+    private static final IBond.Order[] ORDERS = {null,
+        IBond.Order.SINGLE,
+        IBond.Order.DOUBLE,
+        IBond.Order.TRIPLE,
+        IBond.Order.QUADRUPLE,
+        IBond.Order.QUINTUPLE,
+        IBond.Order.SEXTUPLE,
+        IBond.Order.UNSET};
+    private static final IBond.Stereo[] STEREOS = {null,
+        IBond.Stereo.NONE,
+        IBond.Stereo.UP,
+        IBond.Stereo.UP_INVERTED,
+        IBond.Stereo.DOWN,
+        IBond.Stereo.DOWN_INVERTED,
+        IBond.Stereo.UP_OR_DOWN,
+        IBond.Stereo.UP_OR_DOWN_INVERTED,
+        IBond.Stereo.E_OR_Z,
+        IBond.Stereo.E,
+        IBond.Stereo.Z,
+        IBond.Stereo.E_Z_BY_COORDINATES};
+    private static final ITetrahedralChirality.Stereo[] WINDINGS = {null,
+        ITetrahedralChirality.Stereo.CLOCKWISE,
+        ITetrahedralChirality.Stereo.ANTI_CLOCKWISE};
+    private static final Conformation[] CONFORMATIONS = {null,
+        Conformation.TOGETHER,
+        Conformation.OPPOSITE};
+
+    private static final Logger LOG = getLogger(BinaryReactionFormat.class.getName());
+
+    private BinaryReactionFormat() {
+    }
+
+    static void writeReaction(IReaction reaction, DataOutput out) throws IOException {
+        writeNullable(reaction.getID(), out);
+        out.writeByte(encode(reaction.getDirection(), DIRECTIONS));
+        writeMolecules(reaction.getReactants(), out);
+        writeMolecules(reaction.getProducts(), out);
+        Map<String, IPatternFingerprinter> fingerprints = reaction.getProperty(FINGERPRINTS);
+        if (fingerprints == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(fingerprints.size());
+        for (Map.Entry<String, IPatternFingerprinter> e : fingerprints.entrySet()) {
+            out.writeUTF(e.getKey());
+            IPatternFingerprinter fp = e.getValue();
+            out.writeInt(fp.getFeatureCount());
+            for (IFeature feature : fp.getFeatures()) {
+                out.writeUTF(feature.getPattern());
+                out.writeDouble(feature.getWeight());
+            }
+        }
+    }
+
+    static IReaction readReaction(DataInput in) throws IOException {
+        IReaction reaction = new Reaction();
+        reaction.setID(readNullable(in));
+        IReaction.Direction direction = decode(in.readByte(), DIRECTIONS);
+        if (direction != null) {
+            reaction.setDirection(direction);
+        }
+        readMolecules(reaction.getReactants(), in);
+        readMolecules(reaction.getProducts(), in);
+        int count = in.readInt();
+        if (count > 0) {
+            Map<String, IPatternFingerprinter> fingerprints = new TreeMap<>();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                PatternFingerprinter fp = new PatternFingerprinter();
+                fp.setFingerprintID(name);
+                int features = in.readInt();
+                for (int j = 0; j < features; j++) {
+                    String pattern = in.readUTF();
+                    double weight = in.readDouble();
+                    try {
+                        fp.add(new Feature(pattern, weight));
+                    } catch (CDKException ex) {
+                        throw new IOException(ex);
+                    }
+                }
+                fingerprints.put(name, fp);
+            }
+            reaction.setProperty(FINGERPRINTS, fingerprints);
+        }
+        return reaction;
+    }
+
+    private static void writeMolecules(IAtomContainerSet molSet, DataOutput out) throws IOException {
+        out.writeInt(molSet.getAtomContainerCount());
+        for (int i = 0; i < molSet.getAtomContainerCount(); i++) {
+            Double multiplier = molSet.getMultiplier(i);
+            out.writeDouble(multiplier == null ? 1.0 : multiplier);
+            writeMolecule(molSet.getAtomContainer(i), out);
+        }
+    }
+
+    private static void readMolecules(IAtomContainerSet molSet, DataInput in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            double multiplier = in.readDouble();
+            molSet.addAtomContainer(readMolecule(in), multiplier);
+        }
+    }
+
+    private static void writeMolecule(IAtomContainer ac, DataOutput out) throws IOException {
+        writeNullable(ac.getID(), out);
+        out.writeInt(ac.getAtomCount());
+        for (IAtom atom : ac.atoms()) {
+            int flags = 0;
+            if (atom.getFlag(ISAROMATIC)) {
+                flags |= AROMATIC;
+            }
+            if (atom instanceof IPseudoAtom) {
+                flags |= PSEUDO;
+            }
+            if (atom.getPoint2d() != null) {
+                flags |= POINT2D;
+            }
+            out.writeByte(flags);
+            out.writeUTF(atom.getSymbol());
+            if (atom instanceof IPseudoAtom) {
+                writeNullable(((IPseudoAtom) atom).getLabel(), out);
+            }
+            writeNullable(atom.getID(), out);
+            out.writeInt(atom.getFormalCharge() == null ? 0 : atom.getFormalCharge());
+            out.writeInt(atom.getImplicitHydrogenCount() == null ? -1 : atom.getImplicitHydrogenCount());
+            out.writeInt(atom.getMassNumber() == null ? -1 : atom.getMassNumber());
+            Object map = atom.getProperty(ATOM_ATOM_MAPPING);
+            out.writeInt(map instanceof Integer ? (Integer) map : 0);
+            out.writeByte(getChange(atom.getProperty(BOND_CHANGE_INFORMATION)));
+            if (atom.getPoint2d() != null) {
+                out.writeDouble(atom.getPoint2d().x);
+                out.writeDouble(atom.getPoint2d().y);
+            }
+        }
+        out.writeInt(ac.getBondCount());
+        for (IBond bond : ac.bonds()) {
+            out.writeInt(ac.getAtomNumber(bond.getAtom(0)));
+            out.writeInt(ac.getAtomNumber(bond.getAtom(1)));
+            out.writeByte(encode(bond.getOrder(), ORDERS));
+            out.writeByte(encode(bond.getStereo(), STEREOS));
+            out.writeByte(bond.getFlag(ISAROMATIC) ? AROMATIC : 0);
+            out.writeByte(getChange(bond.getProperty(BOND_CHANGE_INFORMATION)));
+        }
+        writeStereoElements(ac, out);
+    }
+
+    private static void writeStereoElements(IAtomContainer ac, DataOutput out) throws IOException {
+        List<IStereoElement> elements = new ArrayList<>();
+        for (IStereoElement se : ac.stereoElements()) {
+            if (isWritable(ac, se)) {
+                elements.add(se);
+            } else {
+                LOG.log(WARNING, "Stereo element not written: {0}", se);
+            }
+        }
+        out.writeInt(elements.size());
+        for (IStereoElement se : elements) {
+            if (se instanceof ITetrahedralChirality) {
+                ITetrahedralChirality tc = (ITetrahedralChirality) se;
+                out.writeByte(TETRAHEDRAL);
+                out.writeInt(ac.getAtomNumber(tc.getChiralAtom()));
+                writeAtoms(ac, tc.getLigands(), out);
+                out.writeByte(encode(tc.getStereo(), WINDINGS));
+            } else if (se instanceof IDoubleBondStereochemistry) {
+                IDoubleBondStereochemistry db = (IDoubleBondStereochemistry) se;
+                out.writeByte(DOUBLE_BOND);
+                out.writeInt(ac.getBondNumber(db.getStereoBond()));
+                for (IBond bond : db.getBonds()) {
+                    out.writeInt(ac.getBondNumber(bond));
+                }
+                out.writeByte(encode(db.getStereo(), CONFORMATIONS));
+            } else {
+                ExtendedTetrahedral et = (ExtendedTetrahedral) se;
+                out.writeByte(EXTENDED_TETRAHEDRAL);
+                out.writeInt(ac.getAtomNumber(et.focus()));
+                writeAtoms(ac, et.peripherals(), out);
+                out.writeByte(encode(et.winding(), WINDINGS));
+            }
+        }
+    }
+
+    /*
+     * Known type, every atom and bond it refers to in the molecule
+     */
+    private static boolean isWritable(IAtomContainer ac, IStereoElement se) {
+        if (se instanceof ITetrahedralChirality) {
+            ITetrahedralChirality tc = (ITetrahedralChirality) se;
+            return tc.getStereo() != null && ac.getAtomNumber(tc.getChiralAtom()) >= 0
+                    && containsAll(ac, tc.getLigands());
+        } else if (se instanceof IDoubleBondStereochemistry) {
+            IDoubleBondStereochemistry db = (IDoubleBondStereochemistry) se;
+            if (db.getStereo() == null || db.getBonds().length != 2
+                    || ac.getBondNumber(db.getStereoBond()) < 0) {
+                return false;
+            }
+            for (IBond bond : db.getBonds()) {
+                if (ac.getBondNumber(bond) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (se instanceof ExtendedTetrahedral) {
+            ExtendedTetrahedral et = (ExtendedTetrahedral) se;
+            return et.winding() != null && ac.getAtomNumber(et.focus()) >= 0
+                    && containsAll(ac, et.peripherals());
+        }
+        return false;
+    }
+
+    private static boolean containsAll(IAtomContainer ac, IAtom[] atoms) {
+        if (atoms.length != 4) {
+            return false;
+        }
+        for (IAtom atom : atoms) {
+            if (ac.getAtomNumber(atom) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeAtoms(IAtomContainer ac, IAtom[] atoms, DataOutput out) throws IOException {
+        for (IAtom atom : atoms) {
+            out.writeInt(ac.getAtomNumber(atom));
+        }
+    }
+
+    private static IAtomContainer readMolecule(DataInput in) throws IOException {
+        IAtomContainer ac = new AtomContainer();
+        ac.setID(readNullable(in));
+        int atomCount = in.readInt();
+        IAtom[] atoms = new IAtom[atomCount];
+        for (int i = 0; i < atomCount; i++) {
+            int flags = in.readByte();
+            String symbol = in.readUTF();
+            IAtom atom;
+            if ((flags & PSEUDO) != 0) {
+                IPseudoAtom pseudo = new PseudoAtom(symbol);
+                pseudo.setLabel(readNullable(in));
+                atom = pseudo;
+            } else {
+                atom = new Atom(symbol);
+            }
+            atom.setFlag(ISAROMATIC, (flags & AROMATIC) != 0);
+            atom.setID(readNullable(in));
+            atom.setFormalCharge(in.readInt());
+            int hydrogens = in.readInt();
+            atom.setImplicitHydrogenCount(hydrogens < 0 ? null : hydrogens);
+            int mass = in.readInt();
+            atom.setMassNumber(mass < 0 ? null : mass);
+            int map = in.readInt();
+            if (map > 0) {
+                atom.setProperty(ATOM_ATOM_MAPPING, map);
+            }
+            setChange(atom, in.readByte());
+            if ((flags & POINT2D) != 0) {
+                atom.setPoint2d(new Point2d(in.readDouble(), in.readDouble()));
+            }
+            atoms[i] = atom;
+        }
+        ac.setAtoms(atoms);
+        int bondCount = in.readInt();
+        IBond[] bonds = new IBond[bondCount];
+        for (int i = 0; i < bondCount; i++) {
+            IBond bond = new Bond(atoms[in.readInt()], atoms[in.readInt()]);
+            bond.setOrder(decode(in.readByte(), ORDERS));
+            bond.setStereo(decode(in.readByte(), STEREOS));
+            bond.setFlag(ISAROMATIC, (in.readByte() & AROMATIC) != 0);
+            setChange(bond, in.readByte());
+            bonds[i] = bond;
+        }
+        ac.setBonds(bonds);
+        readStereoElements(ac, atoms, bonds, in);
+        return ac;
+    }
+
+    private static void readStereoElements(IAtomContainer ac, IAtom[] atoms, IBond[] bonds, DataInput in)
+            throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int type = in.readByte();
+            switch (type) {
+                case TETRAHEDRAL: {
+                    IAtom focus = atoms[in.readInt()];
+                    IAtom[] ligands = readAtoms(atoms, in);
+                    ac.addStereoElement(new TetrahedralChirality(focus, ligands, decode(in.readByte(), WINDINGS)));
+                    break;
+                }
+                case DOUBLE_BOND: {
+                    IBond bond = bonds[in.readInt()];
+                    IBond[] ligands = {bonds[in.readInt()], bonds[in.readInt()]};
+                    ac.addStereoElement(new DoubleBondStereochemistry(bond, ligands,
+                            decode(in.readByte(), CONFORMATIONS)));
+                    break;
+                }
+                case EXTENDED_TETRAHEDRAL: {
+                    IAtom focus = atoms[in.readInt()];
+                    IAtom[] peripherals = readAtoms(atoms, in);
+                    ac.addStereoElement(new ExtendedTetrahedral(focus, peripherals, decode(in.readByte(), WINDINGS)));
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown stereo element type " + type);
+            }
+        }
+    }
+
+    private static IAtom[] readAtoms(IAtom[] atoms, DataInput in) throws IOException {
+        IAtom[] ligands = new IAtom[4];
+        for (int i = 0; i < ligands.length; i++) {
+            ligands[i] = atoms[in.readInt()];
+        }
+        return ligands;
+    }
+
+    /*
+     * Code of the value in the table, 0 for null
+     */
+    private static <T> int encode(T value, T[] codes) throws IOException {
+        if (value == null) {
+            return 0;
+        }
+        for (int i = 1; i < codes.length; i++) {
+            if (codes[i] == value) {
+                return i;
+            }
+        }
+        throw new IOException("No code for " + value);
+    }
+
+    private static <T> T decode(int code, T[] codes) throws IOException {
+        if (code < 0 || code >= codes.length) {
+            throw new IOException("Unknown code " + code + " for " + codes.getClass().getComponentType().getSimpleName());
+        }
+        return codes[code];
+    }
+
+    private static int getChange(Object flag) {
+        return flag instanceof ECBLAST_BOND_CHANGE_FLAGS ? ((ECBLAST_BOND_CHANGE_FLAGS) flag).type() : 0;
+    }
+
+    private static void setChange(IChemObject object, int change) throws IOException {
+        if (change == 0) {
+            return;
+        }
+        for (ECBLAST_BOND_CHANGE_FLAGS flag : ECBLAST_BOND_CHANGE_FLAGS.values()) {
+            if (flag.type() == change) {
+                object.setProperty(BOND_CHANGE_INFORMATION, flag);
+                return;
+            }
+        }
+        throw new IOException("Unknown bond change " + change);
+    }
+
+    private static void writeNullable(String s, DataOutput out) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readNullable(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
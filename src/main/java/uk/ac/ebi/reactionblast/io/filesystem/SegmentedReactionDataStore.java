@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.io.filesystem;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.READ;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.SEVERE;
+import static java.util.logging.Level.WARNING;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IReaction;
+import uk.ac.ebi.reactionblast.interfaces.IDataStore;
+import uk.ac.ebi.reactionblast.tools.bulk.BatchJournal;
+import uk.ac.ebi.reactionblast.tools.rxnfile.MDLV2000RXNWriter;
+
+/**
+ * Stores reactions in numbered MDL RDF output segments, one $RFMT record per
+ * reaction with the reaction ID as its registry number. A segment is written
+ * to a temporary file and, once full (or on close), forced to disk and
+ * atomically renamed; only then are its records journaled as completed. A
+ * crash therefore never leaves a partially written segment behind a journal
+ * entry. On restart the temporary files of the interrupted run are discarded
+ * and the records of committed segments missing from the journal (a crash
+ * between the rename and the journal write) are journaled, so they are
+ * neither lost nor written twice.
+ *
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class SegmentedReactionDataStore implements IDataStore<IReaction>, Closeable {
+
+    private static final Logger LOG = getLogger(SegmentedReactionDataStore.class.getName());
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".rdf";
+    private static final String TMP = ".tmp";
+    private static final String RDF_HEADER = "$RDFILE 1\n";
+    private static final String RECORD_HEADER = "$RFMT $RIREG ";
+
+    private final File directory;
+    private final int segmentSize;
+    private final BatchJournal journal;
+    private final List<BatchJournal.Entry> pending;
+    private int segmentIndex;
+    private File segmentFile;
+    private FileOutputStream segment;
+    private long offset;
+
+    /**
+     *
+     * @param directory output directory
+     * @param segmentSize number of reactions per segment
+     * @param journal journal receiving the committed records
+     * @throws IOException if the committed segments can't be reconciled with
+     * the journal
+     */
+    public SegmentedReactionDataStore(File directory, int segmentSize, BatchJournal journal) throws IOException {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Segment size should be > 0");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.journal = journal;
+        this.pending = new ArrayList<>();
+        this.segmentIndex = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                String name = f.getName();
+                if (name.startsWith(PREFIX) && name.endsWith(TMP)) {
+                    if (!f.delete()) {
+                        LOG.log(SEVERE, "Unable to delete uncommitted segment {0}", name);
+                    }
+                } else if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+                    int index = Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+                    segmentIndex = Math.max(segmentIndex, index);
+                    reconcile(f);
+                }
+            }
+        }
+    }
+
+    /*
+     * Journal the records of a committed segment which the journal doesn't
+     * know of.
+     */
+    private void reconcile(File file) throws IOException {
+        List<BatchJournal.Entry> entries = readEntries(file);
+        List<BatchJournal.Entry> missing = new ArrayList<>();
+        for (BatchJournal.Entry e : entries) {
+            if (!journal.isCompleted(e.getId())) {
+                missing.add(e);
+            }
+        }
+        if (!missing.isEmpty()) {
+            LOG.log(INFO, "Journaling {0} record(s) of segment {1}",
+                    new Object[]{missing.size(), file.getName()});
+            journal.completed(missing);
+        }
+    }
+
+    /**
+     * Locate the records of a committed segment.
+     *
+     * @param file segment
+     * @return id, offset and length of each record, in file order
+     * @throws IOException
+     */
+    private static List<BatchJournal.Entry> readEntries(File file) throws IOException {
+        byte[] bytes = readAllBytes(file.toPath());
+        byte[] header = RECORD_HEADER.getBytes(UTF_8);
+        List<BatchJournal.Entry> entries = new ArrayList<>();
+        String id = null;
+        int start = 0;
+        int line = 0;
+        while (line < bytes.length) {
+            int end = line;
+            while (end < bytes.length && bytes[end] != '\n') {
+                end++;
+            }
+            if (end - line >= header.length
+                    && Arrays.equals(Arrays.copyOfRange(bytes, line, line + header.length), header)) {
+                if (id != null) {
+                    entries.add(new BatchJournal.Entry(id, file.getName(), start, line - start));
+                }
+                id = new String(bytes, line + header.length, end - line - header.length, UTF_8).trim();
+                start = line;
+            }
+            line = end + 1;
+        }
+        if (id != null) {
+            entries.add(new BatchJournal.Entry(id, file.getName(), start, bytes.length - start));
+        }
+        return entries;
+    }
+
+    @Override
+    public synchronized void store(IReaction reaction) {
+        try {
+            StringWriter writer = new StringWriter();
+            try (MDLV2000RXNWriter rxnWriter = new MDLV2000RXNWriter(writer)) {
+                rxnWriter.write(reaction);
+            }
+            byte[] record = (RECORD_HEADER + reaction.getID() + "\n" + writer.toString()).getBytes(UTF_8);
+            if (segment == null) {
+                segmentIndex++;
+                segmentFile = new File(directory, getSegmentName(segmentIndex) + TMP);
+                segment = new FileOutputStream(segmentFile);
+                byte[] header = (RDF_HEADER + "$DATM    "
+                        + new SimpleDateFormat("MM/dd/yy HH:mm").format(new Date()) + "\n").getBytes(UTF_8);
+                segment.write(header);
+                offset = header.length;
+            }
+            segment.write(record);
+            pending.add(new BatchJournal.Entry(reaction.getID(), getSegmentName(segmentIndex), offset, record.length));
+            offset += record.length;
+            if (pending.size() >= segmentSize) {
+                commit();
+            }
+        } catch (CDKException | IOException e) {
+            throw new IllegalStateException("Unable to store reaction " + reaction.getID(), e);
+        }
+    }
+
+    /**
+     * Force the current segment to disk, rename it in place, force the
+     * directory entry to disk and journal its records.
+     *
+     * @throws IOException
+     */
+    public synchronized void commit() throws IOException {
+        if (segment == null) {
+            return;
+        }
+        segment.flush();
+        segment.getFD().sync();
+        segment.close();
+        segment = null;
+        String name = getSegmentName(segmentIndex);
+        move(segmentFile.toPath(), new File(directory, name).toPath(), ATOMIC_MOVE);
+        syncDirectory();
+        journal.completed(pending);
+        pending.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        commit();
+    }
+
+    /*
+     * Not all platforms can open (and force) a directory
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            LOG.log(WARNING, "Unable to sync directory {0}: {1}", new Object[]{directory, e.getMessage()});
+        }
+    }
+
+    private static String getSegmentName(int index) {
+        return String.format("%s%06d%s", PREFIX, index, SUFFIX);
+    }
+}
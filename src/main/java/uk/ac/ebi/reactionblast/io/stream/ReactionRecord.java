@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.io.stream;
+
+import org.openscience.cdk.interfaces.IReaction;
+
+/**
+ * One record of a multi-record input: the parsed reaction, or the error that
+ * made the record unreadable. A bad record doesn't stop the records after it.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class ReactionRecord {
+
+    private final int index;
+    private final String id;
+    private final IReaction reaction;
+    private final Exception error;
+
+    /**
+     *
+     * @param index position of the record in the input (from 1)
+     * @param id record ID
+     * @param reaction parsed reaction
+     */
+    public ReactionRecord(int index, String id, IReaction reaction) {
+        this(index, id, reaction, null);
+    }
+
+    /**
+     *
+     * @param index position of the record in the input (from 1)
+     * @param id record ID
+     * @param error reason the record could not be read
+     */
+    public ReactionRecord(int index, String id, Exception error) {
+        this(index, id, null, error);
+    }
+
+    private ReactionRecord(int index, String id, IReaction reaction, Exception error) {
+        this.index = index;
+        this.id = id;
+        this.reaction = reaction;
+        this.error = error;
+    }
+
+    /**
+     * @return position of the record in the input (from 1)
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return record ID
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the reaction, null for an error record
+     */
+    public IReaction getReaction() {
+        return reaction;
+    }
+
+    /**
+     * @return the parse error, null if the record was read
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * @return true if the record could not be read
+     */
+    public boolean isError() {
+        return error != null;
+    }
+
+    @Override
+    public String toString() {
+        return "ReactionRecord{" + "index=" + index + ", id=" + id
+                + (error == null ? "" : ", error=" + error.getMessage()) + '}';
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.io.stream;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import static java.util.logging.Level.WARNING;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.openscience.cdk.CDKConstants.TITLE;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IReaction;
+import static org.openscience.cdk.io.IChemObjectReader.Mode.RELAXED;
+import org.openscience.cdk.smiles.SmilesParser;
+import uk.ac.ebi.reactionblast.tools.rxnfile.MDLRXNV2000Reader;
+import uk.ac.ebi.reactionblast.tools.rxnfile.MDLV2000Reader;
+
+/**
+ * Lazily reads the records of a multi-record reaction file, one record at a
+ * time, so that a large input can be handed to the mapping workers as it is
+ * read. A record that can't be parsed is returned as an error record and the
+ * reader moves on to the next one.
+ *
+ * <ul>
+ * <li>SMI: one reaction SMILES per line, optionally followed by an ID column
+ * (blank lines and lines starting with '#' are skipped)</li>
+ * <li>RXN: one or more concatenated RXN files</li>
+ * <li>RDF: reaction data file, the ID is taken from the registry number, the
+ * data fields are set as reaction properties</li>
+ * <li>SDF: one molecule per record, read as a reaction of the molecule to
+ * itself</li>
+ * </ul>
+ *
+ * Records without an ID are named after the file and the record index.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class ReactionRecordReader implements Iterator<ReactionRecord>, Iterable<ReactionRecord>, Closeable {
+
+    private static final Logger LOG = getLogger(ReactionRecordReader.class.getName());
+
+    /**
+     * Supported input formats
+     */
+    public enum Format {
+
+        /**
+         * Reaction SMILES, one per line with an optional ID column
+         */
+        SMI,
+        /**
+         * Concatenated MDL RXN files
+         */
+        RXN,
+        /**
+         * MDL reaction data file
+         */
+        RDF,
+        /**
+         * MDL structure data file
+         */
+        SDF;
+
+        /**
+         * Guess the format from the file extension (RXN if unknown).
+         *
+         * @param file
+         * @return format
+         */
+        public static Format forFile(File file) {
+            String name = file.getName().toLowerCase();
+            if (name.endsWith(".smi") || name.endsWith(".smiles") || name.endsWith(".txt")) {
+                return SMI;
+            } else if (name.endsWith(".rdf")) {
+                return RDF;
+            } else if (name.endsWith(".sdf") || name.endsWith(".sd")) {
+                return SDF;
+            }
+            return RXN;
+        }
+    }
+
+    private static final String NEW_LINE = "\n";
+
+    private final BufferedReader input;
+    private final Format format;
+    private final String name;
+    private final SmilesParser smilesParser;
+    private ReactionRecord next;
+    private String pending;
+    private int index;
+    private boolean done;
+
+    /**
+     *
+     * @param file input file
+     * @param format input format
+     * @throws FileNotFoundException
+     */
+    public ReactionRecordReader(File file, Format format) throws FileNotFoundException {
+        this(new InputStreamReader(new FileInputStream(file), UTF_8), format, baseName(file));
+    }
+
+    /**
+     *
+     * @param file input file, the format is guessed from its extension
+     * @throws FileNotFoundException
+     */
+    public ReactionRecordReader(File file) throws FileNotFoundException {
+        this(file, Format.forFile(file));
+    }
+
+    /**
+     *
+     * @param reader input
+     * @param format input format
+     * @param name prefix of the IDs of records without one
+     */
+    public ReactionRecordReader(Reader reader, Format format, String name) {
+        this.input = reader instanceof BufferedReader
+                ? (BufferedReader) reader : new BufferedReader(reader);
+        this.format = format;
+        this.name = name;
+        this.smilesParser = format == Format.SMI ? new SmilesParser(getInstance()) : null;
+    }
+
+    @Override
+    public Iterator<ReactionRecord> iterator() {
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !done) {
+            try {
+                next = readRecord();
+            } catch (IOException e) {
+                next = new ReactionRecord(++index, recordName(index), e);
+                done = true;
+            }
+            if (next == null) {
+                done = true;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public ReactionRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ReactionRecord record = next;
+        next = null;
+        return record;
+    }
+
+    /**
+     * @return number of records read so far
+     */
+    public int getRecordCount() {
+        return index;
+    }
+
+    @Override
+    public void close() throws IOException {
+        done = true;
+        input.close();
+    }
+
+    private ReactionRecord readRecord() throws IOException {
+        switch (format) {
+            case SMI:
+                return readSMILES();
+            case SDF:
+                return readSDF();
+            default:
+                return readRXN();
+        }
+    }
+
+    private String readLine() throws IOException {
+        if (pending != null) {
+            String line = pending;
+            pending = null;
+            return line;
+        }
+        return input.readLine();
+    }
+
+    private ReactionRecord readSMILES() throws IOException {
+        String line;
+        do {
+            line = readLine();
+            if (line == null) {
+                return null;
+            }
+            line = line.trim();
+        } while (line.isEmpty() || line.startsWith("#"));
+        index++;
+        String[] columns = line.split("\\s+", 2);
+        String id = columns.length > 1 ? columns[1].trim() : recordName(index);
+        try {
+            if (!columns[0].contains(">")) {
+                throw new CDKException("Not a valid reaction SMILES: " + columns[0]);
+            }
+            IReaction reaction = smilesParser.parseReactionSmiles(columns[0]);
+            reaction.setID(id);
+            return new ReactionRecord(index, id, reaction);
+        } catch (CDKException | RuntimeException e) {
+            LOG.log(WARNING, "Unable to read record {0} ({1}): {2}", new Object[]{index, id, e.getMessage()});
+            return new ReactionRecord(index, id, e);
+        }
+    }
+
+    /*
+     * A record runs from a $RXN line to the next $RXN, $RFMT or $MFMT line,
+     * the RDF registry number and data fields ahead of it are kept with it.
+     */
+    private ReactionRecord readRXN() throws IOException {
+        String line;
+        String id = null;
+        StringBuilder rxn = null;
+        String field = null;
+        StringBuilder datum = null;
+        Map<Object, Object> properties = new LinkedHashMap<>();
+        while ((line = readLine()) != null) {
+            if (line.startsWith("$RXN")) {
+                if (rxn != null) {
+                    pending = line;
+                    break;
+                }
+                rxn = new StringBuilder();
+            } else if (line.startsWith("$RFMT") || line.startsWith("$MFMT")) {
+                if (rxn != null) {
+                    pending = line;
+                    break;
+                }
+                int reg = line.indexOf("$RIREG");
+                if (reg < 0) {
+                    reg = line.indexOf("$REREG");
+                }
+                if (reg >= 0) {
+                    id = line.substring(reg + 6).trim();
+                }
+                continue;
+            }
+            if (rxn == null) {
+                continue;
+            }
+            if (line.startsWith("$DTYPE")) {
+                putDatum(properties, field, datum);
+                field = line.substring(6).trim();
+                datum = null;
+            } else if (line.startsWith("$DATUM")) {
+                datum = new StringBuilder(line.substring(6).trim());
+            } else if (datum != null) {
+                datum.append(NEW_LINE).append(line);
+            } else if (field == null) {
+                rxn.append(line).append(NEW_LINE);
+            }
+        }
+        if (rxn == null) {
+            return null;
+        }
+        putDatum(properties, field, datum);
+        index++;
+        if (id == null || id.isEmpty()) {
+            id = format == Format.RXN && index == 1 ? name : recordName(index);
+        }
+        try {
+            IReaction reaction;
+            try (MDLRXNV2000Reader reader = new MDLRXNV2000Reader(new StringReader(rxn.toString()), RELAXED)) {
+                reaction = reader.read(getInstance().newInstance(IReaction.class));
+            }
+            reaction.addProperties(properties);
+            reaction.setID(id);
+            return new ReactionRecord(index, id, reaction);
+        } catch (CDKException | IOException | RuntimeException e) {
+            LOG.log(WARNING, "Unable to read record {0} ({1}): {2}", new Object[]{index, id, e.getMessage()});
+            return new ReactionRecord(index, id, e);
+        }
+    }
+
+    private ReactionRecord readSDF() throws IOException {
+        String line;
+        StringBuilder mol = new StringBuilder();
+        boolean blank = true;
+        while ((line = readLine()) != null) {
+            if (line.startsWith("$$$$")) {
+                if (blank) {
+                    continue;
+                }
+                break;
+            }
+            blank &= line.trim().isEmpty();
+            mol.append(line).append(NEW_LINE);
+        }
+        if (blank) {
+            return null;
+        }
+        index++;
+        String id = recordName(index);
+        try {
+            IAtomContainer ac;
+            try (MDLV2000Reader reader = new MDLV2000Reader(new StringReader(mol.toString()), RELAXED)) {
+                ac = reader.read(getInstance().newInstance(IAtomContainer.class));
+            }
+            String title = ac.getProperty(TITLE);
+            if (title != null && !title.trim().isEmpty()) {
+                id = title.trim();
+            }
+            ac.setID(id);
+            IReaction reaction = getInstance().newInstance(IReaction.class);
+            reaction.addReactant(ac, 1.0);
+            /*
+             * the product is a copy, the mapping changes the two sides
+             * independently
+             */
+            reaction.addProduct(ac.clone(), 1.0);
+            reaction.setID(id);
+            return new ReactionRecord(index, id, reaction);
+        } catch (CDKException | CloneNotSupportedException | IOException | RuntimeException e) {
+            LOG.log(WARNING, "Unable to read record {0} ({1}): {2}", new Object[]{index, id, e.getMessage()});
+            return new ReactionRecord(index, id, e);
+        }
+    }
+
+    private static void putDatum(Map<Object, Object> properties, String field, StringBuilder datum) {
+        if (field != null && datum != null) {
+            properties.put(field, datum.toString());
+        }
+    }
+
+    private String recordName(int i) {
+        return name + "_" + i;
+    }
+
+    private static String baseName(File file) {
+        String fileName = file.getName();
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+}
@@ -28,12 +28,15 @@ import static java.lang.System.gc;
 import static java.lang.System.out;
 import static java.util.Collections.synchronizedMap;
 import static java.util.Collections.unmodifiableMap;
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import java.util.logging.Logger;
@@ -41,12 +44,18 @@ import static java.util.logging.Logger.getLogger;
 import org.openscience.cdk.interfaces.IReaction;
 import org.openscience.cdk.tools.ILoggingTool;
 import static org.openscience.cdk.tools.LoggingToolFactory.createLoggingTool;
+import uk.ac.ebi.reactionblast.containers.MappingContext;
 import uk.ac.ebi.reactionblast.interfaces.IStandardizer;
+import uk.ac.ebi.reactionblast.mapping.algorithm.checks.ReactionIdentityHandler;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
 import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MAX;
 import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MIN;
 import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MIXTURE;
 import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.RINGS;
+import uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.MAPPING_SHORTCUT;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.STANDARDIZE;
+import uk.ac.ebi.reactionblast.tools.metrics.Timer;
 import uk.ac.ebi.reactionblast.tools.rxnfile.MDLV2000RXNWriter;
 
 /**
@@ -87,6 +96,8 @@ public class CallableAtomMappingTool implements Serializable {
         }
     }
     private Map<IMappingAlgorithm, Reactor> solution = null;
+    private final ReactionMetrics metrics;
+    private final MappingContext context;
 
     /**
      * Takes a standardizer to standardize the reaction before mapping.
@@ -100,22 +111,85 @@ public class CallableAtomMappingTool implements Serializable {
             IReaction reaction,
             IStandardizer standardizer,
             boolean removeHydrogen) throws Exception {
+        this(reaction, standardizer, removeHydrogen, new ReactionMetrics(reaction.getID()));
+    }
+
+    /**
+     * Takes a standardizer to standardize the reaction before mapping and
+     * records the stage timings in the metrics.
+     *
+     * @param reaction
+     * @param standardizer
+     * @param removeHydrogen
+     * @param metrics
+     * @throws Exception
+     */
+    public CallableAtomMappingTool(
+            IReaction reaction,
+            IStandardizer standardizer,
+            boolean removeHydrogen,
+            ReactionMetrics metrics) throws Exception {
+        this(reaction, standardizer, removeHydrogen, metrics, MappingContext.getDefault());
+    }
+
+    /**
+     * Takes a standardizer to standardize the reaction before mapping,
+     * records the stage timings in the metrics and keeps the caches of the
+     * job in the context.
+     *
+     * @param reaction
+     * @param standardizer
+     * @param removeHydrogen
+     * @param metrics
+     * @param context caches of the job
+     * @throws Exception
+     */
+    public CallableAtomMappingTool(
+            IReaction reaction,
+            IStandardizer standardizer,
+            boolean removeHydrogen,
+            ReactionMetrics metrics,
+            MappingContext context) throws Exception {
         solution = synchronizedMap(new EnumMap<IMappingAlgorithm, Reactor>(IMappingAlgorithm.class));
+        this.metrics = metrics;
+        this.context = context;
         generateAtomAtomMapping(reaction, standardizer, removeHydrogen);
     }
 
+    private IReaction standardize(IStandardizer standardizer, IReaction reaction) {
+        IReaction cleanedReaction = null;
+        Timer.Context standardize = metrics.time(STANDARDIZE);
+        try {
+            cleanedReaction = standardizer.standardize(reaction);
+        } catch (Exception e) {
+            logger.debug("ERROR: in AtomMappingTool: " + e.getMessage());
+            logger.error(e);
+        } finally {
+            standardize.stop();
+        }
+        return cleanedReaction;
+    }
+
     private synchronized void generateAtomAtomMapping(
             IReaction reaction,
             IStandardizer standardizer,
             boolean removeHydrogen) {
-        ExecutorService executor = null;
-        if (DEBUG) {
+        /*
+         * the executor of the context is shared with other jobs, else the
+         * reaction has its own pool
+         */
+        ExecutorService shared = context.getExecutor();
+        ExecutorService executor;
+        if (shared != null) {
+            executor = shared;
+        } else if (DEBUG) {
             executor = newSingleThreadExecutor();
         } else {
             executor = newCachedThreadPool();
         }
+        List<Future<Reactor>> futures = new ArrayList<>();
         int jobCounter = 0;
-        try {
+        try (MappingContext.Binding binding = context.bind()) {
             CompletionService<Reactor> cs = new ExecutorCompletionService<>(executor);
 
             /*
@@ -127,78 +201,64 @@ public class CallableAtomMappingTool implements Serializable {
                 out.println("\n-----------------------------------\n");
                 out.println("\nSTEP 1: Global Model Standardize Reactions\n");
             }
-            IReaction cleanedReaction1 = null;
-            try {
-                cleanedReaction1 = standardizer.standardize(reaction);
-            } catch (Exception e) {
-                logger.debug("ERROR: in AtomMappingTool: " + e.getMessage());
-                logger.error(e);
-            }
+            IReaction cleanedReaction1 = standardize(standardizer, reaction);
             if (DEBUG) {
                 out.println("\nSTEP 2: Calling Mapping Models\n");
             }
-            MappingThread maxThread = new MappingThread("IMappingAlgorithm.MAX", cleanedReaction1, MAX, removeHydrogen);
-            cs.submit(maxThread);
+            ReactionIdentityHandler identity = new ReactionIdentityHandler(cleanedReaction1);
+            MappingThread maxThread = new MappingThread("IMappingAlgorithm.MAX", cleanedReaction1, MAX, removeHydrogen, metrics, context);
+            futures.add(cs.submit(maxThread));
             jobCounter++;
 
             /*
-             * MIN Algorithm
-             */
-            logger.info("\n|++++++++++++++++++++++++++++|");
-            logger.info("c) Local Model: ");
-            if (DEBUG) {
-                out.println("\n-----------------------------------\n");
-                out.println("\nSTEP 1: Local Model Standardize Reactions\n");
-            }
-            IReaction cleanedReaction2 = null;
-            try {
-                cleanedReaction2 = standardizer.standardize(reaction);
-            } catch (Exception e) {
-                logger.debug("ERROR: in AtomMappingTool: " + e.getMessage());
-                logger.error(e);
-            }
-            MappingThread minThread = new MappingThread("IMappingAlgorithm.MIN", cleanedReaction2, MIN, removeHydrogen);
-            cs.submit(minThread);
-            jobCounter++;
-            /*
-             * MIXTURE Algorithm
+             * Transport and stereo isomerase reactions have a single mapping,
+             * which the global model finds, skip the other models
              */
-            logger.info("\n|++++++++++++++++++++++++++++|");
-            logger.info("b) Mixture Model: ");
-            if (DEBUG) {
-                out.println("\n-----------------------------------\n");
-                out.println("\nSTEP 1: Mixture Model Standardize Reactions\n");
-            }
-            IReaction cleanedReaction3 = null;
-            try {
-                cleanedReaction3 = standardizer.standardize(reaction);
-            } catch (Exception e) {
-                logger.debug("ERROR: in AtomMappingTool: " + e.getMessage());
-                logger.error(e);
-            }
-            MappingThread maxMixtureThread = new MappingThread("IMappingAlgorithm.MIXTURE", cleanedReaction3, MIXTURE, removeHydrogen);
-            cs.submit(maxMixtureThread);
-            jobCounter++;
+            if (identity.isTrivial()) {
+                logger.info("Identity reaction, mapped by the Global Model only");
+                metrics.increment(MAPPING_SHORTCUT);
+            } else {
+                /*
+                 * MIN Algorithm
+                 */
+                logger.info("\n|++++++++++++++++++++++++++++|");
+                logger.info("c) Local Model: ");
+                if (DEBUG) {
+                    out.println("\n-----------------------------------\n");
+                    out.println("\nSTEP 1: Local Model Standardize Reactions\n");
+                }
+                IReaction cleanedReaction2 = standardize(standardizer, reaction);
+                MappingThread minThread = new MappingThread("IMappingAlgorithm.MIN", cleanedReaction2, MIN, removeHydrogen, metrics, context);
+                futures.add(cs.submit(minThread));
+                jobCounter++;
+                /*
+                 * MIXTURE Algorithm
+                 */
+                logger.info("\n|++++++++++++++++++++++++++++|");
+                logger.info("b) Mixture Model: ");
+                if (DEBUG) {
+                    out.println("\n-----------------------------------\n");
+                    out.println("\nSTEP 1: Mixture Model Standardize Reactions\n");
+                }
+                IReaction cleanedReaction3 = standardize(standardizer, reaction);
+                MappingThread maxMixtureThread = new MappingThread("IMappingAlgorithm.MIXTURE", cleanedReaction3, MIXTURE, removeHydrogen, metrics, context);
+                futures.add(cs.submit(maxMixtureThread));
+                jobCounter++;
 
-            /*
-             * RINGS Minimization
-             */
-            logger.info("\n|++++++++++++++++++++++++++++|");
-            logger.info("d) Rings Model: ");
-            if (DEBUG) {
-                out.println("\n-----------------------------------\n");
-                out.println("\nSTEP 1: Rings Model Standardize Reactions\n");
-            }
-            IReaction cleanedReaction4 = null;
-            try {
-                cleanedReaction4 = standardizer.standardize(reaction);
-            } catch (Exception e) {
-                logger.debug("ERROR: in AtomMappingTool: " + e.getMessage());
-                logger.error(e);
+                /*
+                 * RINGS Minimization
+                 */
+                logger.info("\n|++++++++++++++++++++++++++++|");
+                logger.info("d) Rings Model: ");
+                if (DEBUG) {
+                    out.println("\n-----------------------------------\n");
+                    out.println("\nSTEP 1: Rings Model Standardize Reactions\n");
+                }
+                IReaction cleanedReaction4 = standardize(standardizer, reaction);
+                MappingThread ringThread = new MappingThread("IMappingAlgorithm.RINGS", cleanedReaction4, RINGS, removeHydrogen, metrics, context);
+                futures.add(cs.submit(ringThread));
+                jobCounter++;
             }
-            MappingThread ringThread = new MappingThread("IMappingAlgorithm.RINGS", cleanedReaction4, RINGS, removeHydrogen);
-            cs.submit(ringThread);
-            jobCounter++;
 
             /*
              * Collect the results
@@ -207,24 +267,38 @@ public class CallableAtomMappingTool implements Serializable {
                 Reactor chosen = cs.take().get();
                 putSolution(chosen.getAlgorithm(), chosen);
             }
-            executor.shutdown();
+            gc();
+        } catch (InterruptedException e) {
             /*
-             Wait until all threads are finish
-             *
+             * the job was cancelled, stop the mapping threads
              */
-            while (!executor.isTerminated()) {
+            for (Future<Reactor> future : futures) {
+                future.cancel(true);
             }
-            gc();
-        } catch (InterruptedException | ExecutionException e) {
+            if (executor != shared) {
+                executor.shutdownNow();
+            }
+            Thread.currentThread().interrupt();
+            logger.debug("Atom-Atom Mapping interrupted");
+        } catch (ExecutionException e) {
             logger.debug("ERROR: in AtomMappingTool: " + e.getMessage());
             logger.error(e);
         } finally {
-            executor.shutdown();
+            if (executor != shared) {
+                executor.shutdown();
+            }
         }
 
         logger.info("!!!!Atom-Atom Mapping Done!!!!");
     }
 
+    /**
+     * @return caches of the job this mapping belongs to
+     */
+    public MappingContext getContext() {
+        return context;
+    }
+
     /**
      * @return the solution
      */
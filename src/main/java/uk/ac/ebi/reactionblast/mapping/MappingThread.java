@@ -24,7 +24,11 @@ import static java.util.logging.Logger.getLogger;
 import org.openscience.cdk.interfaces.IReaction;
 import org.openscience.cdk.tools.ILoggingTool;
 import static org.openscience.cdk.tools.LoggingToolFactory.createLoggingTool;
+import uk.ac.ebi.reactionblast.containers.MappingContext;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
+import uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.MAPPING_ALGORITHM;
+import uk.ac.ebi.reactionblast.tools.metrics.Timer;
 
 /**
  * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
@@ -37,6 +41,8 @@ class MappingThread implements Callable<Reactor> {
     private final IReaction cleanedReaction;
     private final IMappingAlgorithm algorithm;
     private final boolean removeHydrogen;
+    private final ReactionMetrics metrics;
+    private final MappingContext context;
 
     /**
      *
@@ -44,13 +50,18 @@ class MappingThread implements Callable<Reactor> {
      * @param removeHydrogen true (map without hydrogen, for faster mapping)
      * else false for complete with Hydrogen
      * @param algorithm
+     * @param metrics stage timings of the reaction
+     * @param context caches of the job, bound to the mapping thread
      *
      * @return Mapped Object
      */
-    MappingThread(String message, IReaction cleanedReaction, IMappingAlgorithm algorithm, boolean removeHydrogen) {
+    MappingThread(String message, IReaction cleanedReaction, IMappingAlgorithm algorithm, boolean removeHydrogen, ReactionMetrics metrics,
+            MappingContext context) {
         this.cleanedReaction = cleanedReaction;
         this.algorithm = algorithm;
         this.removeHydrogen = removeHydrogen;
+        this.metrics = metrics;
+        this.context = context;
         logger.info("|++++++++++++++++++++++++++++|");
         logger.info("|Atom Atom Mapping Tool Initialized for " + message);
     }
@@ -59,7 +70,12 @@ class MappingThread implements Callable<Reactor> {
     public Reactor call() throws Exception {
         try {
             Reactor reactor;
-            reactor = new Reactor(cleanedReaction, removeHydrogen, algorithm);
+            Timer.Context mapping = metrics.time(MAPPING_ALGORITHM + algorithm.name());
+            try (MappingContext.Binding binding = context.bind()) {
+                reactor = new Reactor(cleanedReaction, removeHydrogen, algorithm, metrics);
+            } finally {
+                mapping.stop();
+            }
             logger.info("|Done " + reactor.getAlgorithm() + " |");
             return reactor;
         } catch (Exception ex) {
@@ -54,7 +54,6 @@ import static java.lang.System.err;
 import static java.lang.System.out;
 import java.util.ArrayList;
 import static java.util.Collections.synchronizedMap;
-import static java.util.Collections.synchronizedSortedMap;
 import static java.util.Collections.unmodifiableList;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -87,7 +86,7 @@ import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeMolecule;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.cloneWithIDs;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
-import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.removeHydrogensExceptSingleAndPreserveAtomID;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.removeHydrogensExceptSingleAndPreserveAtomIDWithoutClone;
 import static uk.ac.ebi.reactionblast.tools.ExtReactionManipulatorTool.deepClone;
 import static java.lang.Integer.parseInt;
 import static java.lang.Math.max;
@@ -98,6 +97,7 @@ import static java.util.Collections.synchronizedList;
 import static java.util.logging.Logger.getLogger;
 import static org.openscience.cdk.geometry.GeometryTools.has2DCoordinates;
 import org.openscience.cdk.smiles.SmiFlavor;
+import uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics;
 import static org.openscience.cdk.tools.manipulator.AtomContainerManipulator.getBondArray;
 
 /**
@@ -109,17 +109,14 @@ public class Reactor extends AbstractReactor implements Serializable {
     private static final boolean DEBUG = false;
     private static final long serialVersionUID = 197816786981017L;
     private static final Logger LOG = getLogger(Reactor.class.getName());
-    private final Map<Integer, Integer> rLabelledAtoms;
-    private final Map<Integer, Integer> pLabelledAtoms;
     private final Map<Integer, Integer> inputRankLabelledAtomsReactant;
     private final Map<Integer, Integer> inputRankLabelledAtomsProduct;
-    private final Map<Integer, IAtomContainer> educts;
-    private final Map<Integer, IAtomContainer> products;
     private final List<IBond> rBonds;
     private final List<IBond> pBonds;
     private final IReaction reactionWithSTOICHIOMETRY;
     private final boolean partialMapping;
     private final IMappingAlgorithm algorithm;
+    private final ReactionMetrics metrics;
     private MoleculeMoleculeMapping reactionBlastMolMapping;
     private Integer substrateAtomCounter;
     private Integer productAtomCounter;
@@ -134,30 +131,30 @@ public class Reactor extends AbstractReactor implements Serializable {
      * @param balanceReaction eg. balance hydrogens in the reaction if its not
      * balanced
      * @param partialMapping (without Hydrogens is set True, its faster)
+     * @param algorithm
+     * @param metrics stage timings of the reaction
      * @throws Exception
      */
     Reactor(IReaction reaction,
             boolean partialMapping,
-            IMappingAlgorithm algorithm)
+            IMappingAlgorithm algorithm,
+            ReactionMetrics metrics)
             throws Exception {
 //        System.err.println("In Reaction");
 //        SmilesGenerator withAtomClasses = SmilesGenerator.unique().aromatic().withAtomClasses();
 //        System.err.println("Input reaction to be mapped " + withAtomClasses.createReactionSMILES(reaction));
         this.partialMapping = partialMapping;
         this.algorithm = algorithm;
+        this.metrics = metrics;
         this.reactionWithSTOICHIOMETRY = reaction.getBuilder().newInstance(IReaction.class);
         this.reactionWithUniqueSTOICHIOMETRY = reaction.getBuilder().newInstance(IReaction.class);
         this.balanceFlag = true;
 
         this.inputRankLabelledAtomsReactant = synchronizedMap(new HashMap<Integer, Integer>());
         this.inputRankLabelledAtomsProduct = synchronizedMap(new HashMap<Integer, Integer>());
-        this.rLabelledAtoms = synchronizedMap(new HashMap<Integer, Integer>());
-        this.pLabelledAtoms = synchronizedMap(new HashMap<Integer, Integer>());
         this.rBonds = synchronizedList(new ArrayList<IBond>());
         this.pBonds = synchronizedList(new ArrayList<IBond>());
 
-        this.educts = synchronizedSortedMap(new TreeMap<Integer, IAtomContainer>());
-        this.products = synchronizedSortedMap(new TreeMap<Integer, IAtomContainer>());
 
         this.substrateAtomCounter = 1;
         this.productAtomCounter = 1;
@@ -203,8 +200,10 @@ public class Reactor extends AbstractReactor implements Serializable {
         try {
             for (int i = 0; i < referenceReaction.getReactantCount(); i++) {
                 IAtomContainer refMol = referenceReaction.getReactants().getAtomContainer(i);
-                IAtomContainer mol = cloneWithIDs(refMol);//refMol.clone();
-                mol = canonicalLabelling(mol);
+                /*
+                 * canonicalLabelling works on a copy
+                 */
+                IAtomContainer mol = canonicalLabelling(refMol);
 
                 mol.setID(referenceReaction.getReactants().getAtomContainer(i).getID());
                 Double st = referenceReaction.getReactantCoefficient(refMol);
@@ -217,8 +216,10 @@ public class Reactor extends AbstractReactor implements Serializable {
         try {
             for (int i = 0; i < referenceReaction.getProductCount(); i++) {
                 IAtomContainer refMol = referenceReaction.getProducts().getAtomContainer(i);
-                IAtomContainer mol = cloneWithIDs(refMol);//refMol.clone();
-                mol = canonicalLabelling(mol);
+                /*
+                 * canonicalLabelling works on a copy
+                 */
+                IAtomContainer mol = canonicalLabelling(refMol);
 
                 mol.setID(referenceReaction.getProducts().getAtomContainer(i).getID());
                 Double st = referenceReaction.getProductCoefficient(refMol);
@@ -287,13 +288,10 @@ public class Reactor extends AbstractReactor implements Serializable {
                 IAtom atom = container.getAtom(k);
                 atom.setID(counter);
 //                System.out.println("EAtom: " + k + " " + atom.getSymbol() + " Rank Atom: " + atom.getProperty("OLD_RANK") + " " + " Id: " + atom.getID());
-                rLabelledAtoms.put(atom.hashCode(), i);
                 if (atom.getProperty("OLD_RANK") != null) {
                     getInputRankLabelledAtomsReactant().put((int) atom.getProperty("OLD_RANK"), (new_atom_rank_index_reactant++));
                 }
             }
-
-            educts.put(i, container);
         }
 
 //        System.out.println("+++++++++++++++++");
@@ -305,13 +303,10 @@ public class Reactor extends AbstractReactor implements Serializable {
                 IAtom atom = container.getAtom(k);
                 atom.setID(counter);
 //                System.out.println("PAtom: " + k + " " + atom.getSymbol() + " Id: " + atom.getID());
-                pLabelledAtoms.put(atom.hashCode(), j);
                 if (atom.getProperty("OLD_RANK") != null) {
                     getInputRankLabelledAtomsProduct().put((int) atom.getProperty("OLD_RANK"), (new_atom_rank_index_product++));
                 }
             }
-
-            products.put(j, container);
         }
 
     }
@@ -391,7 +386,7 @@ public class Reactor extends AbstractReactor implements Serializable {
         try {
             IReaction reactionCopy = copyReaction(reactionWithUniqueSTOICHIOMETRY, partialMapping);
             CalculationProcess calP
-                    = new CalculationProcess(partialMapping, reactionCopy, getAlgorithm());
+                    = new CalculationProcess(partialMapping, reactionCopy, getAlgorithm(), metrics);
             delta = calP.getDelta();
             IReaction mappedReaction = calP.getMappedReaction();
             reactionWithUniqueSTOICHIOMETRY = getMapping(mappedReaction);
@@ -448,13 +443,14 @@ public class Reactor extends AbstractReactor implements Serializable {
         /*
         * This section will mark map common H atoms. example H-R + H <=> R-H + H Here R-H will be mapped to the R-H.
          */
+        Map<String, List<IAtom>> productCoreAtoms = getCoreAtomsByID(mappedReaction.getProducts());
         for (int eMol = 0; eMol < mappedReaction.getReactantCount(); eMol++) {
             IAtomContainer eMolecule = mappedReaction.getReactants().getAtomContainer(eMol);
             for (int eAtom = 0; eAtom < eMolecule.getAtomCount(); eAtom++) {
                 IAtom atom = mappedReaction.getReactants().getAtomContainer(eMol).getAtom(eAtom);
                 if (!atom.getSymbol().equalsIgnoreCase("H") && !atom.getID().equalsIgnoreCase("-1")) {
                     List<IAtom> eductConnAtoms = eMolecule.getConnectedAtomsList(atom);
-                    List<IAtom> productHAtoms = markHAroundCoreAtoms(atom.getID(), mappedReaction.getProducts());
+                    List<IAtom> productHAtoms = markHAroundCoreAtoms(atom.getID(), productCoreAtoms);
                     for (IAtom eAtomH : eductConnAtoms) {
                         //Collect ummmarked H and map common ones
                         if (eAtomH.getID().equalsIgnoreCase("-1") && eAtomH.getSymbol().equalsIgnoreCase("H")) {
@@ -540,9 +536,10 @@ public class Reactor extends AbstractReactor implements Serializable {
         *
          */
         Map<IAtom, IAtom> mappings = new HashMap<>();
+        Map<String, IAtom> productAtoms = getContainerAtomsByID(mappedReaction.getProducts());
         for (IAtomContainer ac1 : mappedReaction.getReactants().atomContainers()) {
             for (IAtom atom1 : ac1.atoms()) {
-                IAtom atom2 = getContainerAtomByID(mappedReaction.getProducts(), atom1.getID());
+                IAtom atom2 = productAtoms.get(atom1.getID());
                 if (atom2 != null) {
                     mappings.put(atom1, atom2);
                 }
@@ -787,7 +784,7 @@ public class Reactor extends AbstractReactor implements Serializable {
 
             percieveAtomTypesAndConfigureAtoms(newMol);
             if (removeHydrogen) {
-                newMol = removeHydrogensExceptSingleAndPreserveAtomID(newMol);
+                newMol = removeHydrogensExceptSingleAndPreserveAtomIDWithoutClone(newMol);
             }
 //            System.out.println("Hydrogen After" + newMol.getAtomCount());
             copiedReaction.addReactant(newMol, st);
@@ -805,7 +802,7 @@ public class Reactor extends AbstractReactor implements Serializable {
 
             percieveAtomTypesAndConfigureAtoms(newMol);
             if (removeHydrogen) {
-                newMol = removeHydrogensExceptSingleAndPreserveAtomID(newMol);
+                newMol = removeHydrogensExceptSingleAndPreserveAtomIDWithoutClone(newMol);
             }
 //            System.out.println("Hydrogen After " + newMol.getAtomCount());
             copiedReaction.addProduct(newMol, st);
@@ -820,27 +817,39 @@ public class Reactor extends AbstractReactor implements Serializable {
     /**
      *
      * @param id
-     * @param molSet
+     * @param coreAtoms neighbours of the mapped heavy atoms by atom ID
      * @return
      */
-    private synchronized List<IAtom> markHAroundCoreAtoms(String id, IAtomContainerSet molSet) {
+    private synchronized List<IAtom> markHAroundCoreAtoms(String id, Map<String, List<IAtom>> coreAtoms) {
 
         List<IAtom> list = new ArrayList<>();
-        for (int pMol = 0; pMol < molSet.getAtomContainerCount(); pMol++) {
-            IAtomContainer pMolecule = molSet.getAtomContainer(pMol);
-            for (int pAtom = 0; pAtom < pMolecule.getAtomCount(); pAtom++) {
-                IAtom atom = molSet.getAtomContainer(pMol).getAtom(pAtom);
+        List<IAtom> conAtoms = coreAtoms.get(id);
+        if (conAtoms != null) {
+            conAtoms.stream().filter((atomH) -> (atomH.getID().equalsIgnoreCase("-1") && atomH.getSymbol().equalsIgnoreCase("H"))).forEach((atomH) -> {
+                list.add(atomH);
+            });
+        }
+        return list;
+    }
+
+    /**
+     * Neighbours of the mapped heavy atoms, collected once by atom ID (the
+     * bonds don't change while the hydrogens are labelled).
+     *
+     * @param molSet
+     * @return
+     */
+    static Map<String, List<IAtom>> getCoreAtomsByID(IAtomContainerSet molSet) {
+        Map<String, List<IAtom>> coreAtoms = new HashMap<>();
+        for (IAtomContainer pMolecule : molSet.atomContainers()) {
+            for (IAtom atom : pMolecule.atoms()) {
                 if (!atom.getSymbol().equalsIgnoreCase("H") && !atom.getID().equalsIgnoreCase("-1")) {
-                    if (atom.getID().equalsIgnoreCase(id)) {
-                        List<IAtom> conAtoms = pMolecule.getConnectedAtomsList(atom);
-                        conAtoms.stream().filter((atomH) -> (atomH.getID().equalsIgnoreCase("-1") && atomH.getSymbol().equalsIgnoreCase("H"))).forEach((atomH) -> {
-                            list.add(atomH);
-                        });
-                    }
+                    coreAtoms.computeIfAbsent(atom.getID(), (k) -> new ArrayList<>())
+                            .addAll(pMolecule.getConnectedAtomsList(atom));
                 }
             }
         }
-        return list;
+        return coreAtoms;
     }
 
     /**
@@ -951,15 +960,19 @@ public class Reactor extends AbstractReactor implements Serializable {
         this.reactionBlastMolMapping = reactionBlastMolMapping;
     }
 
-    private synchronized IAtom getContainerAtomByID(IAtomContainerSet products, String mappingID) {
-        for (IAtomContainer ac : products.atomContainers()) {
+    /*
+     * Atoms by ID, the first atom is kept if IDs repeat
+     */
+    static Map<String, IAtom> getContainerAtomsByID(IAtomContainerSet molSet) {
+        Map<String, IAtom> atoms = new HashMap<>();
+        for (IAtomContainer ac : molSet.atomContainers()) {
             for (IAtom atom : ac.atoms()) {
-                if (atom.getID().equals(mappingID)) {
-                    return atom;
+                if (atom.getID() != null) {
+                    atoms.putIfAbsent(atom.getID(), atom);
                 }
             }
         }
-        return null;
+        return atoms;
     }
 
     private synchronized int setCanonicalMappingLabels(IReaction mappedReaction) throws CDKException {
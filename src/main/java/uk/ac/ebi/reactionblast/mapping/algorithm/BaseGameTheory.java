@@ -55,6 +55,7 @@ import uk.ac.ebi.reactionblast.mapping.graph.MCSSolution;
 import uk.ac.ebi.reactionblast.mapping.helper.Debugger;
 import uk.ac.ebi.reactionblast.mapping.interfaces.BestMatch;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IGameTheory;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.GAME_THEORY_ITERATIONS;
 
 /**
  * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
@@ -115,14 +116,40 @@ public abstract class BaseGameTheory extends Debugger implements IGameTheory, Se
      */
     @Override
     public synchronized void UpdateMatrix(Holder mh, boolean removeHydrogen) throws InterruptedException {
+        UpdateMatrix(mh, removeHydrogen, false);
+    }
+
+    /**
+     *
+     * @param mh matrix holder
+     * @param removeHydrogen
+     * @param deferPairs if true, the pairs which can't win this round are not
+     * matched (see GraphMatcher), their cells are left empty and they are
+     * matched in the next round. Only valid once the rules have been applied
+     * (the rules look at the empty cells).
+     * @throws InterruptedException
+     */
+    protected synchronized void UpdateMatrix(Holder mh, boolean removeHydrogen, boolean deferPairs) throws InterruptedException {
         try {
             if (DEBUG) {
                 out.println("**********Updated Matrix And Calculate Similarity**************");
             }
             ReactionContainer reactionStructureInformation = mh.getReactionContainer();
+            mh.getMetrics().increment(GAME_THEORY_ITERATIONS);
+            /*
+             * pairs deferred in the last round are matched again
+             */
+            boolean[][] deferred = new boolean[reactionStructureInformation.getEductCount()][reactionStructureInformation.getProductCount()];
+            for (int i = 0; i < deferred.length; i++) {
+                for (int j = 0; j < deferred[i].length; j++) {
+                    deferred[i][j] = reactionStructureInformation.isPairDeferred(i, j);
+                }
+            }
             Collection<MCSSolution> mcsSolutions = null;
             try {
-                mcsSolutions = matcher(mh);
+                mcsSolutions = matcher(mh, deferPairs);
+            } catch (InterruptedException e) {
+                throw e;
             } catch (Exception e) {
                 logger.error("Error in matching molecules, check Graph Matcher module! ", e.toString());
             }
@@ -139,26 +166,26 @@ public abstract class BaseGameTheory extends Debugger implements IGameTheory, Se
                                 && (reactionStructureInformation.getEduct(substrateIndex).getAtomCount() > 0
                                 && reactionStructureInformation.getProduct(productIndex).getAtomCount() > 0)
                                 || mh.getGraphSimilarityMatrix().getValue(substrateIndex, productIndex) == -1) {
-                            if (reactionStructureInformation.isEductModified(substrateIndex)
-                                    || reactionStructureInformation.isProductModified(productIndex)) {
+                            if (reactionStructureInformation.isPairDeferred(substrateIndex, productIndex)) {
+                                mh.getBestMatchContainer().Erase(substrateIndex, productIndex);
+                                clearCell(mh, substrateIndex, productIndex);
+                            } else if (reactionStructureInformation.isEductModified(substrateIndex)
+                                    || reactionStructureInformation.isProductModified(productIndex)
+                                    || deferred[substrateIndex][productIndex]) {
                                 refillMatrixWithNewData(mh, substrateIndex, productIndex, mcsSolutions);
                             } else {
                                 refillMatrixWithOldData(mh, substrateIndex, productIndex);
                             }
                         } else {
-                            mh.getGraphSimilarityMatrix().setValue(substrateIndex, productIndex, 0.0);
-                            mh.getStereoMatrix().setValue(substrateIndex, productIndex, 0.0);
-                            mh.getCliqueMatrix().setValue(substrateIndex, productIndex, 0.0);
-                            mh.getCarbonOverlapMatrix().setValue(substrateIndex, productIndex, 0.0);
-                            mh.getFragmentMatrix().setValue(substrateIndex, productIndex, 0.0);
-                            mh.getEnergyMatrix().setValue(substrateIndex, productIndex, 0.0);
-                            mh.getFPSimilarityMatrix().setValue(substrateIndex, productIndex, 0.0);
+                            clearCell(mh, substrateIndex, productIndex);
                         }
                     } catch (IOException | CDKException ex) {
                         logger.error(SEVERE, null, ex);
                     }
                 }
             }
+        } catch (InterruptedException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error in matching molecules, check Graph Matcher module! ", e.toString());
         }
@@ -186,6 +213,7 @@ public abstract class BaseGameTheory extends Debugger implements IGameTheory, Se
         try {
 //        System.out.println("**********Updated Matrix And Calculate Similarity**************");
             ReactionContainer reactionStructureInformation = mh.getReactionContainer();
+            mh.getMetrics().increment(GAME_THEORY_ITERATIONS);
 
             for (int substrateIndex = 0; substrateIndex < reactionStructureInformation.getEductCount(); substrateIndex++) {
                 for (int productIndex = 0; productIndex < reactionStructureInformation.getProductCount(); productIndex++) {
@@ -227,6 +255,16 @@ public abstract class BaseGameTheory extends Debugger implements IGameTheory, Se
         }
     }
 
+    private void clearCell(Holder mh, int substrateIndex, int productIndex) {
+        mh.getGraphSimilarityMatrix().setValue(substrateIndex, productIndex, 0.0);
+        mh.getStereoMatrix().setValue(substrateIndex, productIndex, 0.0);
+        mh.getCliqueMatrix().setValue(substrateIndex, productIndex, 0.0);
+        mh.getCarbonOverlapMatrix().setValue(substrateIndex, productIndex, 0.0);
+        mh.getFragmentMatrix().setValue(substrateIndex, productIndex, 0.0);
+        mh.getEnergyMatrix().setValue(substrateIndex, productIndex, 0.0);
+        mh.getFPSimilarityMatrix().setValue(substrateIndex, productIndex, 0.0);
+    }
+
     private synchronized void refillMatrixWithNewData(
             Holder holder,
             int substrateIndex,
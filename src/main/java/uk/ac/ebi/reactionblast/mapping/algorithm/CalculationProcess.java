@@ -37,6 +37,7 @@ import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MAX;
 import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MIN;
 import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MIXTURE;
 import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.RINGS;
+import uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics;
 
 /**
  * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
@@ -52,6 +53,7 @@ public class CalculationProcess extends IsomeraseHandler implements Serializable
     private int delta = 0;
     private MoleculeMoleculeMapping reactionBlastMolMapping;
     private final IMappingAlgorithm algorithm;
+    private final ReactionMetrics metrics;
 
     /**
      *
@@ -63,6 +65,21 @@ public class CalculationProcess extends IsomeraseHandler implements Serializable
             boolean removeHydrogen,
             IReaction reaction,
             IMappingAlgorithm algorithm) {
+        this(removeHydrogen, reaction, algorithm, new ReactionMetrics(reaction.getID()));
+    }
+
+    /**
+     *
+     * @param removeHydrogen
+     * @param reaction
+     * @param algorithm
+     * @param metrics stage timings of the reaction
+     */
+    public CalculationProcess(
+            boolean removeHydrogen,
+            IReaction reaction,
+            IMappingAlgorithm algorithm,
+            ReactionMetrics metrics) {
 
         /*
          * This case handles rings cases where 6 membered ring reduces to 5 membered rings Example KEGG reaction R01432
@@ -76,6 +93,7 @@ public class CalculationProcess extends IsomeraseHandler implements Serializable
         logger.debug("Performing Atom-Atom Mapping ....... " + reaction.getID() + " .......");
         logger.debug("\n|++++++++++++++++++++++++++++|");
         this.algorithm = algorithm;
+        this.metrics = metrics;
         run();
     }
 
@@ -123,7 +141,7 @@ public class CalculationProcess extends IsomeraseHandler implements Serializable
             }
 
             GameTheoryMatrix EDSH
-                    = new GameTheoryMatrix(theory, reaction, removeHydrogen);
+                    = new GameTheoryMatrix(theory, reaction, removeHydrogen, metrics);
 
             IGameTheory gameTheory = make(theory,
                     reaction,
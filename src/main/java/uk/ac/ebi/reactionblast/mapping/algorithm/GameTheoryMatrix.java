@@ -58,6 +58,7 @@ import uk.ac.ebi.reactionblast.mapping.interfaces.IGraphTheoryMatrix;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
 import uk.ac.ebi.reactionblast.tools.AtomContainerSetComparator;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.removeHydrogensExceptSingleAndPreserveAtomID;
+import uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics;
 
 //~--- classes ----------------------------------------------------------------
 /**
@@ -95,6 +96,7 @@ public class GameTheoryMatrix extends BaseGameTheory implements IGraphTheoryMatr
     private final ReactionContainer structureMapObj;
     private final BestMatch bestMatchContainer;
     private final IMappingAlgorithm theory;
+    private final ReactionMetrics metrics;
 
     /**
      * Creates a new instance of GameTheoryMatrix
@@ -108,6 +110,24 @@ public class GameTheoryMatrix extends BaseGameTheory implements IGraphTheoryMatr
             IMappingAlgorithm theory,
             IReaction reaction,
             boolean removeHydrogen) throws Exception {
+        this(theory, reaction, removeHydrogen, new ReactionMetrics(reaction.getID()));
+    }
+
+    /**
+     * Creates a new instance of GameTheoryMatrix
+     *
+     * @param theory
+     * @param reaction
+     * @param removeHydrogen
+     * @param metrics stage timings of the reaction
+     * @throws Exception
+     */
+    public GameTheoryMatrix(
+            IMappingAlgorithm theory,
+            IReaction reaction,
+            boolean removeHydrogen,
+            ReactionMetrics metrics) throws Exception {
+        this.metrics = metrics;
         this.theory = theory;
         this.removeHydrogen = removeHydrogen;
         this.reaction = reaction;
@@ -142,6 +162,7 @@ public class GameTheoryMatrix extends BaseGameTheory implements IGraphTheoryMatr
                     structureMapObj,
                     bestMatchContainer,
                     hydFreeFPContainer);
+            matrixHolder.setMetrics(metrics);
             this.reactionBlastMolMapping.setMolMappings(reactionID, matrixHolder.getMappingMolPair());
             /*
              * Set FLAGS to True, to allow MCS calculation
@@ -148,7 +148,7 @@ final class GameTheoryMax extends BaseGameTheory {
 //            System.out.println("**********Updated Mapping**************");
             UpdateMapping();
 //            System.out.println("**********Updated Matrix**************");
-            UpdateMatrix(mh, removeHydrogen);
+            UpdateMatrix(mh, removeHydrogen, true);
 //            System.out.println("**********Generate Mapping**************");
             GenerateMapping();
         }
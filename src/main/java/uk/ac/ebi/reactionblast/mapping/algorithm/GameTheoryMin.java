@@ -202,7 +202,7 @@ final class GameTheoryMin extends BaseGameTheory {
             if (DEBUG) {
                 out.println("**********Updated Matrix**************");
             }
-            UpdateMatrix(mh, removeHydrogen);
+            UpdateMatrix(mh, removeHydrogen, ruleMatchingFlag);
             if (DEBUG) {
                 out.println("**********Generate Mapping**************");
             }
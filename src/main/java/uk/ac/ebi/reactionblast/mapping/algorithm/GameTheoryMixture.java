@@ -181,7 +181,7 @@ final class GameTheoryMixture extends BaseGameTheory {
 //            System.out.println("**********Updated Mapping**************");
             UpdateMapping();
 //            System.out.println("**********Updated Matrix**************");
-            UpdateMatrix(mh, removeHydrogen);
+            UpdateMatrix(mh, removeHydrogen, ruleMatchingFlag);
 //            System.out.println("**********Generate Mapping**************");
             GenerateMapping(ruleMatchingFlag);
         }
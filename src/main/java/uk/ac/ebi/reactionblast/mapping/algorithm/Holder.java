@@ -35,6 +35,7 @@ import uk.ac.ebi.reactionblast.mapping.helper.Debugger;
 import uk.ac.ebi.reactionblast.mapping.interfaces.BestMatch;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
 import uk.ac.ebi.reactionblast.tools.EBIMatrix;
+import uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics;
 import static java.util.Collections.synchronizedList;
 import static java.util.logging.Logger.getLogger;
 
@@ -71,6 +72,7 @@ public class Holder extends Debugger implements Cloneable, Serializable {
     private String reactionID;
     private HydrogenFreeFingerPrintContainer hydFPFree;
     private IMappingAlgorithm theory;
+    private ReactionMetrics metrics;
 
     /**
      *
@@ -126,6 +128,7 @@ public class Holder extends Debugger implements Cloneable, Serializable {
         this.fpSimMatrixWithoutHydrogen = new EBIMatrix(row, column);
         this.energyMatrix = new EBIMatrix(row, column);
         this.mappingMolPair = synchronizedList(new ArrayList<MolMapping>());
+        this.metrics = new ReactionMetrics(null);
         if (DEBUG) {
             out.println("initialize the Matrix");
         }
@@ -275,6 +278,7 @@ public class Holder extends Debugger implements Cloneable, Serializable {
 
         mhClone.structureInformation = this.getReactionContainer();
         mhClone.bestMatchContainer = this.getBestMatchContainer();
+        mhClone.metrics = this.getMetrics();
         return mhClone;
     }
 
@@ -314,6 +318,20 @@ public class Holder extends Debugger implements Cloneable, Serializable {
         this.theory = theory;
     }
 
+    /**
+     * @return stage timings of the reaction being mapped
+     */
+    public ReactionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics stage timings of the reaction being mapped
+     */
+    public void setMetrics(ReactionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * @return the carbonOverlapMatrix
      */
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mapping.algorithm.checks;
+
+import java.io.Serializable;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainerSet;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.smiles.SmiFlavor;
+import org.openscience.cdk.smiles.SmilesGenerator;
+
+/**
+ * Reaction level check run before the mapping models. A reaction with a
+ * single educt and a single product which are the same molecule (transport)
+ * or the same molecule apart from its stereo (stereo isomerase) has only one
+ * sensible mapping, the substructure match of the two molecules. Such a
+ * reaction doesn't need the four mapping models, one of them gives the same
+ * answer.
+ *
+ * Reactions with several molecules on a side are left to the
+ * {@link ReactionIsomorphismHandler}, which deliberately breaks the identity
+ * between educts and products (e.g. exchange reactions).
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class ReactionIdentityHandler implements Serializable {
+
+    private static final long serialVersionUID = 0x6a1e3d2c5b4f7L;
+    private static final Logger LOG = getLogger(ReactionIdentityHandler.class.getName());
+
+    private boolean identical;
+    private boolean stereoIsomerase;
+
+    /**
+     *
+     * @param reaction standardized reaction, left unchanged
+     */
+    public ReactionIdentityHandler(IReaction reaction) {
+        this.identical = false;
+        this.stereoIsomerase = false;
+        if (reaction == null
+                || !isSingleMolecule(reaction.getReactants())
+                || !isSingleMolecule(reaction.getProducts())) {
+            return;
+        }
+        IAtomContainer educt = reaction.getReactants().getAtomContainer(0);
+        IAtomContainer product = reaction.getProducts().getAtomContainer(0);
+        if (educt.getAtomCount() != product.getAtomCount()
+                || educt.getBondCount() != product.getBondCount()) {
+            return;
+        }
+        try {
+            SmilesGenerator unique = new SmilesGenerator(SmiFlavor.Unique);
+            if (!unique.create(educt.clone()).equals(unique.create(product.clone()))) {
+                return;
+            }
+            /*
+             * canonical stereo SMILES need InChI, a plain isomeric SMILES
+             * proves identity when both molecules have the same atom order
+             * (e.g. transport), otherwise the reaction is treated as a stereo
+             * isomerase which is mapped the same way
+             */
+            if (!educt.stereoElements().iterator().hasNext()
+                    && !product.stereoElements().iterator().hasNext()) {
+                identical = true;
+            } else {
+                SmilesGenerator isomeric = new SmilesGenerator(SmiFlavor.Stereo);
+                identical = isomeric.create(educt.clone()).equals(isomeric.create(product.clone()));
+            }
+            stereoIsomerase = !identical;
+        } catch (CDKException | CloneNotSupportedException | RuntimeException ex) {
+            /*
+             * not comparable (e.g. missing hydrogen counts), map as usual
+             */
+            LOG.fine("Identity check failed: " + ex.getMessage());
+            identical = false;
+            stereoIsomerase = false;
+        }
+    }
+
+    private static boolean isSingleMolecule(IAtomContainerSet molSet) {
+        if (molSet.getAtomContainerCount() != 1) {
+            return false;
+        }
+        Double stoichiometry = molSet.getMultiplier(0);
+        return stoichiometry == null || stoichiometry == 1.0;
+    }
+
+    /**
+     * @return true if the educt and the product are the same molecule,
+     * including stereo (e.g. transport reaction)
+     */
+    public boolean isIdentical() {
+        return identical;
+    }
+
+    /**
+     * @return true if the educt and the product only differ in their stereo
+     */
+    public boolean isStereoIsomerase() {
+        return stereoIsomerase;
+    }
+
+    /**
+     * @return true if the reaction has a single mapping which any of the
+     * mapping models would find
+     */
+    public boolean isTrivial() {
+        return identical || stereoIsomerase;
+    }
+}
@@ -221,6 +221,7 @@ public class ReactionIsomorphismHandler implements Serializable {
 
                         Substructure isomorphism = new Substructure(ac1, ac2, true, true, true, false);
                         if (isomorphism.isSubgraph()) {
+                            isomorphism.setMaxSolutions(1);
                             isomorphism.setChemFilters(true, true, true);
 
                             if (isomorphism.getTanimotoSimilarity() == 1.0) {
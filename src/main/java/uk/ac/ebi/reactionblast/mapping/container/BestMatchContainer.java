@@ -21,9 +21,8 @@ package uk.ac.ebi.reactionblast.mapping.container;
 //~--- JDK imports ------------------------------------------------------------
 import java.io.IOException;
 import java.io.Serializable;
-import static java.util.Collections.synchronizedMap;
-import java.util.HashMap;
-import java.util.Map;
+import static java.lang.Math.max;
+import static java.util.Arrays.copyOf;
 import static java.util.logging.Level.SEVERE;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
@@ -31,7 +30,6 @@ import org.openscience.cdk.exception.CDKException;
 import org.openscience.smsd.AtomAtomMapping;
 import uk.ac.ebi.reactionblast.mapping.container.helper.Key;
 import uk.ac.ebi.reactionblast.mapping.interfaces.BestMatch;
-import uk.ac.ebi.reactionblast.mapping.interfaces.IKey;
 
 //~--- classes --------------------------------------
 /**
@@ -62,28 +60,91 @@ public class BestMatchContainer extends BestMatch implements Serializable {
 
     private static final long serialVersionUID = 10947239472059259L;
     private static final Logger LOG = getLogger(BestMatchContainer.class.getName());
-    private final Map<IKey, AtomAtomMapping> mcsAtomMap;
-    private final Map<IKey, Integer> fragmentCount;
-    private final Map<IKey, Double> bondBreakingEnergy;
-    private final Map<IKey, Double> stereoScore;
-    private final Map<IKey, Double> similarity;
+    /*
+     * Dense tables indexed by [substrateIndex][productIndex], grown on demand
+     */
+    private boolean[][] present;
+    private AtomAtomMapping[][] mcsAtomMap;
+    private int[][] fragmentCount;
+    private double[][] bondBreakingEnergy;
+    private double[][] stereoScore;
+    private double[][] similarity;
 
     //~--- constructors -------------------------------------------------------
     /**
      *
      */
     public BestMatchContainer() {
-        mcsAtomMap = synchronizedMap(new HashMap<IKey, AtomAtomMapping>());
-        fragmentCount = synchronizedMap(new HashMap<IKey, Integer>());
-        bondBreakingEnergy = synchronizedMap(new HashMap<IKey, Double>());
-        stereoScore = synchronizedMap(new HashMap<IKey, Double>());
-        similarity = synchronizedMap(new HashMap<IKey, Double>());
+        allocate(0, 0);
         // System.out.println("FingerPrint Map Created");
     }
 
     @Override
     public String toString() {
-        return "BestMatchContainer{" + "mcsAtomMap=" + mcsAtomMap + ", fragmentCount=" + fragmentCount + ", bondBreakingEnergy=" + bondBreakingEnergy + ", stereoScore=" + stereoScore + ", similarity=" + similarity + '}';
+        StringBuilder sb = new StringBuilder("BestMatchContainer{");
+        for (int i = 0; i < present.length; i++) {
+            for (int j = 0; j < present[i].length; j++) {
+                if (present[i][j]) {
+                    sb.append(new Key(i, j)).append("=").append(mcsAtomMap[i][j])
+                            .append(", fragmentCount=").append(fragmentCount[i][j])
+                            .append(", bondBreakingEnergy=").append(bondBreakingEnergy[i][j])
+                            .append(", stereoScore=").append(stereoScore[i][j])
+                            .append(", similarity=").append(similarity[i][j]).append("; ");
+                }
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    private void allocate(int rows, int cols) {
+        present = new boolean[rows][cols];
+        mcsAtomMap = new AtomAtomMapping[rows][cols];
+        fragmentCount = new int[rows][cols];
+        bondBreakingEnergy = new double[rows][cols];
+        stereoScore = new double[rows][cols];
+        similarity = new double[rows][cols];
+    }
+
+    /*
+     * Grow the tables to hold the cell (indexI, indexJ)
+     */
+    private void ensureCapacity(int indexI, int indexJ) {
+        int rows = present.length;
+        int cols = rows == 0 ? 0 : present[0].length;
+        if (indexI < rows && indexJ < cols) {
+            return;
+        }
+        int newRows = max(rows, max(indexI + 1, 2 * rows));
+        int newCols = max(cols, max(indexJ + 1, 2 * cols));
+        boolean[][] oldPresent = present;
+        AtomAtomMapping[][] oldMcsAtomMap = mcsAtomMap;
+        int[][] oldFragmentCount = fragmentCount;
+        double[][] oldBondBreakingEnergy = bondBreakingEnergy;
+        double[][] oldStereoScore = stereoScore;
+        double[][] oldSimilarity = similarity;
+        allocate(newRows, 0);
+        for (int i = 0; i < newRows; i++) {
+            if (i < rows) {
+                present[i] = copyOf(oldPresent[i], newCols);
+                mcsAtomMap[i] = copyOf(oldMcsAtomMap[i], newCols);
+                fragmentCount[i] = copyOf(oldFragmentCount[i], newCols);
+                bondBreakingEnergy[i] = copyOf(oldBondBreakingEnergy[i], newCols);
+                stereoScore[i] = copyOf(oldStereoScore[i], newCols);
+                similarity[i] = copyOf(oldSimilarity[i], newCols);
+            } else {
+                present[i] = new boolean[newCols];
+                mcsAtomMap[i] = new AtomAtomMapping[newCols];
+                fragmentCount[i] = new int[newCols];
+                bondBreakingEnergy[i] = new double[newCols];
+                stereoScore[i] = new double[newCols];
+                similarity[i] = new double[newCols];
+            }
+        }
+    }
+
+    private boolean isInRange(int indexI, int indexJ) {
+        return indexI >= 0 && indexJ >= 0
+                && indexI < present.length && indexJ < present[indexI].length;
     }
 
     //~--- methods ------------------------------------------------------------
@@ -93,11 +154,7 @@ public class BestMatchContainer extends BestMatch implements Serializable {
      */
     @Override
     public synchronized void Clear() throws IOException {
-        mcsAtomMap.clear();
-        fragmentCount.clear();
-        bondBreakingEnergy.clear();
-        stereoScore.clear();
-        similarity.clear();
+        allocate(0, 0);
     }
 
     /**
@@ -109,12 +166,14 @@ public class BestMatchContainer extends BestMatch implements Serializable {
      */
     @Override
     public synchronized void Erase(int indexI, int indexJ) throws IOException {
-        IKey key = new Key(indexI, indexJ);
-        mcsAtomMap.remove(key);
-        fragmentCount.remove(key);
-        bondBreakingEnergy.remove(key);
-        stereoScore.remove(key);
-        similarity.remove(key);
+        if (isInRange(indexI, indexJ)) {
+            present[indexI][indexJ] = false;
+            mcsAtomMap[indexI][indexJ] = null;
+            fragmentCount[indexI][indexJ] = 0;
+            bondBreakingEnergy[indexI][indexJ] = 0.;
+            stereoScore[indexI][indexJ] = 0.;
+            similarity[indexI][indexJ] = 0.;
+        }
     }
 
     //~--- get methods --------------------------------------------------------
@@ -129,12 +188,11 @@ public class BestMatchContainer extends BestMatch implements Serializable {
     @Override
     public synchronized AtomAtomMapping getAtomMatch(int indexI, int indexJ)
             throws IOException {
-        IKey key = new Key(indexI, indexJ);
-        if (mcsAtomMap.containsKey(key)) {
-            return mcsAtomMap.get(key);
+        if (isInRange(indexI, indexJ) && present[indexI][indexJ]) {
+            return mcsAtomMap[indexI][indexJ];
         } else {
             try {
-                throw new CDKException("Key not found:" + key + " in " + mcsAtomMap.keySet());
+                throw new CDKException("Key not found:" + new Key(indexI, indexJ) + " in " + this);
             } catch (CDKException ex) {
                 getLogger(BestMatchContainer.class.getName()).log(SEVERE, null, ex);
             }
@@ -151,8 +209,7 @@ public class BestMatchContainer extends BestMatch implements Serializable {
      */
     @Override
     public synchronized double getBondEnergy(int indexI, int indexJ) {
-        IKey key = new Key(indexI, indexJ);
-        return bondBreakingEnergy.containsKey(key) ? bondBreakingEnergy.get(key) : 0.;
+        return isInRange(indexI, indexJ) ? bondBreakingEnergy[indexI][indexJ] : 0.;
     }
 
     /**
@@ -164,8 +221,7 @@ public class BestMatchContainer extends BestMatch implements Serializable {
      */
     @Override
     public synchronized int getTotalFragmentCount(int indexI, int indexJ) {
-        IKey key = new Key(indexI, indexJ);
-        return fragmentCount.containsKey(key) ? fragmentCount.get(key) : 0;
+        return isInRange(indexI, indexJ) ? fragmentCount[indexI][indexJ] : 0;
     }
 
     /**
@@ -177,8 +233,8 @@ public class BestMatchContainer extends BestMatch implements Serializable {
      */
     @Override
     public synchronized void setBondEnergy(int indexI, int indexJ, double value) {
-        IKey key = new Key(indexI, indexJ);
-        bondBreakingEnergy.put(key, value);
+        ensureCapacity(indexI, indexJ);
+        bondBreakingEnergy[indexI][indexJ] = value;
     }
 
     /**
@@ -186,12 +242,12 @@ public class BestMatchContainer extends BestMatch implements Serializable {
      *
      * @param indexI
      * @param indexJ
-     * @param value
+     * @param value fragment count, null is read back as 0 (no count)
      */
     @Override
     public synchronized void setTotalFragmentCount(int indexI, int indexJ, Integer value) {
-        IKey key = new Key(indexI, indexJ);
-        fragmentCount.put(key, value);
+        ensureCapacity(indexI, indexJ);
+        fragmentCount[indexI][indexJ] = value == null ? 0 : value;
     }
 
     //~--- set methods --------------------------------------------------------
@@ -206,8 +262,9 @@ public class BestMatchContainer extends BestMatch implements Serializable {
     @Override
     public synchronized void putBestMapping(int indexI, int indexJ, AtomAtomMapping matchingAtoms)
             throws IOException {
-        IKey key = new Key(indexI, indexJ);
-        mcsAtomMap.put(key, matchingAtoms);
+        ensureCapacity(indexI, indexJ);
+        present[indexI][indexJ] = true;
+        mcsAtomMap[indexI][indexJ] = matchingAtoms;
     }
 
     /**
@@ -221,8 +278,7 @@ public class BestMatchContainer extends BestMatch implements Serializable {
     @Override
     public synchronized boolean containsKey(int indexI, int indexJ)
             throws IOException {
-        IKey key = new Key(indexI, indexJ);
-        return mcsAtomMap.containsKey(key);
+        return isInRange(indexI, indexJ) && present[indexI][indexJ];
     }
 
     /**
@@ -234,8 +290,8 @@ public class BestMatchContainer extends BestMatch implements Serializable {
      */
     @Override
     public synchronized void setStereoScore(int indexI, int indexJ, double stereoVal) {
-        IKey key = new Key(indexI, indexJ);
-        stereoScore.put(key, stereoVal);
+        ensureCapacity(indexI, indexJ);
+        stereoScore[indexI][indexJ] = stereoVal;
     }
 
     /**
@@ -247,8 +303,7 @@ public class BestMatchContainer extends BestMatch implements Serializable {
      */
     @Override
     public synchronized double getStereoScore(int indexI, int indexJ) {
-        IKey key = new Key(indexI, indexJ);
-        return stereoScore.containsKey(key) == true ? stereoScore.get(key) : 0.0;
+        return isInRange(indexI, indexJ) ? stereoScore[indexI][indexJ] : 0.0;
     }
 
     /**
@@ -260,8 +315,8 @@ public class BestMatchContainer extends BestMatch implements Serializable {
      */
     @Override
     public synchronized void setGraphSimilarity(int indexI, int indexJ, double _simVal) {
-        IKey key = new Key(indexI, indexJ);
-        similarity.put(key, _simVal);
+        ensureCapacity(indexI, indexJ);
+        similarity[indexI][indexJ] = _simVal;
     }
 
     /**
@@ -273,7 +328,6 @@ public class BestMatchContainer extends BestMatch implements Serializable {
      */
     @Override
     public synchronized double getGraphSimilarity(int indexI, int indexJ) {
-        IKey key = new Key(indexI, indexJ);
-        return similarity.containsKey(key) == true ? similarity.get(key) : 0.0;
+        return isInRange(indexI, indexJ) ? similarity[indexI][indexJ] : 0.0;
     }
 }
@@ -640,6 +640,7 @@ public class CDKReactionBuilder extends BasicDebugger implements Serializable {
             return false;
         }
         Substructure mcs = new Substructure(mol1, mol2, true, true, true, false);
+        mcs.setMaxSolutions(1);
         mcs.setChemFilters(true, true, true);
         return mcs.isSubgraph() && !mcs.isStereoMisMatch();
     }
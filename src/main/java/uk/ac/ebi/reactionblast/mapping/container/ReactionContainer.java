@@ -22,8 +22,11 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.BitSet;
 import static java.util.Collections.synchronizedMap;
+import static java.util.Collections.synchronizedSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
 import org.openscience.cdk.exception.CDKException;
@@ -72,6 +75,7 @@ public class ReactionContainer implements Cloneable, Serializable {
     private final Map<Integer, BitSet> pFingerPrintMap;
     private final Map<Integer, Boolean> eductContainerModificationMap;
     private final Map<Integer, Boolean> productContainerModificationMap;
+    private final Set<Long> deferredPairs;
     private final IFingerprintGenerator fpr;
 
     //~--- constructors -------------------------------------------------------
@@ -86,6 +90,7 @@ public class ReactionContainer implements Cloneable, Serializable {
         pFingerPrintMap = synchronizedMap(new TreeMap<Integer, BitSet>());
         eductContainerModificationMap = synchronizedMap(new TreeMap<Integer, Boolean>());
         productContainerModificationMap = synchronizedMap(new TreeMap<Integer, Boolean>());
+        deferredPairs = synchronizedSet(new TreeSet<Long>());
         fpr = new FingerprintGenerator();
     }
 
@@ -106,6 +111,7 @@ public class ReactionContainer implements Cloneable, Serializable {
         pFingerPrintMap.clear();
         eductContainerModificationMap.clear();
         productContainerModificationMap.clear();
+        deferredPairs.clear();
     }
 
     /**
@@ -200,6 +206,37 @@ public class ReactionContainer implements Cloneable, Serializable {
                 ? productContainerModificationMap.get(value) : false;
     }
 
+    /**
+     * A deferred pair was not matched (it can't win the current game theory
+     * round), its scores are unknown and it has to be matched again in the
+     * next round.
+     *
+     * @param eductIndex
+     * @param productIndex
+     * @return true if the MCS of the pair was deferred
+     */
+    public synchronized boolean isPairDeferred(int eductIndex, int productIndex) {
+        return deferredPairs.contains(getPairKey(eductIndex, productIndex));
+    }
+
+    /**
+     *
+     * @param eductIndex
+     * @param productIndex
+     * @param flag
+     */
+    public synchronized void setPairDeferred(int eductIndex, int productIndex, boolean flag) {
+        if (flag) {
+            deferredPairs.add(getPairKey(eductIndex, productIndex));
+        } else {
+            deferredPairs.remove(getPairKey(eductIndex, productIndex));
+        }
+    }
+
+    private static long getPairKey(int eductIndex, int productIndex) {
+        return ((long) eductIndex << 32) | (productIndex & 0xFFFFFFFFL);
+    }
+
     //~--- set methods --------------------------------------------------------
     /**
      *
@@ -23,9 +23,15 @@ import static java.lang.Runtime.getRuntime;
 import static java.lang.System.gc;
 import static java.lang.System.out;
 import java.util.ArrayList;
+import static java.util.Arrays.asList;
 import java.util.Collection;
 import static java.util.Collections.unmodifiableCollection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -36,23 +42,41 @@ import java.util.concurrent.ExecutorService;
 import static java.util.logging.Level.SEVERE;
 import static java.util.logging.Level.WARNING;
 import java.util.logging.Logger;
+import static org.openscience.cdk.CDKConstants.ISAROMATIC;
+import static org.openscience.cdk.CDKConstants.ISINRING;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.graph.CycleFinder;
 import org.openscience.cdk.graph.Cycles;
 import static org.openscience.cdk.graph.Cycles.or;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IDoubleBondStereochemistry;
+import org.openscience.cdk.interfaces.IStereoElement;
+import org.openscience.cdk.interfaces.ITetrahedralChirality;
 import org.openscience.cdk.smiles.SmilesGenerator;
+import org.openscience.cdk.stereo.ExtendedTetrahedral;
 import org.openscience.cdk.tools.ILoggingTool;
 import static org.openscience.cdk.tools.LoggingToolFactory.createLoggingTool;
 import org.openscience.smsd.AtomAtomMapping;
 import org.openscience.smsd.Substructure;
+import static uk.ac.ebi.reactionblast.mapping.graph.MCSBound.getSimilarityUpperBound;
+import static uk.ac.ebi.reactionblast.mapping.graph.MCSBound.isPartialMatch;
 import uk.ac.ebi.reactionblast.mapping.algorithm.Holder;
 import uk.ac.ebi.reactionblast.mapping.container.ReactionContainer;
 import uk.ac.ebi.reactionblast.mapping.helper.Debugger;
+import uk.ac.ebi.reactionblast.mapping.interfaces.BestMatch;
+import uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.GRAPH_MATCHING;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.MCS_PAIRS_CANDIDATE;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.MCS_PAIRS_DEFERRED;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.MCS_PAIRS_REPLICATED;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.MCS_PAIRS_SCHEDULED;
+import uk.ac.ebi.reactionblast.tools.metrics.Timer;
 import static java.util.Collections.synchronizedCollection;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.logging.Logger.getLogger;
 import static org.openscience.cdk.graph.Cycles.all;
 import org.openscience.cdk.smiles.SmiFlavor;
@@ -75,12 +99,29 @@ public class GraphMatcher extends Debugger {
      * @throws InterruptedException
      */
     public synchronized static Collection<MCSSolution> matcher(Holder mh) throws InterruptedException {
+        return matcher(mh, false);
+    }
+
+    /**
+     * Match the modified educt/product pairs (and the pairs deferred by the
+     * last call).
+     *
+     * @param mh
+     * @param deferPairs if true, the pairs whose MCS can't reach the best
+     * graph similarity of the round, and can't be a substructure match, are
+     * not matched but marked as deferred in the reaction container
+     * @return
+     * @throws InterruptedException
+     */
+    public synchronized static Collection<MCSSolution> matcher(Holder mh, boolean deferPairs) throws InterruptedException {
         ExecutorService executor = null;
         Collection<MCSSolution> mcsSolutions = synchronizedCollection(new ArrayList<MCSSolution>());
 
 //        System.out.println(threadsAvailable + " threads to be used for graph matching for " + mh.getTheory());
         Set<Combination> jobReplicatorList = new TreeSet<>();
         int taskCounter = 0;
+        ReactionMetrics metrics = mh.getMetrics();
+        Timer.Context graphMatching = metrics.time(GRAPH_MATCHING);
 
         try {
             ReactionContainer reactionStructureInformation = mh.getReactionContainer();
@@ -95,15 +136,18 @@ public class GraphMatcher extends Debugger {
                             && reactionStructureInformation.getProduct(productIndex).getAtomCount() > 0)
                             || mh.getGraphSimilarityMatrix().getValue(substrateIndex, productIndex) == -1) {
                         if (reactionStructureInformation.isEductModified(substrateIndex)
-                                || reactionStructureInformation.isProductModified(productIndex)) {
+                                || reactionStructureInformation.isProductModified(productIndex)
+                                || reactionStructureInformation.isPairDeferred(substrateIndex, productIndex)) {
 
                             Combination c = new Combination(substrateIndex, productIndex);
                             jobReplicatorList.add(c);
+                            reactionStructureInformation.setPairDeferred(substrateIndex, productIndex, false);
                         }
                     }
                 }
             }
 
+            metrics.increment(MCS_PAIRS_CANDIDATE, jobReplicatorList.size());
             if (jobReplicatorList.isEmpty()) {
                 return unmodifiableCollection(mcsSolutions);
             }
@@ -115,19 +159,20 @@ public class GraphMatcher extends Debugger {
                 IAtomContainer educt = reactionStructureInformation.getEduct(substrateIndex);
                 IAtomContainer product = reactionStructureInformation.getProduct(productIndex);
 
+                /*
+                 * Copies of a molecule (stoichiometry) share the MCS job of
+                 * the first copy
+                 */
                 boolean flag = false;
                 for (Combination k : jobMap.keySet()) {
                     IAtomContainer eductJob = reactionStructureInformation.getEduct(k.getRowIndex());
                     IAtomContainer productJob = reactionStructureInformation.getProduct(k.getColIndex());
 
-                    if (eductJob == educt
-                            && productJob == product) {
-                        if (eductJob.getAtomCount() == educt.getAtomCount()
-                                && productJob.getAtomCount() == (product.getAtomCount())) {
-                            jobMap.get(k).add(c);
-                            flag = true;
-                            break;
-                        }
+                    if (isSameMolecule(eductJob, educt)
+                            && isSameMolecule(productJob, product)) {
+                        jobMap.get(k).add(c);
+                        flag = true;
+                        break;
                     }
                 }
 
@@ -159,100 +204,52 @@ public class GraphMatcher extends Debugger {
             }
             CompletionService<MCSSolution> callablesQueue = new ExecutorCompletionService<>(executor);
 
-            for (Combination c : jobMap.keySet()) {
-                int substrateIndex = c.getRowIndex();
-                int productIndex = c.getColIndex();
-                IAtomContainer educt = reactionStructureInformation.getEduct(substrateIndex);
-                IAtomContainer product = reactionStructureInformation.getProduct(productIndex);
-
-                /*
-                 Ring matcher is set true if both sides have rings else it set to false (IMP for MCS)
-                 */
-                boolean ring = false;
-                boolean ringSizeEqual = false;
-
+            List<Combination> jobs = new ArrayList<>(jobMap.keySet());
+            List<Combination> deferrable = new ArrayList<>();
+            Map<Combination, Double> bounds = new TreeMap<>();
+            if (deferPairs) {
+                for (Combination c : jobs) {
+                    IAtomContainer educt = reactionStructureInformation.getEduct(c.getRowIndex());
+                    IAtomContainer product = reactionStructureInformation.getProduct(c.getColIndex());
+                    if (isPartialMatch(educt, product)) {
+                        bounds.put(c, getSimilarityUpperBound(educt, product));
+                        deferrable.add(c);
+                    }
+                }
+                jobs.removeAll(deferrable);
                 /*
-                 * Report All Cycles
-                 * or 
-                 * CycleFinder cycles = or(all(), relevant());
+                 * The most promising pairs are matched first, their similarity
+                 * decides which of the other pairs can be deferred
                  */
-                CycleFinder cycles = or(all(), all());
-                Cycles rings = cycles.find(educt);
-                int numberOfCyclesEduct = rings.numberOfCycles();
-                rings = cycles.find(product);
-                int numberOfCyclesProduct = rings.numberOfCycles();
-                if (numberOfCyclesEduct > 0 && numberOfCyclesProduct > 0) {
-                    ring = true;
-                }
-
-                if (numberOfCyclesEduct == numberOfCyclesProduct) {
-                    ringSizeEqual = true;
-                }
-                if (DEBUG) {
-                    SmilesGenerator smilesGenerator = new SmilesGenerator(SmiFlavor.Unique | SmiFlavor.UseAromaticSymbols);
-                    out.println(educt.getID() + " ED: " + smilesGenerator.create(educt));
-                    out.println(product.getID() + " PD: " + smilesGenerator.create(product));
-                    out.println("numberOfCyclesEduct " + numberOfCyclesEduct);
-                    out.println("numberOfCyclesProduct " + numberOfCyclesProduct);
-                    out.println("ringSizeEqual " + ringSizeEqual);
-                    out.println("Ring " + ring);
-                    out.println("----------------------------------");
-                }
-
-                MCSThread mcsThread;
-                switch (mh.getTheory()) {
-
-                    case MIN:
-                        mcsThread = new MCSThread(mh.getTheory(), substrateIndex, productIndex, educt, product, false, ring, true);
-                        mcsThread.setHasPerfectRings(ringSizeEqual);
-                        mcsThread.setEductCount(eductCount);
-                        mcsThread.setProductCount(productCount);
-                        break;
-
-                    case MAX:
-                        mcsThread = new MCSThread(mh.getTheory(), substrateIndex, productIndex, educt, product, false, ring, true);
-                        mcsThread.setHasPerfectRings(ringSizeEqual);
-                        mcsThread.setEductCount(eductCount);
-                        mcsThread.setProductCount(productCount);
-                        break;
-
-                    case MIXTURE:
-                        mcsThread = new MCSThread(mh.getTheory(), substrateIndex, productIndex, educt, product, false, ring, false);
-                        mcsThread.setHasPerfectRings(ringSizeEqual);
-                        mcsThread.setEductCount(eductCount);
-                        mcsThread.setProductCount(productCount);
-                        break;
-
-                    case RINGS:
-                        /*
-                         * don't use ring matcher if there are no rings in the molecule
-                         * else mappings with be skewed
-                         * bond=false;
-                         * ring =true;
-                         * atom type=true;
-                         * Ex: R05219
-                         */
-                        mcsThread = new MCSThread(mh.getTheory(), substrateIndex, productIndex, educt, product, false, ring, true);
-                        mcsThread.setHasPerfectRings(ringSizeEqual);
-                        mcsThread.setEductCount(eductCount);
-                        mcsThread.setProductCount(productCount);
-                        break;
-
-                    default:
-                        mcsThread = null;
-                        break;
-                }
-                if (mcsThread != null) {
-                    callablesQueue.submit(mcsThread);
-                    taskCounter++;
-                }
+                deferrable.sort((a, b) -> Double.compare(bounds.get(b), bounds.get(a)));
+                int lead = Math.min(Math.max(threadsAvailable, 1), deferrable.size());
+                jobs.addAll(deferrable.subList(0, lead));
+                deferrable = new ArrayList<>(deferrable.subList(lead, deferrable.size()));
             }
 
             Collection<MCSSolution> threadedUniqueMCSSolutions = synchronizedCollection(new ArrayList<MCSSolution>());
-            for (int count = 0; count < taskCounter; count++) {
-                MCSSolution isomorphism = callablesQueue.take().get();
-                threadedUniqueMCSSolutions.add(isomorphism);
+            taskCounter += match(mh, jobs, callablesQueue, threadedUniqueMCSSolutions);
+
+            if (!deferrable.isEmpty()) {
+                double best = getBestSimilarity(mh, jobReplicatorList, threadedUniqueMCSSolutions);
+                jobs.clear();
+                int deferred = 0;
+                for (Combination c : deferrable) {
+                    if (bounds.get(c) >= best) {
+                        jobs.add(c);
+                    } else {
+                        reactionStructureInformation.setPairDeferred(c.getRowIndex(), c.getColIndex(), true);
+                        deferred++;
+                        for (Combination r : jobMap.get(c)) {
+                            reactionStructureInformation.setPairDeferred(r.getRowIndex(), r.getColIndex(), true);
+                            deferred++;
+                        }
+                    }
+                }
+                metrics.increment(MCS_PAIRS_DEFERRED, deferred);
+                taskCounter += match(mh, jobs, callablesQueue, threadedUniqueMCSSolutions);
             }
+            metrics.increment(MCS_PAIRS_SCHEDULED, taskCounter);
 
 //                List<Future<MCSSolution>> invokeAll = executor.invokeAll(callablesQueue);
 //                for (Iterator<Future<MCSSolution>> it = invokeAll.iterator(); it.hasNext();) {
@@ -266,8 +263,7 @@ public class GraphMatcher extends Debugger {
             // and finish all existing threads in the queue
             executor.shutdown();
             // Wait until all threads are finish
-            while (!executor.isTerminated()) {
-            }
+            executor.awaitTermination(Long.MAX_VALUE, NANOSECONDS);
 
             if (DEBUG) {
                 out.println("Gathering MCS solution from the Thread");
@@ -284,6 +280,12 @@ public class GraphMatcher extends Debugger {
                         removeKey = c;
                         MCSSolution replicatedMCS = replicateMappingOnContainers(mh, c, mcs);
                         mcsSolutions.add(replicatedMCS);
+                        if (replicatedMCS != null) {
+                            for (Combination r : jobMap.get(c)) {
+                                mcsSolutions.add(replicateMappingOnCopies(mh, r, replicatedMCS));
+                                metrics.increment(MCS_PAIRS_REPLICATED);
+                            }
+                        }
                     }
                 }
                 return removeKey;
@@ -293,16 +295,178 @@ public class GraphMatcher extends Debugger {
             jobReplicatorList.clear();
             gc();
 
-        } catch (IOException | CDKException | ExecutionException | InterruptedException | CloneNotSupportedException ex) {
+        } catch (InterruptedException ex) {
+            /*
+             * the mapping was cancelled, stop the MCS threads
+             */
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            Thread.currentThread().interrupt();
+            throw ex;
+        } catch (IOException | CDKException | ExecutionException | CloneNotSupportedException ex) {
             LOGGER.error(SEVERE, null, ex);
         } finally {
             if (executor != null) {
                 executor.shutdown();
             }
+            graphMatching.stop();
         }
         return unmodifiableCollection(mcsSolutions);
     }
 
+    /*
+     * Submit an MCS task per educt/product pair
+     */
+    private static int match(Holder mh, List<Combination> jobs,
+            CompletionService<MCSSolution> callablesQueue,
+            Collection<MCSSolution> threadedUniqueMCSSolutions)
+            throws IOException, CDKException, InterruptedException, ExecutionException, CloneNotSupportedException {
+        ReactionContainer reactionStructureInformation = mh.getReactionContainer();
+        Integer eductCount = reactionStructureInformation.getEductCount();
+        Integer productCount = reactionStructureInformation.getProductCount();
+        ReactionMetrics metrics = mh.getMetrics();
+        int count = 0;
+        for (Combination c : jobs) {
+            int substrateIndex = c.getRowIndex();
+            int productIndex = c.getColIndex();
+            IAtomContainer educt = reactionStructureInformation.getEduct(substrateIndex);
+            IAtomContainer product = reactionStructureInformation.getProduct(productIndex);
+
+            /*
+             Ring matcher is set true if both sides have rings else it set to false (IMP for MCS)
+             */
+            boolean ring = false;
+            boolean ringSizeEqual = false;
+
+            /*
+             * Report All Cycles
+             * or 
+             * CycleFinder cycles = or(all(), relevant());
+             */
+            CycleFinder cycles = or(all(), all());
+            Cycles rings = cycles.find(educt);
+            int numberOfCyclesEduct = rings.numberOfCycles();
+            rings = cycles.find(product);
+            int numberOfCyclesProduct = rings.numberOfCycles();
+            if (numberOfCyclesEduct > 0 && numberOfCyclesProduct > 0) {
+                ring = true;
+            }
+
+            if (numberOfCyclesEduct == numberOfCyclesProduct) {
+                ringSizeEqual = true;
+            }
+            if (DEBUG) {
+                SmilesGenerator smilesGenerator = new SmilesGenerator(SmiFlavor.Unique | SmiFlavor.UseAromaticSymbols);
+                out.println(educt.getID() + " ED: " + smilesGenerator.create(educt));
+                out.println(product.getID() + " PD: " + smilesGenerator.create(product));
+                out.println("numberOfCyclesEduct " + numberOfCyclesEduct);
+                out.println("numberOfCyclesProduct " + numberOfCyclesProduct);
+                out.println("ringSizeEqual " + ringSizeEqual);
+                out.println("Ring " + ring);
+                out.println("----------------------------------");
+            }
+
+            MCSThread mcsThread;
+            switch (mh.getTheory()) {
+
+                case MIN:
+                    mcsThread = new MCSThread(mh.getTheory(), substrateIndex, productIndex, educt, product, false, ring, true);
+                    mcsThread.setHasPerfectRings(ringSizeEqual);
+                    mcsThread.setEductCount(eductCount);
+                    mcsThread.setProductCount(productCount);
+                    break;
+
+                case MAX:
+                    mcsThread = new MCSThread(mh.getTheory(), substrateIndex, productIndex, educt, product, false, ring, true);
+                    mcsThread.setHasPerfectRings(ringSizeEqual);
+                    mcsThread.setEductCount(eductCount);
+                    mcsThread.setProductCount(productCount);
+                    break;
+
+                case MIXTURE:
+                    mcsThread = new MCSThread(mh.getTheory(), substrateIndex, productIndex, educt, product, false, ring, false);
+                    mcsThread.setHasPerfectRings(ringSizeEqual);
+                    mcsThread.setEductCount(eductCount);
+                    mcsThread.setProductCount(productCount);
+                    break;
+
+                case RINGS:
+                    /*
+                     * don't use ring matcher if there are no rings in the molecule
+                     * else mappings with be skewed
+                     * bond=false;
+                     * ring =true;
+                     * atom type=true;
+                     * Ex: R05219
+                     */
+                    mcsThread = new MCSThread(mh.getTheory(), substrateIndex, productIndex, educt, product, false, ring, true);
+                    mcsThread.setHasPerfectRings(ringSizeEqual);
+                    mcsThread.setEductCount(eductCount);
+                    mcsThread.setProductCount(productCount);
+                    break;
+
+                default:
+                    mcsThread = null;
+                    break;
+            }
+            if (mcsThread != null) {
+                mcsThread.setMetrics(metrics);
+                callablesQueue.submit(mcsThread);
+                count++;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            MCSSolution isomorphism = callablesQueue.take().get();
+            threadedUniqueMCSSolutions.add(isomorphism);
+        }
+        return count;
+    }
+
+    /*
+     * Lower bound on the best graph similarity of the round: the similarity of
+     * the pairs matched so far and of the pairs which keep their old mapping
+     */
+    private static double getBestSimilarity(Holder mh, Set<Combination> candidates,
+            Collection<MCSSolution> solutions) throws IOException, CDKException {
+        ReactionContainer reactionStructureInformation = mh.getReactionContainer();
+        BestMatch bestMatch = mh.getBestMatchContainer();
+        double best = 0.0;
+        for (MCSSolution mcs : solutions) {
+            if (mcs == null) {
+                continue;
+            }
+            IAtomContainer educt = reactionStructureInformation.getEduct(mcs.getQueryPosition());
+            IAtomContainer product = reactionStructureInformation.getProduct(mcs.getTargetPosition());
+            best = Math.max(best, getSimilarity(educt, product, mcs.getAtomAtomMapping().getCount()));
+        }
+        for (int i = 0; i < reactionStructureInformation.getEductCount(); i++) {
+            for (int j = 0; j < reactionStructureInformation.getProductCount(); j++) {
+                if (candidates.contains(new Combination(i, j))
+                        || reactionStructureInformation.isPairDeferred(i, j)
+                        || !bestMatch.containsKey(i, j)) {
+                    continue;
+                }
+                IAtomContainer educt = reactionStructureInformation.getEduct(i);
+                IAtomContainer product = reactionStructureInformation.getProduct(j);
+                if (educt == null || product == null
+                        || educt.getAtomCount() == 0 || product.getAtomCount() == 0) {
+                    continue;
+                }
+                AtomAtomMapping mapping = bestMatch.getAtomMatch(i, j);
+                if (mapping != null) {
+                    best = Math.max(best, getSimilarity(educt, product, mapping.getCount()));
+                }
+            }
+        }
+        return best;
+    }
+
+    private static double getSimilarity(IAtomContainer educt, IAtomContainer product, double mappingSize) {
+        double total = educt.getAtomCount() + product.getAtomCount() - mappingSize;
+        return total == 0 ? 0.0 : mappingSize / total;
+    }
+
     /**
      *
      * @param mh
@@ -333,10 +497,12 @@ public class GraphMatcher extends Debugger {
 
             AtomAtomMapping atomAtomMapping = mcs.getAtomAtomMapping();
             AtomAtomMapping atomAtomMappingNew = new AtomAtomMapping(q, t);
+            Map<String, IAtom> qAtoms = getAtomsByID(q);
+            Map<String, IAtom> tAtoms = getAtomsByID(t);
             atomAtomMapping.getMappingsByAtoms().keySet().stream().forEach((a) -> {
-                IAtom atomByID1 = getAtomByID(q, a);
+                IAtom atomByID1 = a.getID() == null ? null : qAtoms.get(a.getID());
                 IAtom b = atomAtomMapping.getMappingsByAtoms().get(a);
-                IAtom atomByID2 = getAtomByID(t, b);
+                IAtom atomByID2 = b.getID() == null ? null : tAtoms.get(b.getID());
                 if (DEBUG) {
                     out.println("atomByID1 " + atomByID1.getID() + " atomByID2 " + atomByID2.getID());
                 }
@@ -353,16 +519,168 @@ public class GraphMatcher extends Debugger {
         return null;
     }
 
-    private static IAtom getAtomByID(IAtomContainer ac, IAtom atom) {
-        if (atom.getID() == null) {
-            return null;
+    /*
+     * Map the solution of a pair onto a pair of copies of its molecules (same
+     * atoms in the same order)
+     */
+    private static MCSSolution replicateMappingOnCopies(Holder mh, Combination copy, MCSSolution mcs) {
+        try {
+            ReactionContainer reactionStructureInformation = mh.getReactionContainer();
+            IAtomContainer q = reactionStructureInformation.getEduct(copy.getRowIndex());
+            IAtomContainer t = reactionStructureInformation.getProduct(copy.getColIndex());
+            return replicateMappingOnCopies(copy.getRowIndex(), copy.getColIndex(), q, t, mcs);
+        } catch (IOException | CDKException ex) {
+            getLogger(GraphMatcher.class.getName()).log(SEVERE, null, ex);
         }
-        for (IAtom a : ac.atoms()) {
-            if (a.getID().equals(atom.getID())) {
-                return a;
+        return null;
+    }
+
+    static MCSSolution replicateMappingOnCopies(int queryPosition, int targetPosition,
+            IAtomContainer q, IAtomContainer t, MCSSolution mcs) throws IOException, CDKException {
+        Map<IAtom, Integer> qIndex = getAtomIndex(mcs.getQueryContainer());
+        Map<IAtom, Integer> tIndex = getAtomIndex(mcs.getTargetContainer());
+        AtomAtomMapping atomAtomMappingNew = new AtomAtomMapping(q, t);
+        mcs.getAtomAtomMapping().getMappingsByAtoms().entrySet().stream().forEach((e) -> {
+            atomAtomMappingNew.put(q.getAtom(qIndex.get(e.getKey())), t.getAtom(tIndex.get(e.getValue())));
+        });
+        return new MCSSolution(queryPosition, targetPosition, q, t, atomAtomMappingNew);
+    }
+
+    private static Map<IAtom, Integer> getAtomIndex(IAtomContainer ac) {
+        Map<IAtom, Integer> index = new IdentityHashMap<>(2 * ac.getAtomCount());
+        for (int i = 0; i < ac.getAtomCount(); i++) {
+            index.put(ac.getAtom(i), i);
+        }
+        return index;
+    }
+
+    /*
+     * True if the molecules are the same object or copies with the same atoms,
+     * bonds and stereo elements in the same order, their MCS with any molecule
+     * is the same
+     */
+    static boolean isSameMolecule(IAtomContainer a, IAtomContainer b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null
+                || a.getAtomCount() != b.getAtomCount()
+                || a.getBondCount() != b.getBondCount()) {
+            return false;
+        }
+        for (int i = 0; i < a.getAtomCount(); i++) {
+            IAtom x = a.getAtom(i);
+            IAtom y = b.getAtom(i);
+            if (!Objects.equals(x.getSymbol(), y.getSymbol())
+                    || !Objects.equals(x.getFormalCharge(), y.getFormalCharge())
+                    || !Objects.equals(x.getImplicitHydrogenCount(), y.getImplicitHydrogenCount())
+                    || !Objects.equals(x.getMassNumber(), y.getMassNumber())
+                    || !Objects.equals(x.getAtomTypeName(), y.getAtomTypeName())
+                    || !Objects.equals(x.getHybridization(), y.getHybridization())
+                    || x.getFlag(ISAROMATIC) != y.getFlag(ISAROMATIC)
+                    || x.getFlag(ISINRING) != y.getFlag(ISINRING)) {
+                return false;
             }
         }
-        return null;
+        Map<IAtom, Integer> aIndex = getAtomIndex(a);
+        Map<IAtom, Integer> bIndex = getAtomIndex(b);
+        for (int i = 0; i < a.getBondCount(); i++) {
+            IBond x = a.getBond(i);
+            IBond y = b.getBond(i);
+            if (x.getAtomCount() != 2 || y.getAtomCount() != 2
+                    || !Objects.equals(aIndex.get(x.getAtom(0)), bIndex.get(y.getAtom(0)))
+                    || !Objects.equals(aIndex.get(x.getAtom(1)), bIndex.get(y.getAtom(1)))
+                    || x.getOrder() != y.getOrder()
+                    || x.getStereo() != y.getStereo()
+                    || x.getFlag(ISAROMATIC) != y.getFlag(ISAROMATIC)
+                    || x.getFlag(ISINRING) != y.getFlag(ISINRING)) {
+                return false;
+            }
+        }
+        return isSameStereo(a, aIndex, b, bIndex);
+    }
+
+    /*
+     * True if the stereo elements of the copies refer to the same atoms and
+     * bonds with the same configuration, unknown kinds of element are never
+     * the same
+     */
+    private static boolean isSameStereo(IAtomContainer a, Map<IAtom, Integer> aIndex,
+            IAtomContainer b, Map<IAtom, Integer> bIndex) {
+        Map<IBond, Integer> aBonds = getBondIndex(a);
+        Map<IBond, Integer> bBonds = getBondIndex(b);
+        Iterator<IStereoElement> bElements = b.stereoElements().iterator();
+        for (IStereoElement x : a.stereoElements()) {
+            if (!bElements.hasNext()) {
+                return false;
+            }
+            IStereoElement y = bElements.next();
+            if (x instanceof ITetrahedralChirality && y instanceof ITetrahedralChirality) {
+                ITetrahedralChirality tx = (ITetrahedralChirality) x;
+                ITetrahedralChirality ty = (ITetrahedralChirality) y;
+                if (tx.getStereo() != ty.getStereo()
+                        || !Objects.equals(aIndex.get(tx.getChiralAtom()), bIndex.get(ty.getChiralAtom()))
+                        || !isSameAtoms(asList(tx.getLigands()), aIndex, asList(ty.getLigands()), bIndex)) {
+                    return false;
+                }
+            } else if (x instanceof IDoubleBondStereochemistry && y instanceof IDoubleBondStereochemistry) {
+                IDoubleBondStereochemistry dx = (IDoubleBondStereochemistry) x;
+                IDoubleBondStereochemistry dy = (IDoubleBondStereochemistry) y;
+                if (dx.getStereo() != dy.getStereo()
+                        || !Objects.equals(aBonds.get(dx.getStereoBond()), bBonds.get(dy.getStereoBond()))
+                        || dx.getBonds().length != dy.getBonds().length) {
+                    return false;
+                }
+                for (int i = 0; i < dx.getBonds().length; i++) {
+                    if (!Objects.equals(aBonds.get(dx.getBonds()[i]), bBonds.get(dy.getBonds()[i]))) {
+                        return false;
+                    }
+                }
+            } else if (x instanceof ExtendedTetrahedral && y instanceof ExtendedTetrahedral) {
+                ExtendedTetrahedral ex = (ExtendedTetrahedral) x;
+                ExtendedTetrahedral ey = (ExtendedTetrahedral) y;
+                if (ex.winding() != ey.winding()
+                        || !Objects.equals(aIndex.get(ex.focus()), bIndex.get(ey.focus()))
+                        || !isSameAtoms(asList(ex.peripherals()), aIndex, asList(ey.peripherals()), bIndex)) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        return !bElements.hasNext();
+    }
+
+    private static boolean isSameAtoms(List<IAtom> x, Map<IAtom, Integer> xIndex,
+            List<IAtom> y, Map<IAtom, Integer> yIndex) {
+        if (x.size() != y.size()) {
+            return false;
+        }
+        for (int i = 0; i < x.size(); i++) {
+            if (!Objects.equals(xIndex.get(x.get(i)), yIndex.get(y.get(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<IBond, Integer> getBondIndex(IAtomContainer ac) {
+        Map<IBond, Integer> index = new IdentityHashMap<>(2 * ac.getBondCount());
+        for (int i = 0; i < ac.getBondCount(); i++) {
+            index.put(ac.getBond(i), i);
+        }
+        return index;
+    }
+
+    /*
+     * Atoms of the container by ID, the first atom is kept if IDs repeat
+     */
+    static Map<String, IAtom> getAtomsByID(IAtomContainer ac) {
+        Map<String, IAtom> atoms = new HashMap<>(2 * ac.getAtomCount());
+        for (IAtom a : ac.atoms()) {
+            atoms.putIfAbsent(a.getID(), a);
+        }
+        return atoms;
     }
 
     /**
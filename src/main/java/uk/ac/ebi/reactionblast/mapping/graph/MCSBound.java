@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mapping.graph;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IPseudoAtom;
+
+/**
+ * Cheap upper bound on the size (mapped atoms) of the MCS of an educt and a
+ * product. Mapped atoms have the same element, so the MCS can't be larger
+ * than the common part of the element multisets. The MCS may be disconnected
+ * (fragments are stitched), hence bounds on bonds (bond types, degrees, rings)
+ * don't bound the number of mapped atoms and are not used.
+ *
+ * The bound assumes the MCS compares the atoms (by ring membership or atom
+ * type, as the mapping threads do for molecules with more than one atom);
+ * with neither, SMSD only compares the atoms shared by two matched bonds and
+ * a terminal atom may map onto another element.
+ *
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+final class MCSBound {
+
+    private MCSBound() {
+    }
+
+    /**
+     *
+     * @param educt
+     * @param product
+     * @return max number of atoms an MCS can map
+     */
+    static int getAtomUpperBound(IAtomContainer educt, IAtomContainer product) {
+        Map<String, Integer> elements = getElements(educt);
+        Map<String, Integer> other = getElements(product);
+        if (elements == null || other == null) {
+            return Math.min(educt.getAtomCount(), product.getAtomCount());
+        }
+        int bound = 0;
+        for (Map.Entry<String, Integer> e : elements.entrySet()) {
+            Integer count = other.get(e.getKey());
+            if (count != null) {
+                bound += Math.min(count, e.getValue());
+            }
+        }
+        return bound;
+    }
+
+    /**
+     *
+     * @param educt
+     * @param product
+     * @return max graph similarity (mapped atoms / atoms in either molecule)
+     * the pair can get
+     */
+    static double getSimilarityUpperBound(IAtomContainer educt, IAtomContainer product) {
+        int bound = getAtomUpperBound(educt, product);
+        int total = educt.getAtomCount() + product.getAtomCount() - bound;
+        return total == 0 ? 0.0 : (double) bound / total;
+    }
+
+    /**
+     * A pair may be deferred only if the MCS can't be a complete match of
+     * either molecule (these are picked by the substructure checks of the
+     * game theory whatever their similarity).
+     *
+     * @param educt
+     * @param product
+     * @return true if the pair can't be a substructure or exact match
+     */
+    static boolean isPartialMatch(IAtomContainer educt, IAtomContainer product) {
+        return educt.getAtomCount() > 1 && product.getAtomCount() > 1
+                && getAtomUpperBound(educt, product)
+                < Math.min(educt.getAtomCount(), product.getAtomCount());
+    }
+
+    /*
+     * null if an atom may match any element
+     */
+    private static Map<String, Integer> getElements(IAtomContainer ac) {
+        Map<String, Integer> elements = new HashMap<>();
+        for (IAtom a : ac.atoms()) {
+            if (a.getSymbol() == null || a instanceof IPseudoAtom) {
+                return null;
+            }
+            Integer count = elements.get(a.getSymbol());
+            elements.put(a.getSymbol(), count == null ? 1 : count + 1);
+        }
+        return elements;
+    }
+}
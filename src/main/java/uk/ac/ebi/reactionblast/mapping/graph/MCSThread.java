@@ -56,8 +56,15 @@ import static org.openscience.smsd.interfaces.Algorithm.DEFAULT;
 import static org.openscience.smsd.interfaces.Algorithm.VFLibMCS;
 import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
 import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.RINGS;
+import uk.ac.ebi.reactionblast.tools.CopyOnWriteMolecule;
 import uk.ac.ebi.reactionblast.tools.labelling.ICanonicalMoleculeLabeller;
 import uk.ac.ebi.reactionblast.tools.labelling.SmilesMoleculeLabeller;
+import uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.MCS_FULL;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.MCS_PAIR;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.MCS_SIZE;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.MCS_SUBSTRUCTURE;
+import uk.ac.ebi.reactionblast.tools.metrics.Timer;
 
 /**
  * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
@@ -77,15 +84,15 @@ public class MCSThread implements Callable<MCSSolution> {
     private SmilesGenerator smiles;
     private Aromaticity aromaticity;
 
-    /**
-     *
+    /*
+     * educt and product are shared with the other threads, they are copied
+     * once by the first stage which modifies them and the copies are used by
+     * all the later stages
      */
-    protected final IAtomContainer compound1;
-
-    /**
-     *
-     */
-    protected final IAtomContainer compound2;
+    private final CopyOnWriteMolecule compound1;
+    private final CopyOnWriteMolecule compound2;
+    private final String compoundID1;
+    private final String compoundID2;
 
     /**
      *
@@ -122,6 +129,7 @@ public class MCSThread implements Callable<MCSSolution> {
     private boolean hasRings;
     private Integer eductCount;
     private Integer productCount;
+    private ReactionMetrics metrics;
 
     /**
      *
@@ -146,8 +154,10 @@ public class MCSThread implements Callable<MCSSolution> {
 
         this.startTime = currentTimeMillis();
 
-        this.compound1 = getNewContainerWithIDs(educt);
-        this.compound2 = getNewContainerWithIDs(product);
+        this.compound1 = new CopyOnWriteMolecule(educt);
+        this.compound2 = new CopyOnWriteMolecule(product);
+        this.compoundID1 = educt.getID() == null ? valueOf(nanoTime()) : educt.getID();
+        this.compoundID2 = product.getID() == null ? valueOf(nanoTime()) : product.getID();
         this.queryPosition = queryPosition;
         this.targetPosition = targetPosition;
         this.bondMatcher = bondMatcher;
@@ -155,6 +165,7 @@ public class MCSThread implements Callable<MCSSolution> {
         this.theory = theory;
         this.atomMatcher = atomMatcher;
         this.labeller = new SmilesMoleculeLabeller();
+        this.metrics = new ReactionMetrics(null);
 
         if (DEBUG1) {
             aromaticity = new Aromaticity(daylight(),
@@ -177,15 +188,28 @@ public class MCSThread implements Callable<MCSSolution> {
 
     @Override
     public synchronized MCSSolution call() throws Exception {
+        Timer.Context pair = metrics.time(MCS_PAIR);
+        try {
+            MCSSolution mcs = match();
+            if (mcs != null && mcs.getAtomAtomMapping() != null) {
+                metrics.update(MCS_SIZE, mcs.getAtomAtomMapping().getCount());
+            }
+            return mcs;
+        } finally {
+            pair.stop();
+        }
+    }
+
+    private MCSSolution match() throws Exception {
         try {
             if (!theory.equals(RINGS)) {
                 if (DEBUG1) {
                     out.println("Q: " + getCompound1().getID()
                             + " T: " + getCompound2().getID()
-                            + " molQ: " + smiles.create(compound1)
-                            + " molT: " + smiles.create(compound2)
-                            + " atomsE: " + compound1.getAtomCount()
-                            + " atomsP: " + compound2.getAtomCount()
+                            + " molQ: " + smiles.create(getCompound1())
+                            + " molT: " + smiles.create(getCompound2())
+                            + " atomsE: " + getCompound1().getAtomCount()
+                            + " atomsP: " + getCompound2().getAtomCount()
                             + " [bonds: " + bondMatcher
                             + " rings: " + ringMatcher
                             + " isHasPerfectRings: " + isHasPerfectRings()
@@ -195,24 +219,26 @@ public class MCSThread implements Callable<MCSSolution> {
                 /*
                  Check if MCS matching required or not very IMP step
                  */
-                boolean possibleVFmatch12 = isPossibleSubgraphMatch(getCompound1(), getCompound2());
+                boolean possibleVFmatch12 = isPossibleSubgraphMatch(compound1.getReadOnly(), compound2.getReadOnly());
                 if (DEBUG1) {
                     out.println("VF Matcher 1->2 " + possibleVFmatch12);
                 }
 
-                boolean possibleVFmatch21 = isPossibleSubgraphMatch(getCompound2(), getCompound1());
+                boolean possibleVFmatch21 = isPossibleSubgraphMatch(compound2.getReadOnly(), compound1.getReadOnly());
                 if (DEBUG1) {
                     out.println("VF Matcher 2->1 " + possibleVFmatch21);
                 }
 
+                IAtomContainer educt = compound1.getReadOnly();
+                IAtomContainer product = compound2.getReadOnly();
                 if (possibleVFmatch12
-                        && getCompound1().getAtomCount() <= getCompound2().getAtomCount()
-                        && getCompound1().getBondCount() <= getCompound2().getBondCount()) {
+                        && educt.getAtomCount() <= product.getAtomCount()
+                        && educt.getBondCount() <= product.getBondCount()) {
                     if (DEBUG1) {
                         out.println("Substructure 5");
                     }
-                    IAtomContainer ac1 = duplicate(getCompound1());
-                    IAtomContainer ac2 = duplicate(getCompound2());
+                    IAtomContainer ac1 = getCompound1();
+                    IAtomContainer ac2 = getCompound2();
                     Substructure substructure;
                     substructure = new Substructure(ac1, ac2,
                             true, false, isHasPerfectRings(), true);
@@ -220,6 +246,7 @@ public class MCSThread implements Callable<MCSSolution> {
                         substructure = new Substructure(ac1, ac2,
                                 false, false, isHasPerfectRings(), true);
                     }
+                    substructure.setMaxSolutions(1);
                     substructure.setChemFilters(stereoFlag, fragmentFlag, energyFlag);
 //                    System.out.println("Number of Solutions: " + substructure.getAllAtomMapping());
                     if (substructure.isSubgraph() && substructure.getFirstAtomMapping().getCount() == ac1.getAtomCount()) {
@@ -228,6 +255,7 @@ public class MCSThread implements Callable<MCSSolution> {
                         mcs.setEnergy(substructure.getEnergyScore(0));
                         mcs.setFragmentSize(substructure.getFragmentSize(0));
                         mcs.setStereoScore(substructure.getStereoScore(0));
+                        metrics.increment(MCS_SUBSTRUCTURE);
                         if (DEBUG1) {
                             long stopTime = currentTimeMillis();
                             long time = stopTime - startTime;
@@ -238,14 +266,19 @@ public class MCSThread implements Callable<MCSSolution> {
                     } else if (DEBUG1) {
                         out.println("not a Substructure 5");
                     }
+                    /*
+                     * the substructure search has only perceived the rings
+                     * and atom types of the copies, which the MCS search does
+                     * again, so the copies are passed on
+                     */
                 } else if (possibleVFmatch21) {
 
                     if (DEBUG1) {
                         out.println("Substructure 6");
                     }
 
-                    IAtomContainer ac1 = duplicate(getCompound1());
-                    IAtomContainer ac2 = duplicate(getCompound2());
+                    IAtomContainer ac1 = getCompound1();
+                    IAtomContainer ac2 = getCompound2();
                     Substructure substructure;
                     substructure = new Substructure(ac2, ac1,
                             true, false, isHasPerfectRings(), true);
@@ -253,6 +286,7 @@ public class MCSThread implements Callable<MCSSolution> {
                         substructure = new Substructure(ac2, ac1,
                                 false, false, isHasPerfectRings(), true);
                     }
+                    substructure.setMaxSolutions(1);
                     substructure.setChemFilters(stereoFlag, fragmentFlag, energyFlag);
 
                     if (substructure.isSubgraph() && substructure.getFirstAtomMapping().getCount() == ac2.getAtomCount()) {
@@ -267,6 +301,7 @@ public class MCSThread implements Callable<MCSSolution> {
                         mcs.setEnergy(substructure.getEnergyScore(0));
                         mcs.setFragmentSize(substructure.getFragmentSize(0));
                         mcs.setStereoScore(substructure.getStereoScore(0));
+                        metrics.increment(MCS_SUBSTRUCTURE);
 
                         if (DEBUG1) {
                             long stopTime = currentTimeMillis();
@@ -278,16 +313,21 @@ public class MCSThread implements Callable<MCSSolution> {
                     } else if (DEBUG1) {
                         out.println("not a Substructure 6");
                     }
+                    /*
+                     * the substructure search has only perceived the rings
+                     * and atom types of the copies, which the MCS search does
+                     * again, so the copies are passed on
+                     */
                 }
 
                 if (DEBUG1) {
                     out.println("calling mcs");
                     out.println("Q: " + getCompound1().getID()
                             + " T: " + getCompound2().getID()
-                            + " molQ: " + smiles.create(compound1)
-                            + " molT: " + smiles.create(compound2)
-                            + " atomsQ: " + compound1.getAtomCount()
-                            + " atomsT: " + compound2.getAtomCount()
+                            + " molQ: " + smiles.create(getCompound1())
+                            + " molT: " + smiles.create(getCompound2())
+                            + " atomsQ: " + getCompound1().getAtomCount()
+                            + " atomsT: " + getCompound2().getAtomCount()
                             + " [bonds: " + bondMatcher
                             + " rings: " + ringMatcher
                             + " isHasPerfectRings: " + isHasPerfectRings()
@@ -306,25 +346,6 @@ public class MCSThread implements Callable<MCSSolution> {
         return null;
     }
 
-    private IAtomContainer getNewContainerWithIDs(IAtomContainer mol)
-            throws CDKException, CloneNotSupportedException {
-        /*
-         Generating SMILES speed ups the mapping process by n-FOLDS
-         May be this is CDK inherent bug, which relies on the properties set by the SMILES
-         */
-        IAtomContainer ac;
-        ac = mol.clone();
-        for (int i = 0; i < ac.getAtomCount(); i++) {
-            String atomID = mol.getAtom(i).getID() == null
-                    ? valueOf(i) : mol.getAtom(i).getID();
-            ac.getAtom(i).setID(atomID);
-        }
-        String containerID = mol.getID() == null ? valueOf(nanoTime()) : mol.getID();
-        ac.setID(containerID);
-
-        return ac;
-    }
-
     synchronized void setStereoFlag(boolean b) {
         this.stereoFlag = b;
     }
@@ -432,15 +453,21 @@ public class MCSThread implements Callable<MCSSolution> {
     }
 
     synchronized MCSSolution mcs() {
+        metrics.increment(MCS_FULL);
         try {
             /*
              * 0: default Isomorphism, 1: MCSPlus, 2: VFLibMCS, 3: CDKMCS
              */
             Isomorphism isomorphism;
-            int expectedMaxGraphmatch = expectedMaxGraphmatch(getCompound1(), getCompound2());
+            /*
+             * the case is chosen on the shared molecules as given
+             */
+            IAtomContainer educt = compound1.getReadOnly();
+            IAtomContainer product = compound2.getReadOnly();
+            int expectedMaxGraphmatch = expectedMaxGraphmatch(educt, product);
 
-            if (getCompound1().getAtomCount() == 1
-                    || getCompound2().getAtomCount() == 1) {
+            if (educt.getAtomCount() == 1
+                    || product.getAtomCount() == 1) {
                 if (DEBUG3) {
                     System.out.println("CASE 1");
                 }
@@ -450,7 +477,7 @@ public class MCSThread implements Callable<MCSSolution> {
                 isomorphism = new Isomorphism(getCompound1(), getCompound2(), Algorithm.DEFAULT,
                         false, isHasPerfectRings(), false);
             } else if (expectedMaxGraphmatch >= 30
-                    && ConnectivityChecker.isConnected(getCompound1())) {
+                    && ConnectivityChecker.isConnected(educt)) {
                 if (DEBUG3) {
                     System.out.println("CASE 2");
                 }
@@ -473,6 +500,10 @@ public class MCSThread implements Callable<MCSSolution> {
                         false, isHasPerfectRings(), !isHasPerfectRings());
             }
 
+            /*
+             * Only the best solution is used
+             */
+            isomorphism.setMaxSolutions(1);
             isomorphism.setChemFilters(stereoFlag, fragmentFlag, energyFlag);
             if (DEBUG3) {
                 out.println("MCS " + isomorphism.getFirstAtomMapping().getCount() + ", " + isomorphism.getFirstAtomMapping().getCommonFragmentAsSMILES());
@@ -507,22 +538,29 @@ public class MCSThread implements Callable<MCSSolution> {
         double energy = 0.0d;
         int fragmentSize = 0;
         int stereoScore = 0;
-        IAtomContainer ac1 = duplicate(getCompound1());
-        IAtomContainer ac2 = duplicate(getCompound2());
+        IAtomContainer query = getCompound1();
+        IAtomContainer target = getCompound2();
+        /*
+         * the private copies are only read here (the reduced molecules are
+         * new containers)
+         */
+        IAtomContainer ac1 = query;
+        IAtomContainer ac2 = target;
         /*
          * 0: default Isomorphism, 1: MCSPlus, 2: VFLibMCS, 3: CDKMCS
          */
         Isomorphism isomorphism;
 
         isomorphism = new Isomorphism(ac1, ac2, DEFAULT, true, ringMatcher, true);
+        isomorphism.setMaxSolutions(1);
         isomorphism.setChemFilters(stereoFlag, fragmentFlag, energyFlag);
 
         Map<IAtom, IAtom> acceptedSolution = new HashMap<>();
 
         if (!isomorphism.getFirstAtomMapping().isEmpty()) {
             for (IAtom a : isomorphism.getFirstAtomMapping().getMappingsByAtoms().keySet()) {
-                IAtom refA = getAtomByID(getCompound1(), a);
-                IAtom refB = getAtomByID(getCompound2(),
+                IAtom refA = getAtomByID(query, a);
+                IAtom refB = getAtomByID(target,
                         isomorphism.getFirstAtomMapping().getMappingsByAtoms().get(a));
                 acceptedSolution.put(refA, refB);
             }
@@ -536,22 +574,22 @@ public class MCSThread implements Callable<MCSSolution> {
         if (ac1.getAtomCount() > 0 && ac2.getAtomCount() > 0) {
 
             if (DEBUG2) {
-                out.println(smiles.create(getCompound1()) + "ac1 reduced by "
-                        + (getCompound1().getAtomCount() - ac1.getAtomCount())
-                        + ", " + smiles.create(getCompound2()) + " ac2 reduced by "
-                        + (getCompound2().getAtomCount() - ac2.getAtomCount()));
+                out.println(smiles.create(query) + "ac1 reduced by "
+                        + (query.getAtomCount() - ac1.getAtomCount())
+                        + ", " + smiles.create(target) + " ac2 reduced by "
+                        + (target.getAtomCount() - ac2.getAtomCount()));
             }
             isomorphism = new Isomorphism(ac1, ac2, VFLibMCS, false, ringMatcher, true);
             isomorphism.setChemFilters(stereoFlag, fragmentFlag, energyFlag);
             List<AtomAtomMapping> allAtomMapping = isomorphism.getAllAtomMapping();
             int solIndex = 0;
             for (AtomAtomMapping s : allAtomMapping) {
-                boolean stitchingFeasible = isStitchingFeasible(getCompound1(),
-                        getCompound2(), acceptedSolution, s);
+                boolean stitchingFeasible = isStitchingFeasible(query,
+                        target, acceptedSolution, s);
                 if (stitchingFeasible) {
                     s.getMappingsByAtoms().keySet().stream().forEach((a) -> {
-                        IAtom refA = getAtomByID(getCompound1(), a);
-                        IAtom refB = getAtomByID(getCompound2(), s.getMappingsByAtoms().get(a));
+                        IAtom refA = getAtomByID(query, a);
+                        IAtom refB = getAtomByID(target, s.getMappingsByAtoms().get(a));
                         acceptedSolution.put(refA, refB);
                     });
                     energy += isomorphism.getEnergyScore(solIndex);
@@ -568,7 +606,7 @@ public class MCSThread implements Callable<MCSSolution> {
              * In case of Complete subgraph, don't use Energy filter
              *
              */
-            AtomAtomMapping combi = new AtomAtomMapping(getCompound1(), getCompound2());
+            AtomAtomMapping combi = new AtomAtomMapping(query, target);
 
             acceptedSolution.keySet().stream().forEach((a) -> {
                 IAtom b = acceptedSolution.get(a);
@@ -672,27 +710,27 @@ public class MCSThread implements Callable<MCSSolution> {
         return t1 && t2;
     }
 
-    private IAtomContainer duplicate(IAtomContainer ac) throws CloneNotSupportedException {
-        IAtomContainer a = ac.clone();
-        a.setID(ac.getID());
-        for (int i = 0; i < a.getAtomCount(); i++) {
-            a.getAtom(i).setID(ac.getAtom(i).getID());
-        }
-        return a;
-    }
-
     /**
      * @return the compound1
+     * @throws CloneNotSupportedException
      */
-    synchronized IAtomContainer getCompound1() {
-        return compound1;
+    synchronized IAtomContainer getCompound1() throws CloneNotSupportedException {
+        return getCopy(compound1, compoundID1);
     }
 
     /**
      * @return the compound2
+     * @throws CloneNotSupportedException
      */
-    synchronized IAtomContainer getCompound2() {
-        return compound2;
+    synchronized IAtomContainer getCompound2() throws CloneNotSupportedException {
+        return getCopy(compound2, compoundID2);
+    }
+
+    private IAtomContainer getCopy(CopyOnWriteMolecule molecule, String id)
+            throws CloneNotSupportedException {
+        IAtomContainer ac = molecule.getWritable();
+        ac.setID(id);
+        return ac;
     }
 
     /**
@@ -727,4 +765,8 @@ public class MCSThread implements Callable<MCSSolution> {
     void setProductCount(Integer productCount) {
         this.productCount = productCount;
     }
+
+    void setMetrics(ReactionMetrics metrics) {
+        this.metrics = metrics;
+    }
 }
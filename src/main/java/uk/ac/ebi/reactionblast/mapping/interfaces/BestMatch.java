@@ -146,7 +146,7 @@ public abstract class BestMatch {
      *
      * @param indexI
      * @param indexJ
-     * @param value
+     * @param value fragment count, null is read back as 0 (no count)
      */
     public abstract void setTotalFragmentCount(int indexI, int indexJ, Integer value);
 }
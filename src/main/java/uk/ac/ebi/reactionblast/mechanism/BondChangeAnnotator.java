@@ -40,6 +40,7 @@ import static org.openscience.cdk.interfaces.IBond.Order.SINGLE;
 import org.openscience.cdk.interfaces.IReaction;
 import org.openscience.cdk.interfaces.IRingSet;
 import org.openscience.cdk.ringsearch.SSSRFinder;
+import uk.ac.ebi.reactionblast.containers.MappingContext;
 import uk.ac.ebi.reactionblast.mechanism.helper.AtomAtomMappingContainer;
 import uk.ac.ebi.reactionblast.mechanism.helper.AtomStereoChangeInformation;
 import uk.ac.ebi.reactionblast.mechanism.helper.BondChange;
@@ -57,6 +58,7 @@ import static uk.ac.ebi.reactionblast.stereo.IStereoAndConformation.S;
 import static uk.ac.ebi.reactionblast.stereo.IStereoAndConformation.Z;
 import static java.lang.Math.abs;
 import static java.util.logging.Logger.getLogger;
+import uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics;
 
 /**
  * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
@@ -74,13 +76,17 @@ public final class BondChangeAnnotator extends DUModel {
      * @param withoutHydrogen
      * @param generate2D
      * @param generate3D
+     * @param metrics stage timings of the reaction
+     * @param context caches of the job
      * @throws Exception
      */
     protected BondChangeAnnotator(IReaction reaction,
             boolean withoutHydrogen,
             boolean generate2D,
-            boolean generate3D) throws Exception {
-        super(reaction, withoutHydrogen, generate2D, generate3D);
+            boolean generate3D,
+            ReactionMetrics metrics,
+            MappingContext context) throws Exception {
+        super(reaction, withoutHydrogen, generate2D, generate3D, metrics, context);
         if (DEBUG) {
             System.out.println("MARK Bond Change START");
         }
@@ -58,6 +58,7 @@ import static org.openscience.cdk.tools.manipulator.AtomContainerSetManipulator.
 import static org.openscience.cdk.tools.manipulator.ReactionManipulator.getRelevantAtomContainer;
 import org.openscience.smsd.tools.BondEnergies;
 import static org.openscience.smsd.tools.BondEnergies.getInstance;
+import uk.ac.ebi.reactionblast.containers.MappingContext;
 import uk.ac.ebi.reactionblast.fingerprints.Feature;
 import uk.ac.ebi.reactionblast.fingerprints.PatternFingerprinter;
 import uk.ac.ebi.reactionblast.fingerprints.interfaces.IFeature;
@@ -80,6 +81,10 @@ import static uk.ac.ebi.reactionblast.mechanism.interfaces.EnumSubstrateProduct.
 import static uk.ac.ebi.reactionblast.mechanism.interfaces.EnumSubstrateProduct.REACTANT;
 import uk.ac.ebi.reactionblast.mechanism.interfaces.IChangeCalculator;
 import static uk.ac.ebi.reactionblast.tools.ExtReactionManipulatorTool.deepClone;
+import uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.BOND_CHANGES;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.FINGERPRINT;
+import uk.ac.ebi.reactionblast.tools.metrics.Timer;
 
 /**
  * This class marks the bond changes
@@ -121,384 +126,420 @@ public class BondChangeCalculator extends AbstractChangeCalculator implements IC
      * @throws Exception
      */
     public BondChangeCalculator(IReaction reaction, boolean generate2D, boolean generate3D) throws Exception {
-        if (DEBUG) {
-            System.out.println("Bond Change Calculator START");
-        }
-        int rEnergy = 0;
-        int pEnergy = 0;
-
-        this.energySum = 0;
-        this.energyDelta = 0;
-        this.totalSmallestFragmentSize = 0;
-        this.mappedReaction = reaction;
-        if (DEBUG) {
-            System.out.println("Bond Change Annotator START");
-        }
-        this.bondChangeAnnotator = new BondChangeAnnotator(this.mappedReaction, true, generate2D, generate3D);
-        if (DEBUG) {
-            System.out.println("Bond Change Annotator END");
-        }
+        this(reaction, generate2D, generate3D, new ReactionMetrics(reaction.getID()));
+    }
 
-        BondEnergies be = getInstance();
+    /**
+     *
+     * @param reaction
+     * @param generate2D
+     * @param generate3D
+     * @param metrics stage timings of the reaction
+     * @throws Exception
+     */
+    public BondChangeCalculator(IReaction reaction, boolean generate2D, boolean generate3D, ReactionMetrics metrics) throws Exception {
+        this(reaction, generate2D, generate3D, metrics, MappingContext.getDefault());
+    }
 
-        this.formedCleavedWFingerprint = new PatternFingerprinter();
-        this.formedCleavedWFingerprint.setFingerprintID(reaction.getID() + ":" + "Bond Cleaved and Formed");
-        this.orderChangesWFingerprint = new PatternFingerprinter();
-        this.orderChangesWFingerprint.setFingerprintID(reaction.getID() + ":" + "Bond Order Change");
-        this.stereoChangesWFingerprint = new PatternFingerprinter();
-        this.stereoChangesWFingerprint.setFingerprintID(reaction.getID() + ":" + "Bond Stereo Change");
-        this.reactionCenterWFingerprint = new PatternFingerprinter();
-        this.reactionCenterWFingerprint.setFingerprintID(reaction.getID() + ":" + "Reaction Center");
+    /**
+     *
+     * @param reaction
+     * @param generate2D
+     * @param generate3D
+     * @param metrics stage timings of the reaction
+     * @param context caches of the job
+     * @throws Exception
+     */
+    public BondChangeCalculator(IReaction reaction, boolean generate2D, boolean generate3D,
+            ReactionMetrics metrics, MappingContext context) throws Exception {
+        Timer.Context bondChanges = metrics.time(BOND_CHANGES);
+        Timer.Context fingerprint = null;
+        try (MappingContext.Binding binding = context.bind()) {
+            if (DEBUG) {
+                System.out.println("Bond Change Calculator START");
+            }
+            int rEnergy = 0;
+            int pEnergy = 0;
+
+            this.energySum = 0;
+            this.energyDelta = 0;
+            this.totalSmallestFragmentSize = 0;
+            this.mappedReaction = reaction;
+            if (DEBUG) {
+                System.out.println("Bond Change Annotator START");
+            }
+            this.bondChangeAnnotator = new BondChangeAnnotator(this.mappedReaction, true, generate2D, generate3D, metrics, context);
+            if (DEBUG) {
+                System.out.println("Bond Change Annotator END");
+            }
+            fingerprint = metrics.time(FINGERPRINT);
 
-        this.reactionCenterFormedCleavedFingerprint = new HashMap<>();
-        this.reactionCenterOrderChangeFingerprint = new HashMap<>();
-        this.reactionCenterStereoChangeFingerprint = new HashMap<>();
+            BondEnergies be = getInstance();
 
-        this.reactionMoleculeMoleculePairList = new LinkedHashSet<>();
+            this.formedCleavedWFingerprint = new PatternFingerprinter();
+            this.formedCleavedWFingerprint.setFingerprintID(reaction.getID() + ":" + "Bond Cleaved and Formed");
+            this.orderChangesWFingerprint = new PatternFingerprinter();
+            this.orderChangesWFingerprint.setFingerprintID(reaction.getID() + ":" + "Bond Order Change");
+            this.stereoChangesWFingerprint = new PatternFingerprinter();
+            this.stereoChangesWFingerprint.setFingerprintID(reaction.getID() + ":" + "Bond Stereo Change");
+            this.reactionCenterWFingerprint = new PatternFingerprinter();
+            this.reactionCenterWFingerprint.setFingerprintID(reaction.getID() + ":" + "Reaction Center");
 
-        this.bondFormedMap = synchronizedMap(new HashMap<IBond, String>());
-        this.bondCleavedMap = synchronizedMap(new HashMap<IBond, String>());
-        this.bondOrderRMap = synchronizedMap(new HashMap<IBond, String>());
-        this.bondOrderPMap = synchronizedMap(new HashMap<IBond, String>());
-        this.AtomStereoRMap = synchronizedMap(new HashMap<IAtom, String>());
-        this.AtomStereoPMap = synchronizedMap(new HashMap<IAtom, String>());
+            this.reactionCenterFormedCleavedFingerprint = new HashMap<>();
+            this.reactionCenterOrderChangeFingerprint = new HashMap<>();
+            this.reactionCenterStereoChangeFingerprint = new HashMap<>();
 
-        this.reactionCenterFragmentList = synchronizedList(new ArrayList<ReactionCenterFragment>());
+            this.reactionMoleculeMoleculePairList = new LinkedHashSet<>();
 
-        /*
-         * Loop for stereo changes
-         */
-        for (AtomStereoChangeInformation atomConformation : bondChangeAnnotator.getConformationChangeList()) {
-            /*
-             * Stereo changes are marked only once in the Fingerprint
-             */
-            if (atomConformation.getReactantAtom() != null && atomConformation.getProductAtom() != null) {
-                String keyE = atomConformation.getReactantAtom().getSymbol().concat("(E/Z)");
-                IFeature eductFeature = new Feature(keyE, 1.0);
-                stereoChangesWFingerprint.add(eductFeature);
-            }
+            this.bondFormedMap = synchronizedMap(new HashMap<IBond, String>());
+            this.bondCleavedMap = synchronizedMap(new HashMap<IBond, String>());
+            this.bondOrderRMap = synchronizedMap(new HashMap<IBond, String>());
+            this.bondOrderPMap = synchronizedMap(new HashMap<IBond, String>());
+            this.AtomStereoRMap = synchronizedMap(new HashMap<IAtom, String>());
+            this.AtomStereoPMap = synchronizedMap(new HashMap<IAtom, String>());
+
+            this.reactionCenterFragmentList = synchronizedList(new ArrayList<ReactionCenterFragment>());
 
             /*
-             * Stereo changes are marked on reactant and product for reaction center identification
+             * Loop for stereo changes
              */
-            if (atomConformation.getReactantAtom() != null) {
-                atomConformation.getReactantAtom().setProperty(BOND_CHANGE_INFORMATION, BOND_STEREO);
-                AtomStereoRMap.put(atomConformation.getReactantAtom(), getMoleculeID(atomConformation.getReactantAtom(), reaction.getReactants()));
-
+            for (AtomStereoChangeInformation atomConformation : bondChangeAnnotator.getConformationChangeList()) {
                 /*
-                 * Update Reaction center FP
+                 * Stereo changes are marked only once in the Fingerprint
                  */
-                IAtom atomR1 = atomConformation.getReactantAtom();
-                IAtomContainer moleculeR = getAtomContainer(atomConformation.getReactantAtom(), reaction.getReactants());
-
-                if (moleculeR.getAtomCount() > 1) {
-                    if (!atomR1.getSymbol().equals("H")) {
-                        reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(moleculeR, atomR1, REACTANT));
-                        setCircularFingerprints(reaction.getID(), moleculeR, atomR1, reactionCenterStereoChangeFingerprint);
-                    }
+                if (atomConformation.getReactantAtom() != null && atomConformation.getProductAtom() != null) {
+                    String keyE = atomConformation.getReactantAtom().getSymbol().concat("(E/Z)");
+                    IFeature eductFeature = new Feature(keyE, 1.0);
+                    stereoChangesWFingerprint.add(eductFeature);
                 }
-            }
-            if (atomConformation.getProductAtom() != null) {
-                atomConformation.getProductAtom().setProperty(BOND_CHANGE_INFORMATION, BOND_STEREO);
-                AtomStereoPMap.put(atomConformation.getProductAtom(), getMoleculeID(atomConformation.getProductAtom(), reaction.getProducts()));
 
                 /*
-                 * Update Reaction center FP
+                 * Stereo changes are marked on reactant and product for reaction center identification
                  */
-                IAtom atomP1 = atomConformation.getProductAtom();
-                IAtomContainer moleculeP = getAtomContainer(atomConformation.getProductAtom(), reaction.getProducts());
+                if (atomConformation.getReactantAtom() != null) {
+                    atomConformation.getReactantAtom().setProperty(BOND_CHANGE_INFORMATION, BOND_STEREO);
+                    AtomStereoRMap.put(atomConformation.getReactantAtom(), getMoleculeID(atomConformation.getReactantAtom(), reaction.getReactants()));
+
+                    /*
+                     * Update Reaction center FP
+                     */
+                    IAtom atomR1 = atomConformation.getReactantAtom();
+                    IAtomContainer moleculeR = getAtomContainer(atomConformation.getReactantAtom(), reaction.getReactants());
 
-                if (moleculeP.getAtomCount() > 1) {
-                    if (!atomP1.getSymbol().equals("H")) {
-                        reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(moleculeP, atomP1, PRODUCT));
-                        setCircularFingerprints(reaction.getID(), moleculeP, atomP1, reactionCenterStereoChangeFingerprint);
+                    if (moleculeR.getAtomCount() > 1) {
+                        if (!atomR1.getSymbol().equals("H")) {
+                            reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(moleculeR, atomR1, REACTANT));
+                            setCircularFingerprints(reaction.getID(), moleculeR, atomR1, reactionCenterStereoChangeFingerprint);
+                        }
                     }
                 }
-            }
+                if (atomConformation.getProductAtom() != null) {
+                    atomConformation.getProductAtom().setProperty(BOND_CHANGE_INFORMATION, BOND_STEREO);
+                    AtomStereoPMap.put(atomConformation.getProductAtom(), getMoleculeID(atomConformation.getProductAtom(), reaction.getProducts()));
 
-            if (DEBUG) {
-                System.out.println("Bond Change Calculator END");
-            }
-        }
+                    /*
+                     * Update Reaction center FP
+                     */
+                    IAtom atomP1 = atomConformation.getProductAtom();
+                    IAtomContainer moleculeP = getAtomContainer(atomConformation.getProductAtom(), reaction.getProducts());
 
-        /*
-         * Loop for stereo changes
-         */
-        for (AtomStereoChangeInformation atomStereo : bondChangeAnnotator.getStereoChangeList()) {
+                    if (moleculeP.getAtomCount() > 1) {
+                        if (!atomP1.getSymbol().equals("H")) {
+                            reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(moleculeP, atomP1, PRODUCT));
+                            setCircularFingerprints(reaction.getID(), moleculeP, atomP1, reactionCenterStereoChangeFingerprint);
+                        }
+                    }
+                }
 
-            /*
-             * Stereo changes are marked only once in the Fingerprint
-             */
-            if (atomStereo.getReactantAtom() != null && atomStereo.getProductAtom() != null) {
-                String key = atomStereo.getReactantAtom().getSymbol().concat("(R/S)");
-                IFeature eductFeature = new Feature(key, 1.0);
-                stereoChangesWFingerprint.add(eductFeature);
+                if (DEBUG) {
+                    System.out.println("Bond Change Calculator END");
+                }
             }
 
             /*
-             * Stereo changes are marked on reactant and product for reaction center identification
+             * Loop for stereo changes
              */
-            if (atomStereo.getReactantAtom() != null) {
-                atomStereo.getReactantAtom().setProperty(BOND_CHANGE_INFORMATION, BOND_STEREO);
-                AtomStereoRMap.put(atomStereo.getReactantAtom(), getMoleculeID(atomStereo.getReactantAtom(), reaction.getReactants()));
+            for (AtomStereoChangeInformation atomStereo : bondChangeAnnotator.getStereoChangeList()) {
 
                 /*
-                 * Update Reaction center FP
+                 * Stereo changes are marked only once in the Fingerprint
                  */
-                IAtom atomR1 = atomStereo.getReactantAtom();
-                IAtomContainer moleculeR = getAtomContainer(atomStereo.getReactantAtom(), reaction.getReactants());
-
-                if (moleculeR.getAtomCount() > 1) {
-
-                    if (!atomR1.getSymbol().equals("H")) {
-                        reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(moleculeR, atomR1, REACTANT));
-                        setCircularFingerprints(reaction.getID(), moleculeR, atomR1, reactionCenterStereoChangeFingerprint);
-                    }
+                if (atomStereo.getReactantAtom() != null && atomStereo.getProductAtom() != null) {
+                    String key = atomStereo.getReactantAtom().getSymbol().concat("(R/S)");
+                    IFeature eductFeature = new Feature(key, 1.0);
+                    stereoChangesWFingerprint.add(eductFeature);
                 }
-            }
-            if (atomStereo.getProductAtom() != null) {
-                atomStereo.getProductAtom().setProperty(BOND_CHANGE_INFORMATION, BOND_STEREO);
-                AtomStereoPMap.put(atomStereo.getProductAtom(), getMoleculeID(atomStereo.getProductAtom(), reaction.getProducts()));
 
                 /*
-                 * Update Reaction center FP
+                 * Stereo changes are marked on reactant and product for reaction center identification
                  */
-                IAtom atomP1 = atomStereo.getProductAtom();
-                IAtomContainer moleculeP = getAtomContainer(atomStereo.getProductAtom(), reaction.getProducts());
+                if (atomStereo.getReactantAtom() != null) {
+                    atomStereo.getReactantAtom().setProperty(BOND_CHANGE_INFORMATION, BOND_STEREO);
+                    AtomStereoRMap.put(atomStereo.getReactantAtom(), getMoleculeID(atomStereo.getReactantAtom(), reaction.getReactants()));
+
+                    /*
+                     * Update Reaction center FP
+                     */
+                    IAtom atomR1 = atomStereo.getReactantAtom();
+                    IAtomContainer moleculeR = getAtomContainer(atomStereo.getReactantAtom(), reaction.getReactants());
 
-                if (moleculeP.getAtomCount() > 1) {
+                    if (moleculeR.getAtomCount() > 1) {
 
-                    if (!atomP1.getSymbol().equals("H")) {
-                        reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(moleculeP, atomP1, PRODUCT));
-                        setCircularFingerprints(reaction.getID(), moleculeP, atomP1, reactionCenterStereoChangeFingerprint);
+                        if (!atomR1.getSymbol().equals("H")) {
+                            reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(moleculeR, atomR1, REACTANT));
+                            setCircularFingerprints(reaction.getID(), moleculeR, atomR1, reactionCenterStereoChangeFingerprint);
+                        }
                     }
                 }
-            }
-        }
-
-        /*
-         * Loop over atom order and generate unique list to atoms
-         */
-        Set<IAtom> reactantAtoms = new HashSet<>();
-        Set<IAtom> productAtoms = new HashSet<>();
-        for (BondChange bcinfo : bondChangeAnnotator.getBondChangeList()) {
-            IBond bondR = bcinfo.getReactantBond();
-            IBond bondP = bcinfo.getProductBond();
-
-            // Mark Bond Order Changes
-            if (bondR != null && bondP != null
-                    && bondP.getProperties().get(BOND_CHANGE_INFORMATION).
-                    equals(BOND_ORDER)
-                    && bondR.getProperties().get(BOND_CHANGE_INFORMATION).
-                    equals(BOND_ORDER)) {
-
-                bondOrderRMap.put(bondR, getMoleculeID(bondR, reaction.getReactants()));
-                bondR.getAtom(0).setProperty(BOND_CHANGE_INFORMATION, BOND_ORDER);
-                bondR.getAtom(1).setProperty(BOND_CHANGE_INFORMATION, BOND_ORDER);
-
-                bondOrderPMap.put(bondP, getMoleculeID(bondP, reaction.getProducts()));
-                bondP.getAtom(0).setProperty(BOND_CHANGE_INFORMATION, BOND_ORDER);
-                bondP.getAtom(1).setProperty(BOND_CHANGE_INFORMATION, BOND_ORDER);
-
-                reactantAtoms.add(bondR.getAtom(0));
-                reactantAtoms.add(bondR.getAtom(1));
-
-                productAtoms.add(bondP.getAtom(0));
-                productAtoms.add(bondP.getAtom(1));
-                orderChangesWFingerprint.add(new Feature(getCanonisedBondChangePattern(bondR, bondP), 1.0));
-            }
-        }
-
-
-        /*
-         * Store changes in the bond order
-         */
-        IAtomContainerSet reactants = reaction.getReactants();
-        IAtomContainerSet products = reaction.getProducts();
-
-        for (IAtom atom : reactantAtoms) {
-            IAtomContainer relevantAtomContainer = getRelevantAtomContainer(reactants, atom);
-            reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(relevantAtomContainer, atom, REACTANT));
-            setCircularFingerprints(reaction.getID(), relevantAtomContainer, atom, reactionCenterOrderChangeFingerprint);
-        }
-
-        for (IAtom atom : productAtoms) {
-            IAtomContainer relevantAtomContainer = getRelevantAtomContainer(products, atom);
-            reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(relevantAtomContainer, atom, PRODUCT));
-            setCircularFingerprints(reaction.getID(), relevantAtomContainer, atom, reactionCenterOrderChangeFingerprint);
-        }
-
-
-        /*
-         * Loop for formed, cleaved changes
-         */
-        for (BondChange bcinfo : bondChangeAnnotator.getBondChangeList()) {
-            IBond bondR = bcinfo.getReactantBond();
-            IBond bondP = bcinfo.getProductBond();
-
-            //Mark Formed Bonds in the Product
-            if (bondP != null && (bondP.getProperties().get(BOND_CHANGE_INFORMATION).
-                    equals(BOND_FORMED)
-                    || bondP.getProperties().get(BOND_CHANGE_INFORMATION).
-                    equals(PSEUDO_BOND))) {
-
-                if (!bondP.getAtom(0).getSymbol().equals("PsH")
-                        && !bondP.getAtom(1).getSymbol().equals("PsH")) {
-                    this.energySum += be.getEnergies(bondP);
-                    pEnergy += be.getEnergies(bondP);
-                    bondFormedMap.put(bondP, getMoleculeID(bondP, reaction.getProducts()));
-                    bondP.getAtom(0).setProperty(BOND_CHANGE_INFORMATION, BOND_FORMED);
-                    bondP.getAtom(1).setProperty(BOND_CHANGE_INFORMATION, BOND_FORMED);
+                if (atomStereo.getProductAtom() != null) {
+                    atomStereo.getProductAtom().setProperty(BOND_CHANGE_INFORMATION, BOND_STEREO);
+                    AtomStereoPMap.put(atomStereo.getProductAtom(), getMoleculeID(atomStereo.getProductAtom(), reaction.getProducts()));
 
                     /*
                      * Update Reaction center FP
                      */
-                    IAtomContainer moleculeP = getAtomContainer(bondP, reaction.getProducts());
+                    IAtom atomP1 = atomStereo.getProductAtom();
+                    IAtomContainer moleculeP = getAtomContainer(atomStereo.getProductAtom(), reaction.getProducts());
 
                     if (moleculeP.getAtomCount() > 1) {
 
-                        /*
-                         * Mark reaction centers
-                         */
-                        IAtom atomP1 = bondP.getAtom(0);
-                        IAtom atomP2 = bondP.getAtom(1);
                         if (!atomP1.getSymbol().equals("H")) {
                             reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(moleculeP, atomP1, PRODUCT));
-                            setCircularFingerprints(reaction.getID(), moleculeP, atomP1, reactionCenterFormedCleavedFingerprint);
-                        }
-                        if (!atomP2.getSymbol().equals("H")) {
-                            reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(moleculeP, atomP2, PRODUCT));
-                            setCircularFingerprints(reaction.getID(), moleculeP, atomP2, reactionCenterFormedCleavedFingerprint);
+                            setCircularFingerprints(reaction.getID(), moleculeP, atomP1, reactionCenterStereoChangeFingerprint);
                         }
                     }
-                    IAtomContainer product = getAtomContainer(bondP, reaction.getProducts());
-                    IAtomContainer cloneProduct = product.getBuilder().newInstance(IAtomContainer.class, product);
-                    int chippedBondIndex = product.getBondNumber(bondP);
-                    totalSmallestFragmentSize += chipTheBondCountSmallestFragmentSize(cloneProduct, chippedBondIndex);
-                    formedCleavedWFingerprint.add(new Feature(getCanonicalisedBondChangePattern(bondP), 1.0));
                 }
             }
 
-            //Mark Cleaved Bonds in Reactants
-            if (bondR != null && (bondR.getProperties().get(BOND_CHANGE_INFORMATION).
-                    equals(BOND_CLEAVED)
-                    || bondR.getProperties().get(BOND_CHANGE_INFORMATION).
-                    equals(PSEUDO_BOND))) {
+            /*
+             * Loop over atom order and generate unique list to atoms
+             */
+            Set<IAtom> reactantAtoms = new HashSet<>();
+            Set<IAtom> productAtoms = new HashSet<>();
+            for (BondChange bcinfo : bondChangeAnnotator.getBondChangeList()) {
+                IBond bondR = bcinfo.getReactantBond();
+                IBond bondP = bcinfo.getProductBond();
+
+                // Mark Bond Order Changes
+                if (bondR != null && bondP != null
+                        && bondP.getProperties().get(BOND_CHANGE_INFORMATION).
+                        equals(BOND_ORDER)
+                        && bondR.getProperties().get(BOND_CHANGE_INFORMATION).
+                        equals(BOND_ORDER)) {
+
+                    bondOrderRMap.put(bondR, getMoleculeID(bondR, reaction.getReactants()));
+                    bondR.getAtom(0).setProperty(BOND_CHANGE_INFORMATION, BOND_ORDER);
+                    bondR.getAtom(1).setProperty(BOND_CHANGE_INFORMATION, BOND_ORDER);
+
+                    bondOrderPMap.put(bondP, getMoleculeID(bondP, reaction.getProducts()));
+                    bondP.getAtom(0).setProperty(BOND_CHANGE_INFORMATION, BOND_ORDER);
+                    bondP.getAtom(1).setProperty(BOND_CHANGE_INFORMATION, BOND_ORDER);
+
+                    reactantAtoms.add(bondR.getAtom(0));
+                    reactantAtoms.add(bondR.getAtom(1));
+
+                    productAtoms.add(bondP.getAtom(0));
+                    productAtoms.add(bondP.getAtom(1));
+                    orderChangesWFingerprint.add(new Feature(getCanonisedBondChangePattern(bondR, bondP), 1.0));
+                }
+            }
 
-                if (!bondR.getAtom(0).getSymbol().equals("PsH")
-                        && !bondR.getAtom(1).getSymbol().equals("PsH")) {
-                    this.energySum += be.getEnergies(bondR);
-                    pEnergy += be.getEnergies(bondR);
-                    bondCleavedMap.put(bondR, getMoleculeID(bondR, reaction.getReactants()));
-                    bondR.getAtom(0).setProperty(BOND_CHANGE_INFORMATION, BOND_CLEAVED);
-                    bondR.getAtom(1).setProperty(BOND_CHANGE_INFORMATION, BOND_CLEAVED);
 
-                    /*
-                     * update reaction center product FP
-                     */
-                    IAtomContainer moleculeE = getAtomContainer(bondR, reaction.getReactants());
+            /*
+             * Store changes in the bond order
+             */
+            IAtomContainerSet reactants = reaction.getReactants();
+            IAtomContainerSet products = reaction.getProducts();
+
+            for (IAtom atom : reactantAtoms) {
+                IAtomContainer relevantAtomContainer = getRelevantAtomContainer(reactants, atom);
+                reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(relevantAtomContainer, atom, REACTANT));
+                setCircularFingerprints(reaction.getID(), relevantAtomContainer, atom, reactionCenterOrderChangeFingerprint);
+            }
+
+            for (IAtom atom : productAtoms) {
+                IAtomContainer relevantAtomContainer = getRelevantAtomContainer(products, atom);
+                reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(relevantAtomContainer, atom, PRODUCT));
+                setCircularFingerprints(reaction.getID(), relevantAtomContainer, atom, reactionCenterOrderChangeFingerprint);
+            }
+
 
-                    if (moleculeE.getAtomCount() > 1) {
+            /*
+             * Loop for formed, cleaved changes
+             */
+            for (BondChange bcinfo : bondChangeAnnotator.getBondChangeList()) {
+                IBond bondR = bcinfo.getReactantBond();
+                IBond bondP = bcinfo.getProductBond();
+
+                //Mark Formed Bonds in the Product
+                if (bondP != null && (bondP.getProperties().get(BOND_CHANGE_INFORMATION).
+                        equals(BOND_FORMED)
+                        || bondP.getProperties().get(BOND_CHANGE_INFORMATION).
+                        equals(PSEUDO_BOND))) {
+
+                    if (!bondP.getAtom(0).getSymbol().equals("PsH")
+                            && !bondP.getAtom(1).getSymbol().equals("PsH")) {
+                        this.energySum += be.getEnergies(bondP);
+                        pEnergy += be.getEnergies(bondP);
+                        bondFormedMap.put(bondP, getMoleculeID(bondP, reaction.getProducts()));
+                        bondP.getAtom(0).setProperty(BOND_CHANGE_INFORMATION, BOND_FORMED);
+                        bondP.getAtom(1).setProperty(BOND_CHANGE_INFORMATION, BOND_FORMED);
 
                         /*
-                         * Mark reaction centers
+                         * Update Reaction center FP
                          */
-                        IAtom atomE1 = bondR.getAtom(0);
-                        IAtom atomE2 = bondR.getAtom(1);
-                        if (!atomE1.getSymbol().equals("H")) {
-                            reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(moleculeE, atomE1, REACTANT));
-                            setCircularFingerprints(reaction.getID(), moleculeE, atomE1, reactionCenterFormedCleavedFingerprint);
+                        IAtomContainer moleculeP = getAtomContainer(bondP, reaction.getProducts());
+
+                        if (moleculeP.getAtomCount() > 1) {
+
+                            /*
+                             * Mark reaction centers
+                             */
+                            IAtom atomP1 = bondP.getAtom(0);
+                            IAtom atomP2 = bondP.getAtom(1);
+                            if (!atomP1.getSymbol().equals("H")) {
+                                reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(moleculeP, atomP1, PRODUCT));
+                                setCircularFingerprints(reaction.getID(), moleculeP, atomP1, reactionCenterFormedCleavedFingerprint);
+                            }
+                            if (!atomP2.getSymbol().equals("H")) {
+                                reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(moleculeP, atomP2, PRODUCT));
+                                setCircularFingerprints(reaction.getID(), moleculeP, atomP2, reactionCenterFormedCleavedFingerprint);
+                            }
                         }
-                        if (!atomE2.getSymbol().equals("H")) {
-                            reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(moleculeE, atomE2, REACTANT));
-                            setCircularFingerprints(reaction.getID(), moleculeE, atomE2, reactionCenterFormedCleavedFingerprint);
+                        IAtomContainer product = getAtomContainer(bondP, reaction.getProducts());
+                        IAtomContainer cloneProduct = product.getBuilder().newInstance(IAtomContainer.class, product);
+                        int chippedBondIndex = product.getBondNumber(bondP);
+                        totalSmallestFragmentSize += chipTheBondCountSmallestFragmentSize(cloneProduct, chippedBondIndex);
+                        formedCleavedWFingerprint.add(new Feature(getCanonicalisedBondChangePattern(bondP), 1.0));
+                    }
+                }
+
+                //Mark Cleaved Bonds in Reactants
+                if (bondR != null && (bondR.getProperties().get(BOND_CHANGE_INFORMATION).
+                        equals(BOND_CLEAVED)
+                        || bondR.getProperties().get(BOND_CHANGE_INFORMATION).
+                        equals(PSEUDO_BOND))) {
+
+                    if (!bondR.getAtom(0).getSymbol().equals("PsH")
+                            && !bondR.getAtom(1).getSymbol().equals("PsH")) {
+                        this.energySum += be.getEnergies(bondR);
+                        pEnergy += be.getEnergies(bondR);
+                        bondCleavedMap.put(bondR, getMoleculeID(bondR, reaction.getReactants()));
+                        bondR.getAtom(0).setProperty(BOND_CHANGE_INFORMATION, BOND_CLEAVED);
+                        bondR.getAtom(1).setProperty(BOND_CHANGE_INFORMATION, BOND_CLEAVED);
+
+                        /*
+                         * update reaction center product FP
+                         */
+                        IAtomContainer moleculeE = getAtomContainer(bondR, reaction.getReactants());
+
+                        if (moleculeE.getAtomCount() > 1) {
+
+                            /*
+                             * Mark reaction centers
+                             */
+                            IAtom atomE1 = bondR.getAtom(0);
+                            IAtom atomE2 = bondR.getAtom(1);
+                            if (!atomE1.getSymbol().equals("H")) {
+                                reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(moleculeE, atomE1, REACTANT));
+                                setCircularFingerprints(reaction.getID(), moleculeE, atomE1, reactionCenterFormedCleavedFingerprint);
+                            }
+                            if (!atomE2.getSymbol().equals("H")) {
+                                reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(moleculeE, atomE2, REACTANT));
+                                setCircularFingerprints(reaction.getID(), moleculeE, atomE2, reactionCenterFormedCleavedFingerprint);
+                            }
                         }
+                        IAtomContainer reactant = getAtomContainer(bondR, reaction.getReactants());
+                        IAtomContainer cloneReactant = reactant.getBuilder().newInstance(IAtomContainer.class, reactant);
+                        int chippedBondIndex = reactant.getBondNumber(bondR);
+                        totalSmallestFragmentSize += chipTheBondCountSmallestFragmentSize(cloneReactant, chippedBondIndex);
+                        formedCleavedWFingerprint.add(new Feature(getCanonicalisedBondChangePattern(bondR), 1.0));
                     }
-                    IAtomContainer reactant = getAtomContainer(bondR, reaction.getReactants());
-                    IAtomContainer cloneReactant = reactant.getBuilder().newInstance(IAtomContainer.class, reactant);
-                    int chippedBondIndex = reactant.getBondNumber(bondR);
-                    totalSmallestFragmentSize += chipTheBondCountSmallestFragmentSize(cloneReactant, chippedBondIndex);
-                    formedCleavedWFingerprint.add(new Feature(getCanonicalisedBondChangePattern(bondR), 1.0));
                 }
             }
-        }
 
 
-        /*
-         * IMP for RC Fingerprint: Mine all the unique reaction centers atoms
-         */
-        Map<IAtom, IAtom> reactionCenterMap = new HashMap<>();
-        for (IAtom atom : bondChangeAnnotator.getReactionCenterSet()) {
-            if (!atom.getSymbol().equals("H")) {
-                reactionCenterMap.put(atom, bondChangeAnnotator.getMappingMap().get(atom));
+            /*
+             * IMP for RC Fingerprint: Mine all the unique reaction centers atoms
+             */
+            Map<IAtom, IAtom> reactionCenterMap = new HashMap<>();
+            for (IAtom atom : bondChangeAnnotator.getReactionCenterSet()) {
+                if (!atom.getSymbol().equals("H")) {
+                    reactionCenterMap.put(atom, bondChangeAnnotator.getMappingMap().get(atom));
+                }
             }
-        }
 
-        /*
-         * Store changes in the charges like Mg2+ too Mg3+
-         */
-        for (IAtom atom : bondChangeAnnotator.getReactionCenterSet()) {
-            if (!atom.getSymbol().equals("H")) {
-                IAtomContainer relevantAtomContainer = getRelevantAtomContainer(reaction, atom);
-
-                IAtomContainer relevantAtomContainer1 = getRelevantAtomContainer(reactants, atom);
-                IAtomContainer relevantAtomContainer2 = getRelevantAtomContainer(products, atom);
-                if (relevantAtomContainer != null && relevantAtomContainer.getAtomCount() == 1) {
-                    EnumSubstrateProduct esp = null;
-
-                    if (relevantAtomContainer1 != null) {
-                        esp = REACTANT;
-                    } else if (relevantAtomContainer2 != null) {
-                        esp = PRODUCT;
-                    }
-                    if (!atom.getSymbol().equals("H")) {
-                        reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(relevantAtomContainer, atom, esp));
-                        setCircularFingerprints(reaction.getID(), relevantAtomContainer, atom, reactionCenterFormedCleavedFingerprint);
+            /*
+             * Store changes in the charges like Mg2+ too Mg3+
+             */
+            for (IAtom atom : bondChangeAnnotator.getReactionCenterSet()) {
+                if (!atom.getSymbol().equals("H")) {
+                    IAtomContainer relevantAtomContainer = getRelevantAtomContainer(reaction, atom);
+
+                    IAtomContainer relevantAtomContainer1 = getRelevantAtomContainer(reactants, atom);
+                    IAtomContainer relevantAtomContainer2 = getRelevantAtomContainer(products, atom);
+                    if (relevantAtomContainer != null && relevantAtomContainer.getAtomCount() == 1) {
+                        EnumSubstrateProduct esp = null;
+
+                        if (relevantAtomContainer1 != null) {
+                            esp = REACTANT;
+                        } else if (relevantAtomContainer2 != null) {
+                            esp = PRODUCT;
+                        }
+                        if (!atom.getSymbol().equals("H")) {
+                            reactionCenterFragmentList.addAll(getCircularReactionPatternFingerprints(relevantAtomContainer, atom, esp));
+                            setCircularFingerprints(reaction.getID(), relevantAtomContainer, atom, reactionCenterFormedCleavedFingerprint);
+                        }
                     }
                 }
+
             }
 
-        }
+            /*
+             * Assign Reaction Center Fingerprints
+             */
+            for (Map.Entry<IAtom, IAtom> mapRC : reactionCenterMap.entrySet()) {
 
-        /*
-         * Assign Reaction Center Fingerprints
-         */
-        for (Map.Entry<IAtom, IAtom> mapRC : reactionCenterMap.entrySet()) {
+                IAtom sourceAtom = mapRC.getKey();
+                IAtom sinkAtom = mapRC.getValue();
 
-            IAtom sourceAtom = mapRC.getKey();
-            IAtom sinkAtom = mapRC.getValue();
+                IAtomContainer relevantAtomContainer1 = getRelevantAtomContainer(reaction.getReactants(), sourceAtom);
+                IAtomContainer relevantAtomContainer2 = getRelevantAtomContainer(reaction.getProducts(), sinkAtom);
 
-            IAtomContainer relevantAtomContainer1 = getRelevantAtomContainer(reaction.getReactants(), sourceAtom);
-            IAtomContainer relevantAtomContainer2 = getRelevantAtomContainer(reaction.getProducts(), sinkAtom);
+                if (relevantAtomContainer1 != null) {
+                    for (int i = 0; i < 3; i++) {
+                        String circularSMILES = getCircularSMILES(relevantAtomContainer1, sourceAtom, i, true);
+                        reactionCenterWFingerprint.add(new Feature(circularSMILES, 1.0));
+                    }
+                }
 
-            if (relevantAtomContainer1 != null) {
-                for (int i = 0; i < 3; i++) {
-                    String circularSMILES = getCircularSMILES(relevantAtomContainer1, sourceAtom, i, true);
-                    reactionCenterWFingerprint.add(new Feature(circularSMILES, 1.0));
+                if (relevantAtomContainer2 != null) {
+                    for (int i = 0; i < 3; i++) {
+                        String circularSMILES = getCircularSMILES(relevantAtomContainer2, sinkAtom, i, true);
+                        reactionCenterWFingerprint.add(new Feature(circularSMILES, 1.0));
+                    }
                 }
-            }
 
-            if (relevantAtomContainer2 != null) {
-                for (int i = 0; i < 3; i++) {
-                    String circularSMILES = getCircularSMILES(relevantAtomContainer2, sinkAtom, i, true);
-                    reactionCenterWFingerprint.add(new Feature(circularSMILES, 1.0));
+                if (relevantAtomContainer1 != null && relevantAtomContainer2 != null) {
+                    for (int i = 1; i < 4; i++) {
+                        String circularSMILESSource = getCircularSMILES(relevantAtomContainer1, sourceAtom, i, true);
+                        String circularSMILESSink = getCircularSMILES(relevantAtomContainer2, sinkAtom, i, true);
+                        StringBuilder level = new StringBuilder();
+                        level.append(circularSMILESSource).append(">>").append(circularSMILESSink);
+                        reactionCenterWFingerprint.add(new Feature(level.toString(), 1.0));
+                    }
+                    MoleculeMoleculePair molMolPair = getMolMolPair(sourceAtom, sinkAtom, relevantAtomContainer1, relevantAtomContainer2);
+                    this.reactionMoleculeMoleculePairList.add(molMolPair);
                 }
             }
 
-            if (relevantAtomContainer1 != null && relevantAtomContainer2 != null) {
-                for (int i = 1; i < 4; i++) {
-                    String circularSMILESSource = getCircularSMILES(relevantAtomContainer1, sourceAtom, i, true);
-                    String circularSMILESSink = getCircularSMILES(relevantAtomContainer2, sinkAtom, i, true);
-                    StringBuilder level = new StringBuilder();
-                    level.append(circularSMILESSource).append(">>").append(circularSMILESSink);
-                    reactionCenterWFingerprint.add(new Feature(level.toString(), 1.0));
-                }
-                MoleculeMoleculePair molMolPair = getMolMolPair(sourceAtom, sinkAtom, relevantAtomContainer1, relevantAtomContainer2);
-                this.reactionMoleculeMoleculePairList.add(molMolPair);
+            setEnergyDelta(rEnergy - pEnergy);
+        } finally {
+            if (fingerprint != null) {
+                fingerprint.stop();
             }
+            bondChanges.stop();
         }
-
-        setEnergyDelta(rEnergy - pEnergy);
     }
 
     /**
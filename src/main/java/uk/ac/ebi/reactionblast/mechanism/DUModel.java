@@ -40,12 +40,16 @@ import org.openscience.cdk.interfaces.IMapping;
 import org.openscience.cdk.interfaces.IReaction;
 import org.openscience.cdk.interfaces.IRingSet;
 import org.openscience.smsd.helper.MoleculeInitializer;
+import uk.ac.ebi.reactionblast.containers.MappingContext;
 import uk.ac.ebi.reactionblast.mechanism.helper.AtomAtomMappingContainer;
 import uk.ac.ebi.reactionblast.mechanism.helper.AtomStereoChangeInformation;
 import uk.ac.ebi.reactionblast.mechanism.helper.BondChange;
 import uk.ac.ebi.reactionblast.mechanism.interfaces.IChangeCalculator;
 import uk.ac.ebi.reactionblast.stereo.IStereoAndConformation;
 import uk.ac.ebi.reactionblast.stereo.ebi.StereoCenteralityTool;
+import uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.CHIRALITY;
+import uk.ac.ebi.reactionblast.tools.metrics.Timer;
 
 /**
  *
@@ -80,13 +84,17 @@ abstract class DUModel extends StereoCenteralityTool implements IChangeCalculato
      * @param withoutHydrogen
      * @param generate2D
      * @param generate3D
+     * @param metrics stage timings of the reaction
+     * @param context caches of the job
      * @throws CDKException
      * @throws Exception
      */
     DUModel(IReaction reaction,
             boolean withoutHydrogen,
             boolean generate2D,
-            boolean generate3D) throws CDKException, Exception {
+            boolean generate3D,
+            ReactionMetrics metrics,
+            MappingContext context) throws CDKException, Exception {
 
         this.reactantSet = reaction.getReactants();
         this.productSet = reaction.getProducts();
@@ -135,10 +143,13 @@ abstract class DUModel extends StereoCenteralityTool implements IChangeCalculato
          * Stereo mapping
          */
         Map<IAtom, IStereoAndConformation> chiralityCDK2D = new HashMap<>();
+        Timer.Context chirality = metrics.time(CHIRALITY);
         try {
-            chiralityCDK2D = getChirality2D(reaction);
+            chiralityCDK2D = getChirality2D(reaction, context.getChiralityCache());
         } catch (CDKException | CloneNotSupportedException ex) {
             err.println("WARNING: 2D CDK based stereo perception failed");
+        } finally {
+            chirality.stop();
         }
         /*
          * Generate stereo information
@@ -51,6 +51,7 @@ import static org.openscience.cdk.tools.manipulator.AtomContainerSetManipulator.
 import static org.openscience.cdk.tools.manipulator.AtomContainerSetManipulator.getAtomCount;
 import org.openscience.smsd.tools.BondEnergies;
 import static org.openscience.smsd.tools.BondEnergies.getInstance;
+import uk.ac.ebi.reactionblast.containers.MappingContext;
 import uk.ac.ebi.reactionblast.fingerprints.interfaces.IFeature;
 import uk.ac.ebi.reactionblast.fingerprints.interfaces.IPatternFingerprinter;
 import uk.ac.ebi.reactionblast.interfaces.IStandardizer;
@@ -67,6 +68,13 @@ import static java.util.logging.Logger.getLogger;
 import org.openscience.cdk.smiles.SmiFlavor;
 import static org.openscience.cdk.tools.manipulator.AtomContainerManipulator.getAtomArray;
 import uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator;
+import uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.MAPPING;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.REACTIONS;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.SOLUTIONS;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.TOTAL;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.getAggregate;
+import uk.ac.ebi.reactionblast.tools.metrics.Timer;
 
 /**
  *
@@ -82,6 +90,8 @@ public class ReactionMechanismTool implements Serializable {
     private static final Logger LOG = getLogger(ReactionMechanismTool.class.getName());
     private MappingSolution selectedMapping;
     private Collection<MappingSolution> allSolutions;
+    private final ReactionMetrics metrics;
+    private final MappingContext context;
 
     /**
      *
@@ -108,9 +118,43 @@ public class ReactionMechanismTool implements Serializable {
      */
     public ReactionMechanismTool(IReaction reaction, boolean forcedMapping,
             boolean generate2D, boolean generate3D, IStandardizer standardizer) throws CDKException, AssertionError, Exception {
+        this(reaction, forcedMapping, generate2D, generate3D, standardizer, MappingContext.getDefault());
+    }
+
+    /**
+     * Annotates the reaction keeping the caches in the given context instead
+     * of the JVM wide one, e.g. one context per job.
+     *
+     * @param reaction
+     * @param forcedMapping
+     * @param generate2D deduce stereo on 2D
+     * @param generate3D deduce stereo on 3D
+     * @param standardizer
+     * @param context caches of the job
+     * @throws CDKException
+     * @throws AssertionError
+     * @throws Exception
+     */
+    public ReactionMechanismTool(IReaction reaction, boolean forcedMapping,
+            boolean generate2D, boolean generate3D, IStandardizer standardizer,
+            MappingContext context) throws CDKException, AssertionError, Exception {
+        this.context = context;
         this.allSolutions = synchronizedList(new ArrayList<MappingSolution>());
         this.selectedMapping = null;
+        this.metrics = new ReactionMetrics(reaction.getID());
+
+        Timer.Context total = metrics.time(TOTAL);
+        try (MappingContext.Binding binding = context.bind()) {
+            annotate(reaction, forcedMapping, generate2D, generate3D, standardizer);
+        } finally {
+            total.stop();
+            metrics.increment(REACTIONS);
+            getAggregate().merge(metrics);
+        }
+    }
 
+    private void annotate(IReaction reaction, boolean forcedMapping,
+            boolean generate2D, boolean generate3D, IStandardizer standardizer) throws CDKException, AssertionError, Exception {
         /*
          * IMP: Set all null hydrogen counts to 0, else CDKToBeam cries out loudly
          */
@@ -176,8 +220,13 @@ public class ReactionMechanismTool implements Serializable {
                 }
 
                 boolean onlyCoreMappingByMCS = true;
-                CallableAtomMappingTool amt
-                        = new CallableAtomMappingTool(reaction, standardizer, onlyCoreMappingByMCS);
+                CallableAtomMappingTool amt;
+                Timer.Context mapping = metrics.time(MAPPING);
+                try {
+                    amt = new CallableAtomMappingTool(reaction, standardizer, onlyCoreMappingByMCS, metrics, context);
+                } finally {
+                    mapping.stop();
+                }
                 Map<IMappingAlgorithm, Reactor> solutions = amt.getSolutions();
                 LOGGER.info("!!!!Calculating Best Mapping Model!!!!");
                 boolean selected;
@@ -294,11 +343,12 @@ public class ReactionMechanismTool implements Serializable {
     private synchronized boolean isMappingSolutionAcceptable(Reactor reactor, IMappingAlgorithm ma, IReaction reaction, boolean generate2D, boolean generate3D) throws Exception {
 
         boolean chosen = false;
+        metrics.increment(SOLUTIONS);
         try {
             BondChangeCalculator bcc;
             int fragmentDeltaChanges;
             if (reactor == null && ma.equals(USER_DEFINED)) {
-                bcc = new BondChangeCalculator(reaction, generate2D, generate3D);
+                bcc = new BondChangeCalculator(reaction, generate2D, generate3D, metrics, context);
                 fragmentDeltaChanges = 0;
                 int bondChange = (int) getTotalBondChange(bcc.getFormedCleavedWFingerprint());
                 bondChange += getTotalBondChange(bcc.getOrderChangesWFingerprint());
@@ -330,7 +380,7 @@ public class ReactionMechanismTool implements Serializable {
                 if (reactor == null) {
                     throw new CDKException("Reactor is NULL");
                 }
-                bcc = new BondChangeCalculator(reactor.getReactionWithAtomAtomMapping(), generate2D, generate3D);
+                bcc = new BondChangeCalculator(reactor.getReactionWithAtomAtomMapping(), generate2D, generate3D, metrics, context);
                 fragmentDeltaChanges = reactor.getDelta();
 
                 int bondCleavedFormed = (int) getTotalBondChange(bcc.getFormedCleavedWFingerprint());
@@ -683,6 +733,23 @@ public class ReactionMechanismTool implements Serializable {
         return unmodifiableCollection(this.allSolutions);
     }
 
+    /**
+     * Per stage timings and counters recorded while annotating this
+     * reaction.
+     *
+     * @return metrics of this reaction
+     */
+    public ReactionMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * @return caches used while annotating this reaction
+     */
+    public MappingContext getContext() {
+        return this.context;
+    }
+
     private int getNonHydrogenMappingAtomCount(IAtomContainerSet mol) {
         int count = MIN_VALUE;
         List<IAtomContainer> allAtomContainers = getAllAtomContainers(mol);
@@ -60,6 +60,7 @@ import uk.ac.ebi.reactionblast.fingerprints.PatternFingerprinter;
 import uk.ac.ebi.reactionblast.fingerprints.interfaces.IPatternFingerprinter;
 import uk.ac.ebi.reactionblast.mechanism.interfaces.EnumSubstrateProduct;
 import uk.ac.ebi.reactionblast.signature.RBlastMoleculeSignature;
+import uk.ac.ebi.reactionblast.signature.RBlastSignatureCache;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeDayLight;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.cloneWithIDs;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.removeHydrogensExceptSingleAndPreserveAtomID;
@@ -235,12 +236,13 @@ public abstract class Utility extends MatrixPrinter implements Serializable {
     protected static String getSignature(IAtomContainer mol, IAtom atom, int height) throws CloneNotSupportedException {
         IAtomContainer molWithoutH = removeHydrogensExceptSingleAndPreserveAtomID(mol);
         int atomIndex = getAtomIndexByID(molWithoutH, atom);
-        RBlastMoleculeSignature moleculeSignature = new RBlastMoleculeSignature(molWithoutH);
+        RBlastMoleculeSignature moleculeSignature
+                = RBlastSignatureCache.getInstance().getMoleculeSignature(molWithoutH);
         moleculeSignature.setUseCharge(true);
         moleculeSignature.setBondSensitive(true);
         moleculeSignature.setUseAromatics(true);
         if (atomIndex >= 0) {
-            return moleculeSignature.getAtomSignature(atomIndex, height).toCanonicalString();
+            return moleculeSignature.getSignatureStringForAtom(atomIndex, height);
         } else {
             return "";
         }
@@ -459,9 +461,6 @@ public abstract class Utility extends MatrixPrinter implements Serializable {
             fragment.removeAtomAndConnectedElectronContainers(it.next());
         }
 
-        IAtomContainer canonicalise = canonicalise(fragment);
-        aromatizeDayLight(canonicalise);
-
         return fragment;
     }
 
@@ -609,7 +608,10 @@ public abstract class Utility extends MatrixPrinter implements Serializable {
             IAtomContainer molOrignal,
             IAtom atom, Map<Integer, IPatternFingerprinter> patternFP)
             throws Exception, CloneNotSupportedException {
-        IAtomContainer clone = molOrignal.clone();
+        /*
+         * getCircularSMILES works on a copy of the molecule
+         */
+        IAtomContainer clone = molOrignal;
         for (int i = 0; i < 3; i++) {
             if (!patternFP.containsKey(i)) {
                 IPatternFingerprinter fp = new PatternFingerprinter();
@@ -644,7 +646,10 @@ public abstract class Utility extends MatrixPrinter implements Serializable {
             EnumSubstrateProduct type)
             throws Exception, CloneNotSupportedException {
         List<ReactionCenterFragment> fragmentsRC = new ArrayList<>();
-        IAtomContainer clone = molOrignal.clone();
+        /*
+         * getCircularSMILES works on a copy of the molecule
+         */
+        IAtomContainer clone = molOrignal;
         for (int i = 0; i < 3; i++) {
             String smiles = getCircularSMILES(clone, atom, i, true);
             ReactionCenterFragment reactionCenterFragment = new ReactionCenterFragment(smiles, i, type);
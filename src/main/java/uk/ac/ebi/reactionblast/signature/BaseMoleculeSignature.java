@@ -23,6 +23,7 @@ import static java.util.logging.Logger.getLogger;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import signature.AbstractGraphSignature;
 import signature.AbstractVertexSignature;
+import static uk.ac.ebi.reactionblast.signature.RBlastSignatureEngine.MAXIMUM_HEIGHT;
 
 /**
  *
@@ -37,12 +38,30 @@ public class BaseMoleculeSignature extends AbstractGraphSignature {
      */
     protected IAtomContainer atomContainer;
 
+    final RBlastSignatureEngine engine;
+
     /**
      *
      * @param atomContainer
      */
     public BaseMoleculeSignature(IAtomContainer atomContainer) {
+        this(new RBlastSignatureEngine(atomContainer));
+    }
+
+    BaseMoleculeSignature(RBlastSignatureEngine engine) {
+        this(engine.getAtomContainer(), engine);
+    }
+
+    /**
+     * A signature of the atomContainer using the atom signatures of an
+     * identical molecule.
+     *
+     * @param atomContainer
+     * @param engine
+     */
+    BaseMoleculeSignature(IAtomContainer atomContainer, RBlastSignatureEngine engine) {
         this.atomContainer = atomContainer;
+        this.engine = engine;
     }
 
     /**
@@ -52,7 +71,7 @@ public class BaseMoleculeSignature extends AbstractGraphSignature {
      */
     @Override
     public AbstractVertexSignature signatureForVertex(int atomIndex) {
-        return new RBlastAtomSignature(atomIndex, atomContainer);
+        return engine.getAtomSignature(atomIndex, MAXIMUM_HEIGHT, true, true, true);
     }
 
     /**
@@ -62,8 +81,7 @@ public class BaseMoleculeSignature extends AbstractGraphSignature {
      */
     @Override
     public String signatureStringForVertex(int atomIndex) {
-        return new RBlastAtomSignature(
-                atomIndex, atomContainer).toCanonicalString();
+        return engine.getSignatureString(atomIndex, MAXIMUM_HEIGHT, true, true, true);
     }
 
     /**
@@ -74,8 +92,7 @@ public class BaseMoleculeSignature extends AbstractGraphSignature {
      */
     @Override
     public String signatureStringForVertex(int atomIndex, int height) {
-        return new RBlastAtomSignature(
-                atomIndex, atomContainer, height).toCanonicalString();
+        return engine.getSignatureString(atomIndex, height, true, true, true);
     }
 
     /**
@@ -18,7 +18,6 @@
  */
 package uk.ac.ebi.reactionblast.signature;
 
-import java.util.List;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
 import static org.openscience.cdk.CDKConstants.ISAROMATIC;
@@ -41,6 +40,7 @@ public class RBlastAtomSignature extends AbstractVertexSignature {
     public static final String CHARGE_SEPARATOR = ":";
     private static final Logger LOG = getLogger(RBlastAtomSignature.class.getName());
     private final IAtomContainer atomContainer;
+    private final RBlastSignatureEngine engine;
     private boolean useAromatics = true;
     private boolean useCharge = true;
     private boolean isBondSensitive = true;
@@ -51,9 +51,7 @@ public class RBlastAtomSignature extends AbstractVertexSignature {
      * @param atomContainer
      */
     public RBlastAtomSignature(int atomIndex, IAtomContainer atomContainer) {
-        super();
-        this.atomContainer = atomContainer;
-        super.createMaximumHeight(atomIndex, atomContainer.getAtomCount());
+        this(atomIndex, new RBlastSignatureEngine(atomContainer), RBlastSignatureEngine.MAXIMUM_HEIGHT);
     }
 
     /**
@@ -64,9 +62,25 @@ public class RBlastAtomSignature extends AbstractVertexSignature {
      */
     public RBlastAtomSignature(
             int atomIndex, IAtomContainer atomContainer, int height) {
+        this(atomIndex, new RBlastSignatureEngine(atomContainer), height);
+    }
+
+    /**
+     * Signature on the neighbours and bonds already collected by the engine
+     *
+     * @param atomIndex
+     * @param engine
+     * @param height or MAXIMUM_HEIGHT
+     */
+    RBlastAtomSignature(int atomIndex, RBlastSignatureEngine engine, int height) {
         super();
-        this.atomContainer = atomContainer;
-        super.create(atomIndex, atomContainer.getAtomCount(), height);
+        this.atomContainer = engine.getAtomContainer();
+        this.engine = engine;
+        if (height == RBlastSignatureEngine.MAXIMUM_HEIGHT) {
+            super.createMaximumHeight(atomIndex, atomContainer.getAtomCount());
+        } else {
+            super.create(atomIndex, atomContainer.getAtomCount(), height);
+        }
     }
 
     /**
@@ -140,15 +154,7 @@ public class RBlastAtomSignature extends AbstractVertexSignature {
      */
     @Override
     protected int[] getConnected(int atomIndex) {
-        List<IAtom> connectedAtoms = atomContainer.getConnectedAtomsList(
-                atomContainer.getAtom(atomIndex));
-        int[] connected = new int[connectedAtoms.size()];
-        int i = 0;
-        for (IAtom connectedAtom : connectedAtoms) {
-            connected[i] = atomContainer.getAtomNumber(connectedAtom);
-            i++;
-        }
-        return connected;
+        return engine.getConnected(atomIndex);
     }
 
     /**
@@ -159,9 +165,7 @@ public class RBlastAtomSignature extends AbstractVertexSignature {
      */
     @Override
     protected String getEdgeLabel(int atomIndexA, int atomIndexB) {
-        IAtom atomA = atomContainer.getAtom(atomIndexA);
-        IAtom atomB = atomContainer.getAtom(atomIndexB);
-        IBond bond = atomContainer.getBond(atomA, atomB);
+        IBond bond = engine.getBond(atomIndexA, atomIndexB);
         if (useAromatics && bond.getFlag(ISAROMATIC)) {
             return "@";
         } else if (useAromatics && bond.getFlag(ISINRING)) {
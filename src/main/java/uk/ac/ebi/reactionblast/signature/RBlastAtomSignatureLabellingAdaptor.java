@@ -75,7 +75,7 @@ public class RBlastAtomSignatureLabellingAdaptor
     @Override
     public int[] getCanonicalPermutation(IAtomContainer container) {
         RBlastMoleculeSignature molSig
-                = new RBlastMoleculeSignature(container);
+                = RBlastSignatureCache.getInstance().getMoleculeSignature(container);
         if (height == -1) {
             return molSig.getAtomSignature(atomIndex)
                     .getCanonicalLabelling(container.getAtomCount());
@@ -24,6 +24,7 @@ import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import static signature.AbstractVertexSignature.parse;
 import signature.ColoredTree;
+import static uk.ac.ebi.reactionblast.signature.RBlastSignatureEngine.MAXIMUM_HEIGHT;
 import static uk.ac.ebi.reactionblast.tools.labelling.AtomContainerAtomPermutor.permute;
 import uk.ac.ebi.reactionblast.tools.labelling.ICanonicalMoleculeLabeller;
 
@@ -40,7 +41,6 @@ public class RBlastMoleculeSignature extends BaseMoleculeSignature {
     private boolean useAromatics = true;
     private boolean useCharge = true;
     private boolean isBondSensitive = true;
-    private RBlastMoleculeFromSignatureBuilder builder;
 
     /**
      * Make an object that acts as a factory for atom signatures and can also
@@ -50,7 +50,17 @@ public class RBlastMoleculeSignature extends BaseMoleculeSignature {
      */
     public RBlastMoleculeSignature(IAtomContainer atomContainer) {
         super(atomContainer);
-        builder = new RBlastMoleculeFromSignatureBuilder(atomContainer.getBuilder());
+    }
+
+    /**
+     * A signature of the atomContainer sharing the (memoized) atom signatures
+     * of an identical molecule.
+     *
+     * @param atomContainer
+     * @param engine
+     */
+    RBlastMoleculeSignature(IAtomContainer atomContainer, RBlastSignatureEngine engine) {
+        super(atomContainer, engine);
     }
 
     /**
@@ -122,7 +132,7 @@ public class RBlastMoleculeSignature extends BaseMoleculeSignature {
      * @return
      */
     public String getSignatureStringForAtom(int atomIndex) {
-        return getAtomSignature(atomIndex).toCanonicalString();
+        return engine.getSignatureString(atomIndex, MAXIMUM_HEIGHT, useAromatics, useCharge, isBondSensitive);
     }
 
     /**
@@ -132,7 +142,17 @@ public class RBlastMoleculeSignature extends BaseMoleculeSignature {
      * @return
      */
     public String getSignatureStringForAtom(int atomIndex, int height) {
-        return getAtomSignature(atomIndex, height).toCanonicalString();
+        return engine.getSignatureString(atomIndex, height, useAromatics, useCharge, isBondSensitive);
+    }
+
+    /**
+     * Signature strings of all the atoms at a height.
+     *
+     * @param height
+     * @return signature string per atom index
+     */
+    public String[] getSignatureStringsForAtoms(int height) {
+        return engine.getSignatureStrings(height, useAromatics, useCharge, isBondSensitive);
     }
 
     /**
@@ -141,10 +161,7 @@ public class RBlastMoleculeSignature extends BaseMoleculeSignature {
      * @return
      */
     public RBlastAtomSignature getAtomSignature(int atomIndex) {
-        RBlastAtomSignature atomSignature
-                = (RBlastAtomSignature) signatureForVertex(atomIndex);
-        setFlags(atomSignature);
-        return atomSignature;
+        return engine.getAtomSignature(atomIndex, MAXIMUM_HEIGHT, useAromatics, useCharge, isBondSensitive);
     }
 
     /**
@@ -154,15 +171,7 @@ public class RBlastMoleculeSignature extends BaseMoleculeSignature {
      * @return
      */
     public RBlastAtomSignature getAtomSignature(int atomIndex, int height) {
-        RBlastAtomSignature atomSignature = new RBlastAtomSignature(atomIndex, atomContainer, height);
-        setFlags(atomSignature);
-        return atomSignature;
-    }
-
-    private void setFlags(RBlastAtomSignature atomSignature) {
-        atomSignature.setUseAromatics(useAromatics);
-        atomSignature.setUseCharge(useCharge);
-        atomSignature.setBondSensitive(isBondSensitive);
+        return engine.getAtomSignature(atomIndex, height, useAromatics, useCharge, isBondSensitive);
     }
 
     private void setFlags(RBlastMoleculeFromSignatureBuilder builder) {
@@ -193,7 +202,8 @@ public class RBlastMoleculeSignature extends BaseMoleculeSignature {
         String atomSignatureString = getSignatureStringForAtom(atomIndex, height);
         ColoredTree tree = parse(atomSignatureString);
 
-        builder = new RBlastMoleculeFromSignatureBuilder(atomContainer.getBuilder());
+        RBlastMoleculeFromSignatureBuilder builder
+                = new RBlastMoleculeFromSignatureBuilder(atomContainer.getBuilder());
         setFlags(builder);
         builder.makeFromColoredTree(tree);
         IAtomContainer fragment = builder.getAtomContainer();
@@ -233,7 +243,8 @@ public class RBlastMoleculeSignature extends BaseMoleculeSignature {
      */
     public IAtomContainer makeMoleculeFromSignature(String signatureString) {
         ColoredTree tree = parse(signatureString);
-        builder = new RBlastMoleculeFromSignatureBuilder(atomContainer.getBuilder());
+        RBlastMoleculeFromSignatureBuilder builder
+                = new RBlastMoleculeFromSignatureBuilder(atomContainer.getBuilder());
         setFlags(builder);
         builder.makeFromColoredTree(tree);
         return builder.getAtomContainer();
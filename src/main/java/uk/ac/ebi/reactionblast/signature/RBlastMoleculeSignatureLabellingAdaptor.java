@@ -53,7 +53,7 @@ public class RBlastMoleculeSignatureLabellingAdaptor
     @Override
     public int[] getCanonicalPermutation(IAtomContainer container) {
         RBlastMoleculeSignature molSig
-                = new RBlastMoleculeSignature(container);
+                = RBlastSignatureCache.getInstance().getMoleculeSignature(container);
         return molSig.getCanonicalLabels();
     }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.signature;
+
+import java.util.concurrent.atomic.AtomicLong;
+import static java.util.logging.Level.SEVERE;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import uk.ac.ebi.reactionblast.containers.BoundedConcurrentMap;
+import uk.ac.ebi.reactionblast.containers.MappingContext;
+import uk.ac.ebi.reactionblast.tools.StructureKey;
+
+/**
+ * Atom signatures shared between identical molecules. The signature
+ * engines (neighbours, bonds and memoized signature strings) are cached
+ * (bounded) by the structure of the molecule in input order, so the
+ * signature matcher, the labellers and the reaction canoniser compute the
+ * signatures of a molecule once. The engines are built on a copy of the
+ * molecule, as the callers may change theirs afterwards.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class RBlastSignatureCache {
+
+    private static final Logger LOG = getLogger(RBlastSignatureCache.class.getName());
+
+    private static final int KIND = 0;
+
+    /**
+     *
+     * @return the signature cache of the current mapping context
+     */
+    public static RBlastSignatureCache getInstance() {
+        return MappingContext.getCurrent().getSignatureCache();
+    }
+
+    private final BoundedConcurrentMap<StructureKey, RBlastSignatureEngine> cache;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     *
+     * @param maxSize maximum number of cached molecules
+     */
+    public RBlastSignatureCache(int maxSize) {
+        this.cache = new BoundedConcurrentMap<>(maxSize);
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * Signature of the molecule; the atom signatures are shared with the
+     * identical molecules seen before.
+     *
+     * @param atomContainer
+     * @return a new signature (flags can be set independently)
+     */
+    public RBlastMoleculeSignature getMoleculeSignature(IAtomContainer atomContainer) {
+        return new RBlastMoleculeSignature(atomContainer, getEngine(atomContainer));
+    }
+
+    private RBlastSignatureEngine getEngine(IAtomContainer atomContainer) {
+        StructureKey key = new StructureKey(atomContainer, KIND, true);
+        RBlastSignatureEngine engine = cache.get(key);
+        if (engine != null) {
+            hits.incrementAndGet();
+            return engine;
+        }
+        misses.incrementAndGet();
+        try {
+            engine = new RBlastSignatureEngine(atomContainer.clone());
+        } catch (CloneNotSupportedException ex) {
+            LOG.log(SEVERE, null, ex);
+            return new RBlastSignatureEngine(atomContainer);
+        }
+        cache.put(key, engine);
+        return engine;
+    }
+
+    /**
+     * @return number of molecules served from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of molecules whose signatures were computed
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of cached molecules
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Empty the cache
+     */
+    public void clear() {
+        cache.clear();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.signature;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+/**
+ * Atom signatures of one molecule. The neighbours and bonds of every atom
+ * are collected in one pass over the bonds and shared by the signatures of
+ * all the roots, and the signature strings are memoized per atom, height and
+ * flags. The molecule is only read, so an engine can be used by several
+ * threads at once.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+final class RBlastSignatureEngine {
+
+    private static final Logger LOG = getLogger(RBlastSignatureEngine.class.getName());
+
+    /**
+     * Height of a signature spanning the whole molecule
+     */
+    static final int MAXIMUM_HEIGHT = Integer.MIN_VALUE;
+
+    private final IAtomContainer atomContainer;
+    private final int[][] connected;
+    private final IBond[][] bonds;
+    private final Map<Long, String> signatures;
+
+    RBlastSignatureEngine(IAtomContainer atomContainer) {
+        this.atomContainer = atomContainer;
+        int atomCount = atomContainer.getAtomCount();
+        Map<IAtom, Integer> index = new IdentityHashMap<>(atomCount);
+        for (int i = 0; i < atomCount; i++) {
+            index.put(atomContainer.getAtom(i), i);
+        }
+        int[] degree = new int[atomCount];
+        for (IBond bond : atomContainer.bonds()) {
+            degree[index.get(bond.getAtom(0))]++;
+            degree[index.get(bond.getAtom(1))]++;
+        }
+        this.connected = new int[atomCount][];
+        this.bonds = new IBond[atomCount][];
+        for (int i = 0; i < atomCount; i++) {
+            connected[i] = new int[degree[i]];
+            bonds[i] = new IBond[degree[i]];
+            degree[i] = 0;
+        }
+        /*
+         * same neighbour order as IAtomContainer.getConnectedAtomsList
+         */
+        for (IBond bond : atomContainer.bonds()) {
+            int u = index.get(bond.getAtom(0));
+            int v = index.get(bond.getAtom(1));
+            connected[u][degree[u]] = v;
+            bonds[u][degree[u]++] = bond;
+            connected[v][degree[v]] = u;
+            bonds[v][degree[v]++] = bond;
+        }
+        this.signatures = new ConcurrentHashMap<>();
+    }
+
+    IAtomContainer getAtomContainer() {
+        return atomContainer;
+    }
+
+    int[] getConnected(int atomIndex) {
+        return connected[atomIndex].clone();
+    }
+
+    IBond getBond(int atomIndexA, int atomIndexB) {
+        int[] neighbours = connected[atomIndexA];
+        for (int i = 0; i < neighbours.length; i++) {
+            if (neighbours[i] == atomIndexB) {
+                return bonds[atomIndexA][i];
+            }
+        }
+        return null;
+    }
+
+    RBlastAtomSignature getAtomSignature(int atomIndex, int height,
+            boolean useAromatics, boolean useCharge, boolean isBondSensitive) {
+        RBlastAtomSignature atomSignature = new RBlastAtomSignature(atomIndex, this, height);
+        atomSignature.setUseAromatics(useAromatics);
+        atomSignature.setUseCharge(useCharge);
+        atomSignature.setBondSensitive(isBondSensitive);
+        return atomSignature;
+    }
+
+    String getSignatureString(int atomIndex, int height,
+            boolean useAromatics, boolean useCharge, boolean isBondSensitive) {
+        Long key = key(atomIndex, height, useAromatics, useCharge, isBondSensitive);
+        String signature = signatures.get(key);
+        if (signature == null) {
+            signature = getAtomSignature(atomIndex, height,
+                    useAromatics, useCharge, isBondSensitive).toCanonicalString();
+            signatures.putIfAbsent(key, signature);
+        }
+        return signature;
+    }
+
+    String[] getSignatureStrings(int height,
+            boolean useAromatics, boolean useCharge, boolean isBondSensitive) {
+        String[] strings = new String[atomContainer.getAtomCount()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = getSignatureString(i, height, useAromatics, useCharge, isBondSensitive);
+        }
+        return strings;
+    }
+
+    private static long key(int atomIndex, int height,
+            boolean useAromatics, boolean useCharge, boolean isBondSensitive) {
+        long flags = (useAromatics ? 1 : 0) | (useCharge ? 2 : 0) | (isBondSensitive ? 4 : 0);
+        return ((long) atomIndex << 35) | (((long) height & 0xffffffffL) << 3) | flags;
+    }
+}
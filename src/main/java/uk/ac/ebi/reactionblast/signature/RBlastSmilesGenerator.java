@@ -75,6 +75,7 @@ import static org.openscience.cdk.tools.manipulator.RingSetManipulator.getAllAto
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeDayLight;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
 import uk.ac.ebi.reactionblast.tools.labelling.ICanonicalMoleculeLabeller;
+import uk.ac.ebi.reactionblast.tools.labelling.SmilesMoleculeLabeller;
 
 /**
  * Generates SMILES strings {
@@ -88,13 +89,15 @@ import uk.ac.ebi.reactionblast.tools.labelling.ICanonicalMoleculeLabeller;
  * <p>
  * Some example code:  <pre>
  * IAtomContainer benzene; // single/aromatic bonds between 6 carbons
- * SmilesGenerator sg = new SmilesGenerator();
+ * RBlastSmilesGenerator sg = new RBlastSmilesGenerator();
  * String smiles = sg.createSMILES(benzene); // C1CCCCC1
- * sg.setUseAromaticityFlag(true);
- * smiles = sg.createSMILES(benzene); // c1ccccc1
+ * smiles = new RBlastSmilesGenerator(true).createSMILES(benzene); // c1ccccc1
  * IAtomContainer benzene2; // one of the two kekule structures with explicit double bond orders
  * String smiles2 = sg.createSMILES(benzene2); // C1=CC=CC=C1
- * </pre> <b>Note</b>Due to the way the initial atom labeling is constructed,
+ * </pre> The settings of a generator are fixed when it is created and the
+ * state of a SMILES being generated is kept per thread, so a generator can be
+ * shared between threads (with a labeller which can be shared).
+ * <b>Note</b>Due to the way the initial atom labeling is constructed,
  * ensure that the input molecule is appropriately configured. In absence of
  * such configuration it is possible that different forms of the same molecule
  * will not result in the same canonical SMILES.
@@ -110,47 +113,43 @@ public class RBlastSmilesGenerator {
     //private final static boolean debug = false;
 
     /**
-     * The number of rings that have been opened
+     * State of the SMILES being generated, kept per thread so a generator can
+     * be shared without locking (the molecules must not be shared, their
+     * flags and properties are set while parsing)
      */
-    private int ringMarker = 0;
-    /**
-     * Collection of all the bonds that were broken
-     */
-    private List<BrokenBond> brokenBonds = new ArrayList<>();
+    private final ThreadLocal<Generation> generation = ThreadLocal.withInitial(Generation::new);
     /**
      * The isotope factory which is used to write the mass is needed
      */
-    private IsotopeFactory isotopeFactory;
-    AllRingsFinder ringFinder;
+    private volatile IsotopeFactory isotopeFactory;
     /**
-     * RingSet that holds all rings of the molecule
+     * Ring finder, null to use a new AllRingsFinder per molecule
      */
-    private IRingSet rings = null;
+    private final AllRingsFinder ringFinder;
     /**
      * The canonical labler
      */
-//    private CanonicalLabeler canLabler = new CanonicalLabeler();
-    private ICanonicalMoleculeLabeller labeller;
+    private final ICanonicalMoleculeLabeller labeller;
     private final String RING_CONFIG = "stereoconfig";
     private final String UP = "up";
     private final String DOWN = "down";
-    private boolean useAromaticityFlag = false;
+    private final boolean useAromaticityFlag;
 
     /**
      * Create the SMILES generator.
      */
     public RBlastSmilesGenerator() {
+        this(false);
     }
 
     /**
      * Create the SMILES generator.
      *
      * @param useAromaticityFlag if false only SP2-hybridized atoms will be
-     * lower case (default), true=SP2 or aromaticity trigger lower case (same as
-     * using setUseAromaticityFlag later)
+     * lower case (default), true=SP2 or aromaticity trigger lower case
      */
     public RBlastSmilesGenerator(boolean useAromaticityFlag) {
-        this.useAromaticityFlag = useAromaticityFlag;
+        this(useAromaticityFlag, new SmilesMoleculeLabeller());
     }
 
     /**
@@ -159,8 +158,21 @@ public class RBlastSmilesGenerator {
      * @param labeller
      */
     public RBlastSmilesGenerator(boolean useAromaticityFlag, ICanonicalMoleculeLabeller labeller) {
+        this(useAromaticityFlag, labeller, null);
+    }
+
+    /**
+     *
+     * @param useAromaticityFlag
+     * @param labeller
+     * @param ringFinder ring finder (e.g. with a custom timeout) shared by
+     * all the molecules, null to use a new AllRingsFinder per molecule
+     */
+    public RBlastSmilesGenerator(boolean useAromaticityFlag, ICanonicalMoleculeLabeller labeller,
+            AllRingsFinder ringFinder) {
         this.useAromaticityFlag = useAromaticityFlag;
         this.labeller = labeller;
+        this.ringFinder = ringFinder;
     }
 
     /**
@@ -204,7 +216,7 @@ public class RBlastSmilesGenerator {
      * for
      */
     public RBlastSmilesGenerator setRings(IRingSet rings) {
-        this.rings = rings;
+        generation.get().rings = rings;
         return this;
     }
 
@@ -220,7 +232,7 @@ public class RBlastSmilesGenerator {
      * org.openscience.cdk.graph.invariant.CanonicalLabeler#canonLabel(IAtomContainer)
      * @return the SMILES representation of the molecule
      */
-    public synchronized String createSMILES(IAtomContainer molecule) {
+    public String createSMILES(IAtomContainer molecule) {
         try {
             return (createSMILES(molecule, false, new boolean[molecule.getBondCount()]));
         } catch (CDKException exception) {
@@ -237,7 +249,7 @@ public class RBlastSmilesGenerator {
      * @throws org.openscience.cdk.exception.CDKException if there is an error
      * during SMILES generation
      */
-    public synchronized String createSMILES(IReaction reaction) throws CDKException {
+    public String createSMILES(IReaction reaction) throws CDKException {
         StringBuilder reactionSMILES = new StringBuilder();
         IAtomContainerSet reactants = reaction.getReactants();
         for (int i = 0; i < reactants.getAtomContainerCount(); i++) {
@@ -297,7 +309,7 @@ public class RBlastSmilesGenerator {
      * org.openscience.cdk.graph.invariant.CanonicalLabeler#canonLabel(IAtomContainer)
      * @return the SMILES representation of the molecule
      */
-    public synchronized String createChiralSMILES(IAtomContainer molecule, boolean[] doubleBondConfiguration) throws CDKException {
+    public String createChiralSMILES(IAtomContainer molecule, boolean[] doubleBondConfiguration) throws CDKException {
         return (createSMILES(molecule, true, doubleBondConfiguration));
     }
 
@@ -327,7 +339,7 @@ public class RBlastSmilesGenerator {
      * org.openscience.cdk.graph.invariant.CanonicalLabeler#canonLabel(IAtomContainer)
      * @return the SMILES representation of the molecule
      */
-    public synchronized String createSMILES(IAtomContainer molecule, boolean chiral, boolean doubleBondConfiguration[]) throws CDKException {
+    public String createSMILES(IAtomContainer molecule, boolean chiral, boolean doubleBondConfiguration[]) throws CDKException {
         IAtomContainerSet moleculeSet = partitionIntoMolecules(molecule);
         if (moleculeSet.getAtomContainerCount() > 1) {
             StringBuilder fullSMILES = new StringBuilder();
@@ -373,14 +385,17 @@ public class RBlastSmilesGenerator {
      * org.openscience.cdk.graph.invariant.CanonicalLabeler#canonLabel(IAtomContainer)
      * @return the SMILES representation of the molecule
      */
-    public synchronized String createSMILESWithoutCheckForMultipleMolecules(IAtomContainer molecule, boolean chiral, boolean doubleBondConfiguration[]) throws CDKException {
+    public String createSMILESWithoutCheckForMultipleMolecules(IAtomContainer molecule, boolean chiral, boolean doubleBondConfiguration[]) throws CDKException {
 
         if (molecule.getAtomCount() == 0) {
             return "";
         }
         int[] canonicalLabels = labeller.getCanonicalPermutation(molecule);
-        brokenBonds.clear();
-        ringMarker = 0;
+        Generation state = generation.get();
+        IRingSet rings = state.rings;
+        state.rings = null;
+        state.brokenBonds.clear();
+        state.ringMarker = 0;
         IAtom start = null;
         for (int i = 0; i < molecule.getAtomCount(); i++) {
             IAtom atom = molecule.getAtom(i);
@@ -398,10 +413,8 @@ public class RBlastSmilesGenerator {
         //detect aromaticity
         if (useAromaticityFlag || chiral) {
             if (rings == null) {
-                if (ringFinder == null) {
-                    ringFinder = new AllRingsFinder();
-                }
-                rings = ringFinder.findAllRings(molecule);
+                AllRingsFinder finder = ringFinder == null ? new AllRingsFinder() : ringFinder;
+                rings = finder.findAllRings(molecule);
             }
             percieveAtomTypesAndConfigureAtoms(molecule);
             aromatizeDayLight(molecule);
@@ -443,7 +456,6 @@ public class RBlastSmilesGenerator {
 
         StringBuffer l = new StringBuffer();
         createSMILES(start, l, molecule, chiral, doubleBondConfiguration, canonicalLabels, useAromaticityFlag);
-        rings = null;
 
         // remove all CanonicalLable/InvariancePair props
         for (int k = 0; k < molecule.getAtomCount(); k++) {
@@ -564,7 +576,7 @@ public class RBlastSmilesGenerator {
      * Gets the bondBroken attribute of the SmilesGenerator object
      */
     private boolean isBondBroken(IAtom a1, IAtom a2) {
-        for (BrokenBond bond : brokenBonds) {
+        for (BrokenBond bond : generation.get().brokenBonds) {
             if ((bond.getA1().equals(a1) || bond.getA1().equals(a2)) && (bond.getA2().equals(a1) || bond.getA2().equals(a2))) {
                 return (true);
             }
@@ -599,7 +611,7 @@ public class RBlastSmilesGenerator {
      * first pass.
      */
     private boolean isRingOpening(IAtom a1, List v) {
-        return brokenBonds.stream().anyMatch((BrokenBond bond) -> v.stream().anyMatch((aV) -> ((bond.getA1().equals(a1) && bond.getA2().equals(aV)) || (bond.getA1().equals(aV) && bond.getA2().equals(a1)))));
+        return generation.get().brokenBonds.stream().anyMatch((BrokenBond bond) -> v.stream().anyMatch((aV) -> ((bond.getA1().equals(a1) && bond.getA2().equals(aV)) || (bond.getA1().equals(aV) && bond.getA2().equals(a1)))));
     }
 
     /**
@@ -632,7 +644,7 @@ public class RBlastSmilesGenerator {
      * Gets the ringOpenings attribute of the SmilesGenerator object
      */
     private List getRingOpenings(IAtom a, List vbonds) {
-        Iterator it = brokenBonds.iterator();
+        Iterator it = generation.get().brokenBonds.iterator();
         List v = new Vector(10);
         while (it.hasNext()) {
             BrokenBond bond = (BrokenBond) it.next();
@@ -751,12 +763,13 @@ public class RBlastSmilesGenerator {
             } else {
                 //Found ring closure between next and a
                 //logger.debug("found ringclosure in DFTTreeCreation");
-                ringMarker++;
-                BrokenBond bond = new BrokenBond(a, next, ringMarker);
-                if (!brokenBonds.contains(bond)) {
-                    brokenBonds.add(bond);
+                Generation state = generation.get();
+                state.ringMarker++;
+                BrokenBond bond = new BrokenBond(a, next, state.ringMarker);
+                if (!state.brokenBonds.contains(bond)) {
+                    state.brokenBonds.add(bond);
                 } else {
-                    ringMarker--;
+                    state.ringMarker--;
                 }
             }
         }
@@ -1593,35 +1606,24 @@ public class RBlastSmilesGenerator {
     }
 
     /**
-     * Returns the current AllRingsFinder instance
+     * Returns the AllRingsFinder instance
      *
-     * @return the current AllRingsFinder instance
+     * @return the AllRingsFinder instance, null if a new one is used per
+     * molecule
      */
     public AllRingsFinder getRingFinder() {
         return ringFinder;
     }
 
     /**
-     * Sets the current AllRingsFinder instance Use this if you want to
-     * customize the timeout for the AllRingsFinder. AllRingsFinder is stopping
-     * its quest to find all rings after a default of 5 seconds.
-     *
-     * @see org.openscience.cdk.ringsearch.AllRingsFinder
-     *
-     * @param ringFinder The value to assign ringFinder.
+     * Rings handed over with setRings() and ring closures of the SMILES being
+     * generated
      */
-    public void setRingFinder(AllRingsFinder ringFinder) {
-        this.ringFinder = ringFinder;
-    }
+    private static class Generation {
 
-    /**
-     * Indicates whether output should be an aromatic SMILES.
-     *
-     * @param useAromaticityFlag if false only SP2-hybridized atoms will be
-     * lower case (default), true=SP2 or aromaticity trigger lower case
-     */
-    public void setUseAromaticityFlag(boolean useAromaticityFlag) {
-        this.useAromaticityFlag = useAromaticityFlag;
+        private int ringMarker;
+        private final List<BrokenBond> brokenBonds = new ArrayList<>();
+        private IRingSet rings;
     }
 
     class BrokenBond {
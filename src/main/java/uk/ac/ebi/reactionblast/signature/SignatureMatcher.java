@@ -20,7 +20,9 @@ package uk.ac.ebi.reactionblast.signature;
 
 import static java.lang.System.out;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
 import org.openscience.cdk.interfaces.IAtom;
@@ -83,8 +85,9 @@ public class SignatureMatcher {
      */
     public List<IAtom> getMatchingRootAtoms(List<String> signatureStrings, IReaction reaction) {
         List<IAtom> roots = new ArrayList<>();
+        Set<String> queries = new HashSet<>(signatureStrings);
         for (IAtomContainer atomContainer : getAllAtomContainers(reaction)) {
-            getMatchingRootAtoms(roots, signatureStrings, atomContainer);
+            getMatchingRootAtoms(roots, queries, atomContainer);
         }
 
         return roots;
@@ -102,22 +105,24 @@ public class SignatureMatcher {
      */
     public List<IAtom> getMatchingRootAtoms(List<String> signatureStrings, IAtomContainer atomContainer) {
         List<IAtom> roots = new ArrayList<>();
-        getMatchingRootAtoms(roots, signatureStrings, atomContainer);
+        getMatchingRootAtoms(roots, new HashSet<>(signatureStrings), atomContainer);
         return roots;
     }
 
     /**
-     * Fill a list with matching root atoms.
+     * Fill a list with matching root atoms. The signatures of the molecule
+     * are shared with (and memoized for) identical molecules.
      *
      * @param roots
      * @param signatureStrings
      * @param atomContainer
      */
-    private void getMatchingRootAtoms(List<IAtom> roots, List<String> signatureStrings, IAtomContainer atomContainer) {
-        RBlastMoleculeSignature moleculeSignature = new RBlastMoleculeSignature(atomContainer);
+    private void getMatchingRootAtoms(List<IAtom> roots, Set<String> signatureStrings, IAtomContainer atomContainer) {
+        RBlastMoleculeSignature moleculeSignature
+                = RBlastSignatureCache.getInstance().getMoleculeSignature(atomContainer);
         for (int atomIndex = 0; atomIndex < atomContainer.getAtomCount(); atomIndex++) {
-            RBlastAtomSignature matchingAtomSignature = match(atomIndex, signatureStrings, moleculeSignature);
-            if (matchingAtomSignature != null) {
+            String matchingSignature = match(atomIndex, signatureStrings, moleculeSignature);
+            if (matchingSignature != null) {
                 roots.add(atomContainer.getAtom(atomIndex));
             }
         }
@@ -129,18 +134,15 @@ public class SignatureMatcher {
      * @param atomIndex the atom index
      * @param signatureStrings the list of query signatures
      * @param moleculeSignature the signature object referencing the target mol
-     * @return a matching signature or null if none match
+     * @return a matching signature string or null if none match
      */
-    private RBlastAtomSignature match(
-            int atomIndex, List<String> signatureStrings, RBlastMoleculeSignature moleculeSignature) {
+    private String match(
+            int atomIndex, Set<String> signatureStrings, RBlastMoleculeSignature moleculeSignature) {
         for (int height = maxHeight; height >= minHeight; height--) {
-            RBlastAtomSignature sigOfHAtI = moleculeSignature.getAtomSignature(atomIndex, height);
-            String signatureStringOfHAtI = sigOfHAtI.toCanonicalString();
-            for (String querySignatureString : signatureStrings) {
-                if (querySignatureString.equals(signatureStringOfHAtI)) {
-                    out.println("match of height " + height + " at " + atomIndex + " to " + querySignatureString);
-                    return sigOfHAtI;
-                }
+            String signatureStringOfHAtI = moleculeSignature.getSignatureStringForAtom(atomIndex, height);
+            if (signatureStrings.contains(signatureStringOfHAtI)) {
+                out.println("match of height " + height + " at " + atomIndex + " to " + signatureStringOfHAtI);
+                return signatureStringOfHAtI;
             }
         }
         return null;
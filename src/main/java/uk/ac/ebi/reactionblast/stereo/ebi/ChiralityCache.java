@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.stereo.ebi;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import static java.util.Arrays.sort;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import javax.vecmath.Point2d;
+import static org.openscience.cdk.CDKConstants.ISAROMATIC;
+import org.openscience.cdk.graph.GraphUtil.EdgeToBondMap;
+import static org.openscience.cdk.graph.GraphUtil.EdgeToBondMap.withSpaceFor;
+import static org.openscience.cdk.graph.GraphUtil.toAdjList;
+import static org.openscience.cdk.graph.invariant.Canon.label;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import uk.ac.ebi.reactionblast.containers.MappingContext;
+import uk.ac.ebi.reactionblast.stereo.IStereoAndConformation;
+
+/**
+ * Cache of the 2D CIP perception results (R/S/E/Z/P/M per atom). The key is the
+ * canonical form of the molecule together with everything the 2D perception
+ * depends on (coordinates, wedges, charges, isotopes, hydrogens), so identical
+ * molecules (e.g. the clones of the same molecule in the different mapping
+ * solutions) are perceived once. The descriptors are stored in canonical atom
+ * order and re-projected onto the atoms of each clone.
+ *
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class ChiralityCache {
+
+    private static final Logger LOG = getLogger(ChiralityCache.class.getName());
+
+    /**
+     *
+     * @return the cache of the current mapping context
+     */
+    public static ChiralityCache getInstance() {
+        return MappingContext.getCurrent().getChiralityCache();
+    }
+
+    private final Map<String, IStereoAndConformation[]> cache;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     *
+     * @param capacity max number of molecules kept (least recently used are
+     * evicted)
+     */
+    public ChiralityCache(final int capacity) {
+        this.cache = new LinkedHashMap<String, IStereoAndConformation[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IStereoAndConformation[]> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * Canonical order and key of a molecule
+     */
+    static class Key {
+
+        final String key;
+        /*
+         * canonical position of each atom (by atom index)
+         */
+        final int[] rank;
+
+        Key(String key, int[] rank) {
+            this.key = key;
+            this.rank = rank;
+        }
+    }
+
+    /**
+     *
+     * @param ac
+     * @return canonical key of the molecule, or null if it can't be computed
+     */
+    Key key(IAtomContainer ac) {
+        int n = ac.getAtomCount();
+        try {
+            EdgeToBondMap edges = withSpaceFor(ac);
+            int[][] g = toAdjList(ac, edges);
+            long[] invariants = new long[n];
+            for (int i = 0; i < n; i++) {
+                invariants[i] = atomInvariant(ac.getAtom(i), g[i].length);
+            }
+            long[] labels = label(ac, g, invariants);
+            int[] rank = new int[n];
+            int[] order = new int[n];
+            boolean[] seen = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                rank[i] = (int) labels[i] - 1;
+                if (rank[i] < 0 || rank[i] >= n || seen[rank[i]]) {
+                    /*
+                     * not a permutation, can't key this molecule
+                     */
+                    return null;
+                }
+                seen[rank[i]] = true;
+                order[rank[i]] = i;
+            }
+            StringBuilder sb = new StringBuilder(n * 32);
+            for (int k = 0; k < n; k++) {
+                IAtom a = ac.getAtom(order[k]);
+                Point2d p = a.getPoint2d();
+                sb.append(a.getSymbol()).append(',')
+                        .append(a.getMassNumber()).append(',')
+                        .append(a.getFormalCharge()).append(',')
+                        .append(a.getImplicitHydrogenCount()).append(',')
+                        .append(a.getFlag(ISAROMATIC) ? 'a' : '-').append(',')
+                        .append(p == null ? "*" : Double.doubleToLongBits(p.x) + ":" + Double.doubleToLongBits(p.y))
+                        .append(',').append(a.getProperty("descriptor") == null ? "" : a.getProperty("descriptor"))
+                        .append(';');
+            }
+            sb.append('|');
+            /*
+             * Bonds are taken from the adjacency list, the atom indices
+             * are known without a look up
+             */
+            String[] bonds = new String[ac.getBondCount()];
+            int b = 0;
+            for (int u = 0; u < n; u++) {
+                for (int v : g[u]) {
+                    if (v < u) {
+                        continue;
+                    }
+                    IBond bond = edges.get(u, v);
+                    boolean forward = bond.getAtom(0) == ac.getAtom(u);
+                    int begin = rank[forward ? u : v];
+                    int end = rank[forward ? v : u];
+                    bonds[b++] = Math.min(begin, end) + "-" + Math.max(begin, end) + ","
+                            + begin + "," + bond.getOrder() + "," + bond.getStereo() + ","
+                            + (bond.getFlag(ISAROMATIC) ? 'a' : '-') + ","
+                            + (bond.getProperty("descriptor") == null ? "" : bond.getProperty("descriptor")) + ";";
+                }
+            }
+            sort(bonds);
+            for (String s : bonds) {
+                sb.append(s);
+            }
+            return new Key(digest(sb.toString()), rank);
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static long atomInvariant(IAtom a, int degree) {
+        long v = a.getSymbol() == null ? 0 : a.getSymbol().hashCode() & 0xFFFF;
+        v = v * 31 + (a.getFormalCharge() == null ? 0 : a.getFormalCharge());
+        v = v * 31 + (a.getMassNumber() == null ? 0 : a.getMassNumber());
+        v = v * 31 + (a.getImplicitHydrogenCount() == null ? 0 : a.getImplicitHydrogenCount());
+        v = v * 31 + degree;
+        return v & Long.MAX_VALUE;
+    }
+
+    private static String digest(String s) {
+        try {
+            byte[] bytes = MessageDigest.getInstance("SHA-256").digest(s.getBytes(UTF_8));
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for (byte x : bytes) {
+                hex.append(Character.forDigit((x >> 4) & 0xF, 16)).append(Character.forDigit(x & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            return s;
+        }
+    }
+
+    /**
+     *
+     * @param key
+     * @return descriptors in canonical order or null
+     */
+    IStereoAndConformation[] get(Key key) {
+        IStereoAndConformation[] value;
+        synchronized (cache) {
+            value = cache.get(key.key);
+        }
+        if (value == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     *
+     * @param key
+     * @param descriptors in canonical order
+     */
+    void put(Key key, IStereoAndConformation[] descriptors) {
+        synchronized (cache) {
+            cache.put(key.key, descriptors);
+        }
+    }
+
+    /**
+     *
+     * @return number of lookups answered from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     *
+     * @return number of lookups which needed a perception
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     *
+     * @return number of molecules kept
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Clear the cache
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+}
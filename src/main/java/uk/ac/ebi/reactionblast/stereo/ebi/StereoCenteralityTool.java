@@ -43,6 +43,19 @@ import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.removeHy
 public abstract class StereoCenteralityTool extends Utility {
 
     private static final long serialVersionUID = 17867606807697859L;
+    /*
+     * The perceptor is stateless between calls and safe to share
+     */
+    private static final CDKPerceptor PERCEPTOR = new CDKPerceptor();
+    /*
+     * Time budget (ms) of the CIP perception of one molecule, the digraphs of
+     * large natural products can take minutes to explore
+     */
+    private static final long PERCEPTION_TIMEOUT = 10000;
+
+    static {
+        PERCEPTOR.setTimeout(PERCEPTION_TIMEOUT);
+    }
 
     private static IAtom getAtomByID(String id, IAtomContainer ac) {
         for (IAtom a : ac.atoms()) {
@@ -64,12 +77,26 @@ public abstract class StereoCenteralityTool extends Utility {
      * @throws java.lang.CloneNotSupportedException
      */
     public static Map<IAtom, IStereoAndConformation> getChirality2D(IReaction reaction) throws CDKException, CloneNotSupportedException {
+        return getChirality2D(reaction, ChiralityCache.getInstance());
+    }
+
+    /**
+     * 2D chirality of the reaction, perceptions of the molecules are looked
+     * up and stored in the given cache.
+     *
+     * @param reaction
+     * @param cache chirality cache of the mapping context
+     * @return
+     * @throws CDKException
+     * @throws java.lang.CloneNotSupportedException
+     */
+    public static Map<IAtom, IStereoAndConformation> getChirality2D(IReaction reaction, ChiralityCache cache) throws CDKException, CloneNotSupportedException {
         Map<IAtom, IStereoAndConformation> chiralityMap = new HashMap<>();
-        CDKPerceptor perceptor = new CDKPerceptor();
+        CDKPerceptor perceptor = PERCEPTOR;
         for (IAtomContainer ac : reaction.getReactants().atomContainers()) {
             IAtomContainer containerWithoutH = removeHydrogensExceptSingleAndPreserveAtomID(ac);
 //            System.err.println("R 2D CDK based stereo perception for " + ac.getID());
-            Map<IAtom, IStereoAndConformation> chirality2D = getChirality2D(containerWithoutH, perceptor);
+            Map<IAtom, IStereoAndConformation> chirality2D = getChirality2D(containerWithoutH, perceptor, cache);
 //            System.err.println("R 2D CDK based stereo " + chirality2D.size());
             if (!chirality2D.isEmpty()) {
                 chirality2D.entrySet().stream().forEach((m) -> {
@@ -84,7 +111,7 @@ public abstract class StereoCenteralityTool extends Utility {
         for (IAtomContainer ac : reaction.getProducts().atomContainers()) {
             IAtomContainer containerWithoutH = removeHydrogensExceptSingleAndPreserveAtomID(ac);
 //            System.err.println("P 2D CDK based stereo perception for " + ac.getID());
-            Map<IAtom, IStereoAndConformation> chirality2D = getChirality2D(containerWithoutH, perceptor);
+            Map<IAtom, IStereoAndConformation> chirality2D = getChirality2D(containerWithoutH, perceptor, cache);
 //            System.err.println("P 2D CDK based stereo " + chirality2D.size());
             if (!chirality2D.isEmpty()) {
                 chirality2D.entrySet().stream().forEach((m) -> {
@@ -106,8 +133,49 @@ public abstract class StereoCenteralityTool extends Utility {
      * @return
      */
     public static Map<IAtom, IStereoAndConformation> getChirality2D(IAtomContainer ac, CDKPerceptor perceptor) {
+        return getChirality2D(ac, perceptor, ChiralityCache.getInstance());
+    }
+
+    /**
+     *
+     * @param ac
+     * @param perceptor
+     * @param cache chirality cache of the mapping context
+     * @return
+     */
+    public static Map<IAtom, IStereoAndConformation> getChirality2D(IAtomContainer ac, CDKPerceptor perceptor, ChiralityCache cache) {
+        ChiralityCache.Key key = cache.key(ac);
+        IStereoAndConformation[] cached = key == null ? null : cache.get(key);
+        if (cached != null) {
+            /*
+             * Re-project the descriptors (canonical order) onto this clone
+             */
+            Map<IAtom, IStereoAndConformation> chiralityMap = new HashMap<>();
+            for (int i = 0; i < ac.getAtomCount(); i++) {
+                IAtom atom = ac.getAtom(i);
+                chiralityMap.put(atom, cached[key.rank[i]]);
+                atom.setProperty("Stereo", cached[key.rank[i]]);
+            }
+            return chiralityMap;
+        }
+        boolean perceived = perceptor.perceive(ac);
+        Map<IAtom, IStereoAndConformation> chiralityMap = getDescriptors(ac);
+        /*
+         * a failed or timed out perception is not cached, it may succeed on
+         * a less busy machine
+         */
+        if (key != null && perceived) {
+            IStereoAndConformation[] descriptors = new IStereoAndConformation[ac.getAtomCount()];
+            for (int i = 0; i < ac.getAtomCount(); i++) {
+                descriptors[key.rank[i]] = chiralityMap.get(ac.getAtom(i));
+            }
+            cache.put(key, descriptors);
+        }
+        return chiralityMap;
+    }
+
+    private static Map<IAtom, IStereoAndConformation> getDescriptors(IAtomContainer ac) {
         Map<IAtom, IStereoAndConformation> chiralityMap = new HashMap<>();
-        perceptor.perceive(ac);
         for (IAtom atom : ac.atoms()) {
             if (Tetrahedral.R.equals(atom.getProperty("descriptor"))) {
                 chiralityMap.put(atom, IStereoAndConformation.R);
@@ -18,27 +18,19 @@
  */
 package uk.ac.ebi.reactionblast.tools;
 
-import java.io.IOException;
-import static java.util.logging.Level.SEVERE;
 import java.util.logging.Logger;
-import static org.openscience.cdk.CDKConstants.ATOM_ATOM_MAPPING;
+import static java.util.logging.Logger.getLogger;
 import org.openscience.cdk.PseudoAtom;
-import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IPseudoAtom;
-import static org.openscience.cdk.smiles.CanonSmiAdapter.create;
-import org.openscience.cdk.smiles.SmilesGenerator;
-import static org.openscience.cdk.smiles.SmilesGenerator.generic;
-import org.openscience.cdk.tools.ILoggingTool;
-import static org.openscience.cdk.tools.LoggingToolFactory.createLoggingTool;
-import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeDayLight;
 import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.cloneWithIDs;
-import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.removeHydrogensExceptSingleAndPreserveAtomID;
-import static java.util.logging.Logger.getLogger;
-import org.openscience.cdk.smiles.SmiFlavor;
+import static uk.ac.ebi.reactionblast.tools.SmilesService.getInstance;
 
 /**
+ * SMILES of a molecule as it was when this object was created: the molecule
+ * is copied by the constructor, later changes to it are not seen. The SMILES
+ * are generated by the shared SmilesService.
  *
  * @author Syed Asad Rahman <asad at ebi.ac.uk>
  */
@@ -46,24 +38,21 @@ public class CDKSMILES {
 
     private static final Logger LOG = getLogger(CDKSMILES.class.getName());
 
-    private final ILoggingTool logger
-            = createLoggingTool(CDKSMILES.class);
     private final IAtomContainer molecule;
+    private final boolean removeH;
+    private final boolean remove_AAM;
 
     /**
      *
      * @param mol
-     * @param removeH
-     * @param remove_AAM
+     * @param removeH remove the explicit hydrogens
+     * @param remove_AAM ignore the atom-atom mapping
      * @throws CloneNotSupportedException
      */
     public CDKSMILES(IAtomContainer mol, boolean removeH, boolean remove_AAM) throws CloneNotSupportedException {
-        this.molecule = removeHydrogensExceptSingleAndPreserveAtomID(cloneWithIDs(mol));
-        if (remove_AAM) {
-            for (IAtom a : molecule.atoms()) {
-                a.removeProperty(ATOM_ATOM_MAPPING);
-            }
-        }
+        this.molecule = cloneWithIDs(mol);
+        this.removeH = removeH;
+        this.remove_AAM = remove_AAM;
     }
 
     /**
@@ -71,50 +60,7 @@ public class CDKSMILES {
      * @return
      */
     public String getCanonicalSMILES() {
-        String smiles = "NA";
-        if (molecule.getAtomCount() == 0) {
-            return smiles;
-        }
-        try {
-            aromatizeDayLight(molecule);
-            return create(molecule);
-        } catch (CDKException ex) {
-            logger.error("ERROR : in generating CDK SMILES" + molecule.getID());
-        } catch (IOException ex) {
-            getLogger(CDKSMILES.class.getName()).log(SEVERE, null, ex);
-        }
-//        /*
-//         Chemaxon based unique SMILES generator for debugging
-//         */
-//        try {
-//            chemaxon.struc.Molecule chemAxonMolecule = uk.ac.ebi.tools.chemaxonhandler.CDKChemaxonIOConveter.getChemAxonMolecule(molecule);
-//            /*
-//             * Set Absolute stereo function
-//             */
-//            chemAxonMolecule.setAbsStereo(true);
-//
-//            /*
-//             * check valences must before hydrogenize to calculate implicit H
-//             *
-//             */
-//            chemAxonMolecule.valenceCheck();
-//
-//            /*
-//             * check Hybridization must before hydrogenize to calculate implicit H
-//             *
-//             */
-//            chemAxonMolecule.calcHybridization();
-//            /*
-//             * check aromaticity must before hydrogenize to calculate implicit H
-//             *
-//             */
-//            chemAxonMolecule.aromatize();
-//            return chemaxon.formats.MolExporter.exportToFormat(chemAxonMolecule, "smiles:au");
-//        } catch (Exception ex) {
-//            Logger.getLogger(CDKSMILES.class.getName()).log(Level.SEVERE, null, ex);
-//        }
-
-        return smiles;
+        return getInstance().getCanonicalSMILES(molecule, removeH, remove_AAM);
     }
 
     /**
@@ -122,19 +68,7 @@ public class CDKSMILES {
      * @return
      */
     public String getGenericSMILES() {
-        String smiles = "NA";
-        if (molecule.getAtomCount() == 0) {
-            return smiles;
-        }
-        try {
-            SmilesGenerator g;
-            g = generic();
-            return g.create(molecule);
-        } catch (CDKException ex) {
-            logger.error("ERROR : in generating CDK SMILES" + molecule.getID());
-        }
-
-        return smiles;
+        return getInstance().getGenericSMILES(molecule, removeH, remove_AAM);
     }
 
     /**
@@ -143,19 +77,7 @@ public class CDKSMILES {
      * @return
      */
     public String getGenericAromaticSMILES() {
-        String smiles = "NA";
-        if (molecule.getAtomCount() == 0) {
-            return smiles;
-        }
-        try {
-            SmilesGenerator g = new SmilesGenerator(
-                    SmiFlavor.UseAromaticSymbols);
-            return g.create(molecule);
-        } catch (CDKException ex) {
-            logger.error("ERROR : in generating CDK SMILES" + molecule.getID());
-        }
-
-        return smiles;
+        return getInstance().getGenericAromaticSMILES(molecule, removeH, remove_AAM);
     }
 
     private boolean isPseudoAtoms() {
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools;
+
+import static java.lang.String.valueOf;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+/**
+ * A molecule shared between several stages (or threads) which is only copied
+ * when a stage has to modify it. Readers use the shared molecule and must not
+ * modify it, the first writer gets a private copy (atom and container IDs
+ * preserved, missing atom IDs set to the atom index) which is reused until it
+ * is released.
+ *
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public final class CopyOnWriteMolecule {
+
+    private final IAtomContainer shared;
+    private IAtomContainer copy;
+
+    /**
+     *
+     * @param shared molecule which is never modified through this view
+     */
+    public CopyOnWriteMolecule(IAtomContainer shared) {
+        this.shared = shared;
+        this.copy = null;
+    }
+
+    /**
+     * @return the shared molecule, read only
+     */
+    public synchronized IAtomContainer getReadOnly() {
+        return shared;
+    }
+
+    /**
+     * @return the private copy, made on the first call
+     * @throws CloneNotSupportedException
+     */
+    public synchronized IAtomContainer getWritable() throws CloneNotSupportedException {
+        if (copy == null) {
+            IAtomContainer ac = shared.clone();
+            for (int i = 0; i < ac.getAtomCount(); i++) {
+                String atomID = shared.getAtom(i).getID();
+                ac.getAtom(i).setID(atomID == null ? valueOf(i) : atomID);
+            }
+            ac.setID(shared.getID());
+            copy = ac;
+        }
+        return copy;
+    }
+
+    /**
+     * @return true if a private copy has been made (and not released)
+     */
+    public synchronized boolean isCopied() {
+        return copy != null;
+    }
+
+    /**
+     * Forget the private copy (it is left to its current owner), the next
+     * writer gets a new copy of the shared molecule.
+     */
+    public synchronized void release() {
+        copy = null;
+    }
+}
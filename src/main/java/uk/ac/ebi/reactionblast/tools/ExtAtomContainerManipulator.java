@@ -116,6 +116,21 @@ public class ExtAtomContainerManipulator extends AtomContainerManipulator implem
         }
     }
 
+    /**
+     * Same as {@link #removeHydrogensExceptSingleAndPreserveAtomID} but the
+     * hydrogens are suppressed in {@code ac}, for molecules which are already
+     * a private copy.
+     *
+     * @param ac the AtomContainer from which to remove the hydrogens
+     * @return The molecule without hydrogens.
+     */
+    public static IAtomContainer removeHydrogensExceptSingleAndPreserveAtomIDWithoutClone(IAtomContainer ac) {
+        for (IAtom atom : ac.atoms()) {
+            atom.setImplicitHydrogenCount(getImplicitHydrogenCount(atom));
+        }
+        return suppressHydrogens(ac);
+    }
+
     private static void printAtoms(IAtomContainer mol) {
         System.out.print("Atom: ");
         for (IAtom a : mol.atoms()) {
@@ -71,18 +71,20 @@ import uk.ac.ebi.reactionblast.graphics.direct.RootSystem;
 import static uk.ac.ebi.reactionblast.graphics.direct.SignatureRootFinder.findRootSystems;
 import uk.ac.ebi.reactionblast.graphics.direct.SimpleHighlighter;
 import uk.ac.ebi.reactionblast.graphics.direct.awtlayout.AbstractAWTReactionLayout;
-import uk.ac.ebi.reactionblast.graphics.direct.awtlayout.LeftToRightAWTReactionLayout;
-import uk.ac.ebi.reactionblast.graphics.direct.awtlayout.TopToBottomAWTReactionLayout;
 import uk.ac.ebi.reactionblast.graphics.direct.layout.AbstractDirectReactionLayout;
 import uk.ac.ebi.reactionblast.graphics.direct.layout.BoundsTree;
 import uk.ac.ebi.reactionblast.graphics.direct.layout.LeftToRightReactionLayout;
 import uk.ac.ebi.reactionblast.graphics.direct.layout.SingleMoleculeLayout;
-import uk.ac.ebi.reactionblast.graphics.direct.layout.TopToBottomReactionLayout;
 import uk.ac.ebi.reactionblast.graphics.direct.layout.ZoomToFitGridLayout;
 import uk.ac.ebi.reactionblast.graphics.direct.layout.ZoomToFitLayout;
 import uk.ac.ebi.reactionblast.mapping.helper.RBlastReaction;
 import uk.ac.ebi.reactionblast.signature.SignatureMatcher;
 import static uk.ac.ebi.reactionblast.tools.LayoutCheck.getMoleculeWithLayoutCheck;
+import static uk.ac.ebi.reactionblast.tools.ReactionImageService.Style.LEFT_TO_RIGHT;
+import static uk.ac.ebi.reactionblast.tools.ReactionImageService.Style.LEFT_TO_RIGHT_HIGHLIGHTED;
+import static uk.ac.ebi.reactionblast.tools.ReactionImageService.Style.REACTION_CENTRE;
+import static uk.ac.ebi.reactionblast.tools.ReactionImageService.Style.TOP_TO_BOTTOM;
+import static uk.ac.ebi.reactionblast.tools.ReactionImageService.Style.TOP_TO_BOTTOM_HIGHLIGHTED;
 
 /**
  *
@@ -135,7 +137,7 @@ public class ImageGenerator {
      * @param outFile
      * @throws IOException
      */
-    protected static synchronized void makeReactionCenterHighlightedReactionToFile(
+    protected static void makeReactionCenterHighlightedReactionToFile(
             IReaction reaction,
             AbstractDirectReactionLayout layout,
             AbstractAWTReactionLayout awtLayout,
@@ -232,7 +234,7 @@ public class ImageGenerator {
      * @param outFile
      * @throws IOException
      */
-    protected static synchronized void makeLeftToRighHighlightedReactionToFile(
+    protected static void makeLeftToRighHighlightedReactionToFile(
             IReaction reaction,
             AbstractDirectReactionLayout layout,
             AbstractAWTReactionLayout awtLayout,
@@ -287,66 +289,13 @@ public class ImageGenerator {
      * @param outFile
      * @throws IOException
      */
-    protected static synchronized void makeLeftToRighHighlightedReactionToFile(
+    protected static void makeLeftToRighHighlightedReactionToFile(
             IReaction cdkReaction,
             int width, int height,
             boolean shouldCrop,
             File outFile) throws IOException {
-
-        RBlastReaction rbReaction = new RBlastReaction(cdkReaction, true);
-
-        DirectRBLastReactionDrawer drawer
-                = new DirectRBLastReactionDrawer(new Params(),
-                        new LeftToRightReactionLayout(),
-                        new LeftToRightAWTReactionLayout());
-
-        drawer.getParams().drawMappings = false;
-        drawer.getParams().drawAromaticCircles = false;
-        /*
-        * set ids to false
-         */
-        drawer.getParams().drawAtomID = false;
-        drawer.getParams().drawLonePairs = false;
-        drawer.getParams().drawMoleculeID = true;
-        //Make this false
-        drawer.getParams().drawSubgraphBoxes = false;
-        drawer.getParams().highlightSubgraphs = true;
-        drawer.getParams().drawSubgraphMappingLines = false;
-        drawer.getParams().highlightsBelow = false;
-        drawer.getParams().highlightsAbove = true;
-        drawer.getParams().drawAromaticCircles = true;
-        drawer.getParams().highlightAlpha = 0.25f;
-        drawer.getParams().drawRS = true;
-        drawer.getParams().labelYGap = 25;
-        drawer.getParams().borderY = 40;
-        drawer.getParams().arrowGap = 30;
-        drawer.getParams().arrowLength = 60;
-        drawer.getParams().drawFatArrow = true;
-        drawer.getParams().shouldCrop = shouldCrop;
-        drawer.getParams().leftToRightMoleculeLabelFontSize = 10;
-
-        /*
-        * Hack the code to crop by Asad else use //java.awt.Image image =
-        * drawer.drawRBlastReaction(rbReaction, width, height); for usual image
-         */
-        BufferedImage image = (BufferedImage) getBlankImage(width, height);
-        Graphics2D g = (Graphics2D) image.getGraphics();
-        g.setColor(WHITE);
-        g.fillRect(0, 0, width, height);
-        Rectangle2D finalBounds
-                = drawer.drawRBlastReaction(rbReaction, width, height, g);
-        if (shouldCrop
-                && (finalBounds.getWidth() != width
-                || finalBounds.getHeight() != height)) {
-            image = image.getSubimage((int) finalBounds.getX(),
-                    (int) finalBounds.getY(),
-                    (int) finalBounds.getWidth(),
-                    (int) finalBounds.getHeight());
-        }
-        g.dispose();
-
-        write(image, "PNG", outFile);
-
+        ReactionImageService.getInstance().render(cdkReaction,
+                LEFT_TO_RIGHT_HIGHLIGHTED, width, height, shouldCrop, outFile);
     }
 
     /**
@@ -357,43 +306,12 @@ public class ImageGenerator {
      * @param outFile
      * @throws IOException
      */
-    protected static synchronized void makeTopToBottomRHighlightedReactionToFile(
+    protected static void makeTopToBottomRHighlightedReactionToFile(
             IReaction cdkReaction,
             int width, int height,
             File outFile) throws IOException {
-
-        RBlastReaction rbReaction = new RBlastReaction(cdkReaction, true);
-
-        DirectRBLastReactionDrawer drawer
-                = new DirectRBLastReactionDrawer(
-                        new Params(),
-                        new TopToBottomReactionLayout(),
-                        new TopToBottomAWTReactionLayout());
-        drawer.getParams().drawMappings = false;
-        drawer.getParams().drawAromaticCircles = false;
-        drawer.getParams().drawAtomID = true;
-        drawer.getParams().drawLonePairs = false;
-        //Make this false
-        drawer.getParams().drawSubgraphBoxes = false;
-        drawer.getParams().highlightSubgraphs = true;
-        drawer.getParams().drawSubgraphMappingLines = false;
-        drawer.getParams().highlightsBelow = false;
-        drawer.getParams().highlightsAbove = true;
-        drawer.getParams().drawAromaticCircles = true;
-        drawer.getParams().highlightAlpha = 0.25f;
-        drawer.getParams().drawRS = true;
-        drawer.getParams().labelYGap = 25;
-        drawer.getParams().borderY = 40;
-        drawer.getParams().arrowGap = 30;
-        drawer.getParams().arrowLength = 60;
-        drawer.getParams().drawFatArrow = true;
-        drawer.getParams().drawArrowFilled = true;
-        drawer.getParams().drawLabelPanel = false;
-        drawer.getParams().drawMoleculeID = true;
-        drawer.getParams().topToBottomMoleculeLabelFontSize = 10;
-
-        java.awt.Image image = drawer.drawRBlastReaction(rbReaction, width, height);
-        write((RenderedImage) image, "PNG", outFile);
+        ReactionImageService.getInstance().render(cdkReaction,
+                TOP_TO_BOTTOM_HIGHLIGHTED, width, height, false, outFile);
     }
 
     /**
@@ -403,7 +321,7 @@ public class ImageGenerator {
      * @param outputDir
      * @throws Exception
      */
-    public synchronized static void LeftToRightReactionLayoutImageSmall(
+    public static void LeftToRightReactionLayoutImageSmall(
             IReaction cdkReaction, String rmrID, String outputDir) throws Exception {
         int width = 600;
         int height = 400;
@@ -418,14 +336,13 @@ public class ImageGenerator {
      * @param outputDir
      * @throws Exception
      */
-    public synchronized static void LeftToRightReactionCenterImageSmall(
+    public static void LeftToRightReactionCenterImageSmall(
             IReaction cdkReaction, String rmrID, String outputDir) throws Exception {
         int width = 600;
         int height = 400;
         File outFile = new File(getDir(outputDir), rmrID + ".png");
-        makeReactionCenterHighlightedReactionToFile(cdkReaction,
-                new LeftToRightReactionLayout(),
-                new LeftToRightAWTReactionLayout(), width, height, outFile);
+        ReactionImageService.getInstance().render(cdkReaction,
+                REACTION_CENTRE, width, height, true, outFile);
     }
 
     /**
@@ -435,7 +352,7 @@ public class ImageGenerator {
      * @param outputDir
      * @throws Exception
      */
-    public synchronized static void TopToBottomReactionLayoutImageSmall(
+    public static void TopToBottomReactionLayoutImageSmall(
             IReaction cdkReaction, String rmrID, String outputDir) throws Exception {
 
         int height = 400;
@@ -452,7 +369,7 @@ public class ImageGenerator {
      * @param outputDir
      * @throws Exception
      */
-    public synchronized static void LeftToRightReactionLayoutImage(
+    public static void LeftToRightReactionLayoutImage(
             IReaction cdkReaction, String rmrID, String outputDir) throws Exception {
         int height = 800;
         int width = 1200;
@@ -467,14 +384,13 @@ public class ImageGenerator {
      * @param outputDir
      * @throws Exception
      */
-    public synchronized static void LeftToRightReactionCenterImage(
+    public static void LeftToRightReactionCenterImage(
             IReaction cdkReaction, String rmrID, String outputDir) throws Exception {
         int height = 800;
         int width = 1200;
         File outFile = new File(getDir(outputDir), rmrID + ".png");
-        makeReactionCenterHighlightedReactionToFile(cdkReaction,
-                new LeftToRightReactionLayout(),
-                new LeftToRightAWTReactionLayout(), width, height, outFile);
+        ReactionImageService.getInstance().render(cdkReaction,
+                REACTION_CENTRE, width, height, true, outFile);
     }
 
     /**
@@ -484,7 +400,7 @@ public class ImageGenerator {
      * @param outputDir
      * @throws Exception
      */
-    public synchronized static void TopToBottomReactionLayoutImage(
+    public static void TopToBottomReactionLayoutImage(
             IReaction cdkReaction, String rmrID, String outputDir) throws Exception {
         int height = 800;
         int width = 1200;
@@ -859,7 +775,7 @@ public class ImageGenerator {
      * @param rmrID
      * @throws Exception
      */
-    public synchronized void drawTopToBottomReactionLayout(String outputDir, IReaction cdkReaction, String rmrID) throws Exception {
+    public void drawTopToBottomReactionLayout(String outputDir, IReaction cdkReaction, String rmrID) throws Exception {
         drawTopToBottomReactionLayout(new CreateDirectory().createDirectory(outputDir, false), cdkReaction, rmrID);
     }
 
@@ -870,41 +786,8 @@ public class ImageGenerator {
      * @param rmrID
      * @throws Exception
      */
-    public synchronized void drawTopToBottomReactionLayout(File outputDirName, IReaction cdkReaction, String rmrID) throws Exception {
-        int width = 800;
-        int height = 1000;
-
-        RBlastReaction rbReaction = new RBlastReaction(cdkReaction, true);
-
-        DirectRBLastReactionDrawer drawer
-                = new DirectRBLastReactionDrawer(
-                        new Params(),
-                        new TopToBottomReactionLayout(),
-                        new TopToBottomAWTReactionLayout());
-        drawer.getParams().drawMappings = false;
-        drawer.getParams().drawAromaticCircles = true;
-        drawer.getParams().drawAtomID = true;
-        drawer.getParams().drawLonePairs = false;
-        //Make this false
-        drawer.getParams().drawSubgraphBoxes = false;
-        drawer.getParams().highlightSubgraphs = true;
-        drawer.getParams().drawSubgraphMappingLines = false;
-        drawer.getParams().highlightsBelow = false;
-        drawer.getParams().highlightsAbove = true;
-        drawer.getParams().drawAromaticCircles = true;
-        drawer.getParams().highlightAlpha = 0.25f;
-        drawer.getParams().drawRS = true;
-        drawer.getParams().leftToRightMoleculeLabelFontSize = 10;
-        drawer.getParams().labelYGap = 25;
-        drawer.getParams().borderY = 40;
-        drawer.getParams().arrowGap = 30;
-        drawer.getParams().arrowLength = 60;
-        drawer.getParams().drawFatArrow = true;
-        drawer.getParams().drawArrowFilled = true;
-
-        Image image = drawer.drawRBlastReaction(rbReaction, width, height);
-        File outFile = new File(outputDirName, rmrID + ".png");
-        write((RenderedImage) image, "PNG", outFile);
+    public void drawTopToBottomReactionLayout(File outputDirName, IReaction cdkReaction, String rmrID) throws Exception {
+        ReactionImageService.getInstance().render(cdkReaction, TOP_TO_BOTTOM, outputDirName, rmrID);
     }
 
     /**
@@ -914,7 +797,7 @@ public class ImageGenerator {
      * @param rmrID
      * @throws Exception
      */
-    public synchronized void drawLeftToRightReactionLayout(String outputDirName, IReaction cdkReaction, String rmrID) throws Exception {
+    public void drawLeftToRightReactionLayout(String outputDirName, IReaction cdkReaction, String rmrID) throws Exception {
         drawLeftToRightReactionLayout(new CreateDirectory().createDirectory(outputDirName, false), cdkReaction, rmrID);
     }
 
@@ -925,57 +808,9 @@ public class ImageGenerator {
      * @param reactionID
      * @throws Exception
      */
-    public synchronized void drawLeftToRightReactionLayout(
+    public void drawLeftToRightReactionLayout(
             File outputDirName, IReaction mappedReaction, String reactionID) throws Exception {
-        int width = 2048;
-        int height = 600;
-
-        /*
-         Layout reaction to avoid image errors
-         */
-        IReaction reactionWithLayout = layoutReaction(mappedReaction, reactionID);
-        RBlastReaction rbReaction = new RBlastReaction(reactionWithLayout, true);
-
-        DirectRBLastReactionDrawer drawer
-                = new DirectRBLastReactionDrawer(
-                        new Params(),
-                        new LeftToRightReactionLayout(),
-                        new LeftToRightAWTReactionLayout());
-        drawer.getParams().drawMappings = false;
-        drawer.getParams().drawAtomID = false;
-        drawer.getParams().drawLonePairs = false;
-        //Make this false
-        drawer.getParams().drawSubgraphBoxes = false;
-        drawer.getParams().highlightSubgraphs = true;
-        drawer.getParams().drawSubgraphMappingLines = false;
-        drawer.getParams().highlightsBelow = false;
-        drawer.getParams().highlightsAbove = true;
-        drawer.getParams().drawAromaticCircles = true;
-
-        drawer.getParams().drawRS = true;
-        drawer.getParams().leftToRightMoleculeLabelFontSize = 10;
-        drawer.getParams().labelYGap = 25;
-        drawer.getParams().borderY = 40;
-        drawer.getParams().arrowGap = 30;
-        drawer.getParams().arrowLength = 60;
-        drawer.getParams().drawFatArrow = true;
-        drawer.getParams().drawArrowFilled = true;
-
-        /*
-         * For Lighter images
-         *   drawer.getParams().highlightAlpha = 0.25f;
-         *   drawer.getParams().bondStrokeWidth = default;
-         */
- /* for darker presentation images
-         * drawer.getParams().highlightAlpha = 0.30f;
-         * drawer.getParams().bondStrokeWidth=2.0f;
-         */
-        drawer.getParams().highlightAlpha = 0.30f;
-        drawer.getParams().bondStrokeWidth = 2.0f;
-
-        Image image = drawer.drawRBlastReaction(rbReaction, width, height);
-        File outFile = new File(outputDirName, reactionID + ".png");
-        write((RenderedImage) image, "PNG", outFile);
+        ReactionImageService.getInstance().render(mappedReaction, LEFT_TO_RIGHT, outputDirName, reactionID);
     }
 
     /**
@@ -0,0 +1,551 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools;
+
+import static java.awt.Color.GREEN;
+import static java.awt.Color.RED;
+import static java.awt.Color.WHITE;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import static java.lang.Runtime.getRuntime;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static javax.imageio.ImageIO.write;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IReaction;
+import static org.openscience.cdk.tools.manipulator.ReactionManipulator.getAllAtomContainers;
+import uk.ac.ebi.reactionblast.graphics.direct.DirectMoleculeDrawer;
+import uk.ac.ebi.reactionblast.graphics.direct.DirectRBLastReactionDrawer;
+import uk.ac.ebi.reactionblast.graphics.direct.Highlighter;
+import uk.ac.ebi.reactionblast.graphics.direct.Params;
+import uk.ac.ebi.reactionblast.graphics.direct.RootSystem;
+import uk.ac.ebi.reactionblast.graphics.direct.SVGGraphics2D;
+import static uk.ac.ebi.reactionblast.graphics.direct.SignatureRootFinder.findRootSystems;
+import uk.ac.ebi.reactionblast.graphics.direct.SimpleHighlighter;
+import uk.ac.ebi.reactionblast.graphics.direct.awtlayout.LeftToRightAWTReactionLayout;
+import uk.ac.ebi.reactionblast.graphics.direct.awtlayout.TopToBottomAWTReactionLayout;
+import uk.ac.ebi.reactionblast.graphics.direct.layout.LeftToRightReactionLayout;
+import uk.ac.ebi.reactionblast.graphics.direct.layout.MoleculeLayoutCache;
+import uk.ac.ebi.reactionblast.graphics.direct.layout.TopToBottomReactionLayout;
+import uk.ac.ebi.reactionblast.mapping.helper.RBlastReaction;
+
+/**
+ * Thread-safe reaction image renderer on top of the direct drawers. Each
+ * worker (and each caller of the blocking render methods) keeps its own
+ * drawers and image buffers, 2D layouts are shared between the threads
+ * through a {@link MoleculeLayoutCache} and jobs are queued on a bounded
+ * queue (the submitting thread renders itself when the queue is full).
+ * Images are written as PNG or, without any raster, as SVG. Jobs submitted
+ * after {@link #close()} are rejected.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class ReactionImageService implements Closeable {
+
+    private static final Logger LOG = getLogger(ReactionImageService.class.getName());
+
+    /*
+     * buffers kept per thread, sizes beyond this are allocated per image
+     */
+    private static final int MAX_POOLED_IMAGES = 4;
+
+    private static ReactionImageService INSTANCE;
+
+    /**
+     * Reaction image styles, with the layout and drawing parameters of the
+     * matching {@link ImageGenerator} methods.
+     */
+    public enum Style {
+
+        /**
+         * Left to right reaction with mapped subgraphs highlighted (the
+         * annotated image of the command line tool)
+         */
+        LEFT_TO_RIGHT(2048, 600, false),
+        /**
+         * Top to bottom reaction with mapped subgraphs highlighted and atom
+         * IDs (the AAM image of the command line tool)
+         */
+        TOP_TO_BOTTOM(800, 1000, false),
+        /**
+         * Left to right reaction with lighter subgraph highlights and
+         * molecule IDs
+         */
+        LEFT_TO_RIGHT_HIGHLIGHTED(1200, 800, false),
+        /**
+         * Top to bottom reaction with lighter subgraph highlights and
+         * molecule IDs
+         */
+        TOP_TO_BOTTOM_HIGHLIGHTED(1200, 800, false),
+        /**
+         * Left to right reaction with the reaction centres (root atoms in
+         * red, neighbours in green) and bond change marks
+         */
+        REACTION_CENTRE(1200, 800, true);
+
+        private final int width;
+        private final int height;
+        private final boolean crop;
+
+        Style(int width, int height, boolean crop) {
+            this.width = width;
+            this.height = height;
+            this.crop = crop;
+        }
+
+        /**
+         * @return default image width
+         */
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * @return default image height
+         */
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * @return true if images are cropped to the drawing by default
+         */
+        public boolean isCrop() {
+            return crop;
+        }
+    }
+
+    /**
+     * Image formats
+     */
+    public enum Format {
+
+        /**
+         * Raster image (PNG)
+         */
+        PNG(".png"),
+        /**
+         * Vector image (SVG), written without a raster
+         */
+        SVG(".svg");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * @return file extension, with the dot
+         */
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * The JVM wide service, with one worker per core.
+     *
+     * @return shared rendering service
+     */
+    public static synchronized ReactionImageService getInstance() {
+        if (INSTANCE == null || INSTANCE.isClosed()) {
+            int cores = getRuntime().availableProcessors();
+            INSTANCE = new ReactionImageService(cores, 4 * cores, new MoleculeLayoutCache());
+        }
+        return INSTANCE;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final MoleculeLayoutCache layoutCache;
+    private final ThreadLocal<Map<Style, DirectRBLastReactionDrawer>> drawers;
+    private final ThreadLocal<Map<Long, BufferedImage>> images;
+
+    /**
+     *
+     * @param threads number of rendering threads
+     * @param queueDepth number of queued jobs before submitters render
+     * themselves
+     * @param layoutCache shared 2D layouts
+     */
+    public ReactionImageService(int threads, int queueDepth, MoleculeLayoutCache layoutCache) {
+        final AtomicInteger workers = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueDepth)),
+                (Runnable r) -> {
+                    Thread t = new Thread(r, "reaction-image-" + workers.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                (Runnable r, ThreadPoolExecutor pool) -> {
+                    /*
+                     * the submitter renders itself when the queue is full,
+                     * never once the service is closed (the job would be
+                     * dropped and its future never done)
+                     */
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("Reaction image service is closed");
+                    }
+                    r.run();
+                });
+        this.layoutCache = layoutCache;
+        this.drawers = ThreadLocal.withInitial(() -> new EnumMap<>(Style.class));
+        this.images = ThreadLocal.withInitial(HashMap::new);
+    }
+
+    /**
+     * Render "$outputDir/$reactionID.png" with the default size of the
+     * style.
+     *
+     * @param reaction mapped reaction
+     * @param style
+     * @param outputDir
+     * @param reactionID
+     * @return the image file
+     * @throws IOException
+     */
+    public File render(IReaction reaction, Style style, File outputDir, String reactionID) throws IOException {
+        return render(reaction, style, Format.PNG, outputDir, reactionID);
+    }
+
+    /**
+     * Render "$outputDir/$reactionID.(png|svg)" with the default size of the
+     * style.
+     *
+     * @param reaction mapped reaction
+     * @param style
+     * @param format
+     * @param outputDir
+     * @param reactionID
+     * @return the image file
+     * @throws IOException
+     */
+    public File render(IReaction reaction, Style style, Format format, File outputDir, String reactionID) throws IOException {
+        File outFile = new File(outputDir, reactionID + format.getExtension());
+        render(reaction, style, style.getWidth(), style.getHeight(), style.isCrop(), format, outFile);
+        return outFile;
+    }
+
+    /**
+     * Render a PNG on the calling thread.
+     *
+     * @param reaction mapped reaction
+     * @param style
+     * @param width
+     * @param height
+     * @param crop crop the image to the drawing
+     * @param outFile
+     * @throws IOException
+     */
+    public void render(IReaction reaction, Style style, int width, int height, boolean crop, File outFile) throws IOException {
+        render(reaction, style, width, height, crop, Format.PNG, outFile);
+    }
+
+    /**
+     * Render an image on the calling thread.
+     *
+     * @param reaction mapped reaction
+     * @param style
+     * @param width
+     * @param height
+     * @param crop crop the image to the drawing
+     * @param format
+     * @param outFile
+     * @throws IOException
+     */
+    public void render(IReaction reaction, Style style, int width, int height, boolean crop, Format format, File outFile) throws IOException {
+        try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(outFile))) {
+            render(reaction, style, width, height, crop, format, stream);
+        }
+    }
+
+    /**
+     * Render an image on the calling thread. SVG is written as text
+     * straight from the drawers, without a raster image.
+     *
+     * @param reaction mapped reaction
+     * @param style
+     * @param width
+     * @param height
+     * @param crop crop the image to the drawing
+     * @param format
+     * @param stream output, left open
+     * @throws IOException
+     */
+    public void render(IReaction reaction, Style style, int width, int height, boolean crop, Format format, OutputStream stream) throws IOException {
+        if (format == Format.SVG) {
+            SVGGraphics2D g = new SVGGraphics2D(width, height);
+            Rectangle2D bounds = draw(reaction, style, width, height, crop, g);
+            Writer writer = new OutputStreamWriter(stream, UTF_8);
+            g.write(writer, bounds == null ? new Rectangle2D.Double(0, 0, width, height) : bounds);
+            writer.flush();
+        } else {
+            BufferedImage image = getImage(width, height);
+            Graphics2D g = image.createGraphics();
+            Rectangle2D bounds = draw(reaction, style, width, height, crop, g);
+            g.dispose();
+            if (bounds != null) {
+                image = image.getSubimage((int) bounds.getX(),
+                        (int) bounds.getY(),
+                        (int) bounds.getWidth(),
+                        (int) bounds.getHeight());
+            }
+            write(image, "PNG", stream);
+        }
+    }
+
+    /**
+     * Queue the rendering of "$outputDir/$reactionID.png".
+     *
+     * @param reaction mapped reaction, not to be modified until the job is
+     * done
+     * @param style
+     * @param outputDir
+     * @param reactionID
+     * @return the image file once written
+     * @throws RejectedExecutionException if the service is closed
+     */
+    public Future<File> submit(IReaction reaction, Style style, File outputDir, String reactionID) {
+        return submit(reaction, style, Format.PNG, outputDir, reactionID);
+    }
+
+    /**
+     * Queue the rendering of "$outputDir/$reactionID.(png|svg)".
+     *
+     * @param reaction mapped reaction, not to be modified until the job is
+     * done
+     * @param style
+     * @param format
+     * @param outputDir
+     * @param reactionID
+     * @return the image file once written
+     * @throws RejectedExecutionException if the service is closed
+     */
+    public Future<File> submit(IReaction reaction, Style style, Format format, File outputDir, String reactionID) {
+        return executor.submit(() -> render(reaction, style, format, outputDir, reactionID));
+    }
+
+    /**
+     * @return the shared 2D layouts
+     */
+    public MoleculeLayoutCache getLayoutCache() {
+        return layoutCache;
+    }
+
+    /**
+     * @return true once the service is closed
+     */
+    public boolean isClosed() {
+        return executor.isShutdown();
+    }
+
+    /**
+     * Wait for the queued images and stop the workers.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(60, SECONDS)) {
+                LOG.warning("Reaction images still pending after 60s");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Draw on a white canvas, returns the crop bounds or null for the whole
+     * canvas
+     */
+    private Rectangle2D draw(IReaction reaction, Style style, int width, int height, boolean crop, Graphics2D g) {
+        for (IAtomContainer ac : getAllAtomContainers(reaction)) {
+            layoutCache.layout(ac);
+        }
+        RBlastReaction rblReaction = new RBlastReaction(reaction, true);
+        DirectRBLastReactionDrawer drawer = getDrawer(style);
+        drawer.getParams().shouldCrop = crop;
+        DirectMoleculeDrawer moleculeDrawer = drawer.getReactionDrawer().getMoleculeDrawer();
+        moleculeDrawer.getHighlighters().clear();
+        moleculeDrawer.clearChiralMap();
+        if (style == Style.REACTION_CENTRE) {
+            addReactionCentreHighlights(reaction, rblReaction, drawer);
+        }
+
+        g.setColor(WHITE);
+        g.fillRect(0, 0, width, height);
+        Rectangle2D finalBounds = drawer.drawRBlastReaction(rblReaction, width, height, g);
+        if (crop
+                && (finalBounds.getWidth() != width
+                || finalBounds.getHeight() != height)
+                && finalBounds.getMaxX() <= width
+                && finalBounds.getMaxY() <= height) {
+            return finalBounds;
+        }
+        return null;
+    }
+
+    private BufferedImage getImage(int width, int height) {
+        Map<Long, BufferedImage> pool = images.get();
+        long key = ((long) width << 32) | height;
+        BufferedImage image = pool.get(key);
+        if (image == null) {
+            if (pool.size() >= MAX_POOLED_IMAGES) {
+                pool.clear();
+            }
+            image = new BufferedImage(width, height, TYPE_INT_ARGB);
+            pool.put(key, image);
+        }
+        return image;
+    }
+
+    private DirectRBLastReactionDrawer getDrawer(Style style) {
+        Map<Style, DirectRBLastReactionDrawer> map = drawers.get();
+        DirectRBLastReactionDrawer drawer = map.get(style);
+        if (drawer == null) {
+            drawer = newDrawer(style);
+            map.put(style, drawer);
+        }
+        return drawer;
+    }
+
+    private void addReactionCentreHighlights(IReaction reaction, RBlastReaction rblReaction, DirectRBLastReactionDrawer drawer) {
+        Params params = drawer.getParams();
+        DirectMoleculeDrawer moleculeDrawer = drawer.getReactionDrawer().getMoleculeDrawer();
+        Map<IAtomContainer, List<RootSystem>> rootSystems = findRootSystems(rblReaction);
+        for (IAtomContainer atomContainer : rootSystems.keySet()) {
+            for (RootSystem rootSystem : rootSystems.get(atomContainer)) {
+                IAtomContainer rootContainer
+                        = reaction.getBuilder().newInstance(IAtomContainer.class);
+                rootSystem.getRoots().stream().forEach((root) -> {
+                    rootContainer.addAtom(root);
+                });
+                IAtomContainer neighbourContainer
+                        = reaction.getBuilder().newInstance(IAtomContainer.class);
+                rootSystem.getLeaves().stream().forEach((leaf) -> {
+                    neighbourContainer.addAtom(leaf);
+                });
+                Highlighter highlighter = new SimpleHighlighter(params);
+                highlighter.addHighlights(rootContainer, RED);
+                highlighter.addHighlights(neighbourContainer, GREEN);
+                moleculeDrawer.addHighlighter(highlighter);
+            }
+        }
+    }
+
+    private static DirectRBLastReactionDrawer newDrawer(Style style) {
+        Params params = new Params();
+        switch (style) {
+            case TOP_TO_BOTTOM:
+            case TOP_TO_BOTTOM_HIGHLIGHTED:
+                setHighlightedReactionParams(params);
+                params.drawAtomID = true;
+                params.drawArrowFilled = true;
+                if (style == Style.TOP_TO_BOTTOM) {
+                    params.leftToRightMoleculeLabelFontSize = 10;
+                } else {
+                    params.drawLabelPanel = false;
+                    params.drawMoleculeID = true;
+                    params.topToBottomMoleculeLabelFontSize = 10;
+                }
+                return new DirectRBLastReactionDrawer(params,
+                        new TopToBottomReactionLayout(),
+                        new TopToBottomAWTReactionLayout());
+            case LEFT_TO_RIGHT:
+                setHighlightedReactionParams(params);
+                params.drawArrowFilled = true;
+                params.leftToRightMoleculeLabelFontSize = 10;
+                params.highlightAlpha = 0.30f;
+                params.bondStrokeWidth = 2.0f;
+                break;
+            case LEFT_TO_RIGHT_HIGHLIGHTED:
+                setHighlightedReactionParams(params);
+                params.drawMoleculeID = true;
+                params.leftToRightMoleculeLabelFontSize = 10;
+                break;
+            case REACTION_CENTRE:
+            default:
+                params.leftToRightMoleculeLabelFontSize = 10;
+                params.drawMappings = false;
+                params.drawHighlights = true;
+                params.highlightsAbove = true;
+                params.drawAtomID = false;
+                params.drawMoleculeID = false;
+                params.drawLabelPanel = true;
+                params.drawAromaticCircles = true;
+                params.useCircularHighlight = false;
+                params.drawSubgraphBoxes = false;
+                params.drawBondStereoChanges = false;
+                params.drawBondFormedCleavedMarks = true;
+                params.drawBondOrderChangedMarks = true;
+                params.arrowGap = 30;
+                params.arrowLength = 60;
+                params.drawFatArrow = true;
+                params.drawArrowFilled = true;
+                params.borderY = 40;
+                params.drawRS = true;
+                break;
+        }
+        return new DirectRBLastReactionDrawer(params,
+                new LeftToRightReactionLayout(),
+                new LeftToRightAWTReactionLayout());
+    }
+
+    private static void setHighlightedReactionParams(Params params) {
+        params.drawMappings = false;
+        params.drawAtomID = false;
+        params.drawLonePairs = false;
+        params.drawSubgraphBoxes = false;
+        params.highlightSubgraphs = true;
+        params.drawSubgraphMappingLines = false;
+        params.highlightsBelow = false;
+        params.highlightsAbove = true;
+        params.drawAromaticCircles = true;
+        params.highlightAlpha = 0.25f;
+        params.drawRS = true;
+        params.labelYGap = 25;
+        params.borderY = 40;
+        params.arrowGap = 30;
+        params.arrowLength = 60;
+        params.drawFatArrow = true;
+    }
+}
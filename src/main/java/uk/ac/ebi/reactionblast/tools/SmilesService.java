@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import static java.util.logging.Level.SEVERE;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.openscience.cdk.CDKConstants.ATOM_ATOM_MAPPING;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.CanonSmiAdapter;
+import org.openscience.cdk.smiles.SmiFlavor;
+import org.openscience.cdk.smiles.SmilesGenerator;
+import org.openscience.cdk.tools.ILoggingTool;
+import static org.openscience.cdk.tools.LoggingToolFactory.createLoggingTool;
+import uk.ac.ebi.reactionblast.containers.BoundedConcurrentMap;
+import uk.ac.ebi.reactionblast.containers.MappingContext;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeDayLight;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.cloneWithIDs;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.removeHydrogensExceptSingleAndPreserveAtomID;
+
+/**
+ * Shared, thread-safe SMILES generation. Each thread keeps its own
+ * generators and the SMILES are cached (bounded) by the structure of the
+ * input graph in input order (see StructureKey). The input is only read; a
+ * copy is made for the hydrogen removal and aromatisation when the SMILES is
+ * not cached yet.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class SmilesService {
+
+    private static final Logger LOG = getLogger(SmilesService.class.getName());
+    private static final ILoggingTool logger
+            = createLoggingTool(SmilesService.class);
+
+    private static final int CANONICAL = -1;
+    private static final int GENERIC = -2;
+    private static final int GENERIC_AROMATIC = -3;
+    /*
+     * offset of the kinds generated with the explicit hydrogens kept
+     */
+    private static final int KEEP_H = 8;
+
+    private static final ThreadLocal<Map<Integer, SmilesGenerator>> GENERATORS
+            = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     *
+     * @return the SMILES service of the current mapping context
+     */
+    public static SmilesService getInstance() {
+        return MappingContext.getCurrent().getSmilesService();
+    }
+
+    /**
+     *
+     * @param flavour SmiFlavor bits
+     * @return generator of the calling thread
+     */
+    public static SmilesGenerator getGenerator(int flavour) {
+        return GENERATORS.get().computeIfAbsent(flavour, SmilesGenerator::new);
+    }
+
+    private final BoundedConcurrentMap<StructureKey, String> cache;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     *
+     * @param maxSize maximum number of cached SMILES
+     */
+    public SmilesService(int maxSize) {
+        this.cache = new BoundedConcurrentMap<>(maxSize);
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * Canonical SMILES (hydrogens removed, daylight aromaticity) as
+     * generated by CDKSMILES.
+     *
+     * @param mol
+     * @param removeAAM ignore the atom-atom mapping
+     * @return SMILES or NA
+     */
+    public String getCanonicalSMILES(IAtomContainer mol, boolean removeAAM) {
+        return getCanonicalSMILES(mol, true, removeAAM);
+    }
+
+    /**
+     * Canonical SMILES (daylight aromaticity)
+     *
+     * @param mol
+     * @param removeH remove the explicit hydrogens
+     * @param removeAAM ignore the atom-atom mapping
+     * @return SMILES or NA
+     */
+    public String getCanonicalSMILES(IAtomContainer mol, boolean removeH, boolean removeAAM) {
+        return get(mol, CANONICAL, removeH, removeAAM);
+    }
+
+    /**
+     * Generic SMILES (hydrogens removed)
+     *
+     * @param mol
+     * @param removeAAM ignore the atom-atom mapping
+     * @return SMILES or NA
+     */
+    public String getGenericSMILES(IAtomContainer mol, boolean removeAAM) {
+        return getGenericSMILES(mol, true, removeAAM);
+    }
+
+    /**
+     * Generic SMILES
+     *
+     * @param mol
+     * @param removeH remove the explicit hydrogens
+     * @param removeAAM ignore the atom-atom mapping
+     * @return SMILES or NA
+     */
+    public String getGenericSMILES(IAtomContainer mol, boolean removeH, boolean removeAAM) {
+        return get(mol, GENERIC, removeH, removeAAM);
+    }
+
+    /**
+     * Generic SMILES with aromatic symbols (hydrogens removed)
+     *
+     * @param mol
+     * @param removeAAM ignore the atom-atom mapping
+     * @return SMILES or NA
+     */
+    public String getGenericAromaticSMILES(IAtomContainer mol, boolean removeAAM) {
+        return getGenericAromaticSMILES(mol, true, removeAAM);
+    }
+
+    /**
+     * Generic SMILES with aromatic symbols
+     *
+     * @param mol
+     * @param removeH remove the explicit hydrogens
+     * @param removeAAM ignore the atom-atom mapping
+     * @return SMILES or NA
+     */
+    public String getGenericAromaticSMILES(IAtomContainer mol, boolean removeH, boolean removeAAM) {
+        return get(mol, GENERIC_AROMATIC, removeH, removeAAM);
+    }
+
+    /**
+     * SMILES of the molecule as is (no copy, no hydrogen removal) with the
+     * generator of the calling thread. Stereo and CX flavours are not cached
+     * as the key doesn't cover them.
+     *
+     * @param mol
+     * @param flavour SmiFlavor bits
+     * @return SMILES
+     * @throws CDKException
+     */
+    public String create(IAtomContainer mol, int flavour) throws CDKException {
+        if ((flavour & (SmiFlavor.Stereo | SmiFlavor.CxSmilesWithCoords)) != 0) {
+            return getGenerator(flavour).create(mol);
+        }
+        StructureKey key = new StructureKey(mol, flavour, (flavour & SmiFlavor.AtomAtomMap) == 0);
+        String smiles = cache.get(key);
+        if (smiles != null) {
+            hits.incrementAndGet();
+            return smiles;
+        }
+        misses.incrementAndGet();
+        smiles = getGenerator(flavour).create(mol);
+        cache.put(key, smiles);
+        return smiles;
+    }
+
+    private String get(IAtomContainer mol, int kind, boolean removeH, boolean removeAAM) {
+        StructureKey key = new StructureKey(mol, removeH ? kind : kind - KEEP_H, removeAAM);
+        String smiles = cache.get(key);
+        if (smiles != null) {
+            hits.incrementAndGet();
+            return smiles;
+        }
+        misses.incrementAndGet();
+        smiles = generate(mol, kind, removeH, removeAAM);
+        if (smiles != null) {
+            cache.put(key, smiles);
+            return smiles;
+        }
+        return "NA";
+    }
+
+    private String generate(IAtomContainer mol, int kind, boolean removeH, boolean removeAAM) {
+        IAtomContainer molecule;
+        try {
+            molecule = cloneWithIDs(mol);
+            if (removeH) {
+                molecule = removeHydrogensExceptSingleAndPreserveAtomID(molecule);
+            }
+        } catch (CloneNotSupportedException ex) {
+            LOG.log(SEVERE, null, ex);
+            return null;
+        }
+        if (removeAAM) {
+            for (IAtom a : molecule.atoms()) {
+                a.removeProperty(ATOM_ATOM_MAPPING);
+            }
+        }
+        if (molecule.getAtomCount() == 0) {
+            return "NA";
+        }
+        try {
+            switch (kind) {
+                case CANONICAL:
+                    aromatizeDayLight(molecule);
+                    return CanonSmiAdapter.create(molecule);
+                case GENERIC:
+                    return getGenerator(SmiFlavor.Generic).create(molecule);
+                default:
+                    return getGenerator(SmiFlavor.UseAromaticSymbols).create(molecule);
+            }
+        } catch (CDKException ex) {
+            logger.error("ERROR : in generating CDK SMILES" + molecule.getID());
+        } catch (IOException ex) {
+            LOG.log(SEVERE, null, ex);
+        }
+        return null;
+    }
+
+    /**
+     * @return number of SMILES served from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of SMILES generated
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of cached SMILES
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Empty the cache
+     */
+    public void clear() {
+        cache.clear();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import static org.openscience.cdk.CDKConstants.ATOM_ATOM_MAPPING;
+import static org.openscience.cdk.CDKConstants.ISAROMATIC;
+import static org.openscience.cdk.CDKConstants.ISINRING;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+/**
+ * Exact key of a molecule graph in input order: symbol, atomic number,
+ * charge, implicit hydrogens, mass, aromatic and ring flags and (optionally)
+ * atom-atom mapping of the atoms, and the order, flags and stereo of the
+ * bonds between them. Two molecules with equal keys give the same SMILES and
+ * signatures; the hash is computed once.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public final class StructureKey {
+
+    private static final Logger LOG = getLogger(StructureKey.class.getName());
+
+    private final int[] graph;
+    private final String symbols;
+    private final int hash;
+
+    /**
+     *
+     * @param mol
+     * @param kind what the key is used for (e.g. a SMILES flavour)
+     * @param removeAAM ignore the atom-atom mapping
+     */
+    public StructureKey(IAtomContainer mol, int kind, boolean removeAAM) {
+        int atomCount = mol.getAtomCount();
+        int bondCount = mol.getBondCount();
+        this.graph = new int[3 + 6 * atomCount + 5 * bondCount];
+        Map<IAtom, Integer> index = new IdentityHashMap<>(atomCount);
+        StringBuilder sb = new StringBuilder(2 * atomCount);
+        int k = 0;
+        graph[k++] = kind;
+        graph[k++] = atomCount;
+        graph[k++] = bondCount;
+        for (int i = 0; i < atomCount; i++) {
+            IAtom a = mol.getAtom(i);
+            index.put(a, i);
+            sb.append(a.getSymbol()).append(',');
+            graph[k++] = value(a.getAtomicNumber(), -1);
+            graph[k++] = value(a.getFormalCharge(), 0);
+            graph[k++] = value(a.getImplicitHydrogenCount(), -1);
+            graph[k++] = value(a.getMassNumber(), -1);
+            graph[k++] = (a.getFlag(ISAROMATIC) ? 1 : 0) | (a.getFlag(ISINRING) ? 2 : 0);
+            Object aam = removeAAM ? null : a.getProperty(ATOM_ATOM_MAPPING);
+            graph[k++] = aam instanceof Integer ? (Integer) aam : 0;
+        }
+        for (IBond b : mol.bonds()) {
+            graph[k++] = value(index.get(b.getAtom(0)), -1);
+            graph[k++] = value(index.get(b.getAtom(1)), -1);
+            graph[k++] = b.getOrder() == null ? -1 : b.getOrder().ordinal();
+            graph[k++] = (b.getFlag(ISAROMATIC) ? 1 : 0) | (b.getFlag(ISINRING) ? 2 : 0);
+            graph[k++] = b.getStereo() == null ? -1 : b.getStereo().ordinal();
+        }
+        this.symbols = sb.toString();
+        this.hash = 31 * Arrays.hashCode(graph) + symbols.hashCode();
+    }
+
+    private static int value(Integer v, int unset) {
+        return v == null ? unset : v;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof StructureKey)) {
+            return false;
+        }
+        StructureKey other = (StructureKey) obj;
+        return hash == other.hash
+                && Arrays.equals(graph, other.graph)
+                && symbols.equals(other.symbols);
+    }
+}
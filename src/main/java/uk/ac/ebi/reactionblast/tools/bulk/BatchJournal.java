@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools.bulk;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import static java.util.logging.Level.WARNING;
+import static java.util.logging.Logger.getLogger;
+
+/**
+ * Durable, append-only progress journal of a batch run. Each line is either a
+ * completed record (id, output segment, byte offset and length in the segment)
+ * or a failed record (id and reason). Lines are only appended and forced to
+ * disk; a torn last line (crash during a write) is dropped when the journal is
+ * re-opened.
+ *
+ * <pre>
+ * D	id	segment	offset	length
+ * F	id	reason
+ * </pre>
+ *
+ * A later 'D' for an id supersedes an earlier 'F' (a successful retry).
+ *
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class BatchJournal implements Closeable {
+
+    private static final Logger LOG = getLogger(BatchJournal.class.getName());
+
+    /**
+     * Journal file name in the output directory
+     */
+    public static final String FILE_NAME = "journal.log";
+
+    /**
+     * Retry list file name in the output directory
+     */
+    public static final String RETRY_FILE_NAME = "retry.txt";
+
+    private final File directory;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final Map<String, Entry> completed;
+    private final Map<String, String> failed;
+
+    /**
+     * Open (or create) the journal in the output directory and replay it.
+     *
+     * @param directory output directory of the batch run
+     * @throws IOException
+     */
+    public BatchJournal(File directory) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        this.directory = directory;
+        this.completed = new LinkedHashMap<>();
+        this.failed = new LinkedHashMap<>();
+        this.file = new RandomAccessFile(new File(directory, FILE_NAME), "rw");
+        this.channel = file.getChannel();
+        replay();
+    }
+
+    private void replay() throws IOException {
+        long size = channel.size();
+        byte[] bytes = new byte[(int) size];
+        file.seek(0);
+        file.readFully(bytes);
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') {
+            end--;
+        }
+        if (end < bytes.length) {
+            LOG.log(WARNING, "Dropping incomplete journal entry ({0} bytes)", bytes.length - end);
+            channel.truncate(end);
+            channel.force(true);
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(bytes, 0, end), UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length == 5 && fields[0].equals("D")) {
+                    completed.put(fields[1], new Entry(fields[1], fields[2],
+                            Long.parseLong(fields[3]), Long.parseLong(fields[4])));
+                    failed.remove(fields[1]);
+                } else if (fields.length >= 2 && fields[0].equals("F")) {
+                    if (!completed.containsKey(fields[1])) {
+                        failed.put(fields[1], fields.length > 2 ? fields[2] : "");
+                    }
+                } else if (!line.isEmpty()) {
+                    LOG.log(WARNING, "Ignoring malformed journal entry: {0}", line);
+                }
+            }
+        }
+        channel.position(end);
+    }
+
+    /**
+     *
+     * @param id
+     * @return true if the record has been written to a committed segment
+     */
+    public synchronized boolean isCompleted(String id) {
+        return completed.containsKey(id);
+    }
+
+    /**
+     *
+     * @param id
+     * @return true if the record failed (or timed out) and was not retried
+     * successfully
+     */
+    public synchronized boolean isFailed(String id) {
+        return failed.containsKey(id);
+    }
+
+    /**
+     *
+     * @return completed records, in journal order
+     */
+    public synchronized List<Entry> getCompleted() {
+        return new ArrayList<>(completed.values());
+    }
+
+    /**
+     *
+     * @return id and reason of the records to retry
+     */
+    public synchronized Map<String, String> getRetryList() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(failed));
+    }
+
+    /**
+     * Journal the records of a segment which has been atomically committed.
+     *
+     * @param entries
+     * @throws IOException
+     */
+    public synchronized void completed(List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Entry e : entries) {
+            sb.append("D\t").append(e.getId()).append('\t').append(e.getSegment())
+                    .append('\t').append(e.getOffset()).append('\t').append(e.getLength()).append('\n');
+        }
+        append(sb.toString());
+        for (Entry e : entries) {
+            completed.put(e.getId(), e);
+            failed.remove(e.getId());
+        }
+    }
+
+    /**
+     * Journal a failed (or timed out) record
+     *
+     * @param id
+     * @param reason
+     * @throws IOException
+     */
+    public synchronized void failed(String id, String reason) throws IOException {
+        String cleaned = reason == null ? "" : reason.replaceAll("\\s+", " ").trim();
+        append("F\t" + id + "\t" + cleaned + "\n");
+        failed.put(id, cleaned);
+    }
+
+    private void append(String lines) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(lines.getBytes(UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Write the retry list (id TAB reason) next to the journal.
+     *
+     * @return retry list file
+     * @throws IOException
+     */
+    public synchronized File writeRetryList() throws IOException {
+        File retry = new File(directory, RETRY_FILE_NAME);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(retry), UTF_8)) {
+            for (Map.Entry<String, String> e : failed.entrySet()) {
+                writer.write(e.getKey() + "\t" + e.getValue() + "\n");
+            }
+        }
+        return retry;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.force(true);
+        file.close();
+    }
+
+    /**
+     * Location of a completed record in the output segments.
+     */
+    public static class Entry {
+
+        private final String id;
+        private final String segment;
+        private final long offset;
+        private final long length;
+
+        /**
+         *
+         * @param id record id
+         * @param segment segment file name
+         * @param offset byte offset of the record in the segment
+         * @param length byte length of the record
+         */
+        public Entry(String id, String segment, long offset, long length) {
+            this.id = id;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * @return the id
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the segment
+         */
+        public String getSegment() {
+            return segment;
+        }
+
+        /**
+         * @return the offset
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return the length
+         */
+        public long getLength() {
+            return length;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools.bulk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import java.util.concurrent.Future;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import java.util.concurrent.TimeoutException;
+import static java.util.logging.Level.INFO;
+import static java.util.logging.Level.WARNING;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+import org.openscience.cdk.interfaces.IReaction;
+import uk.ac.ebi.reactionblast.interfaces.IDataSource;
+import uk.ac.ebi.reactionblast.interfaces.IDataStore;
+import uk.ac.ebi.reactionblast.interfaces.ITransformation;
+import uk.ac.ebi.reactionblast.io.stream.ReactionRecord;
+
+/**
+ * Transforms the reactions of a data source, journaling the progress so that
+ * an interrupted run can be resumed. Reactions already in the journal
+ * (completed or failed) are skipped; failed and timed out reactions form the
+ * retry list which can be re-run on its own, e.g. with a larger time budget.
+ *
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class CheckpointedBulkTransformer {
+
+    private static final Logger LOG = getLogger(CheckpointedBulkTransformer.class.getName());
+
+    /**
+     * Which reactions of the data source to process.
+     */
+    public enum Mode {
+
+        /**
+         * All reactions, ignoring the journal (a fresh run)
+         */
+        ALL,
+        /**
+         * Skip the reactions already in the journal
+         */
+        RESUME,
+        /**
+         * Only the reactions of the retry list
+         */
+        RETRY
+    }
+
+    private final ITransformation<IReaction> transformation;
+    private final long timeout;
+    private int processed;
+    private int skipped;
+    private int failures;
+    private ExecutorService executor;
+
+    /**
+     *
+     * @param transformation reaction transformation (e.g. mapping)
+     * @param timeout time budget per reaction in seconds (<= 0: unlimited)
+     */
+    public CheckpointedBulkTransformer(ITransformation<IReaction> transformation, long timeout) {
+        this.transformation = transformation;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Transform the reactions of the data source.
+     *
+     * @param dataSource
+     * @param dataStore
+     * @param journal
+     * @param mode
+     * @throws IOException if the journal can't be written
+     */
+    public void transform(IDataSource<IReaction> dataSource, IDataStore<IReaction> dataStore,
+            BatchJournal journal, Mode mode) throws IOException {
+        List<String> ids;
+        if (mode == Mode.RETRY) {
+            ids = new ArrayList<>(journal.getRetryList().keySet());
+        } else {
+            ids = dataSource.getIDList();
+        }
+        start();
+        try {
+            for (String id : ids) {
+                if (mode == Mode.RESUME && (journal.isCompleted(id) || journal.isFailed(id))) {
+                    skipped++;
+                    continue;
+                }
+                processed++;
+                IReaction reaction = dataSource.get(id);
+                if (reaction == null) {
+                    failures++;
+                    journal.failed(id, "error: unable to read");
+                    continue;
+                }
+                if (!transform(id, reaction, dataStore, journal)) {
+                    return;
+                }
+            }
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Transform the records of a multi-record input as they are read.
+     * Unreadable records are journaled as failed, so they are on the retry
+     * list.
+     *
+     * @param records lazily read records
+     * @param dataStore
+     * @param journal
+     * @param mode
+     * @throws IOException if the journal can't be written
+     */
+    public void transform(Iterator<ReactionRecord> records, IDataStore<IReaction> dataStore,
+            BatchJournal journal, Mode mode) throws IOException {
+        Set<String> retry = mode == Mode.RETRY ? journal.getRetryList().keySet() : null;
+        start();
+        try {
+            while (records.hasNext()) {
+                ReactionRecord record = records.next();
+                String id = record.getId();
+                if ((mode == Mode.RESUME && (journal.isCompleted(id) || journal.isFailed(id)))
+                        || (retry != null && !retry.contains(id))) {
+                    skipped++;
+                    continue;
+                }
+                processed++;
+                if (record.isError()) {
+                    failures++;
+                    journal.failed(id, "error: " + record.getError().getMessage());
+                    continue;
+                }
+                if (!transform(id, record.getReaction(), dataStore, journal)) {
+                    return;
+                }
+            }
+        } finally {
+            shutdown();
+        }
+    }
+
+    /*
+     * Returns false if interrupted
+     */
+    private boolean transform(String id, IReaction reaction, IDataStore<IReaction> dataStore,
+            BatchJournal journal) throws IOException {
+        reaction.setID(id);
+        IReaction transformed;
+        String error = "transformation failed";
+        if (executor == null) {
+            try {
+                transformed = transformation.transform(reaction);
+            } catch (RuntimeException ex) {
+                LOG.log(WARNING, "Unable to transform reaction " + id, ex);
+                transformed = null;
+                error = describe(ex);
+            }
+        } else {
+            Future<IReaction> future = executor.submit(() -> transformation.transform(reaction));
+            try {
+                transformed = future.get(timeout, SECONDS);
+            } catch (TimeoutException ex) {
+                future.cancel(true);
+                /*
+                 * The transformation may ignore the interrupt, don't
+                 * wait for it
+                 */
+                executor.shutdownNow();
+                executor = newSingleThreadExecutor();
+                failures++;
+                journal.failed(id, "timeout: " + timeout + "s");
+                LOG.log(WARNING, "Timeout for reaction {0}", id);
+                return true;
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+                LOG.log(WARNING, "Unable to transform reaction " + id, cause);
+                transformed = null;
+                error = describe(cause);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        if (transformed == null) {
+            failures++;
+            journal.failed(id, "error: " + error);
+            return true;
+        }
+        transformed.setID(id);
+        try {
+            dataStore.store(transformed);
+        } catch (IllegalStateException ex) {
+            LOG.log(WARNING, "Unable to store reaction " + id, ex);
+            failures++;
+            journal.failed(id, "store: " + describe(ex.getCause() == null ? ex : ex.getCause()));
+        }
+        return true;
+    }
+
+    private static String describe(Throwable t) {
+        return t.getMessage() == null ? t.getClass().getName()
+                : t.getClass().getSimpleName() + ": " + t.getMessage();
+    }
+
+    private void start() {
+        processed = 0;
+        skipped = 0;
+        failures = 0;
+        executor = timeout > 0 ? newSingleThreadExecutor() : null;
+    }
+
+    private void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        LOG.log(INFO, "Processed {0}, skipped {1}, failed {2}",
+                new Object[]{processed, skipped, failures});
+    }
+
+    /**
+     * @return number of reactions processed by the last run
+     */
+    public int getProcessed() {
+        return processed;
+    }
+
+    /**
+     * @return number of reactions skipped (already in the journal)
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return number of failed or timed out reactions
+     */
+    public int getFailures() {
+        return failures;
+    }
+}
@@ -19,13 +19,18 @@
 
 package uk.ac.ebi.reactionblast.tools.bulk;
 
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.logging.Logger;
 import static java.util.logging.Logger.getLogger;
 import org.openscience.cdk.interfaces.IReaction;
 import org.openscience.cdk.tools.ILoggingTool;
 import static org.openscience.cdk.tools.LoggingToolFactory.createLoggingTool;
+import uk.ac.ebi.reactionblast.fingerprints.interfaces.IPatternFingerprinter;
 import uk.ac.ebi.reactionblast.interfaces.ITransformation;
 import static uk.ac.ebi.reactionblast.interfaces.ITransformation.TargetType.REACTION;
+import static uk.ac.ebi.reactionblast.io.binary.BinaryReactionFormat.FINGERPRINTS;
+import uk.ac.ebi.reactionblast.mechanism.BondChangeCalculator;
 import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
 import uk.ac.ebi.reactionblast.tools.StandardizeReaction;
 
@@ -62,7 +67,19 @@ private final static ILoggingTool logger
                     new ReactionMechanismTool(
                             reaction, forcedMapping, generate2D, generate3D,
                             new StandardizeReaction());
-            return rmt.getSelectedSolution().getBondChangeCalculator().getReactionWithCompressUnChangedHydrogens();
+            BondChangeCalculator bcc = rmt.getSelectedSolution().getBondChangeCalculator();
+            IReaction mapped = bcc.getReactionWithCompressUnChangedHydrogens();
+            /*
+             * The bond change fingerprints travel with the reaction (e.g. to
+             * a binary store)
+             */
+            Map<String, IPatternFingerprinter> fingerprints = new TreeMap<>();
+            fingerprints.put("formed_cleaved", bcc.getFormedCleavedWFingerprint());
+            fingerprints.put("order_changed", bcc.getOrderChangesWFingerprint());
+            fingerprints.put("stereo_changed", bcc.getStereoChangesWFingerprint());
+            fingerprints.put("reaction_centre", bcc.getReactionCenterWFingerprint());
+            mapped.setProperty(FINGERPRINTS, fingerprints);
+            return mapped;
         } catch (Exception e) {
             logger.error(e);
             return null;
@@ -30,8 +30,9 @@ import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
-import static org.openscience.cdk.smiles.SmilesGenerator.unique;
+import org.openscience.cdk.smiles.SmiFlavor;
 import static org.openscience.cdk.tools.manipulator.AtomContainerManipulator.getBondArray;
+import static uk.ac.ebi.reactionblast.tools.SmilesService.getGenerator;
 
 /**
  * Canonically labels (permutes) an atom container according to the SMILES
@@ -85,7 +86,7 @@ public class SmilesMoleculeLabeller implements ICanonicalMoleculeLabeller {
     public int[] getCanonicalPermutation(IAtomContainer container) {
         int[] p = new int[container.getAtomCount()];
         try {
-            unique().create(container, p);
+            getGenerator(SmiFlavor.Unique).create(container, p);
         } catch (CDKException ex) {
             getLogger(SmilesMoleculeLabeller.class.getName()).log(SEVERE, null, ex);
         }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools.metrics;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe monotonic counter.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class Counter implements Serializable {
+
+    private static final long serialVersionUID = 0x5c0e7a1d2b3f4L;
+    private final LongAdder count;
+
+    /**
+     *
+     */
+    public Counter() {
+        this.count = new LongAdder();
+    }
+
+    /**
+     *
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     *
+     * @param n
+     */
+    public void increment(long n) {
+        count.add(n);
+    }
+
+    /**
+     *
+     * @return current count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    void merge(Counter other) {
+        count.add(other.getCount());
+    }
+
+    void reset() {
+        count.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(getCount());
+    }
+}
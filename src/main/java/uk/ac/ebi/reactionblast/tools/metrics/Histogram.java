@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools.metrics;
+
+import java.io.Serializable;
+import static java.lang.Long.numberOfLeadingZeros;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram with power of two buckets. Bucket <i>i</i> holds the
+ * values in [2^(i-1), 2^i), bucket 0 holds zero and negative values. The
+ * quantiles are therefore approximate (upper bound of the bucket) but the
+ * memory used is constant irrespective of the number of recorded values.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class Histogram implements Serializable {
+
+    private static final long serialVersionUID = 0x1a2b3c4d5e6f7L;
+    private static final int BUCKETS = 64;
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final AtomicLong min;
+    private final AtomicLong max;
+
+    /**
+     *
+     */
+    public Histogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.min = new AtomicLong(Long.MAX_VALUE);
+        this.max = new AtomicLong(Long.MIN_VALUE);
+    }
+
+    /**
+     *
+     * @param value
+     */
+    public void update(long value) {
+        buckets.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        min.accumulateAndGet(value, (a, b) -> min(a, b));
+        max.accumulateAndGet(value, (a, b) -> max(a, b));
+    }
+
+    private static int bucket(long value) {
+        if (value <= 0) {
+            return 0;
+        }
+        return min(BUCKETS - 1, 64 - numberOfLeadingZeros(value));
+    }
+
+    /**
+     *
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     *
+     * @return sum of recorded values
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     *
+     * @return smallest recorded value, 0 if empty
+     */
+    public long getMin() {
+        return getCount() == 0 ? 0 : min.get();
+    }
+
+    /**
+     *
+     * @return largest recorded value, 0 if empty
+     */
+    public long getMax() {
+        return getCount() == 0 ? 0 : max.get();
+    }
+
+    /**
+     *
+     * @return arithmetic mean, 0 if empty
+     */
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0. : (double) getSum() / n;
+    }
+
+    /**
+     * Approximate quantile, reported as the upper bound of the bucket in
+     * which the quantile falls (clamped to the observed maximum).
+     *
+     * @param q quantile in [0,1]
+     * @return approximate value at quantile q
+     */
+    public long getQuantile(double q) {
+        long n = getCount();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(q * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) {
+                long upper = i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+                return min(upper, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    void merge(Histogram other) {
+        if (other.getCount() == 0) {
+            return;
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            long v = other.buckets.get(i);
+            if (v != 0) {
+                buckets.addAndGet(i, v);
+            }
+        }
+        count.add(other.getCount());
+        sum.add(other.getSum());
+        long otherMin = other.getMin();
+        long otherMax = other.getMax();
+        min.accumulateAndGet(otherMin, (a, b) -> min(a, b));
+        max.accumulateAndGet(otherMax, (a, b) -> max(a, b));
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+    }
+}
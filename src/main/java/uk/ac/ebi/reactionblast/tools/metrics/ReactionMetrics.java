@@ -0,0 +1,406 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools.metrics;
+
+import java.io.Serializable;
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+import static java.util.logging.Logger.getLogger;
+
+/**
+ * Per reaction instrumentation: named timers, counters and histograms
+ * recorded at the stage boundaries of the mapping pipeline. Instances are
+ * thread safe and cheap enough to be always on. Every finished reaction is
+ * merged into the JVM wide aggregate ({@link #getAggregate()}) so batch runs
+ * can report totals across reactions.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class ReactionMetrics implements Serializable {
+
+    private static final long serialVersionUID = 0x3e2d1c0b9a8f7L;
+    private static final Logger LOG = getLogger(ReactionMetrics.class.getName());
+
+    /*
+     * Timers
+     */
+    /**
+     * Complete mechanism (mapping, bond changes and selection)
+     */
+    public static final String TOTAL = "total";
+    /**
+     * Reaction standardization before mapping
+     */
+    public static final String STANDARDIZE = "standardize";
+    /**
+     * All mapping algorithms (wall clock)
+     */
+    public static final String MAPPING = "mapping";
+    /**
+     * Prefix for the per algorithm mapping time, suffixed by the algorithm
+     */
+    public static final String MAPPING_ALGORITHM = "mapping.";
+    /**
+     * One round of graph matching (all the MCS jobs of a matrix update)
+     */
+    public static final String GRAPH_MATCHING = "graphmatching";
+    /**
+     * MCS of one educt/product pair
+     */
+    public static final String MCS_PAIR = "mcs.pair";
+    /**
+     * Bond change calculation of one mapping solution
+     */
+    public static final String BOND_CHANGES = "bondchanges";
+    /**
+     * 2D chirality perception of one mapping solution
+     */
+    public static final String CHIRALITY = "chirality";
+    /**
+     * Reaction centre fingerprints of one mapping solution
+     */
+    public static final String FINGERPRINT = "fingerprint";
+    /**
+     * Image generation
+     */
+    public static final String IMAGE = "image";
+
+    /*
+     * Counters
+     */
+    /**
+     * Number of score matrix updates (game theory iterations)
+     */
+    public static final String GAME_THEORY_ITERATIONS = "gametheory.iterations";
+    /**
+     * Reactions mapped by the global model only (transport and stereo
+     * isomerase reactions)
+     */
+    public static final String MAPPING_SHORTCUT = "mapping.shortcut";
+    /**
+     * Educt/product pairs marked for matching
+     */
+    public static final String MCS_PAIRS_CANDIDATE = "mcs.pairs.candidate";
+    /**
+     * Educt/product pairs actually submitted for matching
+     */
+    public static final String MCS_PAIRS_SCHEDULED = "mcs.pairs.scheduled";
+    /**
+     * Educt/product pairs not matched as their MCS can't win the round
+     */
+    public static final String MCS_PAIRS_DEFERRED = "mcs.pairs.deferred";
+    /**
+     * Educt/product pairs of molecule copies (e.g. stoichiometry) which got
+     * the MCS of the first copy instead of a job of their own
+     */
+    public static final String MCS_PAIRS_REPLICATED = "mcs.pairs.replicated";
+    /**
+     * Pairs resolved by substructure search
+     */
+    public static final String MCS_SUBSTRUCTURE = "mcs.substructure";
+    /**
+     * Pairs that required a full MCS
+     */
+    public static final String MCS_FULL = "mcs.full";
+    /**
+     * Mapping solutions evaluated
+     */
+    public static final String SOLUTIONS = "solutions";
+    /**
+     * Reactions processed
+     */
+    public static final String REACTIONS = "reactions";
+
+    /*
+     * Histograms
+     */
+    /**
+     * Size of the MCS found for a pair (atoms)
+     */
+    public static final String MCS_SIZE = "mcs.size";
+
+    private static final ReactionMetrics AGGREGATE = new ReactionMetrics("aggregate");
+
+    /**
+     * JVM wide metrics, every reaction processed by the
+     * ReactionMechanismTool is merged in here.
+     *
+     * @return aggregated metrics
+     */
+    public static ReactionMetrics getAggregate() {
+        return AGGREGATE;
+    }
+
+    private final String id;
+    private final ConcurrentMap<String, Timer> timers;
+    private final ConcurrentMap<String, Counter> counters;
+    private final ConcurrentMap<String, Histogram> histograms;
+
+    /**
+     *
+     * @param id reaction ID (or any label)
+     */
+    public ReactionMetrics(String id) {
+        this.id = id;
+        this.timers = new ConcurrentHashMap<>();
+        this.counters = new ConcurrentHashMap<>();
+        this.histograms = new ConcurrentHashMap<>();
+    }
+
+    /**
+     *
+     * @return ID
+     */
+    public String getID() {
+        return id;
+    }
+
+    /**
+     *
+     * @param name
+     * @return named timer, created on first use
+     */
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, (k) -> new Timer());
+    }
+
+    /**
+     *
+     * @param name
+     * @return named counter, created on first use
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, (k) -> new Counter());
+    }
+
+    /**
+     *
+     * @param name
+     * @return named histogram, created on first use
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, (k) -> new Histogram());
+    }
+
+    /**
+     * Start timing a stage; stop the returned context at the end of it.
+     *
+     * @param name
+     * @return running timer context
+     */
+    public Timer.Context time(String name) {
+        return timer(name).time();
+    }
+
+    /**
+     *
+     * @param name
+     * @param nanos
+     */
+    public void record(String name, long nanos) {
+        timer(name).record(nanos);
+    }
+
+    /**
+     *
+     * @param name
+     */
+    public void increment(String name) {
+        counter(name).increment();
+    }
+
+    /**
+     *
+     * @param name
+     * @param n
+     */
+    public void increment(String name, long n) {
+        counter(name).increment(n);
+    }
+
+    /**
+     *
+     * @param name
+     * @param value
+     */
+    public void update(String name, long value) {
+        histogram(name).update(value);
+    }
+
+    /**
+     * Add all the recorded values of other to this instance.
+     *
+     * @param other
+     */
+    public void merge(ReactionMetrics other) {
+        if (other == null || other == this) {
+            return;
+        }
+        other.timers.forEach((k, v) -> timer(k).merge(v));
+        other.counters.forEach((k, v) -> counter(k).merge(v));
+        other.histograms.forEach((k, v) -> histogram(k).merge(v));
+    }
+
+    /**
+     * Reset all the recorded values (names are retained).
+     */
+    public void reset() {
+        timers.values().forEach((t) -> t.reset());
+        counters.values().forEach((c) -> c.reset());
+        histograms.values().forEach((h) -> h.reset());
+    }
+
+    /**
+     *
+     * @return read only snapshot of the timers (sorted by name)
+     */
+    public Map<String, Timer> getTimers() {
+        return new TreeMap<>(timers);
+    }
+
+    /**
+     *
+     * @return read only snapshot of the counters (sorted by name)
+     */
+    public Map<String, Counter> getCounters() {
+        return new TreeMap<>(counters);
+    }
+
+    /**
+     *
+     * @return read only snapshot of the histograms (sorted by name)
+     */
+    public Map<String, Histogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    /**
+     * JSON representation, times are reported in milliseconds.
+     *
+     * <pre>
+     * {"id":"R1","timers":{"mcs.pair":{"count":4,"total_ms":..,"mean_ms":..,
+     *  "p50_ms":..,"p95_ms":..,"max_ms":..}},"counters":{..},
+     *  "histograms":{"mcs.size":{"count":..,"mean":..,"min":..,"p50":..,
+     *  "p95":..,"max":..}}}
+     * </pre>
+     *
+     * @return JSON object
+     */
+    public String toJSON() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"id\":").append(quote(id));
+        sb.append(",\"timers\":{");
+        boolean first = true;
+        for (Map.Entry<String, Timer> e : getTimers().entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            Histogram h = e.getValue().getHistogram();
+            sb.append(quote(e.getKey())).append(":{")
+                    .append("\"count\":").append(h.getCount())
+                    .append(",\"total_ms\":").append(millis(h.getSum()))
+                    .append(",\"mean_ms\":").append(millis(h.getMean()))
+                    .append(",\"p50_ms\":").append(millis(h.getQuantile(0.5)))
+                    .append(",\"p95_ms\":").append(millis(h.getQuantile(0.95)))
+                    .append(",\"max_ms\":").append(millis(h.getMax()))
+                    .append('}');
+        }
+        sb.append("},\"counters\":{");
+        first = true;
+        for (Map.Entry<String, Counter> e : getCounters().entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append(quote(e.getKey())).append(':').append(e.getValue().getCount());
+        }
+        sb.append("},\"histograms\":{");
+        first = true;
+        for (Map.Entry<String, Histogram> e : getHistograms().entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            Histogram h = e.getValue();
+            sb.append(quote(e.getKey())).append(":{")
+                    .append("\"count\":").append(h.getCount())
+                    .append(",\"mean\":").append(format(ENGLISH, "%.3f", h.getMean()))
+                    .append(",\"min\":").append(h.getMin())
+                    .append(",\"p50\":").append(h.getQuantile(0.5))
+                    .append(",\"p95\":").append(h.getQuantile(0.95))
+                    .append(",\"max\":").append(h.getMax())
+                    .append('}');
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    private static String millis(double nanos) {
+        return format(ENGLISH, "%.3f", nanos / 1.0e6);
+    }
+
+    static String quote(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "ReactionMetrics{" + "id=" + id + ", timers=" + timers.keySet()
+                + ", counters=" + getCounters() + '}';
+    }
+}
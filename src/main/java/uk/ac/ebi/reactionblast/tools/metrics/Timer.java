@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad @ ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools.metrics;
+
+import java.io.Serializable;
+import static java.lang.System.nanoTime;
+
+/**
+ * Records durations (in nanoseconds) of a stage. Every recorded duration is
+ * kept in a {@link Histogram} so that count, total, mean, max and quantiles
+ * are available without storing the individual samples.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class Timer implements Serializable {
+
+    private static final long serialVersionUID = 0x7f6e5d4c3b2a1L;
+    private final Histogram durations;
+
+    /**
+     *
+     */
+    public Timer() {
+        this.durations = new Histogram();
+    }
+
+    /**
+     *
+     * @param nanos elapsed time in nanoseconds
+     */
+    public void record(long nanos) {
+        durations.update(nanos);
+    }
+
+    /**
+     * Start timing, the elapsed time is recorded when the context is stopped.
+     *
+     * @return context to be closed at the end of the stage
+     */
+    public Context time() {
+        return new Context(this);
+    }
+
+    /**
+     *
+     * @return number of recorded durations
+     */
+    public long getCount() {
+        return durations.getCount();
+    }
+
+    /**
+     *
+     * @return total time in nanoseconds
+     */
+    public long getTotalTime() {
+        return durations.getSum();
+    }
+
+    /**
+     *
+     * @return durations histogram
+     */
+    public Histogram getHistogram() {
+        return durations;
+    }
+
+    void merge(Timer other) {
+        durations.merge(other.durations);
+    }
+
+    void reset() {
+        durations.reset();
+    }
+
+    /**
+     * Running stage timing, stop it in a finally block.
+     */
+    public static class Context implements AutoCloseable {
+
+        private final Timer timer;
+        private final long start;
+        private boolean stopped;
+
+        Context(Timer timer) {
+            this.timer = timer;
+            this.start = nanoTime();
+            this.stopped = false;
+        }
+
+        /**
+         *
+         * @return elapsed time in nanoseconds
+         */
+        public long stop() {
+            long elapsed = nanoTime() - start;
+            if (!stopped) {
+                stopped = true;
+                timer.record(elapsed);
+            }
+            return elapsed;
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+}
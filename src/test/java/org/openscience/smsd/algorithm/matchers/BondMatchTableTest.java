@@ -0,0 +1,171 @@
+/* Copyright (C) 2009-2017  Syed Asad Rahman <asad@ebi.ac.uk>
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ * All we ask is that proper credit is given for our work, which includes
+ * - but is not limited to - adding the above copyright notice to the beginning
+ * of your source code files, and to any copyright notice that you may distribute
+ * with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package org.openscience.smsd.algorithm.matchers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.silent.Reaction;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+import static org.openscience.smsd.helper.MoleculeInitializer.initializeMolecule;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeMolecule;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
+import uk.ac.ebi.reactionblast.tools.rxnfile.MDLRXNV2000Reader;
+
+/**
+ * The compiled bond matcher must give the same answer as the default
+ * matchers for every bond pair of the molecules of the test reactions.
+ *
+ * @author Syed Asad Rahman <asad@ebi.ac.uk>
+ */
+public class BondMatchTableTest {
+
+    private static final String[] CORPORA = {"brenda", "bug", "kegg", "macie", "other", "rhea"};
+    /*
+     * reactions taken from each corpus
+     */
+    private static final int MAX_REACTIONS = 20;
+    /*
+     * Aromatic and Kekule rings, charged atoms and zwitterions, tetrahedral
+     * and double bond stereo, isotopes, triple bonds
+     */
+    private static final String[] MOLECULES = {
+        "c1ccccc1", "C1=CC=CC=C1", "c1ccncc1", "c1cc[nH]c1", "c1ccc2[nH]ccc2c1", "o1cccc1",
+        "CC(=O)[O-]", "CC(=O)O", "C[NH3+]", "CN", "[NH3+][C@@H](C)C([O-])=O", "N[C@H](C)C(O)=O",
+        "[O-][N+](=O)c1ccccc1", "OP([O-])([O-])=O", "C[S+](C)CC[C@H](N)C(O)=O",
+        "F/C=C/F", "F/C=C\\F", "C/C=C/C(=O)O", "[13CH3]C(=O)O", "C#N", "CC#CC", "C1CCCCC1",
+        "OC[C@H]1O[C@@H](O)[C@H](O)[C@@H](O)[C@@H]1O"
+    };
+
+    @Test
+    public void testEquivalence() throws Exception {
+        int pairs = 0;
+        for (String corpus : CORPORA) {
+            URL url = getClass().getResource("/rxn/" + corpus);
+            if (url == null) {
+                continue;
+            }
+            File[] files = new File(url.toURI()).listFiles((dir, name) -> name.endsWith(".rxn"));
+            Arrays.sort(files);
+            int step = Math.max(1, files.length / MAX_REACTIONS);
+            for (int k = 0; k < files.length; k += step) {
+                List<IAtomContainer> molecules = readMolecules(files[k]);
+                for (IAtomContainer query : molecules) {
+                    for (IAtomContainer target : molecules) {
+                        compare(files[k].getName(), query, target);
+                        pairs++;
+                    }
+                }
+            }
+        }
+        assertTrue(pairs > 0);
+    }
+
+    @Test
+    public void testEquivalenceAcrossMolecules() throws Exception {
+        SmilesParser sp = new SmilesParser(SilentChemObjectBuilder.getInstance());
+        List<IAtomContainer> molecules = new ArrayList<>();
+        for (String smiles : MOLECULES) {
+            IAtomContainer ac = sp.parseSmiles(smiles);
+            percieveAtomTypesAndConfigureAtoms(ac);
+            aromatizeMolecule(ac);
+            initializeMolecule(ac);
+            molecules.add(ac);
+        }
+        for (int i = 0; i < molecules.size(); i++) {
+            for (int j = 0; j < molecules.size(); j++) {
+                compare(MOLECULES[i] + " " + MOLECULES[j], molecules.get(i), molecules.get(j));
+            }
+        }
+    }
+
+    private static List<IAtomContainer> readMolecules(File file) {
+        List<IAtomContainer> molecules = new ArrayList<>();
+        IReaction reaction;
+        try (MDLRXNV2000Reader reader = new MDLRXNV2000Reader(new FileInputStream(file))) {
+            reaction = reader.read(new Reaction());
+        } catch (Exception ex) {
+            return molecules;
+        }
+        for (IAtomContainer ac : reaction.getReactants().atomContainers()) {
+            molecules.add(ac);
+        }
+        for (IAtomContainer ac : reaction.getProducts().atomContainers()) {
+            molecules.add(ac);
+        }
+        List<IAtomContainer> initialised = new ArrayList<>();
+        for (IAtomContainer ac : molecules) {
+            try {
+                percieveAtomTypesAndConfigureAtoms(ac);
+                aromatizeMolecule(ac);
+                initializeMolecule(ac);
+                initialised.add(ac);
+            } catch (Exception ex) {
+                // not comparable, skip this molecule
+            }
+        }
+        return initialised;
+    }
+
+    private static void compare(String name, IAtomContainer query, IAtomContainer target) {
+        Map<String, Integer> labels = new HashMap<>();
+        CompiledMolecule q = new CompiledMolecule(query, labels);
+        CompiledMolecule t = new CompiledMolecule(target, labels);
+        for (int u = 0; u < query.getAtomCount(); u++) {
+            for (int v = 0; v < query.getAtomCount(); v++) {
+                int b = q.getBondIndex(u, v);
+                assertEquals(name, query.getBond(query.getAtom(u), query.getAtom(v)),
+                        b < 0 ? null : query.getBond(b));
+            }
+        }
+        for (int flags = 0; flags < 8; flags++) {
+            boolean bonds = (flags & 1) != 0;
+            boolean rings = (flags & 2) != 0;
+            boolean atomTypes = (flags & 4) != 0;
+            BondMatchTable table = new BondMatchTable(q, t, bonds, rings, atomTypes);
+            for (int i = 0; i < query.getBondCount(); i++) {
+                for (int j = 0; j < target.getBondCount(); j++) {
+                    boolean expected = DefaultMatcher.matches(query.getBond(i), target.getBond(j),
+                            bonds, rings, atomTypes);
+                    assertEquals(name + " bonds " + i + ", " + j + " flags " + flags,
+                            expected, table.matches(i, j));
+                    /*
+                     * memoised answer
+                     */
+                    assertEquals(expected, table.matches(i, j));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.openscience.smsd.filters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.AtomAtomMapping;
+import org.openscience.smsd.BaseMapping;
+import org.openscience.smsd.Isomorphism;
+import org.openscience.smsd.Substructure;
+import static org.openscience.smsd.interfaces.Algorithm.DEFAULT;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeCDK;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
+
+/**
+ * Bounded ranking of the MCS solutions.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class ChemicalFiltersTest {
+
+    @Test
+    public void testMaxSolutions() throws Exception {
+        BaseMapping all = substructure();
+        all.setChemFilters(true, true, true);
+        List<AtomAtomMapping> solutions = all.getAllAtomMapping();
+        assertTrue("symmetric molecules should have several solutions: " + solutions.size(),
+                solutions.size() > 3);
+
+        BaseMapping bounded = substructure();
+        bounded.setMaxSolutions(3);
+        bounded.setChemFilters(true, true, true);
+        List<AtomAtomMapping> top = bounded.getAllAtomMapping();
+        assertEquals(3, top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(solutions.get(i).getMappingsByIndex(), top.get(i).getMappingsByIndex());
+            assertEquals(all.getFragmentSize(i), bounded.getFragmentSize(i));
+            assertEquals(all.getStereoScore(i), bounded.getStereoScore(i));
+            assertEquals(all.getEnergyScore(i), bounded.getEnergyScore(i));
+        }
+    }
+
+    /*
+     * Substructure and MCS pairs with symmetric and competing solutions
+     */
+    private static final String[][] PAIRS = {
+        {"c1ccccc1", "Cc1ccccc1C(=O)O"},
+        {"CC(=O)O", "OC(=O)CC(O)(CC(O)=O)C(O)=O"},
+        {"OC(=O)CC(O)(CC(O)=O)C(O)=O", "OC(C(CC(O)=O)C(O)=O)C(O)=O"},
+        {"OCC1OC(O)C(O)C(O)C1O", "OCC1OC(OP(O)(O)=O)C(O)C(O)C1O"},
+        {"NC(CC1=CC=CC=C1)C(O)=O", "OC(=O)C(=O)CC1=CC=CC=C1"},
+        {"CC(=O)OCC", "CCOC(=O)CC(=O)OCC"},
+        {"OP(O)(=O)OP(O)(O)=O", "OP(O)(=O)OCC1OC(O)C(O)C1O"}
+    };
+
+    @Test
+    public void testSameAsFullSort() throws Exception {
+        int solutions = 0;
+        for (String[] pair : PAIRS) {
+            for (int filters = 0; filters < 8; filters++) {
+                boolean stereo = (filters & 1) != 0;
+                boolean fragment = (filters & 2) != 0;
+                boolean energy = (filters & 4) != 0;
+                String name = pair[0] + " " + pair[1] + " " + stereo + " " + fragment + " " + energy;
+
+                BaseMapping unfiltered = mapping(pair);
+                unfiltered.setChemFilters(false, false, false);
+                List<AtomAtomMapping> all = unfiltered.getAllAtomMapping();
+                FullSort expected = new FullSort(unfiltered, all, stereo, fragment, energy);
+
+                for (int bound : new int[]{Integer.MAX_VALUE, 1}) {
+                    BaseMapping ranked = mapping(pair);
+                    ranked.setMaxSolutions(bound);
+                    ranked.setChemFilters(stereo, fragment, energy);
+                    List<AtomAtomMapping> actual = ranked.getAllAtomMapping();
+                    assertEquals(name, Math.min(bound, expected.kept.size()), actual.size());
+                    for (int i = 0; i < actual.size(); i++) {
+                        int k = expected.kept.get(i);
+                        assertEquals(name, all.get(k).getMappingsByIndex(), actual.get(i).getMappingsByIndex());
+                        if (fragment) {
+                            assertEquals(name, expected.fragments.get(k), ranked.getFragmentSize(i));
+                        }
+                        if (stereo) {
+                            assertEquals(name, (Integer) expected.stereo.get(k).intValue(), ranked.getStereoScore(i));
+                        }
+                        if (energy) {
+                            assertEquals(name, expected.energies.get(k), ranked.getEnergyScore(i));
+                        }
+                    }
+                }
+                solutions += all.size();
+            }
+        }
+        /*
+         * not vacuous: the pairs have several solutions to rank
+         */
+        assertTrue(solutions > 8 * PAIRS.length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBound() throws Exception {
+        substructure().setMaxSolutions(0);
+    }
+
+    private static BaseMapping mapping(String[] pair) throws Exception {
+        SmilesParser sp = new SmilesParser(getInstance());
+        IAtomContainer query = sp.parseSmiles(pair[0]);
+        IAtomContainer target = sp.parseSmiles(pair[1]);
+        for (IAtomContainer ac : new IAtomContainer[]{query, target}) {
+            percieveAtomTypesAndConfigureAtoms(ac);
+            aromatizeCDK(ac);
+        }
+        Substructure substructure = new Substructure(query, target, true, false, false, true);
+        if (substructure.isSubgraph()) {
+            return substructure;
+        }
+        return new Isomorphism(query, target, DEFAULT, true, false, true);
+    }
+
+    /**
+     * The full sort the ranking replaced: each enabled filter scores every
+     * solution left by the previous one, then only the best ones are kept.
+     */
+    private static class FullSort {
+
+        final List<Integer> kept;
+        final Map<Integer, Integer> fragments;
+        final Map<Integer, Double> stereo;
+        final Map<Integer, Double> energies;
+
+        FullSort(ChemicalFilters filters, List<AtomAtomMapping> all,
+                boolean stereoFilter, boolean fragmentFilter, boolean energyFilter) throws CDKException {
+            Map<Integer, AtomAtomMapping> solutions = new TreeMap<>();
+            for (int i = 0; i < all.size(); i++) {
+                solutions.put(i, all.get(i));
+            }
+            this.fragments = new TreeMap<>();
+            this.stereo = new TreeMap<>();
+            this.energies = new TreeMap<>();
+            if (fragmentFilter) {
+                int min = new FragmentFilter(filters).sortResults(solutions, fragments);
+                if (min < 9999) {
+                    retain(solutions, fragments, min);
+                }
+            }
+            if (stereoFilter) {
+                double highest = new StereoFilter(filters).sortResults(solutions, stereo);
+                if (highest != 0) {
+                    retain(solutions, stereo, highest);
+                }
+            }
+            if (energyFilter) {
+                double lowest = new EnergyFilter(filters).sortResults(solutions, energies);
+                retain(solutions, energies, lowest);
+            }
+            this.kept = new ArrayList<>(solutions.keySet());
+        }
+
+        private static <T> void retain(Map<Integer, AtomAtomMapping> solutions, Map<Integer, T> scores, T best) {
+            solutions.keySet().removeIf((i) -> !best.equals(scores.get(i)));
+        }
+    }
+
+    private static BaseMapping substructure() throws Exception {
+        SmilesParser sp = new SmilesParser(getInstance());
+        IAtomContainer query = sp.parseSmiles("c1ccccc1");
+        IAtomContainer target = sp.parseSmiles("Cc1ccccc1C(=O)O");
+        for (IAtomContainer ac : new IAtomContainer[]{query, target}) {
+            percieveAtomTypesAndConfigureAtoms(ac);
+            aromatizeCDK(ac);
+        }
+        return new Substructure(query, target, true, false, false, true);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.openscience.smsd.filters;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.BaseMapping;
+import org.openscience.smsd.Substructure;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeCDK;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
+
+/**
+ * MCS solutions reported once per symmetry class.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class SymmetryFilterTest {
+
+    @Test
+    public void testSymmetricSolutionsCollapse() throws Exception {
+        /*
+         * Swapping the query atoms or mirroring the target gives the same
+         * correspondence
+         */
+        assertEquals(4, count("CC", "CCC", false));
+        assertEquals(1, count("CC", "CCC", true));
+        assertEquals(2, count("CO", "OCCO", false));
+        assertEquals(1, count("CO", "OCCO", true));
+    }
+
+    @Test
+    public void testKekuleBenzene() throws Exception {
+        /*
+         * The 12 mappings of (Kekule) benzene onto itself either keep the
+         * double bonds on double bonds or not, 6 automorphisms each
+         */
+        assertEquals(12, count("c1ccccc1", "c1ccccc1", false));
+        assertEquals(2, count("c1ccccc1", "c1ccccc1", true));
+    }
+
+    @Test
+    public void testDistinctSolutionsKept() throws Exception {
+        /*
+         * Three C-O bonds, no automorphism maps one onto another
+         */
+        assertEquals(3, count("CO", "COCCO", false));
+        assertEquals(3, count("CO", "COCCO", true));
+    }
+
+    private static int count(String querySmiles, String targetSmiles, boolean collapseSymmetry) throws Exception {
+        SmilesParser sp = new SmilesParser(getInstance());
+        IAtomContainer query = sp.parseSmiles(querySmiles);
+        IAtomContainer target = sp.parseSmiles(targetSmiles);
+        for (IAtomContainer ac : new IAtomContainer[]{query, target}) {
+            percieveAtomTypesAndConfigureAtoms(ac);
+            aromatizeCDK(ac);
+        }
+        BaseMapping mapping = new Substructure(query, target, true, false, false, true);
+        mapping.setCollapseSymmetry(collapseSymmetry);
+        mapping.setChemFilters(false, false, false);
+        return mapping.getAllAtomMapping().size();
+    }
+}
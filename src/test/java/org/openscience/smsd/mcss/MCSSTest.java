@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.openscience.smsd.mcss;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import static java.util.Collections.sort;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.silent.Reaction;
+import org.openscience.cdk.smiles.SmiFlavor;
+import org.openscience.cdk.smiles.SmilesGenerator;
+import static org.openscience.smsd.mcss.JobType.MULTIPLE;
+import static org.openscience.smsd.mcss.JobType.SINGLE;
+import org.openscience.smsd.tools.AtomContainerComparator;
+import static org.openscience.smsd.tools.ExtAtomContainerManipulator.removeHydrogens;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeMolecule;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
+import uk.ac.ebi.reactionblast.tools.rxnfile.MDLRXNV2000Reader;
+
+/**
+ * The tree reduction must give the common substructure of the chunked
+ * passes it replaced: the sequential reduction of the size-ordered molecules,
+ * with MULTIPLE fragments reduced until one is left.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MCSSTest {
+
+    private static final String[] REACTIONS = {"R00001", "R00002", "R00006", "R00010", "R00014", "R00016"};
+
+    @Test
+    public void testSameAsBaseline() throws Exception {
+        for (String id : REACTIONS) {
+            List<IAtomContainer> molecules = readMolecules(id);
+            for (JobType jobType : JobType.values()) {
+                for (int threads : new int[]{1, 2}) {
+                    assertEquals(id + " " + jobType + " threads " + threads,
+                            baseline(readMolecules(id), jobType),
+                            smiles(new MCSS(molecules, jobType, threads, true, true, true).getCalculateMCSS()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMultipleReducedToOne() throws Exception {
+        /*
+         * the fragments common to these molecules are reduced to one, of two atoms
+         */
+        Collection<IAtomContainer> mcss = new MCSS(readMolecules("R00006"), MULTIPLE, 1, true, true, true)
+                .getCalculateMCSS();
+        assertEquals(1, mcss.size());
+        assertEquals(2, mcss.iterator().next().getAtomCount());
+    }
+
+    @Test
+    public void testMinimumCoreSize() throws Exception {
+        assertEquals("[OCC1OC(O)C(O)C(O)C1O]",
+                smiles(new MCSS(readMolecules("R00010"), SINGLE, 1, true, true, true, 12).getCalculateMCSS()));
+        assertTrue(new MCSS(readMolecules("R00010"), SINGLE, 1, true, true, true, 13).getCalculateMCSS().isEmpty());
+    }
+
+    @Test
+    public void testDuplicates() throws Exception {
+        List<IAtomContainer> molecules = readMolecules("R00010");
+        List<IAtomContainer> duplicated = new ArrayList<>();
+        for (IAtomContainer ac : molecules) {
+            duplicated.add(ac);
+            duplicated.add(ac.clone());
+        }
+        assertEquals(smiles(new MCSS(molecules, SINGLE, 1).getCalculateMCSS()),
+                smiles(new MCSS(duplicated, SINGLE, 2).getCalculateMCSS()));
+    }
+
+    /*
+     * The chunked passes: one sequential reduction of the size-ordered
+     * molecules, then the fragments are reduced until one is left
+     */
+    private static String baseline(List<IAtomContainer> jobList, JobType jobType) throws Exception {
+        List<IAtomContainer> molecules = new ArrayList<>();
+        for (IAtomContainer ac : jobList) {
+            molecules.add(removeHydrogens(ac));
+        }
+        sort(molecules, new AtomContainerComparator());
+        IAtomContainer last = molecules.get(molecules.size() - 1);
+        List<IAtomContainer> mcss = new ArrayList<>(new MCSSThread(molecules, jobType, 1).call());
+        while (mcss.size() > 1) {
+            mcss = new ArrayList<>(new MCSSThread(mcss, jobType, 1).call());
+        }
+        if (!mcss.isEmpty() && mcss.get(0) == last) {
+            mcss.clear();
+        }
+        return smiles(mcss);
+    }
+
+    private static String smiles(Collection<IAtomContainer> molecules) throws Exception {
+        SmilesGenerator generator = new SmilesGenerator(SmiFlavor.Unique);
+        List<String> smiles = new ArrayList<>();
+        for (IAtomContainer ac : molecules) {
+            smiles.add(generator.create(ac));
+        }
+        sort(smiles);
+        return smiles.toString();
+    }
+
+    /*
+     * Molecules of the reaction with six or more atoms
+     */
+    private List<IAtomContainer> readMolecules(String id) throws Exception {
+        IReaction reaction;
+        try (InputStream in = getClass().getResourceAsStream("/rxn/kegg/" + id + ".rxn");
+                MDLRXNV2000Reader reader = new MDLRXNV2000Reader(in)) {
+            reaction = reader.read(new Reaction());
+        }
+        List<IAtomContainer> molecules = new ArrayList<>();
+        for (IAtomContainer ac : reaction.getReactants().atomContainers()) {
+            molecules.add(ac);
+        }
+        for (IAtomContainer ac : reaction.getProducts().atomContainers()) {
+            molecules.add(ac);
+        }
+        List<IAtomContainer> selected = new ArrayList<>();
+        for (IAtomContainer ac : molecules) {
+            percieveAtomTypesAndConfigureAtoms(ac);
+            aromatizeMolecule(ac);
+            if (ac.getAtomCount() >= 6) {
+                selected.add(ac);
+            }
+        }
+        return selected;
+    }
+}
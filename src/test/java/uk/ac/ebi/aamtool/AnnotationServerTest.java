@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.aamtool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import uk.ac.ebi.reactionblast.tools.SmilesService;
+
+/**
+ * HTTP round trips against a server on an ephemeral port.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class AnnotationServerTest {
+
+    private static final String REACTION = "CC(=O)O.OCC>>CC(=O)OCC.O";
+
+    @Test
+    public void testHealth() throws Exception {
+        AnnotationServer server = start(AnnotationServer.DEFAULT_JOB_TIMEOUT, 1024);
+        try {
+            Response response = call(server, "GET", "/health", null);
+            assertEquals(200, response.code);
+            assertTrue(response.body, response.body.contains("\"status\":\"UP\""));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testMapping() throws Exception {
+        AnnotationServer server = start(AnnotationServer.DEFAULT_JOB_TIMEOUT, 1024);
+        try {
+            Response response = call(server, "POST", "/aam?format=TEXT", REACTION);
+            assertEquals(response.body, 200, response.code);
+            assertTrue(response.body, response.body.contains("SELECTED AAM MAPPING"));
+            assertTrue(response.body, response.body.contains("[O:1]=[C:2]([O:3][CH2:6][CH3:7])[CH3:4]"));
+            assertEquals(405, call(server, "GET", "/aam", null).code);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testSharedContext() throws Exception {
+        AnnotationServer server = start(AnnotationServer.DEFAULT_JOB_TIMEOUT, 1024);
+        try {
+            SmilesService smiles = server.getContext().getSmilesService();
+            assertEquals(200, call(server, "POST", "/aam?format=TEXT", REACTION).code);
+            long hits = smiles.getHits();
+            assertTrue(smiles.size() > 0);
+            assertEquals(200, call(server, "POST", "/aam?format=TEXT", REACTION).code);
+            assertTrue(smiles.getHits() > hits);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testMalformedContentLength() throws Exception {
+        AnnotationServer server = start(AnnotationServer.DEFAULT_JOB_TIMEOUT, 1024);
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            OutputStream os = socket.getOutputStream();
+            os.write(("POST /aam?format=TEXT HTTP/1.1\r\n"
+                    + "Host: 127.0.0.1\r\n"
+                    + "Content-Length: abc\r\n"
+                    + "Connection: close\r\n\r\n"
+                    + REACTION).getBytes(StandardCharsets.US_ASCII));
+            os.flush();
+            String status = new String(readAll(socket.getInputStream()), StandardCharsets.US_ASCII);
+            assertTrue(status, status.startsWith("HTTP/1.1 400"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testBadRequest() throws Exception {
+        AnnotationServer server = start(AnnotationServer.DEFAULT_JOB_TIMEOUT, 1024);
+        try {
+            Response response = call(server, "POST", "/compare?format=TEXT", REACTION);
+            assertEquals(response.body, 400, response.code);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testBodyTooLarge() throws Exception {
+        AnnotationServer server = start(AnnotationServer.DEFAULT_JOB_TIMEOUT, 16);
+        try {
+            Response response = call(server, "POST", "/aam?format=TEXT", REACTION);
+            assertEquals(413, response.code);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        AnnotationServer server = start(1, 1024);
+        try {
+            Response response = call(server, "POST", "/aam?format=TEXT", REACTION);
+            assertEquals(504, response.code);
+            assertTrue(call(server, "GET", "/health", null).body.contains("\"timed_out\":1"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static AnnotationServer start(long timeout, int maxBody) throws Exception {
+        AnnotationServer server = new AnnotationServer("127.0.0.1", 0, 1, 1, timeout, maxBody);
+        server.start();
+        return server;
+    }
+
+    private static Response call(AnnotationServer server, String method, String path, String body) throws IOException {
+        URL url = new URL("http://127.0.0.1:" + server.getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream os = connection.getOutputStream()) {
+                os.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Response response = new Response();
+        response.code = connection.getResponseCode();
+        InputStream in = response.code < 400 ? connection.getInputStream() : connection.getErrorStream();
+        response.body = in == null ? "" : new String(readAll(in), StandardCharsets.UTF_8);
+        connection.disconnect();
+        return response;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = in.read(chunk)) != -1) {
+            buffer.write(chunk, 0, n);
+        }
+        in.close();
+        return buffer.toByteArray();
+    }
+
+    private static class Response {
+
+        int code;
+        String body;
+    }
+}
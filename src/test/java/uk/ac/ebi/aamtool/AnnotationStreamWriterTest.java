@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.aamtool;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import javax.xml.parsers.DocumentBuilderFactory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+
+/**
+ * All the records of a run go to one stream, one complete record per
+ * reaction, and a record which fails leaves nothing in the output.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class AnnotationStreamWriterTest {
+
+    private static ReactionMechanismTool ester;
+    private static ReactionMechanismTool hydrolysis;
+
+    @BeforeClass
+    public static void map() throws Exception {
+        ester = mapped("CC(=O)O.OCC>>CC(=O)OCC.O", "ester");
+        hydrolysis = mapped("CC(=O)OC.O>>CC(=O)O.CO", "hydrolysis");
+    }
+
+    @Test
+    public void testJSON() throws Exception {
+        StringWriter out = new StringWriter();
+        try (AnnotationStreamWriter writer = new JSONAnnotationWriter(out, true, false, true)) {
+            writer.write("ester", ester);
+            writer.write("hydrolysis", hydrolysis);
+            assertEquals(2, writer.getCount());
+        }
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("{\"schema\":2,\"id\":\"ester\",\"status\":\"MAPPED\","));
+        assertTrue(lines[1], lines[1].startsWith("{\"schema\":2,\"id\":\"hydrolysis\","));
+        for (String line : lines) {
+            assertTrue(line, line.endsWith("}"));
+            assertTrue(line, line.contains("\"rank\":{\"reactant\":[{\"input\":1,\"aam\":"));
+            assertTrue(line, line.contains("\"bond_changes\":{\"formed_cleaved\":[{\"pattern\":"));
+        }
+    }
+
+    @Test
+    public void testFailedRecordDiscarded() throws Exception {
+        StringWriter out = new StringWriter();
+        try (FailingJSONWriter writer = new FailingJSONWriter(out)) {
+            writer.write("ester", ester);
+            writer.fail = true;
+            try {
+                writer.write("hydrolysis", hydrolysis);
+                fail("the record should fail");
+            } catch (IOException ex) {
+                // expected
+            }
+            writer.fail = false;
+            writer.write("hydrolysis", hydrolysis);
+            assertEquals(2, writer.getCount());
+        }
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("{\"schema\":2,\"id\":\"ester\","));
+        assertTrue(lines[1], lines[1].startsWith("{\"schema\":2,\"id\":\"hydrolysis\","));
+    }
+
+    @Test
+    public void testXML() throws Exception {
+        StringWriter out = new StringWriter();
+        try (FailingXMLWriter writer = new FailingXMLWriter(out)) {
+            writer.write("ester", ester);
+            writer.fail = true;
+            try {
+                writer.write("broken", ester);
+                fail("the record should fail");
+            } catch (IOException ex) {
+                // expected
+            }
+            writer.fail = false;
+            writer.write("hydrolysis", hydrolysis);
+        }
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(out.toString().getBytes(UTF_8)));
+        Element root = doc.getDocumentElement();
+        assertEquals("annotations", root.getTagName());
+        assertEquals("2", root.getAttribute("schema"));
+        assertEquals(2, root.getElementsByTagName("reaction").getLength());
+        assertEquals("ester", text(root, "id", 0));
+        assertEquals("hydrolysis", text(root, "id", 1));
+        Element rank = (Element) root.getElementsByTagName("rank").item(0);
+        Element atom = (Element) ((Element) rank.getElementsByTagName("reactant").item(0))
+                .getElementsByTagName("atom").item(0);
+        assertEquals("1", text(atom, "input", 0));
+        assertEquals(1, atom.getElementsByTagName("aam").getLength());
+    }
+
+    private static String text(Element element, String name, int index) {
+        return element.getElementsByTagName(name).item(index).getTextContent();
+    }
+
+    private static ReactionMechanismTool mapped(String smiles, String id) throws Exception {
+        IReaction reaction = new SmilesParser(getInstance()).parseReactionSmiles(smiles);
+        reaction.setID(id);
+        return new ReactionMechanismTool(reaction, true, true, false);
+    }
+
+    /*
+     * Fails in the middle of a record, after the mapping is written
+     */
+    private static class FailingJSONWriter extends JSONAnnotationWriter {
+
+        boolean fail;
+
+        FailingJSONWriter(Writer writer) {
+            super(writer, true, false, true);
+        }
+
+        @Override
+        protected void startArray(String name, String itemName) throws IOException {
+            if (fail && name.equals("stereo_changes")) {
+                throw new IOException("failed");
+            }
+            super.startArray(name, itemName);
+        }
+    }
+
+    private static class FailingXMLWriter extends XMLAnnotationWriter {
+
+        boolean fail;
+
+        FailingXMLWriter(Writer writer) throws IOException {
+            super(writer, true, false, true);
+        }
+
+        @Override
+        protected void startArray(String name, String itemName) throws IOException {
+            if (fail && name.equals("stereo_changes")) {
+                throw new IOException("failed");
+            }
+            super.startArray(name, itemName);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.aamtool.rgroup;
+
+import java.io.File;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Incremental updates of the EC directories: only new files are read, and a
+ * file which could not be read is tried again by the next update.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class ECRgroupFrequencyTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        File root = folder.newFolder("ec");
+        copy("R00001", root, "3.6.1.1");
+        copy("R00002", root, "3.6.1.1");
+        copy("R00004", root, "3.6.1.1");
+
+        ECRgroupFrequency incremental = new ECRgroupFrequency(2);
+        assertEquals(3, incremental.update(root.getPath()));
+        assertEquals(0, incremental.update(root.getPath()));
+
+        copy("R00006", root, "2.2.1.6");
+        copy("R00008", root, "3.6.1.1");
+        assertEquals(2, incremental.update(root.getPath()));
+        assertEquals(0, incremental.update(root.getPath()));
+
+        ECRgroupFrequency full = new ECRgroupFrequency(2);
+        assertEquals(5, full.update(root.getPath()));
+        assertEquals(full.getFrequency().toString(), incremental.getFrequency().toString());
+        assertEquals(1, incremental.getFrequency().getECCount("2"));
+        assertEquals(1, incremental.getFrequency().getECCount("3"));
+        assertEquals(4, incremental.getFrequency().getReactionCount("3"));
+    }
+
+    @Test
+    public void testPartialFailure() throws Exception {
+        File root = folder.newFolder("ec");
+        copy("R00001", root, "3.6.1.1");
+        copy("R00002", root, "3.6.1.1");
+        File broken = new File(new File(root, "3.6.1.1"), "R00004.rxn");
+        Files.write(broken.toPath(), "$RXN\n\n  broken\n\n  1  1\n$MOL\nnot a molfile\n".getBytes(UTF_8));
+
+        ECRgroupFrequency frequency = new ECRgroupFrequency(2);
+        assertEquals(2, frequency.update(root.getPath()));
+        assertEquals(2, frequency.getFrequency().getReactionCount("3"));
+
+        /*
+         * the file that failed is read again once fixed, the others are not
+         */
+        broken.delete();
+        copy("R00004", root, "3.6.1.1");
+        assertEquals(1, frequency.update(root.getPath()));
+        assertEquals(3, frequency.getFrequency().getReactionCount("3"));
+        assertEquals(0, frequency.update(root.getPath()));
+    }
+
+    private void copy(String reaction, File root, String ecNumber) throws Exception {
+        File dir = new File(root, ecNumber);
+        dir.mkdirs();
+        File source = new File(getClass().getResource("/rxn/kegg/" + reaction + ".rxn").toURI());
+        Files.copy(source.toPath(), new File(dir, reaction + ".rxn").toPath());
+    }
+}
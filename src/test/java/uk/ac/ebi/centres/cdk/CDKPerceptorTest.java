@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.centres.cdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.layout.StructureDiagramGenerator;
+import org.openscience.cdk.smiles.SmilesParser;
+import uk.ac.ebi.centres.descriptor.Planar;
+import uk.ac.ebi.centres.descriptor.Tetrahedral;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
+
+/**
+ * CIP labels of known molecules, perceived from the 2D depiction.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class CDKPerceptorTest {
+
+    @Test
+    public void testTetrahedral() throws Exception {
+        CDKPerceptor perceptor = new CDKPerceptor();
+        assertTetrahedral(perceptor);
+    }
+
+    @Test
+    public void testPlanar() throws Exception {
+        CDKPerceptor perceptor = new CDKPerceptor();
+        assertPlanar(perceptor);
+    }
+
+    /*
+     * The same perceptor is reused, with a time budget the perception runs on
+     * the shared executor and must give the same labels
+     */
+    @Test
+    public void testReusedWithTimeout() throws Exception {
+        CDKPerceptor perceptor = new CDKPerceptor();
+        assertTetrahedral(perceptor);
+        perceptor.setTimeout(60000);
+        assertTetrahedral(perceptor);
+        assertPlanar(perceptor);
+    }
+
+    private static void assertTetrahedral(CDKPerceptor perceptor) throws Exception {
+        /*
+         * L-alanine (S) and D-alanine (R)
+         */
+        IAtomContainer ac = perceive(perceptor, "N[C@@H](C)C(=O)O");
+        assertEquals(Tetrahedral.S, ac.getAtom(1).getProperty("descriptor"));
+        ac = perceive(perceptor, "N[C@H](C)C(=O)O");
+        assertEquals(Tetrahedral.R, ac.getAtom(1).getProperty("descriptor"));
+        /*
+         * L-threonine (2S,3R), L-isoleucine (2S,3S): the ligands of C3 only
+         * differ past the first sphere
+         */
+        ac = perceive(perceptor, "C[C@@H](O)[C@H](N)C(=O)O");
+        assertEquals(Tetrahedral.R, ac.getAtom(1).getProperty("descriptor"));
+        assertEquals(Tetrahedral.S, ac.getAtom(3).getProperty("descriptor"));
+        ac = perceive(perceptor, "CC[C@H](C)[C@H](N)C(=O)O");
+        assertEquals(Tetrahedral.S, ac.getAtom(2).getProperty("descriptor"));
+        assertEquals(Tetrahedral.S, ac.getAtom(4).getProperty("descriptor"));
+    }
+
+    private static void assertPlanar(CDKPerceptor perceptor) throws Exception {
+        assertEquals(Planar.E, doubleBond(perceive(perceptor, "C/C=C/C")).getProperty("descriptor"));
+        assertEquals(Planar.Z, doubleBond(perceive(perceptor, "C/C=C\\C")).getProperty("descriptor"));
+        /*
+         * the higher ranked ligand of C2 is the ethyl group, not the methyl
+         */
+        assertEquals(Planar.E, doubleBond(perceive(perceptor, "CC/C(C)=C/Cl")).getProperty("descriptor"));
+        assertEquals(Planar.Z, doubleBond(perceive(perceptor, "CC/C(C)=C\\Cl")).getProperty("descriptor"));
+    }
+
+    private static IBond doubleBond(IAtomContainer ac) {
+        for (IBond bond : ac.bonds()) {
+            if (bond.getOrder() == IBond.Order.DOUBLE) {
+                return bond;
+            }
+        }
+        throw new AssertionError("no double bond");
+    }
+
+    private static IAtomContainer perceive(CDKPerceptor perceptor, String smiles) throws Exception {
+        IAtomContainer ac = new SmilesParser(getInstance()).parseSmiles(smiles);
+        percieveAtomTypesAndConfigureAtoms(ac);
+        StructureDiagramGenerator sdg = new StructureDiagramGenerator();
+        sdg.setMolecule(ac, false);
+        sdg.generateCoordinates();
+        assertTrue(smiles, perceptor.perceive(ac));
+        return ac;
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.containers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import static java.util.Collections.shuffle;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Fingerprints written to the mapped store are read back, also after the
+ * store is reopened, as records are appended and merged into the sorted
+ * index and after they are erased.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MappedFingerPrintStoreTest {
+
+    private static final int BITS = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        BitSet a = fingerprint(1);
+        BitSet b = fingerprint(2);
+        try (MappedFingerPrintStore store = new MappedFingerPrintStore(folder.getRoot(), "fp", BITS)) {
+            assertTrue(store.isEmpty());
+            assertEquals(BITS, store.getFingerPrintSize());
+            store.put("a", a);
+            store.put("b", b);
+            assertEquals(a, store.getFingerPrint("a"));
+            assertEquals(b, store.getFingerPrint("b"));
+            assertNull(store.getFingerPrint("c"));
+            assertTrue(store.isKeyPresent("a"));
+            assertEquals("b", store.getMoleculeID(b));
+            assertTrue(store.isValuePresent(a));
+            assertEquals(2, store.getCount());
+
+            /*
+             * replaced in place
+             */
+            store.setValue("a", b);
+            assertEquals(b, store.getFingerPrint("a"));
+            assertEquals(2, store.getCount());
+
+            BitSet longer = new BitSet();
+            longer.set(BITS + 1);
+            try {
+                store.put("long", longer);
+                fail("a fingerprint longer than the store must be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            assertEquals("a", store.search(b, 1.0, 10).get(0).getId());
+            assertEquals(2, store.search(b, 0.0, 10).size());
+        }
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        File dir = folder.getRoot();
+        try (MappedFingerPrintStore store = new MappedFingerPrintStore(dir, "fp", BITS)) {
+            store.put("a", fingerprint(1));
+            store.put("b", fingerprint(2));
+        }
+        try (MappedFingerPrintStore store = new MappedFingerPrintStore(dir, "fp", BITS)) {
+            assertEquals(2, store.getCount());
+            assertEquals(fingerprint(1), store.getFingerPrint("a"));
+            store.put("c", fingerprint(3));
+        }
+        try (MappedFingerPrintStore store = new MappedFingerPrintStore(dir, "fp")) {
+            assertEquals(3, store.getCount());
+            assertEquals(BITS, store.getFingerPrintSize());
+            for (int i = 1; i <= 3; i++) {
+                assertEquals(fingerprint(i), store.getFingerPrint(String.valueOf((char) ('a' + i - 1))));
+            }
+            try {
+                store.put("d", fingerprint(4));
+                fail("a read only store must not be written");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+        try {
+            new MappedFingerPrintStore(dir, "missing");
+            fail("a missing store can't be opened read only");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testIndexGrowth() throws Exception {
+        File dir = folder.getRoot();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            ids.add("MOL" + i);
+        }
+        shuffle(ids, new Random(7));
+        TreeMap<String, BitSet> expected = new TreeMap<>();
+        try (MappedFingerPrintStore store = new MappedFingerPrintStore(dir, "fp", BITS)) {
+            for (int batch = 0; batch < 3; batch++) {
+                for (String id : ids.subList(batch * 1000, (batch + 1) * 1000)) {
+                    BitSet fp = fingerprint(id.hashCode());
+                    store.put(id, fp);
+                    expected.put(id, fp);
+                }
+                /*
+                 * half of the records are looked up before the index is
+                 * rewritten
+                 */
+                if (batch < 2) {
+                    store.write();
+                    assertEquals(8L * expected.size(), new File(dir, "fp.idx").length());
+                }
+                check(store, expected);
+            }
+        }
+        assertEquals(8L * expected.size(), new File(dir, "fp.idx").length());
+        try (MappedFingerPrintStore store = new MappedFingerPrintStore(dir, "fp")) {
+            check(store, expected);
+        }
+    }
+
+    @Test
+    public void testErase() throws Exception {
+        File dir = folder.getRoot();
+        try (MappedFingerPrintStore store = new MappedFingerPrintStore(dir, "fp", BITS)) {
+            store.put("a", fingerprint(1));
+            store.put("b", fingerprint(2));
+            store.write();
+            store.put("c", fingerprint(3));
+            /*
+             * one indexed record, one appended record and one missing
+             */
+            store.Erase("a");
+            store.Erase("c");
+            store.Erase("x");
+            assertNull(store.getFingerPrint("a"));
+            assertFalse(store.isKeyPresent("c"));
+            assertNull(store.getMoleculeID(fingerprint(1)));
+            assertEquals(1, store.getCount());
+            assertEquals(1, store.getFingerPrintMap().size());
+        }
+        try (MappedFingerPrintStore store = new MappedFingerPrintStore(dir, "fp", BITS)) {
+            assertEquals(1, store.getCount());
+            assertEquals(fingerprint(2), store.getFingerPrint("b"));
+            assertFalse(store.isKeyPresent("a"));
+            store.put("a", fingerprint(4));
+            assertEquals(fingerprint(4), store.getFingerPrint("a"));
+            store.Clear();
+            assertTrue(store.isEmpty());
+            assertNull(store.getFingerPrint("b"));
+        }
+    }
+
+    @Test
+    public void testMappingContext() throws Exception {
+        File dir = folder.getRoot();
+        MappingContext context = new MappingContext(10, new MappedFingerPrintStore(dir, "fp", BITS));
+        context.getFingerPrintContainer().setValue("a", fingerprint(1));
+        assertEquals(1, context.getFingerPrintStore().getCount());
+        context.close();
+        try (MappedFingerPrintStore store = new MappedFingerPrintStore(dir, "fp")) {
+            assertEquals(fingerprint(1), new FingerPrintContainer(store).getFingerPrint("a"));
+        }
+
+        /*
+         * the default store is on the heap and bounded
+         */
+        MappingContext heap = new MappingContext(2);
+        FingerPrintContainer container = heap.getFingerPrintContainer();
+        for (int i = 0; i < 3; i++) {
+            container.put("m" + i, fingerprint(i));
+        }
+        assertEquals(2, container.getCount().intValue());
+        assertEquals("m2", container.getMoleculeID(fingerprint(2)));
+        heap.close();
+        assertTrue(container.isEmpty());
+    }
+
+    private static void check(MappedFingerPrintStore store, TreeMap<String, BitSet> expected) throws IOException {
+        assertEquals(expected.size(), store.getCount());
+        assertEquals(new ArrayList<>(expected.keySet()), store.getIDList());
+        for (String id : expected.keySet()) {
+            assertEquals(id, expected.get(id), store.getFingerPrint(id));
+        }
+    }
+
+    private static BitSet fingerprint(int seed) {
+        Random random = new Random(seed);
+        BitSet fp = new BitSet(BITS);
+        for (int i = 0; i < 64; i++) {
+            fp.set(random.nextInt(BITS));
+        }
+        return fp;
+    }
+}
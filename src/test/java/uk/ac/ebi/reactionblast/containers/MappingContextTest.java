@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.containers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import java.util.concurrent.Future;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.smiles.SmilesParser;
+import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+import uk.ac.ebi.reactionblast.signature.RBlastSignatureCache;
+import uk.ac.ebi.reactionblast.stereo.ebi.ChiralityCache;
+import uk.ac.ebi.reactionblast.tools.SmilesService;
+import uk.ac.ebi.reactionblast.tools.StandardizeReaction;
+
+/**
+ * The caches of a job are those of its mapping context: bound to the threads
+ * of the job while it runs, the default context is left alone.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MappingContextTest {
+
+    @Test
+    public void testBinding() throws Exception {
+        MappingContext outer = new MappingContext(10);
+        MappingContext inner = new MappingContext(10);
+        assertSame(MappingContext.getDefault(), MappingContext.getCurrent());
+        try (MappingContext.Binding binding = outer.bind()) {
+            assertSame(outer.getMolContainer(), MolContainer.getInstance());
+            assertSame(outer.getFingerPrintContainer(), FingerPrintContainer.getInstance());
+            assertSame(outer.getInChIContainer(), InChIContainer.getInstance());
+            assertSame(outer.getReactionDBContainer(), ReactionDBContainer.getInstance());
+            assertSame(outer.getChiralityCache(), ChiralityCache.getInstance());
+            assertSame(outer.getSmilesService(), SmilesService.getInstance());
+            assertSame(outer.getSignatureCache(), RBlastSignatureCache.getInstance());
+            try (MappingContext.Binding nested = inner.bind()) {
+                assertSame(inner, MappingContext.getCurrent());
+            }
+            assertSame(outer, MappingContext.getCurrent());
+            /*
+             * other threads are not bound
+             */
+            ExecutorService executor = newFixedThreadPool(1);
+            try {
+                assertSame(MappingContext.getDefault(), executor.submit(MappingContext::getCurrent).get());
+            } finally {
+                executor.shutdown();
+            }
+        }
+        assertSame(MappingContext.getDefault(), MappingContext.getCurrent());
+    }
+
+    @Test
+    public void testJobUsesItsContext() throws Exception {
+        IReaction reaction = new SmilesParser(getInstance()).parseReactionSmiles("CC(=O)O.OCC>>CC(=O)OCC.O");
+        reaction.setID("esterification");
+        SmilesService shared = MappingContext.getDefault().getSmilesService();
+        RBlastSignatureCache sharedSignatures = MappingContext.getDefault().getSignatureCache();
+        long sharedSmiles = shared.getHits() + shared.getMisses();
+        long sharedSignature = sharedSignatures.getHits() + sharedSignatures.getMisses();
+
+        try (MappingContext context = new MappingContext()) {
+            ReactionMechanismTool rmt = new ReactionMechanismTool(reaction, true, true, false,
+                    new StandardizeReaction(), context);
+            assertNotNull(rmt.getSelectedSolution());
+            assertSame(context, rmt.getContext());
+            assertTrue(context.getSmilesService().getMisses() > 0);
+            assertTrue(context.getSignatureCache().getMisses() > 0);
+        }
+        assertEquals(sharedSmiles, shared.getHits() + shared.getMisses());
+        assertEquals(sharedSignature, sharedSignatures.getHits() + sharedSignatures.getMisses());
+        assertSame(MappingContext.getDefault(), MappingContext.getCurrent());
+    }
+
+    @Test
+    public void testAddIfAbsent() throws Exception {
+        MolContainer container = new MolContainer(10);
+        ExecutorService executor = newFixedThreadPool(4);
+        List<Future<String>> ids = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                final String key = "M" + i;
+                ids.add(executor.submit((Callable<String>) () -> container.addIfAbsent(key, mol("CCO"))));
+            }
+            Set<String> distinct = new HashSet<>();
+            for (Future<String> id : ids) {
+                distinct.add(id.get());
+            }
+            assertEquals(1, distinct.size());
+            assertEquals(1, container.getAtomContainerMap().size());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals("M9", container.addIfAbsent("M9", mol("CCN")));
+        assertEquals(2, container.getAtomContainerMap().size());
+    }
+
+    private static IAtomContainer mol(String smiles) throws Exception {
+        return new SmilesParser(getInstance()).parseSmiles(smiles);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.graphics.direct;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.HashSet;
+import java.util.Set;
+import javax.xml.parsers.DocumentBuilderFactory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import uk.ac.ebi.reactionblast.graphics.direct.layout.MoleculeLayoutCache;
+import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+import uk.ac.ebi.reactionblast.tools.ReactionImageService;
+
+/**
+ * SVG output of the vector backend of the direct drawers.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class SVGGraphics2DTest {
+
+    @Test
+    public void testPrimitives() throws Exception {
+        SVGGraphics2D g = new SVGGraphics2D(100, 50);
+        g.setColor(Color.RED);
+        g.drawLine(0, 0, 10, 20);
+        g.setColor(new Color(0, 0, 255, 128));
+        g.fillRect(5, 5, 10, 10);
+        g.setColor(Color.BLACK);
+        g.translate(3, 4);
+        g.drawString("a<b&c", 1, 2);
+        Document doc = parse(g.toString().getBytes(UTF_8));
+
+        Element svg = doc.getDocumentElement();
+        assertEquals("svg", svg.getTagName());
+        assertEquals("100", svg.getAttribute("width"));
+        assertEquals("0 0 100 50", svg.getAttribute("viewBox"));
+
+        NodeList paths = svg.getElementsByTagName("path");
+        assertEquals(2, paths.getLength());
+        Element line = (Element) paths.item(0);
+        assertEquals("M0 0L10 20", line.getAttribute("d"));
+        assertEquals("#ff0000", line.getAttribute("stroke"));
+        assertEquals("none", line.getAttribute("fill"));
+        Element rect = (Element) paths.item(1);
+        assertEquals("#0000ff", rect.getAttribute("fill"));
+        assertEquals(0.5, Double.parseDouble(rect.getAttribute("fill-opacity")), 0.01);
+
+        Element text = (Element) svg.getElementsByTagName("text").item(0);
+        assertEquals("a<b&c", text.getTextContent());
+        assertEquals("matrix(1 0 0 1 3 4)", text.getAttribute("transform"));
+    }
+
+    @Test
+    public void testReaction() throws Exception {
+        IReaction reaction = new SmilesParser(getInstance()).parseReactionSmiles("CC(=O)O.OCC>>CC(=O)OCC.O");
+        reaction.setID("esterification");
+        ReactionMechanismTool rmt = new ReactionMechanismTool(reaction, true, true, false);
+        IReaction mapped = rmt.getSelectedSolution().getReaction();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReactionImageService service = new ReactionImageService(1, 1, new MoleculeLayoutCache());
+        try {
+            service.render(mapped, ReactionImageService.Style.LEFT_TO_RIGHT, 800, 400, false,
+                    ReactionImageService.Format.SVG, out);
+        } finally {
+            service.close();
+        }
+        Document doc = parse(out.toByteArray());
+        Element svg = doc.getDocumentElement();
+        assertEquals("svg", svg.getTagName());
+        assertEquals("0 0 800 400", svg.getAttribute("viewBox"));
+        assertTrue("bonds, arrow and highlights are paths",
+                svg.getElementsByTagName("path").getLength() > 10);
+        NodeList texts = svg.getElementsByTagName("text");
+        Set<String> labels = new HashSet<>();
+        for (int i = 0; i < texts.getLength(); i++) {
+            labels.add(texts.item(i).getTextContent().trim());
+        }
+        assertTrue(labels.toString(), labels.contains("O") || labels.contains("OH"));
+    }
+
+    private static Document parse(byte[] svg) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(svg));
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.io.binary;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.openscience.cdk.CDKConstants.ATOM_ATOM_MAPPING;
+import static org.openscience.cdk.CDKConstants.ISAROMATIC;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainerSet;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IDoubleBondStereochemistry;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.interfaces.IStereoElement;
+import org.openscience.cdk.interfaces.ITetrahedralChirality;
+import org.openscience.cdk.smiles.SmilesParser;
+import uk.ac.ebi.reactionblast.fingerprints.interfaces.IFeature;
+import uk.ac.ebi.reactionblast.fingerprints.interfaces.IPatternFingerprinter;
+import uk.ac.ebi.reactionblast.mechanism.BondChangeCalculator;
+import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+import static uk.ac.ebi.reactionblast.mechanism.interfaces.ECBLAST_FLAGS.BOND_CHANGE_INFORMATION;
+
+/**
+ * A reaction read back from the binary file has the atoms, bonds, mapping,
+ * bond changes, fingerprints and stereo elements it was written with.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class BinaryReactionFormatTest {
+
+    private static IReaction mapped;
+    private static Map<String, IPatternFingerprinter> fingerprints;
+    private static IReaction stereo;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        SmilesParser sp = new SmilesParser(getInstance());
+        IReaction reaction = sp.parseReactionSmiles("CC(=O)O.OCC>>CC(=O)OCC.O");
+        reaction.setID("ester");
+        BondChangeCalculator bcc = new ReactionMechanismTool(reaction, true, true, false)
+                .getSelectedSolution().getBondChangeCalculator();
+        mapped = bcc.getReaction();
+        mapped.setID("ester");
+        fingerprints = new TreeMap<>();
+        fingerprints.put("formed_cleaved", bcc.getFormedCleavedWFingerprint());
+        fingerprints.put("order_changed", bcc.getOrderChangesWFingerprint());
+        fingerprints.put("reaction_centre", bcc.getReactionCenterWFingerprint());
+
+        stereo = sp.parseReactionSmiles("C[C@H](N)C(=O)O.F/C=C/F>>C[C@@H](N)C(=O)O.F/C=C\\F");
+        stereo.setID("stereo");
+        stereo.setDirection(IReaction.Direction.BIDIRECTIONAL);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (boolean compress : new boolean[]{false, true}) {
+            File file = folder.newFile("reactions" + compress + ".rdtb");
+            try (BinaryReactionDataStore store = new BinaryReactionDataStore(file, compress, 1)) {
+                store.store(mapped, fingerprints);
+                store.store(stereo);
+            }
+            BinaryReactionDataSource source = new BinaryReactionDataSource(file);
+            try {
+                assertEquals(2, source.size());
+                IReaction read = source.get("ester");
+                assertReaction(mapped, read);
+                Map<String, IPatternFingerprinter> readFingerprints = read.getProperty(BinaryReactionFormat.FINGERPRINTS);
+                assertEquals(fingerprints.keySet(), readFingerprints.keySet());
+                for (String name : fingerprints.keySet()) {
+                    assertFeatures(fingerprints.get(name), readFingerprints.get(name));
+                }
+                assertReaction(stereo, source.get("stereo"));
+            } finally {
+                source.close();
+            }
+        }
+    }
+
+    @Test
+    public void testFailedReactionNotStored() throws Exception {
+        SmilesParser sp = new SmilesParser(getInstance());
+        IReaction broken = sp.parseReactionSmiles("CC>>CC");
+        broken.setID("broken");
+        broken.setProperty(BinaryReactionFormat.FINGERPRINTS, "not a fingerprint map");
+        File file = folder.newFile("partial.rdtb");
+        try (BinaryReactionDataStore store = new BinaryReactionDataStore(file, false)) {
+            store.store(stereo);
+            try {
+                store.store(broken);
+                fail("the broken reaction should not be written");
+            } catch (IllegalStateException expected) {
+            }
+            store.store(mapped, fingerprints);
+            assertEquals(2, store.getCount());
+        }
+        /*
+         * the records after the failure are read back intact
+         */
+        BinaryReactionDataSource source = new BinaryReactionDataSource(file);
+        try {
+            assertEquals(2, source.size());
+            assertReaction(stereo, source.get("stereo"));
+            assertReaction(mapped, source.get("ester"));
+        } finally {
+            source.close();
+        }
+    }
+
+    @Test
+    public void testMappingAndChanges() throws Exception {
+        int mappedAtoms = 0;
+        int changedBonds = 0;
+        for (IAtomContainer ac : mapped.getReactants().atomContainers()) {
+            for (IAtom atom : ac.atoms()) {
+                if (atom.getProperty(ATOM_ATOM_MAPPING) != null) {
+                    mappedAtoms++;
+                }
+            }
+            for (IBond bond : ac.bonds()) {
+                if (bond.getProperty(BOND_CHANGE_INFORMATION) != null) {
+                    changedBonds++;
+                }
+            }
+        }
+        /*
+         * the round trip test is not vacuous
+         */
+        assertTrue(mappedAtoms > 0);
+        assertTrue(changedBonds > 0);
+        assertTrue(stereo.getReactants().getAtomContainer(0).stereoElements().iterator().hasNext());
+        assertTrue(stereo.getReactants().getAtomContainer(1).stereoElements().iterator().hasNext());
+    }
+
+    private static void assertReaction(IReaction expected, IReaction actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getID(), actual.getID());
+        assertEquals(expected.getDirection(), actual.getDirection());
+        assertMolecules(expected.getReactants(), actual.getReactants());
+        assertMolecules(expected.getProducts(), actual.getProducts());
+    }
+
+    private static void assertMolecules(IAtomContainerSet expected, IAtomContainerSet actual) {
+        assertEquals(expected.getAtomContainerCount(), actual.getAtomContainerCount());
+        for (int i = 0; i < expected.getAtomContainerCount(); i++) {
+            assertEquals(expected.getMultiplier(i), actual.getMultiplier(i));
+            assertMolecule(expected.getAtomContainer(i), actual.getAtomContainer(i));
+        }
+    }
+
+    private static void assertMolecule(IAtomContainer expected, IAtomContainer actual) {
+        assertEquals(expected.getID(), actual.getID());
+        assertEquals(expected.getAtomCount(), actual.getAtomCount());
+        for (int i = 0; i < expected.getAtomCount(); i++) {
+            IAtom e = expected.getAtom(i);
+            IAtom a = actual.getAtom(i);
+            assertEquals(e.getSymbol(), a.getSymbol());
+            assertEquals(e.getID(), a.getID());
+            assertEquals(e.getFormalCharge(), a.getFormalCharge());
+            assertEquals(e.getImplicitHydrogenCount(), a.getImplicitHydrogenCount());
+            assertEquals(e.getMassNumber(), a.getMassNumber());
+            assertEquals(e.getFlag(ISAROMATIC), a.getFlag(ISAROMATIC));
+            assertEquals(e.<Object>getProperty(ATOM_ATOM_MAPPING), a.<Object>getProperty(ATOM_ATOM_MAPPING));
+            assertEquals(e.<Object>getProperty(BOND_CHANGE_INFORMATION), a.<Object>getProperty(BOND_CHANGE_INFORMATION));
+            assertEquals(e.getPoint2d(), a.getPoint2d());
+        }
+        assertEquals(expected.getBondCount(), actual.getBondCount());
+        for (int i = 0; i < expected.getBondCount(); i++) {
+            IBond e = expected.getBond(i);
+            IBond a = actual.getBond(i);
+            assertEquals(expected.getAtomNumber(e.getAtom(0)), actual.getAtomNumber(a.getAtom(0)));
+            assertEquals(expected.getAtomNumber(e.getAtom(1)), actual.getAtomNumber(a.getAtom(1)));
+            assertEquals(e.getOrder(), a.getOrder());
+            assertEquals(e.getStereo(), a.getStereo());
+            assertEquals(e.getFlag(ISAROMATIC), a.getFlag(ISAROMATIC));
+            assertEquals(e.<Object>getProperty(BOND_CHANGE_INFORMATION), a.<Object>getProperty(BOND_CHANGE_INFORMATION));
+        }
+        Iterator<IStereoElement> actualElements = actual.stereoElements().iterator();
+        for (IStereoElement e : expected.stereoElements()) {
+            assertTrue(actualElements.hasNext());
+            IStereoElement a = actualElements.next();
+            if (e instanceof ITetrahedralChirality) {
+                ITetrahedralChirality et = (ITetrahedralChirality) e;
+                ITetrahedralChirality at = (ITetrahedralChirality) a;
+                assertEquals(expected.getAtomNumber(et.getChiralAtom()), actual.getAtomNumber(at.getChiralAtom()));
+                assertArrayEquals(atomNumbers(expected, et.getLigands()), atomNumbers(actual, at.getLigands()));
+                assertEquals(et.getStereo(), at.getStereo());
+            } else {
+                IDoubleBondStereochemistry ed = (IDoubleBondStereochemistry) e;
+                IDoubleBondStereochemistry ad = (IDoubleBondStereochemistry) a;
+                assertEquals(expected.getBondNumber(ed.getStereoBond()), actual.getBondNumber(ad.getStereoBond()));
+                assertEquals(expected.getBondNumber(ed.getBonds()[0]), actual.getBondNumber(ad.getBonds()[0]));
+                assertEquals(expected.getBondNumber(ed.getBonds()[1]), actual.getBondNumber(ad.getBonds()[1]));
+                assertEquals(ed.getStereo(), ad.getStereo());
+            }
+        }
+        assertFalse(actualElements.hasNext());
+    }
+
+    private static int[] atomNumbers(IAtomContainer ac, IAtom[] atoms) {
+        int[] numbers = new int[atoms.length];
+        for (int i = 0; i < atoms.length; i++) {
+            numbers[i] = ac.getAtomNumber(atoms[i]);
+        }
+        return numbers;
+    }
+
+    private static void assertFeatures(IPatternFingerprinter expected, IPatternFingerprinter actual) {
+        assertEquals(expected.getFeatureCount(), actual.getFeatureCount());
+        Map<String, Double> e = new TreeMap<>();
+        for (IFeature feature : expected.getFeatures()) {
+            e.put(feature.getPattern(), feature.getWeight());
+        }
+        Map<String, Double> a = new TreeMap<>();
+        for (IFeature feature : actual.getFeatures()) {
+            a.put(feature.getPattern(), feature.getWeight());
+        }
+        assertEquals(e, a);
+    }
+}
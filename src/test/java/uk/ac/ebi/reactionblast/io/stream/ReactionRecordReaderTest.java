@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.io.stream;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.openscience.cdk.CDKConstants.TITLE;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.io.MDLV2000Writer;
+import org.openscience.cdk.smiles.SmilesParser;
+import uk.ac.ebi.reactionblast.io.stream.ReactionRecordReader.Format;
+
+/**
+ * Records of the multi-record formats, a record which can't be parsed is an
+ * error record and the next records are still read.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class ReactionRecordReaderTest {
+
+    @Test
+    public void testSMI() throws Exception {
+        String smi = "# comment\n"
+                + "\n"
+                + "CC(=O)O.OCC>>CC(=O)OCC.O ester\n"
+                + "CCO bad\n"
+                + "CC>>CC\n";
+        List<ReactionRecord> records = read(smi, Format.SMI);
+        assertEquals(3, records.size());
+        assertEquals("ester", records.get(0).getId());
+        assertEquals(2, records.get(0).getReaction().getReactantCount());
+        assertEquals(2, records.get(0).getReaction().getProductCount());
+        assertTrue(records.get(1).isError());
+        assertEquals("bad", records.get(1).getId());
+        assertFalse(records.get(2).isError());
+        assertEquals("test_3", records.get(2).getId());
+        assertEquals(3, records.get(2).getIndex());
+    }
+
+    @Test
+    public void testRXN() throws Exception {
+        String rxn = resource("/rxn/kegg/R00001.rxn") + resource("/rxn/kegg/R00002.rxn");
+        List<ReactionRecord> records = read(rxn, Format.RXN);
+        assertEquals(2, records.size());
+        assertEquals("test", records.get(0).getId());
+        assertEquals("test_2", records.get(1).getId());
+        assertEquals(2, records.get(0).getReaction().getReactantCount());
+        assertEquals(1, records.get(0).getReaction().getProductCount());
+        assertEquals(2, records.get(1).getReaction().getReactantCount());
+        assertEquals(2, records.get(1).getReaction().getProductCount());
+    }
+
+    @Test
+    public void testMalformedRXN() throws Exception {
+        String rxn = resource("/rxn/kegg/R00001.rxn")
+                + "$RXN\n\n  broken\n\n  1  1\n$MOL\nnot a molfile\n"
+                + resource("/rxn/kegg/R00002.rxn");
+        List<ReactionRecord> records = read(rxn, Format.RXN);
+        assertEquals(3, records.size());
+        assertFalse(records.get(0).isError());
+        assertTrue(records.get(1).isError());
+        assertEquals("test_2", records.get(1).getId());
+        assertFalse(records.get(2).isError());
+        assertEquals(2, records.get(2).getReaction().getProductCount());
+    }
+
+    @Test
+    public void testRDF() throws Exception {
+        File rdf = new File(getClass().getResource("/rxn/infochem/master_rdf_files/MapTestExamplesV1.0.rdf").toURI());
+        List<ReactionRecord> records = new ArrayList<>();
+        try (ReactionRecordReader reader = new ReactionRecordReader(rdf)) {
+            for (ReactionRecord record : reader) {
+                records.add(record);
+            }
+            assertEquals(104, reader.getRecordCount());
+        }
+        assertEquals(104, records.size());
+        for (ReactionRecord record : records) {
+            assertFalse(record.getId(), record.isError());
+        }
+        IReaction first = records.get(0).getReaction();
+        assertEquals("0000001", records.get(0).getId());
+        assertEquals("0000001", first.getID());
+        assertEquals(2, first.getReactantCount());
+        assertEquals(1, first.getProductCount());
+        assertEquals("G1_trivial", first.getProperty("RXN:GROUP"));
+        assertEquals("Figure_N", first.getProperty("RXN:FIGUREPUB"));
+    }
+
+    @Test
+    public void testSDF() throws Exception {
+        StringBuilder sdf = new StringBuilder();
+        sdf.append(molfile("CC(=O)O", "acetate")).append("$$$$\n");
+        sdf.append("\n  broken\n\n  1  0  0  0  0  0  0  0  0  0999 V2000\nnot an atom\n").append("$$$$\n");
+        sdf.append(molfile("OCC", null)).append("$$$$\n");
+        List<ReactionRecord> records = read(sdf.toString(), Format.SDF);
+        assertEquals(3, records.size());
+
+        IReaction reaction = records.get(0).getReaction();
+        assertEquals("acetate", records.get(0).getId());
+        IAtomContainer reactant = reaction.getReactants().getAtomContainer(0);
+        IAtomContainer product = reaction.getProducts().getAtomContainer(0);
+        assertNotSame(reactant, product);
+        assertNotSame(reactant.getAtom(0), product.getAtom(0));
+        assertEquals(4, reactant.getAtomCount());
+        assertEquals(4, product.getAtomCount());
+
+        assertTrue(records.get(1).isError());
+        assertEquals("test_2", records.get(1).getId());
+        assertFalse(records.get(2).isError());
+        assertEquals("test_3", records.get(2).getId());
+    }
+
+    private static List<ReactionRecord> read(String text, Format format) throws Exception {
+        List<ReactionRecord> records = new ArrayList<>();
+        try (ReactionRecordReader reader = new ReactionRecordReader(new StringReader(text), format, "test")) {
+            for (ReactionRecord record : reader) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private String resource(String path) throws Exception {
+        return new String(Files.readAllBytes(new File(getClass().getResource(path).toURI()).toPath()), UTF_8);
+    }
+
+    private static String molfile(String smiles, String title) throws Exception {
+        IAtomContainer ac = new SmilesParser(getInstance()).parseSmiles(smiles);
+        if (title != null) {
+            ac.setProperty(TITLE, title);
+        }
+        StringWriter out = new StringWriter();
+        try (MDLV2000Writer writer = new MDLV2000Writer(out)) {
+            writer.write(ac);
+        }
+        return out.toString();
+    }
+}
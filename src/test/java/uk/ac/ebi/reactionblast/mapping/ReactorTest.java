@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mapping;
+
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainerSet;
+import org.openscience.cdk.smiles.SmilesParser;
+import static uk.ac.ebi.reactionblast.mapping.Reactor.getContainerAtomsByID;
+import static uk.ac.ebi.reactionblast.mapping.Reactor.getCoreAtomsByID;
+
+/**
+ * Atom lookups by ID used while the mappings are written back.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class ReactorTest {
+
+    @Test
+    public void testContainerAtomsByID() throws Exception {
+        IAtomContainer water = mol("[H]O[H]");
+        IAtomContainer methanol = mol("CO");
+        water.getAtom(0).setID("-1");
+        water.getAtom(1).setID("1");
+        water.getAtom(2).setID("-1");
+        methanol.getAtom(0).setID("2");
+        methanol.getAtom(1).setID("1");
+        IAtomContainerSet set = set(water, methanol);
+
+        Map<String, IAtom> atoms = getContainerAtomsByID(set);
+        assertEquals(3, atoms.size());
+        /*
+         * the first atom is kept when IDs repeat, across molecules too
+         */
+        assertSame(water.getAtom(0), atoms.get("-1"));
+        assertSame(water.getAtom(1), atoms.get("1"));
+        assertSame(methanol.getAtom(0), atoms.get("2"));
+
+        /*
+         * atoms without an ID are left out
+         */
+        methanol.getAtom(0).setID(null);
+        assertFalse(getContainerAtomsByID(set).containsKey("2"));
+        assertFalse(getContainerAtomsByID(set).containsKey(null));
+    }
+
+    @Test
+    public void testCoreAtomsByID() throws Exception {
+        IAtomContainer methanol = mol("[H]C([H])([H])O[H]");
+        IAtomContainer water = mol("[H]O[H]");
+        for (IAtom atom : methanol.atoms()) {
+            atom.setID("-1");
+        }
+        for (IAtom atom : water.atoms()) {
+            atom.setID("-1");
+        }
+        IAtom carbon = methanol.getAtom(1);
+        IAtom oxygen = methanol.getAtom(4);
+        carbon.setID("1");
+        oxygen.setID("2");
+        water.getAtom(1).setID("2");
+        IAtomContainerSet set = set(methanol, water);
+
+        Map<String, List<IAtom>> core = getCoreAtomsByID(set);
+        /*
+         * only mapped heavy atoms are keys, hydrogens and unmapped atoms are not
+         */
+        assertEquals(2, core.size());
+        assertTrue(core.containsKey("1"));
+        assertTrue(core.containsKey("2"));
+        assertEquals(4, core.get("1").size());
+        assertTrue(core.get("1").containsAll(methanol.getConnectedAtomsList(carbon)));
+        /*
+         * neighbours of atoms sharing an ID are collected together
+         */
+        List<IAtom> neighbours = core.get("2");
+        assertEquals(4, neighbours.size());
+        assertTrue(neighbours.containsAll(methanol.getConnectedAtomsList(oxygen)));
+        assertTrue(neighbours.contains(water.getAtom(0)));
+        assertTrue(neighbours.contains(water.getAtom(2)));
+    }
+
+    private static IAtomContainerSet set(IAtomContainer... molecules) {
+        IAtomContainerSet set = getInstance().newInstance(IAtomContainerSet.class);
+        for (IAtomContainer ac : molecules) {
+            set.addAtomContainer(ac);
+        }
+        return set;
+    }
+
+    private static IAtomContainer mol(String smiles) throws Exception {
+        return new SmilesParser(getInstance()).parseSmiles(smiles);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mapping.algorithm.checks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IMapping;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.smiles.SmilesParser;
+import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+import uk.ac.ebi.reactionblast.tools.metrics.Counter;
+import static uk.ac.ebi.reactionblast.tools.metrics.ReactionMetrics.MAPPING_SHORTCUT;
+
+/**
+ * Transport and stereo isomerase reactions, mapped by the global model
+ * only.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class ReactionIdentityHandlerTest {
+
+    @Test
+    public void testTransport() throws Exception {
+        ReactionIdentityHandler handler = new ReactionIdentityHandler(reaction("OCC(O)CO>>OCC(O)CO"));
+        assertTrue(handler.isIdentical());
+        assertFalse(handler.isStereoIsomerase());
+        assertTrue(handler.isTrivial());
+    }
+
+    @Test
+    public void testStereoIsomerase() throws Exception {
+        ReactionIdentityHandler handler = new ReactionIdentityHandler(reaction("C/C=C/C(O)=O>>C/C=C\\C(O)=O"));
+        assertFalse(handler.isIdentical());
+        assertTrue(handler.isStereoIsomerase());
+        assertTrue(handler.isTrivial());
+    }
+
+    @Test
+    public void testNotTrivial() throws Exception {
+        assertFalse(new ReactionIdentityHandler(reaction("CCO>>CC=O")).isTrivial());
+        assertFalse("several molecules per side",
+                new ReactionIdentityHandler(reaction("CCO.O>>CCO.O")).isTrivial());
+        IReaction stoichiometry = reaction("CCO>>CCO");
+        stoichiometry.setReactantCoefficient(stoichiometry.getReactants().getAtomContainer(0), 2.0);
+        assertFalse("stoichiometry", new ReactionIdentityHandler(stoichiometry).isTrivial());
+        assertFalse(new ReactionIdentityHandler(null).isTrivial());
+    }
+
+    @Test
+    public void testShortcutMapping() throws Exception {
+        IReaction reaction = reaction("OCC(O)CO>>OCC(O)CO");
+        reaction.setID("transport");
+        ReactionMechanismTool rmt = new ReactionMechanismTool(reaction, true, true, false);
+        Counter shortcut = rmt.getMetrics().getCounters().get(MAPPING_SHORTCUT);
+        assertNotNull(shortcut);
+        assertEquals(1, shortcut.getCount());
+        IReaction mapped = rmt.getSelectedSolution().getReaction();
+        int heavy = 0;
+        for (IMapping m : mapped.mappings()) {
+            IAtom a = (IAtom) m.getChemObject(0);
+            IAtom b = (IAtom) m.getChemObject(1);
+            assertEquals(a.getSymbol(), b.getSymbol());
+            if (!a.getSymbol().equals("H")) {
+                heavy++;
+            }
+        }
+        assertEquals(6, heavy);
+        assertEquals(0, rmt.getSelectedSolution().getBondChangeCalculator().getTotalBondBreakingEnergy(), 0.0);
+    }
+
+    private static IReaction reaction(String smiles) throws Exception {
+        return new SmilesParser(getInstance()).parseReactionSmiles(smiles);
+    }
+}
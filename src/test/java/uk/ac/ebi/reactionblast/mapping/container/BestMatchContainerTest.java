@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mapping.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.AtomAtomMapping;
+
+/**
+ * Dense tables of the best matches, grown on demand.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class BestMatchContainerTest {
+
+    @Test
+    public void testGrowth() throws Exception {
+        BestMatchContainer container = new BestMatchContainer();
+        AtomAtomMapping first = mapping();
+        AtomAtomMapping second = mapping();
+        container.putBestMapping(0, 0, first);
+        fill(container, 0, 0, 1);
+        /*
+         * grows in both directions, then only in rows and only in columns
+         */
+        container.putBestMapping(5, 3, second);
+        fill(container, 5, 3, 2);
+        fill(container, 9, 0, 3);
+        fill(container, 1, 17, 4);
+
+        assertSame(first, container.getAtomMatch(0, 0));
+        assertSame(second, container.getAtomMatch(5, 3));
+        assertFilled(container, 0, 0, 1);
+        assertFilled(container, 5, 3, 2);
+        assertFilled(container, 9, 0, 3);
+        assertFilled(container, 1, 17, 4);
+        assertTrue(container.containsKey(0, 0));
+        assertTrue(container.containsKey(5, 3));
+        /*
+         * scores alone don't make a match
+         */
+        assertFalse(container.containsKey(9, 0));
+        assertFalse(container.containsKey(3, 5));
+        assertFilled(container, 3, 5, 0);
+    }
+
+    @Test
+    public void testOutOfRange() throws Exception {
+        BestMatchContainer container = new BestMatchContainer();
+        assertFalse(container.containsKey(0, 0));
+        assertFilled(container, 2, 2, 0);
+        assertFalse(container.containsKey(-1, 0));
+        container.Erase(4, 4);
+        container.putBestMapping(1, 1, mapping());
+        assertFalse(container.containsKey(1, 7));
+        assertFalse(container.containsKey(7, 1));
+        assertFilled(container, 7, 1, 0);
+    }
+
+    @Test
+    public void testEraseAndClear() throws Exception {
+        BestMatchContainer container = new BestMatchContainer();
+        container.putBestMapping(1, 2, mapping());
+        fill(container, 1, 2, 5);
+        container.putBestMapping(2, 1, mapping());
+        fill(container, 2, 1, 6);
+        container.Erase(1, 2);
+        assertFalse(container.containsKey(1, 2));
+        assertFilled(container, 1, 2, 0);
+        assertTrue(container.containsKey(2, 1));
+        assertFilled(container, 2, 1, 6);
+        container.Clear();
+        assertFalse(container.containsKey(2, 1));
+        assertFilled(container, 2, 1, 0);
+    }
+
+    @Test
+    public void testNullFragmentCount() throws Exception {
+        BestMatchContainer container = new BestMatchContainer();
+        container.setTotalFragmentCount(0, 1, 3);
+        container.setTotalFragmentCount(0, 1, null);
+        assertEquals(0, container.getTotalFragmentCount(0, 1));
+    }
+
+    private static void fill(BestMatchContainer container, int i, int j, int value) {
+        container.setTotalFragmentCount(i, j, value);
+        container.setBondEnergy(i, j, value + 0.5);
+        container.setStereoScore(i, j, value + 0.25);
+        container.setGraphSimilarity(i, j, value / 10.);
+    }
+
+    private static void assertFilled(BestMatchContainer container, int i, int j, int value) {
+        double energy = value == 0 ? 0. : value + 0.5;
+        double stereo = value == 0 ? 0. : value + 0.25;
+        assertEquals(value, container.getTotalFragmentCount(i, j));
+        assertEquals(energy, container.getBondEnergy(i, j), 0.);
+        assertEquals(stereo, container.getStereoScore(i, j), 0.);
+        assertEquals(value / 10., container.getGraphSimilarity(i, j), 0.);
+    }
+
+    private static AtomAtomMapping mapping() throws Exception {
+        SmilesParser sp = new SmilesParser(getInstance());
+        IAtomContainer query = sp.parseSmiles("CO");
+        IAtomContainer target = sp.parseSmiles("CCO");
+        AtomAtomMapping mapping = new AtomAtomMapping(query, target);
+        mapping.put(query.getAtom(0), target.getAtom(1));
+        mapping.put(query.getAtom(1), target.getAtom(2));
+        return mapping;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mapping.graph;
+
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+import static uk.ac.ebi.reactionblast.mapping.graph.GraphMatcher.getAtomsByID;
+import static uk.ac.ebi.reactionblast.mapping.graph.GraphMatcher.isSameMolecule;
+import static uk.ac.ebi.reactionblast.mapping.graph.GraphMatcher.replicateMappingOnCopies;
+import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MIN;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeCDK;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
+
+/**
+ * Copies of a molecule share one MCS job, the other molecules don't.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class GraphMatcherTest {
+
+    @Test
+    public void testCopiesAreSame() throws Exception {
+        for (String smiles : new String[]{"CC(=O)O", "C[C@H](N)C(=O)O", "F/C=C/F", "OC1=CC=CC=C1"}) {
+            IAtomContainer ac = mol(smiles);
+            assertTrue(smiles, isSameMolecule(ac, ac.clone()));
+            assertTrue(smiles, isSameMolecule(ac, mol(smiles)));
+        }
+    }
+
+    @Test
+    public void testStereoisomersNotSame() throws Exception {
+        assertFalse(isSameMolecule(mol("C[C@H](N)C(=O)O"), mol("C[C@@H](N)C(=O)O")));
+        assertFalse(isSameMolecule(mol("C[C@H](N)C(=O)O"), mol("CC(N)C(=O)O")));
+        assertFalse(isSameMolecule(mol("F/C=C/F"), mol("F/C=C\\F")));
+        assertFalse(isSameMolecule(mol("F/C=C/F"), mol("FC=CF")));
+    }
+
+    @Test
+    public void testOtherMoleculesNotSame() throws Exception {
+        assertFalse(isSameMolecule(mol("CC(=O)O"), mol("CC(=O)N")));
+        assertFalse(isSameMolecule(mol("OCC"), mol("CCO")));
+        assertFalse(isSameMolecule(mol("CC(=O)O"), mol("CC(=O)[O-]")));
+    }
+
+    @Test
+    public void testMappingReplicatedOnCopies() throws Exception {
+        IAtomContainer educt = mol("CC(=O)O");
+        IAtomContainer product = mol("CC(=O)OCC");
+        MCSThread thread = new MCSThread(MIN, 0, 0, educt, product, false, true, true);
+        thread.setHasPerfectRings(true);
+        MCSSolution mcs = thread.call();
+        assertNotNull(mcs);
+
+        IAtomContainer eductCopy = educt.clone();
+        IAtomContainer productCopy = product.clone();
+        MCSSolution copy = replicateMappingOnCopies(1, 2, eductCopy, productCopy, mcs);
+        assertEquals(1, copy.getQueryPosition());
+        assertEquals(2, copy.getTargetPosition());
+        assertSame(eductCopy, copy.getQueryContainer());
+        assertSame(productCopy, copy.getTargetContainer());
+        Map<IAtom, IAtom> original = mcs.getAtomAtomMapping().getMappingsByAtoms();
+        Map<IAtom, IAtom> replicated = copy.getAtomAtomMapping().getMappingsByAtoms();
+        assertEquals(4, replicated.size());
+        assertEquals(original.size(), replicated.size());
+        /*
+         * the copies are mapped atom for atom as the molecules of the job
+         */
+        for (Map.Entry<IAtom, IAtom> e : original.entrySet()) {
+            IAtom q = eductCopy.getAtom(mcs.getQueryContainer().getAtomNumber(e.getKey()));
+            IAtom t = productCopy.getAtom(mcs.getTargetContainer().getAtomNumber(e.getValue()));
+            assertSame(t, replicated.get(q));
+        }
+    }
+
+    @Test
+    public void testAtomsByID() throws Exception {
+        IAtomContainer ac = mol("CC(=O)O");
+        ac.getAtom(0).setID("1");
+        ac.getAtom(1).setID("2");
+        ac.getAtom(2).setID("1");
+        ac.getAtom(3).setID("3");
+        Map<String, IAtom> atoms = getAtomsByID(ac);
+        assertEquals(3, atoms.size());
+        /*
+         * the first atom is kept when IDs repeat
+         */
+        assertSame(ac.getAtom(0), atoms.get("1"));
+        assertSame(ac.getAtom(1), atoms.get("2"));
+        assertSame(ac.getAtom(3), atoms.get("3"));
+    }
+
+    private static IAtomContainer mol(String smiles) throws Exception {
+        IAtomContainer ac = new SmilesParser(getInstance()).parseSmiles(smiles);
+        percieveAtomTypesAndConfigureAtoms(ac);
+        aromatizeCDK(ac);
+        return ac;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mapping.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IPseudoAtom;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.smsd.Isomorphism;
+import org.openscience.smsd.interfaces.Algorithm;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeCDK;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
+
+/**
+ * Upper bounds used to defer the MCS of pairs which can't win a round.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MCSBoundTest {
+
+    private static final String[][] PAIRS = {
+        {"CC(=O)O", "CC(=O)OCC"},
+        {"OCC1OC(O)C(O)C(O)C1O", "OCC1OC(OP(O)(O)=O)C(O)C(O)C1O"},
+        {"NC(CC1=CC=CC=C1)C(O)=O", "OC(=O)C(=O)CC1=CC=CC=C1"},
+        {"CCCCCC", "OC1=CC=CC=C1"},
+        {"O=C=O", "CCO"}
+    };
+
+    @Test
+    public void testAtomUpperBound() throws Exception {
+        assertEquals(4, MCSBound.getAtomUpperBound(mol("CC(=O)O"), mol("CC(=O)OCC")));
+        assertEquals(2, MCSBound.getAtomUpperBound(mol("O=C=O"), mol("CCO")));
+        assertEquals(0, MCSBound.getAtomUpperBound(mol("N"), mol("O")));
+        assertEquals(4.0 / 6.0, MCSBound.getSimilarityUpperBound(mol("CC(=O)O"), mol("CC(=O)OCC")), 1e-9);
+    }
+
+    @Test
+    public void testPseudoAtomFallsBackToAtomCount() throws Exception {
+        IAtomContainer r = mol("CC(=O)O");
+        IPseudoAtom r1 = getInstance().newInstance(IPseudoAtom.class, "R");
+        r.addAtom(r1);
+        r.addBond(0, 4, IBond.Order.SINGLE);
+        assertEquals(5, MCSBound.getAtomUpperBound(r, mol("NCCCCCC")));
+    }
+
+    @Test
+    public void testPartialMatch() throws Exception {
+        assertFalse(MCSBound.isPartialMatch(mol("CC(=O)O"), mol("CC(=O)OCC")));
+        assertTrue(MCSBound.isPartialMatch(mol("CCN"), mol("CCO")));
+        assertFalse("single atoms are never deferred", MCSBound.isPartialMatch(mol("O"), mol("CC")));
+    }
+
+    @Test
+    public void testBoundIsNotBelowMCS() throws Exception {
+        for (String[] pair : PAIRS) {
+            IAtomContainer educt = mol(pair[0]);
+            IAtomContainer product = mol(pair[1]);
+            /*
+             * Settings of the mapping threads: ring or atom type matching
+             */
+            for (boolean rings : new boolean[]{true, false}) {
+                Isomorphism mcs = new Isomorphism(educt, product, Algorithm.DEFAULT, false, rings, !rings);
+                int size = mcs.getMappingCount() == 0 ? 0 : mcs.getFirstAtomMapping().getCount();
+                assertTrue(pair[0] + " " + pair[1] + ": " + size,
+                        size <= MCSBound.getAtomUpperBound(educt, product));
+            }
+        }
+    }
+
+    private static IAtomContainer mol(String smiles) throws Exception {
+        IAtomContainer ac = new SmilesParser(getInstance()).parseSmiles(smiles);
+        percieveAtomTypesAndConfigureAtoms(ac);
+        aromatizeCDK(ac);
+        return ac;
+    }
+}
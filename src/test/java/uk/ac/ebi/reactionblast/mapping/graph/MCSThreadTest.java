@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.mapping.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.smiles.SmilesParser;
+import uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm;
+import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.MIN;
+import static uk.ac.ebi.reactionblast.mapping.interfaces.IMappingAlgorithm.RINGS;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeCDK;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
+
+/**
+ * The educt and product of a mapping thread are shared with the other
+ * threads and must not be modified by the mapping.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class MCSThreadTest {
+
+    @Test
+    public void testSubstructureLeavesSourceUnchanged() throws Exception {
+        check(mol("CC(=O)O"), mol("CC(=O)OCC"), MIN, 4);
+        check(mol("CC(=O)OCC"), mol("CC(=O)O"), MIN, 4);
+    }
+
+    @Test
+    public void testMCSLeavesSourceUnchanged() throws Exception {
+        /*
+         * not a substructure, the copies of the substructure search are used
+         * for the MCS
+         */
+        check(mol("CC(C)O"), mol("CCCO"), MIN, 3);
+        check(mol("NC(CC1=CC=CC=C1)C(O)=O"), mol("OC(=O)C(=O)CC1=CC=CC=C1"), MIN, 11);
+        check(mol("OCC1OC(O)C(O)C(O)C1O"), mol("OCC1OC(OP(O)(O)=O)C(O)C(O)C1O"), RINGS, 12);
+    }
+
+    private static void check(IAtomContainer educt, IAtomContainer product,
+            IMappingAlgorithm theory, int size) throws Exception {
+        String eductBefore = snapshot(educt);
+        String productBefore = snapshot(product);
+        MCSThread thread = new MCSThread(theory, 0, 0, educt, product, false, true, true);
+        thread.setHasPerfectRings(true);
+        MCSSolution solution = thread.call();
+        assertNotNull(solution);
+        assertEquals(size, solution.getAtomAtomMapping().getCount());
+        assertEquals(eductBefore, snapshot(educt));
+        assertEquals(productBefore, snapshot(product));
+        /*
+         * the mapping refers to the private copies
+         */
+        assertNotSame(educt, solution.getQueryContainer());
+        assertNotSame(product, solution.getTargetContainer());
+        for (IAtom atom : solution.getAtomAtomMapping().getMappingsByAtoms().keySet()) {
+            assertSame(atom, solution.getQueryContainer().getAtom(solution.getQueryContainer().getAtomNumber(atom)));
+        }
+    }
+
+    private static String snapshot(IAtomContainer ac) {
+        List<String> state = new ArrayList<>();
+        state.add(ac.getID() + " " + ac.getProperties() + " " + ac.getAtomCount() + " " + ac.getBondCount());
+        for (IAtom atom : ac.atoms()) {
+            state.add(atom.getSymbol() + " " + atom.getID() + " " + atom.getAtomTypeName()
+                    + " " + atom.getHybridization() + " " + Arrays.toString(atom.getFlags())
+                    + " " + atom.getProperties());
+        }
+        for (IBond bond : ac.bonds()) {
+            state.add(ac.getAtomNumber(bond.getAtom(0)) + "-" + ac.getAtomNumber(bond.getAtom(1))
+                    + " " + bond.getOrder() + " " + Arrays.toString(bond.getFlags())
+                    + " " + bond.getProperties());
+        }
+        return state.toString();
+    }
+
+    private static IAtomContainer mol(String smiles) throws Exception {
+        IAtomContainer ac = new SmilesParser(getInstance()).parseSmiles(smiles);
+        percieveAtomTypesAndConfigureAtoms(ac);
+        aromatizeCDK(ac);
+        return ac;
+    }
+}
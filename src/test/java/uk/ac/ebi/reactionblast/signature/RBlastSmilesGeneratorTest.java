@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.signature;
+
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import java.util.concurrent.Future;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IReaction;
+import static org.openscience.cdk.tools.manipulator.ReactionManipulator.getAllAtomContainers;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.aromatizeCDK;
+import static uk.ac.ebi.reactionblast.tools.ExtAtomContainerManipulator.percieveAtomTypesAndConfigureAtoms;
+import uk.ac.ebi.reactionblast.tools.labelling.SmilesMoleculeLabeller;
+import uk.ac.ebi.reactionblast.tools.rxnfile.MDLRXNV2000Reader;
+
+/**
+ * SMILES of the molecules and atom signature fragments of KEGG reactions,
+ * generated by a shared generator.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class RBlastSmilesGeneratorTest {
+
+    /*
+     * Hash of the SMILES of each reaction, as generated by the synchronized
+     * generator and the signatures before their state was shared
+     */
+    private static final String[] EXPECTED = {
+        "R00001", "-790935492", "R00006", "-1547626972", "R00011", "259437576",
+        "R00015", "1915550552", "R00019", "-872138752", "R00024", "-364851754",
+        "R00093", "1774808233", "R00344", "947366112", "R01068", "1401361658",
+        "R01188", "1962299445", "R01467", "617871536", "R01561", "741315278",
+        "R01819", "1901599668", "R02555", "-322039629", "R03020", "365071305",
+        "R03200", "-280246446", "R03673", "236902985", "R04165", "-1663694269",
+        "R04558", "-1438536383", "R05137", "-1788033981", "R05645", "-1589732485",
+        "R06989", "-53573094", "R08639", "2039122924", "R09087", "-449861838",
+        "R09909", "-1307374519"
+    };
+
+    @Test
+    public void testSameAsBefore() throws Exception {
+        for (int i = 0; i < EXPECTED.length; i += 2) {
+            String id = EXPECTED[i];
+            String smiles = generate(read(id), new RBlastSmilesGenerator(false, new SmilesMoleculeLabeller()),
+                    new RBlastSmilesGenerator(true, new SmilesMoleculeLabeller()));
+            assertEquals(id, Integer.parseInt(EXPECTED[i + 1]), smiles.hashCode());
+        }
+    }
+
+    @Test
+    public void testSharedBetweenThreads() throws Exception {
+        Map<String, List<IAtomContainer>> reactions = new LinkedHashMap<>();
+        for (int i = 0; i < EXPECTED.length; i += 2) {
+            reactions.put(EXPECTED[i], read(EXPECTED[i]));
+        }
+        RBlastSmilesGenerator kekule = new RBlastSmilesGenerator(false, new SmilesMoleculeLabeller());
+        RBlastSmilesGenerator aromatic = new RBlastSmilesGenerator(true, new SmilesMoleculeLabeller());
+        Map<String, String> sequential = new LinkedHashMap<>();
+        for (Map.Entry<String, List<IAtomContainer>> e : reactions.entrySet()) {
+            sequential.put(e.getKey(), generate(e.getValue(), kekule, aromatic));
+        }
+
+        ExecutorService executor = newFixedThreadPool(8);
+        try {
+            List<Future<Map<String, String>>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit((Callable<Map<String, String>>) () -> {
+                    Map<String, String> smiles = new LinkedHashMap<>();
+                    for (Map.Entry<String, List<IAtomContainer>> e : reactions.entrySet()) {
+                        smiles.put(e.getKey(), generate(e.getValue(), kekule, aromatic));
+                    }
+                    return smiles;
+                }));
+            }
+            for (Future<Map<String, String>> future : futures) {
+                assertEquals(sequential, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * SMILES of each molecule (generated on a copy, the generator sets flags
+     * on the molecule) and of the atom signatures at height 1 and 2
+     */
+    private static String generate(List<IAtomContainer> molecules,
+            RBlastSmilesGenerator kekule, RBlastSmilesGenerator aromatic) throws Exception {
+        StringBuilder smiles = new StringBuilder();
+        for (IAtomContainer molecule : molecules) {
+            smiles.append(kekule.createSMILES(molecule.clone())).append('\n');
+            smiles.append(aromatic.createSMILES(molecule.clone())).append('\n');
+            RBlastMoleculeSignature signature = new RBlastMoleculeSignature(molecule.clone());
+            for (int i = 0; i < molecule.getAtomCount(); i++) {
+                for (int height = 1; height <= 2; height++) {
+                    smiles.append(signature.getSmilesForAtomSignature(i, height)).append('\n');
+                }
+            }
+        }
+        return smiles.toString();
+    }
+
+    private List<IAtomContainer> read(String id) throws Exception {
+        IReaction reaction;
+        try (MDLRXNV2000Reader reader = new MDLRXNV2000Reader(
+                new FileInputStream(getClass().getResource("/rxn/kegg/" + id + ".rxn").getFile()))) {
+            reaction = reader.read(getInstance().newInstance(IReaction.class));
+        }
+        List<IAtomContainer> molecules = getAllAtomContainers(reaction);
+        for (IAtomContainer molecule : molecules) {
+            percieveAtomTypesAndConfigureAtoms(molecule);
+            aromatizeCDK(molecule);
+        }
+        return molecules;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.stereo.ebi;
+
+import java.util.Map;
+import javax.vecmath.Point2d;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.layout.StructureDiagramGenerator;
+import org.openscience.cdk.smiles.SmilesParser;
+import uk.ac.ebi.centres.cdk.CDKPerceptor;
+import uk.ac.ebi.reactionblast.stereo.IStereoAndConformation;
+
+/**
+ * Hits, re-projection, invalidation and eviction of the 2D chirality cache.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class ChiralityCacheTest {
+
+    @Test
+    public void testKeyIsIndependentOfAtomOrder() throws Exception {
+        ChiralityCache cache = new ChiralityCache(10);
+        IAtomContainer ac = molecule("OC(N)C(=O)O");
+        IAtomContainer reordered = reverse(ac);
+        ChiralityCache.Key key = cache.key(ac);
+        ChiralityCache.Key other = cache.key(reordered);
+        assertNotNull(key);
+        assertEquals(key.key, other.key);
+        for (int i = 0; i < ac.getAtomCount(); i++) {
+            int j = ac.getAtomCount() - 1 - i;
+            assertEquals(key.rank[i], other.rank[j]);
+        }
+    }
+
+    @Test
+    public void testHitOnClone() throws Exception {
+        ChiralityCache cache = new ChiralityCache(10);
+        IAtomContainer ac = molecule("C/C=C/C(N)C(=O)O");
+        IAtomContainer clone = reverse(ac);
+        Map<IAtom, IStereoAndConformation> perceived = StereoCenteralityTool.getChirality2D(ac, new CDKPerceptor(), cache);
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        Map<IAtom, IStereoAndConformation> cached = StereoCenteralityTool.getChirality2D(clone, new CDKPerceptor(), cache);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(ac.getAtomCount(), cached.size());
+        for (int i = 0; i < ac.getAtomCount(); i++) {
+            IAtom atom = clone.getAtom(ac.getAtomCount() - 1 - i);
+            assertEquals(perceived.get(ac.getAtom(i)), cached.get(atom));
+            assertEquals(cached.get(atom), atom.getProperty("Stereo"));
+        }
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        ChiralityCache cache = new ChiralityCache(10);
+        IAtomContainer ac = molecule("CC(N)C(=O)O");
+        ChiralityCache.Key key = cache.key(ac);
+        cache.put(key, new IStereoAndConformation[ac.getAtomCount()]);
+        assertNotNull(cache.get(cache.key(ac.clone())));
+
+        IAtomContainer moved = ac.clone();
+        Point2d p = moved.getAtom(1).getPoint2d();
+        moved.getAtom(1).setPoint2d(new Point2d(p.x + 0.5, p.y));
+        assertNotEquals(key.key, cache.key(moved).key);
+        assertNull(cache.get(cache.key(moved)));
+
+        IAtomContainer wedged = ac.clone();
+        for (IBond bond : wedged.bonds()) {
+            if (bond.getAtom(0) == wedged.getAtom(1) || bond.getAtom(1) == wedged.getAtom(1)) {
+                bond.setStereo(IBond.Stereo.UP);
+                break;
+            }
+        }
+        assertNotEquals(key.key, cache.key(wedged).key);
+
+        IAtomContainer charged = ac.clone();
+        charged.getAtom(2).setFormalCharge(1);
+        assertNotEquals(key.key, cache.key(charged).key);
+
+        cache.clear();
+        assertNull(cache.get(key));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        ChiralityCache cache = new ChiralityCache(2);
+        ChiralityCache.Key a = new ChiralityCache.Key("a", new int[0]);
+        ChiralityCache.Key b = new ChiralityCache.Key("b", new int[0]);
+        ChiralityCache.Key c = new ChiralityCache.Key("c", new int[0]);
+        cache.put(a, new IStereoAndConformation[0]);
+        cache.put(b, new IStereoAndConformation[0]);
+        /*
+         * a is used again, b is the least recently used
+         */
+        assertNotNull(cache.get(a));
+        cache.put(c, new IStereoAndConformation[0]);
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(a));
+        assertNotNull(cache.get(c));
+        assertNull(cache.get(b));
+    }
+
+    private static IAtomContainer molecule(String smiles) throws Exception {
+        IAtomContainer ac = new SmilesParser(getInstance()).parseSmiles(smiles);
+        StructureDiagramGenerator sdg = new StructureDiagramGenerator();
+        sdg.setMolecule(ac, false);
+        sdg.generateCoordinates();
+        int i = 0;
+        for (IAtom atom : ac.atoms()) {
+            atom.setID(String.valueOf(i++));
+        }
+        return ac;
+    }
+
+    /*
+     * Clone with the atoms (and bonds) in reverse order
+     */
+    private static IAtomContainer reverse(IAtomContainer ac) throws CloneNotSupportedException {
+        IAtomContainer clone = ac.clone();
+        IAtomContainer reversed = getInstance().newInstance(IAtomContainer.class);
+        for (int i = clone.getAtomCount() - 1; i >= 0; i--) {
+            reversed.addAtom(clone.getAtom(i));
+        }
+        for (int i = clone.getBondCount() - 1; i >= 0; i--) {
+            reversed.addBond(clone.getBond(i));
+        }
+        return reversed;
+    }
+}
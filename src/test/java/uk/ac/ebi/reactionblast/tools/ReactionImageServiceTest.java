@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools;
+
+import java.io.File;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IReaction;
+import org.openscience.cdk.smiles.SmilesParser;
+import uk.ac.ebi.reactionblast.graphics.direct.layout.MoleculeLayoutCache;
+import uk.ac.ebi.reactionblast.mechanism.ReactionMechanismTool;
+import uk.ac.ebi.reactionblast.tools.ReactionImageService.Format;
+import uk.ac.ebi.reactionblast.tools.ReactionImageService.Style;
+
+/**
+ * Queued rendering, with the submitter rendering when the queue is full and
+ * jobs rejected once the service is closed.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class ReactionImageServiceTest {
+
+    private static IReaction mapped;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void map() throws Exception {
+        IReaction reaction = new SmilesParser(getInstance()).parseReactionSmiles("CC(=O)O.OCC>>CC(=O)OCC.O");
+        reaction.setID("esterification");
+        mapped = new ReactionMechanismTool(reaction, true, true, false).getSelectedSolution().getReaction();
+    }
+
+    @Test
+    public void testSubmit() throws Exception {
+        File dir = folder.getRoot();
+        /*
+         * one worker and a queue of one, the other jobs are rendered by the
+         * submitter
+         */
+        ReactionImageService service = new ReactionImageService(1, 1, new MoleculeLayoutCache());
+        List<Future<File>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 4; i++) {
+                futures.add(service.submit(mapped, Style.LEFT_TO_RIGHT, Format.SVG, dir, "image" + i));
+            }
+        } finally {
+            service.close();
+        }
+        for (int i = 0; i < 4; i++) {
+            File file = futures.get(i).get(10, SECONDS);
+            assertEquals(new File(dir, "image" + i + ".svg"), file);
+            assertTrue(new String(Files.readAllBytes(file.toPath()), UTF_8).contains("<svg"));
+        }
+    }
+
+    @Test
+    public void testSubmitAfterClose() throws Exception {
+        ReactionImageService service = new ReactionImageService(1, 1, new MoleculeLayoutCache());
+        assertFalse(service.isClosed());
+        service.close();
+        assertTrue(service.isClosed());
+        try {
+            service.submit(mapped, Style.LEFT_TO_RIGHT, Format.SVG, folder.getRoot(), "closed");
+            fail("a closed service must reject new jobs");
+        } catch (RejectedExecutionException ex) {
+            // expected
+        }
+        assertFalse(new File(folder.getRoot(), "closed.svg").exists());
+    }
+
+    @Test
+    public void testSharedInstanceReopened() throws Exception {
+        ReactionImageService service = ReactionImageService.getInstance();
+        service.close();
+        ReactionImageService reopened = ReactionImageService.getInstance();
+        assertNotSame(service, reopened);
+        assertFalse(reopened.isClosed());
+        assertTrue(reopened.submit(mapped, Style.LEFT_TO_RIGHT, Format.SVG, folder.getRoot(), "shared")
+                .get(10, SECONDS).exists());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import static org.openscience.cdk.CDKConstants.ATOM_ATOM_MAPPING;
+import static org.openscience.cdk.DefaultChemObjectBuilder.getInstance;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.SmilesParser;
+
+/**
+ * Cached SMILES: a structure seen before is a hit, the hydrogen and mapping
+ * options are part of the key and CDKSMILES doesn't see later changes of its
+ * molecule.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class SmilesServiceTest {
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+        SmilesService service = new SmilesService(10);
+        IAtomContainer mol = mol("OC(=O)C1=CC=CC=C1");
+        String smiles = service.getCanonicalSMILES(mol, true);
+        assertEquals(0, service.getHits());
+        assertEquals(1, service.getMisses());
+        assertEquals(1, service.size());
+
+        /*
+         * the same structure in another container
+         */
+        assertEquals(smiles, service.getCanonicalSMILES(mol.clone(), true));
+        assertEquals(1, service.getHits());
+        assertEquals(1, service.getMisses());
+
+        /*
+         * another kind of SMILES of the same structure
+         */
+        service.getGenericSMILES(mol, true);
+        assertEquals(1, service.getHits());
+        assertEquals(2, service.getMisses());
+        assertEquals(2, service.size());
+
+        service.getCanonicalSMILES(mol("CCO"), true);
+        assertEquals(3, service.getMisses());
+        assertEquals(3, service.size());
+
+        service.clear();
+        assertEquals(0, service.size());
+        assertEquals(smiles, service.getCanonicalSMILES(mol, true));
+        assertEquals(4, service.getMisses());
+    }
+
+    @Test
+    public void testHydrogens() throws Exception {
+        SmilesService service = new SmilesService(10);
+        IAtomContainer mol = mol("[H]OC([H])([H])C");
+        String withoutH = service.getCanonicalSMILES(mol, true, true);
+        String withH = service.getCanonicalSMILES(mol, false, true);
+        assertEquals(2, service.getMisses());
+        assertNotEquals(withoutH, withH);
+        assertEquals(service.getCanonicalSMILES(mol("CCO"), true), withoutH);
+        assertTrue(withH, withH.contains("H"));
+        assertEquals(withH, service.getCanonicalSMILES(mol, false, true));
+        assertEquals(withoutH, service.getCanonicalSMILES(mol, true));
+        assertEquals(2, service.getHits());
+        assertEquals(3, service.getMisses());
+        /*
+         * the input is not changed
+         */
+        assertEquals(6, mol.getAtomCount());
+    }
+
+    @Test
+    public void testAtomAtomMapping() throws Exception {
+        SmilesService service = new SmilesService(10);
+        IAtomContainer mol = mol("CCO");
+        String plain = service.getCanonicalSMILES(mol, false);
+        for (int i = 0; i < mol.getAtomCount(); i++) {
+            mol.getAtom(i).setProperty(ATOM_ATOM_MAPPING, i + 1);
+        }
+        /*
+         * the mapping is ignored, same key
+         */
+        assertEquals(plain, service.getCanonicalSMILES(mol, true));
+        assertEquals(1, service.getMisses());
+        assertEquals(1, service.getHits());
+        /*
+         * with the mapping
+         */
+        service.getCanonicalSMILES(mol, false);
+        assertEquals(2, service.getMisses());
+        assertEquals(1, mol.getAtom(0).<Integer>getProperty(ATOM_ATOM_MAPPING).intValue());
+    }
+
+    @Test
+    public void testCDKSMILESSnapshot() throws Exception {
+        IAtomContainer mol = mol("CCO");
+        CDKSMILES smiles = new CDKSMILES(mol, true, false);
+        String before = new CDKSMILES(mol("CCO"), true, false).getCanonicalSMILES();
+        mol.removeAtomAndConnectedElectronContainers(mol.getAtom(0));
+        assertEquals(before, smiles.getCanonicalSMILES());
+        assertFalse(before.equals(new CDKSMILES(mol, true, false).getCanonicalSMILES()));
+    }
+
+    private static IAtomContainer mol(String smiles) throws Exception {
+        return new SmilesParser(getInstance()).parseSmiles(smiles);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2007-2017 Syed Asad Rahman <asad@ebi.ac.uk>.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package uk.ac.ebi.reactionblast.tools.bulk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openscience.cdk.interfaces.IReaction;
+import uk.ac.ebi.reactionblast.interfaces.ITransformation;
+import uk.ac.ebi.reactionblast.io.filesystem.SegmentedReactionDataStore;
+import uk.ac.ebi.reactionblast.io.stream.ReactionRecord;
+import uk.ac.ebi.reactionblast.io.stream.ReactionRecordReader;
+import static uk.ac.ebi.reactionblast.io.stream.ReactionRecordReader.Format.RDF;
+import static uk.ac.ebi.reactionblast.io.stream.ReactionRecordReader.Format.SMI;
+
+/**
+ * Resume, retry and journal reconciliation of a checkpointed batch run.
+ *
+ * @contact Syed Asad Rahman, EMBL-EBI, Cambridge, UK.
+ * @author Syed Asad Rahman <asad @ ebi.ac.uk>
+ */
+public class CheckpointedBulkTransformerTest {
+
+    private static final String INPUT
+            = "CC(=O)O.OCC>>CC(=O)OCC.O R1\n"
+            + "CCO>>CC=O R2\n"
+            + "CC=O>>CC(=O)O R3\n"
+            + "C=C>>CC R4\n"
+            + "CO>>C=O R5\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResume() throws Exception {
+        File dir = folder.newFolder();
+        CheckpointedBulkTransformer transformer = new CheckpointedBulkTransformer(new Identity(), 30);
+        /*
+         * Interrupted after three records, the third is in an uncommitted
+         * segment
+         */
+        BatchJournal journal = new BatchJournal(dir);
+        SegmentedReactionDataStore store = new SegmentedReactionDataStore(dir, 2, journal);
+        transformer.transform(records(3), store, journal, CheckpointedBulkTransformer.Mode.ALL);
+        journal.close();
+        assertEquals(3, transformer.getProcessed());
+
+        try (BatchJournal resumed = new BatchJournal(dir);
+                SegmentedReactionDataStore dataStore = new SegmentedReactionDataStore(dir, 2, resumed)) {
+            assertEquals(2, resumed.getCompleted().size());
+            transformer.transform(records(5), dataStore, resumed, CheckpointedBulkTransformer.Mode.RESUME);
+            dataStore.commit();
+            assertEquals(3, transformer.getProcessed());
+            assertEquals(2, transformer.getSkipped());
+            assertEquals(0, transformer.getFailures());
+            assertEquals(5, resumed.getCompleted().size());
+        }
+        assertEquals(Arrays.asList("R1", "R2", "R3", "R4", "R5"), readSegments(dir));
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        File dir = folder.newFolder();
+        Identity identity = new Identity();
+        identity.fail = "R3";
+        CheckpointedBulkTransformer transformer = new CheckpointedBulkTransformer(identity, 30);
+        try (BatchJournal journal = new BatchJournal(dir);
+                SegmentedReactionDataStore store = new SegmentedReactionDataStore(dir, 2, journal)) {
+            transformer.transform(records(5), store, journal, CheckpointedBulkTransformer.Mode.ALL);
+            store.commit();
+            assertEquals(5, transformer.getProcessed());
+            assertEquals(1, transformer.getFailures());
+            assertTrue(journal.isFailed("R3"));
+            String reason = journal.getRetryList().get("R3");
+            assertTrue(reason, reason.contains("no mapping for R3"));
+        }
+
+        identity.fail = null;
+        try (BatchJournal journal = new BatchJournal(dir);
+                SegmentedReactionDataStore store = new SegmentedReactionDataStore(dir, 2, journal)) {
+            assertEquals(1, journal.getRetryList().size());
+            transformer.transform(records(5), store, journal, CheckpointedBulkTransformer.Mode.RETRY);
+            store.commit();
+            assertEquals(1, transformer.getProcessed());
+            assertEquals(4, transformer.getSkipped());
+            assertEquals(0, transformer.getFailures());
+            assertTrue(journal.getRetryList().isEmpty());
+            assertTrue(journal.isCompleted("R3"));
+        }
+        List<String> ids = readSegments(dir);
+        assertEquals(5, ids.size());
+        assertTrue(ids.containsAll(Arrays.asList("R1", "R2", "R3", "R4", "R5")));
+    }
+
+    @Test
+    public void testReconcile() throws Exception {
+        File dir = folder.newFolder();
+        CheckpointedBulkTransformer transformer = new CheckpointedBulkTransformer(new Identity(), 0);
+        try (BatchJournal journal = new BatchJournal(dir);
+                SegmentedReactionDataStore store = new SegmentedReactionDataStore(dir, 5, journal)) {
+            transformer.transform(records(5), store, journal, CheckpointedBulkTransformer.Mode.ALL);
+        }
+        /*
+         * Segment renamed in place but the journal never written
+         */
+        assertTrue(new File(dir, BatchJournal.FILE_NAME).delete());
+        try (BatchJournal journal = new BatchJournal(dir);
+                SegmentedReactionDataStore store = new SegmentedReactionDataStore(dir, 5, journal)) {
+            List<BatchJournal.Entry> completed = journal.getCompleted();
+            assertEquals(5, completed.size());
+            for (BatchJournal.Entry e : completed) {
+                assertEquals(e.getId(), readRecord(new File(dir, e.getSegment()), e).getId());
+            }
+            transformer.transform(records(5), store, journal, CheckpointedBulkTransformer.Mode.RESUME);
+            assertEquals(0, transformer.getProcessed());
+            assertEquals(5, transformer.getSkipped());
+        }
+        assertEquals(Arrays.asList("R1", "R2", "R3", "R4", "R5"), readSegments(dir));
+    }
+
+    private static ReactionRecordReader records(int n) {
+        StringBuilder sb = new StringBuilder();
+        String[] lines = INPUT.split("\n");
+        for (int i = 0; i < n; i++) {
+            sb.append(lines[i]).append('\n');
+        }
+        return new ReactionRecordReader(new StringReader(sb.toString()), SMI, "test");
+    }
+
+    private static ReactionRecord readRecord(File segment, BatchJournal.Entry entry) throws IOException {
+        byte[] bytes = new byte[(int) entry.getLength()];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "r")) {
+            file.seek(entry.getOffset());
+            file.readFully(bytes);
+        }
+        try (ReactionRecordReader reader = new ReactionRecordReader(
+                new StringReader(new String(bytes, UTF_8)), RDF, "record")) {
+            ReactionRecord record = reader.next();
+            assertFalse(reader.hasNext());
+            return record;
+        }
+    }
+
+    private static List<String> readSegments(File dir) throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("segment-"));
+        Arrays.sort(files);
+        List<String> ids = new ArrayList<>();
+        for (File f : files) {
+            assertTrue(f.getName(), f.getName().endsWith(".rdf"));
+            try (ReactionRecordReader reader = new ReactionRecordReader(f)) {
+                for (ReactionRecord record : reader) {
+                    assertFalse(record.getId(), record.isError());
+                    ids.add(record.getId());
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static class Identity implements ITransformation<IReaction> {
+
+        volatile String fail;
+
+        @Override
+        public TargetType getTargetType() {
+            return TargetType.REACTION;
+        }
+
+        @Override
+        public IReaction transform(IReaction reaction) {
+            if (reaction.getID().equals(fail)) {
+                throw new IllegalStateException("no mapping for " + fail);
+            }
+            return reaction;
+        }
+    }
+}